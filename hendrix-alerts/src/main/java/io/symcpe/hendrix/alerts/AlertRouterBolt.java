@@ -16,6 +16,7 @@
 package io.symcpe.hendrix.alerts;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import backtype.storm.task.OutputCollector;
@@ -29,10 +30,14 @@ import io.symcpe.wraith.Constants;
 import io.symcpe.wraith.actions.alerts.Alert;
 
 /**
+ * Routes alerts to the stream of their media, the target is emitted alongside
+ * so that downstream bolts can be fields grouped by destination.
+ * 
  * @author ambud_sharma
  */
 public class AlertRouterBolt extends BaseRichBolt {
 
+	public static final List<String> MEDIA = Arrays.asList("mail", "http", "slack");
 	private static final long serialVersionUID = 1L;
 	private transient OutputCollector collector;
 
@@ -45,14 +50,14 @@ public class AlertRouterBolt extends BaseRichBolt {
 	@Override
 	public void execute(Tuple tuple) {
 		Alert alert = (Alert) tuple.getValueByField(Constants.FIELD_ALERT);
-		collector.emit(alert.getMedia(), tuple, new Values(alert));
+		collector.emit(alert.getMedia(), tuple, new Values(alert, alert.getTarget()));
 		collector.ack(tuple);
 	}
 
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
-		for (String media : Arrays.asList("mail", "http", "slack")) {
-			declarer.declareStream(media, new Fields(Constants.FIELD_ALERT));
+		for (String media : MEDIA) {
+			declarer.declareStream(media, new Fields(Constants.FIELD_ALERT, Constants.FIELD_ALERT_TARGET));
 		}
 	}
 
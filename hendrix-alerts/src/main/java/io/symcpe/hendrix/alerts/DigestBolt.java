@@ -0,0 +1,212 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.alerts;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import backtype.storm.Config;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.base.BaseRichBolt;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.storm.Utils;
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.actions.alerts.Alert;
+
+/**
+ * Coalesces alerts going to the same (media, target) within a window into a
+ * single digest alert so that a storm of alerts to a recipient becomes a
+ * handful of deliveries. Every alert's subject, timestamp and body is kept in
+ * the digest. Alerts are anchored to the digest and acked once it's emitted,
+ * hence the window is bounded by the message timeout.<br>
+ * <br>
+ * Input should be fields grouped by {@link Constants#FIELD_ALERT_TARGET} from
+ * the {@link AlertRouterBolt}, digests are emitted on the same media streams.
+ * 
+ * @author ambud_sharma
+ */
+public class DigestBolt extends BaseRichBolt {
+
+	public static final String ALERT_DIGEST_WINDOW = "alert.digest.window.secs";
+	public static final String ALERT_DIGEST_MAX_ALERTS = "alert.digest.max.alerts";
+	public static final String ALERT_DIGEST_MEDIA = "alert.digest.media";
+	private static final String DEFAULT_DIGEST_WINDOW = "10";
+	private static final String DEFAULT_DIGEST_MAX_ALERTS = "50";
+	private static final String DEFAULT_DIGEST_MEDIA = "mail";
+	private static final String HTML_MEDIA = "mail";
+	private static final long serialVersionUID = 1L;
+	private static final Logger logger = Logger.getLogger(DigestBolt.class.getName());
+	private transient OutputCollector collector;
+	private transient LinkedHashMap<String, Digest> digests;
+	private transient Set<String> digestMedia;
+	private transient int window;
+	private transient int maxAlerts;
+	private transient long clock;
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+		this.collector = collector;
+		this.digests = new LinkedHashMap<>();
+		this.digestMedia = new HashSet<>(Arrays.asList(
+				stormConf.getOrDefault(ALERT_DIGEST_MEDIA, DEFAULT_DIGEST_MEDIA).toString().split(",")));
+		this.maxAlerts = Integer
+				.parseInt(stormConf.getOrDefault(ALERT_DIGEST_MAX_ALERTS, DEFAULT_DIGEST_MAX_ALERTS).toString());
+		this.window = Integer.parseInt(stormConf.getOrDefault(ALERT_DIGEST_WINDOW, DEFAULT_DIGEST_WINDOW).toString());
+		int bounded = Utils.boundFlushTimeout(stormConf, window);
+		if (bounded < window) {
+			logger.warning("Digest window " + window + "s reduced to " + bounded + "s to ack within "
+					+ Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS);
+			this.window = bounded;
+		}
+		logger.info("Digesting alerts for " + digestMedia + " over " + window + "s");
+	}
+
+	@Override
+	public void execute(Tuple tuple) {
+		if (Utils.isTickTuple(tuple)) {
+			clock++;
+			// digests are in the order they were opened and share the window
+			Iterator<Digest> iterator = digests.values().iterator();
+			while (iterator.hasNext()) {
+				Digest digest = iterator.next();
+				if (digest.opened + window > clock) {
+					break;
+				}
+				iterator.remove();
+				emit(digest);
+			}
+			collector.ack(tuple);
+			return;
+		}
+		Alert alert = (Alert) tuple.getValueByField(Constants.FIELD_ALERT);
+		if (!digestMedia.contains(alert.getMedia())) {
+			collector.emit(alert.getMedia(), tuple, new Values(alert, alert.getTarget()));
+			collector.ack(tuple);
+			return;
+		}
+		String key = alert.getMedia() + "_" + alert.getTarget();
+		Digest digest = digests.get(key);
+		if (digest == null) {
+			digest = new Digest(alert.getMedia(), clock);
+			digests.put(key, digest);
+		}
+		digest.add(tuple, alert);
+		if (digest.alerts.size() >= maxAlerts) {
+			digests.remove(key);
+			emit(digest);
+		}
+	}
+
+	private void emit(Digest digest) {
+		Alert alert = digest.merge();
+		collector.emit(digest.media, digest.tuples, new Values(alert, alert.getTarget()));
+		for (Tuple tuple : digest.tuples) {
+			collector.ack(tuple);
+		}
+	}
+
+	@Override
+	public void declareOutputFields(OutputFieldsDeclarer declarer) {
+		for (String media : AlertRouterBolt.MEDIA) {
+			declarer.declareStream(media, new Fields(Constants.FIELD_ALERT, Constants.FIELD_ALERT_TARGET));
+		}
+	}
+
+	@Override
+	public Map<String, Object> getComponentConfiguration() {
+		Config conf = new Config();
+		// windows are measured in ticks of a second
+		conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+		return conf;
+	}
+
+	/**
+	 * @return number of open digests
+	 */
+	protected int getOpenDigests() {
+		return digests.size();
+	}
+
+	/**
+	 * Alerts coalesced for a (media, target)
+	 */
+	private static final class Digest {
+
+		private final String media;
+		private final long opened;
+		private final List<Tuple> tuples;
+		private final List<Alert> alerts;
+
+		private Digest(String media, long opened) {
+			this.media = media;
+			this.opened = opened;
+			this.tuples = new ArrayList<>();
+			this.alerts = new ArrayList<>();
+		}
+
+		private void add(Tuple tuple, Alert alert) {
+			tuples.add(tuple);
+			alerts.add(alert);
+		}
+
+		/**
+		 * @return the alert itself if there is only one, else a digest of the
+		 *         subject, time and body of every alert
+		 */
+		private Alert merge() {
+			Alert first = alerts.get(0);
+			if (alerts.size() == 1) {
+				return first;
+			}
+			boolean html = HTML_MEDIA.equals(media);
+			StringBuilder body = new StringBuilder();
+			for (Alert alert : alerts) {
+				String time = Instant.ofEpochMilli(alert.getTimestamp()).toString();
+				if (html) {
+					body.append("<h4>").append(alert.getSubject()).append(" at ").append(time).append("</h4>")
+							.append(alert.getBody()).append("<hr/>");
+				} else {
+					body.append("*").append(alert.getSubject()).append("* at ").append(time).append("\n")
+							.append(alert.getBody()).append("\n\n");
+				}
+			}
+			Alert digest = new Alert();
+			digest.setId(first.getId());
+			digest.setRuleGroup(first.getRuleGroup());
+			digest.setMedia(first.getMedia());
+			digest.setTarget(first.getTarget());
+			digest.setTimestamp(first.getTimestamp());
+			digest.setSubject("[" + alerts.size() + " alerts] " + first.getSubject());
+			digest.setBody(body.toString());
+			return digest;
+		}
+
+	}
+
+}
@@ -22,12 +22,16 @@ import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Tuple;
+import io.symcpe.hendrix.alerts.media.HttpDeliveryService;
 import io.symcpe.hendrix.alerts.media.HttpService;
 import io.symcpe.hendrix.storm.StormContextUtil;
 import io.symcpe.wraith.Constants;
 import io.symcpe.wraith.actions.alerts.Alert;
 
 /**
+ * Delivers alerts as HTTP callbacks through the shared
+ * {@link HttpDeliveryService}, tuples are acked by the completion callback.
+ * 
  * @author ambud_sharma
  */
 public class HttpBolt extends BaseRichBolt {
@@ -40,19 +44,28 @@ public class HttpBolt extends BaseRichBolt {
 	@Override
 	public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
 		this.collector = collector;
-		this.httpService = new HttpService();
+		this.httpService = new HttpService(HttpDeliveryService.getInstance(stormConf));
 	}
 
 	@Override
 	public void execute(Tuple tuple) {
 		Alert alert = (Alert) tuple.getValueByField(Constants.FIELD_ALERT);
 		try {
-			httpService.sendHttpCallback(alert);
-		} catch (AlertDeliveryException e) {
-			StormContextUtil.emitErrorTuple(collector, tuple, HttpBolt.class, alert.toString(),
-					"Failed to make http callback", e);
+			httpService.sendHttpCallback(alert, e -> {
+				synchronized (collector) {
+					if (e != null) {
+						StormContextUtil.emitErrorTuple(collector, tuple, HttpBolt.class, alert.toString(),
+								"Failed to make http callback", e);
+					}
+					collector.ack(tuple);
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			synchronized (collector) {
+				collector.fail(tuple);
+			}
 		}
-		collector.ack(tuple);
 	}
 
 	@Override
@@ -64,6 +64,11 @@ public class MailBolt extends BaseRichBolt {
 		collector.ack(tuple);
 	}
 	
+	@Override
+	public void cleanup() {
+		mailService.close();
+	}
+
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
 		StormContextUtil.declareErrorStream(declarer);
@@ -25,6 +25,7 @@ import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Tuple;
+import io.symcpe.hendrix.alerts.media.HttpDeliveryService;
 import io.symcpe.hendrix.alerts.media.HttpService;
 import io.symcpe.hendrix.storm.StormContextUtil;
 import io.symcpe.wraith.Constants;
@@ -49,7 +50,7 @@ public class SlackBolt extends BaseRichBolt {
 	@Override
 	public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
 		this.collector = collector;
-		this.httpService = new HttpService();
+		this.httpService = new HttpService(HttpDeliveryService.getInstance(stormConf));
 		this.gson = new Gson();
 	}
 
@@ -59,12 +60,21 @@ public class SlackBolt extends BaseRichBolt {
 		String[] split = alert.getTarget().split("@");
 		String json = gson.toJson(new SlackMessage("#"+split[1], SLACK_USERNAME, alert.getBody(), SLACK_EMOJI));
 		try {
-			httpService.sendHttpCallback(SLACK_URL + split[0], json);
-		} catch (AlertDeliveryException e) {
-			StormContextUtil.emitErrorTuple(collector, tuple, HttpBolt.class, alert.toString(),
-					"Failed to make http callback", e);
+			httpService.sendHttpCallback(SLACK_URL + split[0], json, e -> {
+				synchronized (collector) {
+					if (e != null) {
+						StormContextUtil.emitErrorTuple(collector, tuple, SlackBolt.class, alert.toString(),
+								"Failed to make http callback", e);
+					}
+					collector.ack(tuple);
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			synchronized (collector) {
+				collector.fail(tuple);
+			}
 		}
-		collector.ack(tuple);
 	}
 
 	@Override
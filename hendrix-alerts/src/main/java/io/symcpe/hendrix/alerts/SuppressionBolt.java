@@ -18,10 +18,12 @@ package io.symcpe.hendrix.alerts;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import backtype.storm.Config;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
@@ -30,12 +32,12 @@ import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.storm.AlertThrottle;
+import io.symcpe.hendrix.storm.AlertThrottle.Admission;
 import io.symcpe.hendrix.storm.Constants;
 import io.symcpe.hendrix.storm.StormContextUtil;
 import io.symcpe.hendrix.storm.UnifiedFactory;
 import io.symcpe.hendrix.storm.Utils;
-import io.symcpe.wraith.MutableBoolean;
-import io.symcpe.wraith.MutableInt;
 import io.symcpe.wraith.actions.alerts.Alert;
 import io.symcpe.wraith.actions.alerts.templated.AlertTemplate;
 import io.symcpe.wraith.actions.alerts.templated.AlertTemplateSerializer;
@@ -46,7 +48,15 @@ import io.symcpe.wraith.store.TemplateStore;
 /**
  * This bolt suppresses alerts by throttling policies enforced on templates. It
  * actively tracks trigger counts by template for a given tumbling time window
- * (measured in seconds).
+ * (measured in seconds) aligned to the alert timestamps, see
+ * {@link AlertThrottle}. Alerts should be fields grouped by template id so
+ * each template is throttled by one task.<br>
+ * <br>
+ * When {@link Constants#ALERT_THROTTLE_EARLY} is enabled the rules topology
+ * has already throttled the alerts before rendering them and this bolt only
+ * forwards them for delivery. Suppression state changes of the rules topology
+ * arrive from the {@link Constants#SUPPRESSION_STATE_COMPONENT} and are
+ * forwarded to the suppression monitor.
  * 
  * @author ambud_sharma
  */
@@ -57,20 +67,23 @@ public class SuppressionBolt extends BaseRichBolt {
 	private transient OutputCollector collector;
 	private transient StoreFactory storeFactory;
 	private transient Map<Short, AlertTemplate> templateMap;
-	private transient Map<Short, MutableInt> counter;
-	private transient Map<Short, MutableBoolean> stateMap;
-	private transient long globalCounter = 1;
+	private transient AlertThrottle throttle;
+	private transient boolean throttledEarly;
+	private transient JsonParser parser;
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public final void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
 		this.collector = collector;
 		this.templateMap = new HashMap<>();
-		this.counter = new HashMap<>();
-		this.stateMap = new HashMap<>();
+		this.throttledEarly = Boolean.parseBoolean(
+				stormConf.getOrDefault(Constants.ALERT_THROTTLE_EARLY, Constants.FALSE).toString());
 		this.storeFactory = new UnifiedFactory();
+		this.parser = new JsonParser();
 		try {
 			initTemplates(stormConf);
+			this.throttle = AlertThrottle.build(stormConf, context != null ? context.getThisTaskIndex() : 0,
+					storeFactory);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -109,21 +122,14 @@ public class SuppressionBolt extends BaseRichBolt {
 			Alert alert = (Alert) tuple.getValueByField(Constants.FIELD_ALERT);
 			AlertTemplate template = templateMap.get(alert.getId());
 			if (template != null) {
-				MutableInt result = counter.get(alert.getId());
-				if (result == null) {
-					result = new MutableInt();
-					counter.put(alert.getId(), result);
-					stateMap.put(alert.getId(), new MutableBoolean());
-				}
-				if (result.incrementAndGet() <= template.getThrottleLimit() || template.getThrottleLimit() == 0) {
+				Admission admission = throttledEarly ? Admission.ADMITTED : throttle.admit(template, alert.getTimestamp());
+				if (admission == Admission.ADMITTED) {
 					collector.emit(Constants.DELIVERY_STREAM, tuple, new Values(alert));
 				} else {
 					// else just drop the alert and notify suppression monitor
-					MutableBoolean state = stateMap.get(alert.getId());
-					if (!state.isVal()) {
+					if (admission == Admission.SUPPRESSION_STARTED) {
 						collector.emit(Constants.SUP_MON_STREAM, tuple, new Values(alert.getId(), true));
 						logger.fine("Entering suppression state for template:" + alert.getId());
-						state.setVal(true);
 					}
 					logger.fine("Suppression alert for:" + alert.getId() + ":\t" + alert);
 				}
@@ -132,22 +138,22 @@ public class SuppressionBolt extends BaseRichBolt {
 				StormContextUtil.emitErrorTuple(collector, tuple, SuppressionBolt.class, tuple.toString(),
 						"Suppression policy not found for templateid:" + alert.getId(), null);
 			}
+		} else if (Utils.isSuppressionStateTuple(tuple)) {
+			try {
+				JsonObject state = parser.parse(tuple.getString(0)).getAsJsonObject();
+				collector.emit(Constants.SUP_MON_STREAM, tuple,
+						new Values(state.get(Constants.FIELD_ALERT_TEMPLATE_ID).getAsShort(),
+								state.get(Constants.SUPRESSION_STATE).getAsBoolean()));
+			} catch (Exception e) {
+				StormContextUtil.emitErrorTuple(collector, tuple, SuppressionBolt.class, tuple.getString(0),
+						"Failed to parse suppression state", e);
+			}
 		} else if (Utils.isTickTuple(tuple)) {
-			globalCounter++;
-			logger.fine("Received tick tuple, gc:" + globalCounter);
-			for (Entry<Short, AlertTemplate> entry : templateMap.entrySet()) {
-				if (globalCounter % entry.getValue().getThrottleDuration() == 0
-						&& counter.containsKey(entry.getKey())) {
-					counter.get(entry.getKey()).setVal(0);
-					MutableBoolean res = stateMap.get(entry.getKey());
-					if (res.isVal()) {
-						collector.emit(Constants.SUP_MON_STREAM, tuple, new Values(entry.getKey(), false));
-						logger.fine("Leaving suppression state for template:" + entry.getKey());
-						res.setVal(false);
-					}
-					logger.fine("Resetting suppression counters for:" + entry.getKey());
-				}
+			for (Short templateId : throttle.tick(System.currentTimeMillis())) {
+				collector.emit(Constants.SUP_MON_STREAM, tuple, new Values(templateId, false));
+				logger.fine("Leaving suppression state for template:" + templateId);
 			}
+			logger.fine("Received tick tuple, clock:" + throttle.getClock());
 		} else if (Utils.isTemplateSyncTuple(tuple)) {
 			logger.info(
 					"Attempting to apply template update:" + tuple.getValueByField(Constants.FIELD_TEMPLATE_CONTENT));
@@ -218,17 +224,17 @@ public class SuppressionBolt extends BaseRichBolt {
 	}
 
 	/**
-	 * @return the counter
+	 * @return the throttle
 	 */
-	protected Map<Short, MutableInt> getCounter() {
-		return counter;
+	protected AlertThrottle getThrottle() {
+		return throttle;
 	}
 
 	/**
 	 * @return the globalCounter
 	 */
 	protected long getGlobalCounter() {
-		return globalCounter;
+		return throttle.getTicks();
 	}
 
 }
@@ -15,23 +15,18 @@
  */
 package io.symcpe.hendrix.alerts;
 
-import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.impl.client.CloseableHttpClient;
 
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Tuple;
+import io.symcpe.hendrix.alerts.media.HttpDeliveryService;
 import io.symcpe.hendrix.storm.Constants;
 import io.symcpe.hendrix.storm.StormContextUtil;
-import io.symcpe.hendrix.storm.Utils;
 
 /**
  * Ability to monitor suppression states for templates in real-time i.e. if a
@@ -46,7 +41,7 @@ public class SuppressionMonitorBolt extends BaseRichBolt {
 	private static final String UI_ENDPOINT = "ui.endpoint.av";
 	private transient OutputCollector collector;
 	private transient String uiEndpoint;
-	private transient CloseableHttpClient client;
+	private transient HttpDeliveryService deliveryService;
 
 	@SuppressWarnings("rawtypes")
 	@Override
@@ -57,20 +52,28 @@ public class SuppressionMonitorBolt extends BaseRichBolt {
 		} else {
 			this.uiEndpoint = "http://localhost:8080/ROOT/api/suppression/";
 		}
+		this.deliveryService = HttpDeliveryService.getInstance(stormConf);
 	}
 
 	@Override
 	public void execute(Tuple tuple) {
+		HttpPut put = new HttpPut(this.uiEndpoint + "/" + tuple.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID)
+				+ "/" + tuple.getBooleanByField(Constants.SUPRESSION_STATE));
 		try {
-			client = Utils.buildClient(this.uiEndpoint, 3000, 3000);
-			HttpPut put = new HttpPut(this.uiEndpoint + "/" + tuple.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID)
-					+ "/" + tuple.getBooleanByField(Constants.SUPRESSION_STATE));
-			client.execute(put);
-			client.close();
-		} catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException | IOException e) {
-			collector.reportError(e);
+			deliveryService.send(put, e -> {
+				synchronized (collector) {
+					if (e != null) {
+						collector.reportError(e);
+					}
+					collector.ack(tuple);
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			synchronized (collector) {
+				collector.fail(tuple);
+			}
 		}
-		collector.ack(tuple);
 	}
 
 	@Override
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.alerts.media;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import io.symcpe.hendrix.alerts.AlertDeliveryException;
+
+/**
+ * Asynchronous HTTP delivery over a pooled client shared by all the bolts of a
+ * worker. Connections are pooled per destination (route), the number of
+ * requests in flight is bounded by blocking the caller and failed requests
+ * (I/O errors, 429 and 5xx) are retried with exponential backoff before the
+ * completion callback is invoked.
+ * 
+ * @author ambud_sharma
+ */
+public class HttpDeliveryService {
+
+	public static final String HTTP_POOL_MAX_TOTAL = "http.pool.max.total";
+	public static final String HTTP_POOL_MAX_PER_ROUTE = "http.pool.max.per.route";
+	public static final String HTTP_DELIVERY_THREADS = "http.delivery.threads";
+	public static final String HTTP_DELIVERY_MAX_INFLIGHT = "http.delivery.max.inflight";
+	public static final String HTTP_DELIVERY_RETRIES = "http.delivery.retries";
+	public static final String HTTP_DELIVERY_BACKOFF = "http.delivery.backoff.ms";
+	public static final String HTTP_DELIVERY_TIMEOUT = "http.delivery.timeout.ms";
+	private static final Logger logger = Logger.getLogger(HttpDeliveryService.class.getName());
+	private static HttpDeliveryService instance;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient client;
+	private final ExecutorService workers;
+	private final ScheduledExecutorService retryTimer;
+	private final Semaphore inFlight;
+	private final int maxInFlight;
+	private final int retries;
+	private final long backoff;
+
+	/**
+	 * @param maxTotal
+	 *            connections across all destinations
+	 * @param maxPerRoute
+	 *            connections per destination
+	 * @param threads
+	 *            delivering requests
+	 * @param maxInFlight
+	 *            requests accepted before callers block
+	 * @param retries
+	 *            after the first attempt
+	 * @param backoff
+	 *            milliseconds before the first retry, doubled for every retry
+	 * @param timeout
+	 *            connect and socket timeout in milliseconds
+	 */
+	public HttpDeliveryService(int maxTotal, int maxPerRoute, int threads, int maxInFlight, int retries, long backoff,
+			int timeout) {
+		this.connectionManager = new PoolingHttpClientConnectionManager();
+		this.connectionManager.setMaxTotal(maxTotal);
+		this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+		RequestConfig config = RequestConfig.custom().setConnectTimeout(timeout).setSocketTimeout(timeout)
+				.setConnectionRequestTimeout(timeout).build();
+		this.client = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(config)
+				.build();
+		this.workers = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("http-delivery"));
+		this.retryTimer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("http-retry"));
+		this.inFlight = new Semaphore(maxInFlight);
+		this.maxInFlight = maxInFlight;
+		this.retries = retries;
+		this.backoff = backoff;
+	}
+
+	/**
+	 * Service shared by the bolts of this worker, configured by the first
+	 * caller
+	 * 
+	 * @param conf
+	 * @return delivery service
+	 */
+	@SuppressWarnings("rawtypes")
+	public static synchronized HttpDeliveryService getInstance(Map conf) {
+		if (instance == null) {
+			instance = new HttpDeliveryService(getInt(conf, HTTP_POOL_MAX_TOTAL, 200),
+					getInt(conf, HTTP_POOL_MAX_PER_ROUTE, 20), getInt(conf, HTTP_DELIVERY_THREADS, 16),
+					getInt(conf, HTTP_DELIVERY_MAX_INFLIGHT, 256), getInt(conf, HTTP_DELIVERY_RETRIES, 3),
+					getInt(conf, HTTP_DELIVERY_BACKOFF, 100), getInt(conf, HTTP_DELIVERY_TIMEOUT, 3000));
+		}
+		return instance;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static int getInt(Map conf, String key, int defaultValue) {
+		if (conf == null || conf.get(key) == null) {
+			return defaultValue;
+		}
+		return Integer.parseInt(conf.get(key).toString());
+	}
+
+	/**
+	 * Queue a request for delivery, blocks while the maximum number of requests
+	 * are in flight
+	 * 
+	 * @param request
+	 *            with a repeatable entity so that it can be retried
+	 * @param callback
+	 *            invoked from a delivery thread once the request succeeds or
+	 *            runs out of retries
+	 * @throws InterruptedException
+	 */
+	public void send(HttpRequestBase request, DeliveryCallback callback) throws InterruptedException {
+		inFlight.acquire();
+		workers.execute(() -> attempt(request, callback, 0));
+	}
+
+	private void attempt(HttpRequestBase request, DeliveryCallback callback, int attempt) {
+		Exception exception = null;
+		try {
+			execute(request);
+		} catch (RetriableException e) {
+			if (attempt < retries) {
+				retryTimer.schedule(() -> workers.execute(() -> attempt(request, callback, attempt + 1)),
+						backoff << attempt, TimeUnit.MILLISECONDS);
+				return;
+			}
+			exception = e;
+		} catch (Exception e) {
+			exception = e;
+		}
+		inFlight.release();
+		try {
+			callback.onCompletion(exception);
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, "Delivery callback failed for:" + request.getURI(), e);
+		}
+	}
+
+	/**
+	 * Deliver a request on the calling thread without retries
+	 * 
+	 * @param request
+	 * @throws AlertDeliveryException
+	 */
+	public void execute(HttpRequestBase request) throws AlertDeliveryException {
+		try (CloseableHttpResponse response = client.execute(request)) {
+			EntityUtils.consume(response.getEntity());
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode == 429 || statusCode >= 500) {
+				throw new RetriableException("Status code " + statusCode + " returned by " + request.getURI(), null);
+			} else if (statusCode < 200 || statusCode >= 300) {
+				throw new AlertDeliveryException("Status code " + statusCode + " returned by " + request.getURI());
+			}
+		} catch (IOException e) {
+			throw new RetriableException("Failed to reach " + request.getURI(), e);
+		} finally {
+			request.reset();
+		}
+	}
+
+	/**
+	 * @return requests queued or being delivered
+	 */
+	public int getInFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	/**
+	 * @return the connectionManager
+	 */
+	protected PoolingHttpClientConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+
+	/**
+	 * Stop delivery threads and close pooled connections
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		retryTimer.shutdownNow();
+		workers.shutdown();
+		client.close();
+	}
+
+	/**
+	 * Completion callback of a request
+	 */
+	public static interface DeliveryCallback {
+
+		/**
+		 * @param exception
+		 *            null if the request was delivered
+		 */
+		public void onCompletion(Exception exception);
+
+	}
+
+	/**
+	 * Failures worth retrying
+	 */
+	private static class RetriableException extends AlertDeliveryException {
+
+		private static final long serialVersionUID = 1L;
+
+		private RetriableException(String message, Throwable cause) {
+			super(message, cause);
+		}
+
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+		private final String prefix;
+
+		private DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
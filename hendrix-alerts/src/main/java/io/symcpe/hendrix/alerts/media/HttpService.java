@@ -15,74 +15,77 @@
  */
 package io.symcpe.hendrix.alerts.media;
 
-import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-
-import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.util.EntityUtils;
 
 import io.symcpe.hendrix.alerts.AlertDeliveryException;
-import io.symcpe.hendrix.storm.Utils;
+import io.symcpe.hendrix.alerts.media.HttpDeliveryService.DeliveryCallback;
 import io.symcpe.wraith.actions.alerts.Alert;
 
 /**
+ * JSON callbacks for alerts over the pooled {@link HttpDeliveryService}
+ * 
  * @author ambud_sharma
  */
 public class HttpService {
 
-	private AlertDeliveryException exception = new AlertDeliveryException("Non 200 status code returned");
+	private final HttpDeliveryService deliveryService;
+
+	public HttpService() {
+		this(HttpDeliveryService.getInstance(null));
+	}
+
+	public HttpService(HttpDeliveryService deliveryService) {
+		this.deliveryService = deliveryService;
+	}
 
 	/**
 	 * @param alert
 	 * @throws AlertDeliveryException
 	 */
 	public void sendHttpCallback(Alert alert) throws AlertDeliveryException {
-		try {
-			CloseableHttpClient client = Utils.buildClient(alert.getTarget(), 3000, 3000);
-			HttpPost request = new HttpPost(alert.getTarget());
-			StringEntity body = new StringEntity(alert.getBody(), ContentType.APPLICATION_JSON);
-			request.addHeader("content-type", "application/json");
-			request.setEntity(body);
-			HttpResponse response = client.execute(request);
-			EntityUtils.consume(response.getEntity());
-			int statusCode = response.getStatusLine().getStatusCode();
-			if (statusCode < 200 && statusCode >= 300) {
-				throw exception;
-			}
-			client.close();
-		} catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException | IOException |AlertDeliveryException e) {
-			throw exception;
-		}
+		sendHttpCallback(alert.getTarget(), alert.getBody());
 	}
-	
+
 	/**
 	 * @param destination
 	 * @param bodyContent
 	 * @throws AlertDeliveryException
 	 */
 	public void sendHttpCallback(String destination, String bodyContent) throws AlertDeliveryException {
-		try {
-			CloseableHttpClient client = Utils.buildClient(destination, 3000, 3000);
-			HttpPost request = new HttpPost(destination);
-			StringEntity body = new StringEntity(bodyContent, ContentType.APPLICATION_JSON);
-			request.addHeader("content-type", "application/json");
-			request.setEntity(body);
-			HttpResponse response = client.execute(request);
-			EntityUtils.consume(response.getEntity());
-			int statusCode = response.getStatusLine().getStatusCode();
-			if (statusCode < 200 && statusCode >= 300) {
-				throw exception;
-			}
-			client.close();
-		} catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException | IOException |AlertDeliveryException e) {
-			throw exception;
-		}
+		deliveryService.execute(buildRequest(destination, bodyContent));
+	}
+
+	/**
+	 * Asynchronously deliver the alert with retries
+	 * 
+	 * @param alert
+	 * @param callback
+	 * @throws InterruptedException
+	 */
+	public void sendHttpCallback(Alert alert, DeliveryCallback callback) throws InterruptedException {
+		sendHttpCallback(alert.getTarget(), alert.getBody(), callback);
+	}
+
+	/**
+	 * Asynchronously deliver the body with retries
+	 * 
+	 * @param destination
+	 * @param bodyContent
+	 * @param callback
+	 * @throws InterruptedException
+	 */
+	public void sendHttpCallback(String destination, String bodyContent, DeliveryCallback callback)
+			throws InterruptedException {
+		deliveryService.send(buildRequest(destination, bodyContent), callback);
+	}
+
+	private static HttpPost buildRequest(String destination, String bodyContent) {
+		HttpPost request = new HttpPost(destination);
+		request.addHeader("content-type", "application/json");
+		request.setEntity(new StringEntity(bodyContent, ContentType.APPLICATION_JSON));
+		return request;
 	}
 
 }
@@ -24,8 +24,8 @@ import java.util.Properties;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.NoSuchProviderException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
@@ -36,7 +36,8 @@ import com.sun.mail.smtp.SMTPTransport;
 import io.symcpe.wraith.actions.alerts.Alert;
 
 /**
- * Provides methods for send emails.
+ * Provides methods for send emails, a single SMTP transport is kept connected
+ * and reused across mails instead of connecting for each one.
  * 
  * @author ambud_sharma
  */
@@ -45,8 +46,9 @@ public class MailService {
 	private static final String MAIL_SMTP_FROM = "mail.smtp.from";
 	private static final String MAIL_SMTP_STARTTLS_ENABLE = "mail.smtp.starttls.enable";
 	private Session session;
-	private Logger logger;
+	private Logger logger = Logger.getLogger(MailService.class);
 	private String from;
+	private SMTPTransport transport;
 
 	/**
 	 * Creates service according provided storm topology config.
@@ -59,25 +61,34 @@ public class MailService {
 	 * @throws MessagingException
 	 */
 	public void init(Map<String, Object> conf) throws MessagingException {
-		logger = Logger.getLogger(MailService.class);
-		session = createSession(conf);
-		from = conf.get(MAIL_SMTP_FROM).toString();
+		Session session = createSession(conf);
 		boolean useSsl = false;
 		if(conf.containsKey(MAIL_SMTP_STARTTLS_ENABLE)) {
 			useSsl = Boolean.parseBoolean(conf.get(MAIL_SMTP_STARTTLS_ENABLE).toString());
 		}
 		String transportString = useSsl ? "smtps" : "smtp";
+		SMTPTransport transport;
 		try {
-			SMTPTransport transport = (SMTPTransport) session.getTransport(transportString);
-			if(!transport.isConnected()) {
-				transport.connect();
-			}
-			transport.close();
+			transport = (SMTPTransport) session.getTransport(transportString);
 		} catch (NoSuchProviderException e) {
 			String message = "Can't initialise Mail Service. Can't make transport for " + transportString;
 			logger.fatal(message, e);
 			throw new MessagingException(message);
 		}
+		init(session, conf.get(MAIL_SMTP_FROM).toString(), transport);
+		transport.connect();
+	}
+
+	/**
+	 * @param session
+	 * @param from
+	 * @param transport
+	 *            reused for all mails
+	 */
+	protected void init(Session session, String from, SMTPTransport transport) {
+		this.session = session;
+		this.from = from;
+		this.transport = transport;
 	}
 
 	/**
@@ -111,11 +122,19 @@ public class MailService {
 		}
 		try {
 			setMessage(msg, alert);
-//			if (!transport.isConnected()) {
-//				transport.connect();
-//			}
-//			transport.sendMessage(msg, msg.getAllRecipients());
-			Transport.send(msg);
+			msg.saveChanges();
+			try {
+				send(msg);
+			} catch (MessagingException e) {
+				// only resend if the server dropped an idle connection, a failed
+				// send may have already reached some of the recipients
+				if (e instanceof SendFailedException || transport.isConnected()) {
+					throw e;
+				}
+				logger.warn("Retrying e-mail on a new connection", e);
+				closeTransport();
+				send(msg);
+			}
 			return true;
 		} catch (Exception e) {
 			logger.info("Error when trying to send e-mail via, tenant ID: " + alert.getRuleGroup(), e);
@@ -123,6 +142,30 @@ public class MailService {
 		}
 	}
 
+	private void send(MimeMessage msg) throws MessagingException {
+		if (!transport.isConnected()) {
+			transport.connect();
+		}
+		transport.sendMessage(msg, msg.getAllRecipients());
+	}
+
+	private void closeTransport() {
+		try {
+			transport.close();
+		} catch (MessagingException e) {
+			logger.debug("Error closing mail transport", e);
+		}
+	}
+
+	/**
+	 * Closes the SMTP connection
+	 */
+	public void close() {
+		if (transport != null) {
+			closeTransport();
+		}
+	}
+
 	/**
 	 * @param conf
 	 * @return
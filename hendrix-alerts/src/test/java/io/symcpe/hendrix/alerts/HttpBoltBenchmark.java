@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.alerts;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sun.net.httpserver.HttpServer;
+
+import backtype.storm.task.OutputCollector;
+import backtype.storm.tuple.Tuple;
+import io.symcpe.hendrix.alerts.media.HttpDeliveryService;
+import io.symcpe.hendrix.alerts.media.HttpService;
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.actions.alerts.Alert;
+
+/**
+ * JMH benchmark of alerts delivered per second by a single {@link HttpBolt}
+ * executor against a local stub server. Run with:<br>
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.symcpe.hendrix.alerts.HttpBoltBenchmark</code>
+ * 
+ * @author ambud_sharma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpBoltBenchmark {
+
+	private static final int ALERTS = 1000;
+	private HttpServer server;
+	private ExecutorService serverThreads;
+	private HttpDeliveryService deliveryService;
+	private HttpBolt bolt;
+	private Tuple tuple;
+	private AtomicInteger acks;
+
+	@Setup
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/alert", exchange -> {
+			try (InputStream stream = exchange.getRequestBody()) {
+				while (stream.read() != -1) {
+				}
+			}
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		serverThreads = Executors.newFixedThreadPool(8);
+		server.setExecutor(serverThreads);
+		server.start();
+		deliveryService = new HttpDeliveryService(20, 20, 8, 64, 3, 10, 3000);
+		acks = new AtomicInteger();
+		OutputCollector collector = mock(OutputCollector.class);
+		tuple = mock(Tuple.class);
+		doAnswer(invocation -> acks.incrementAndGet()).when(collector).ack(tuple);
+		bolt = new HttpBolt();
+		bolt.prepare(new HashMap<>(), null, collector);
+		bolt.setHttpService(new HttpService(deliveryService));
+		Alert alert = new Alert();
+		alert.setTarget("http://localhost:" + server.getAddress().getPort() + "/alert");
+		alert.setBody("{\"alert\":\"test\"}");
+		when(tuple.getValueByField(Constants.FIELD_ALERT)).thenReturn(alert);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		deliveryService.close();
+		server.stop(0);
+		serverThreads.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ALERTS)
+	public int deliver() throws InterruptedException {
+		int target = acks.get() + ALERTS;
+		for (int i = 0; i < ALERTS; i++) {
+			bolt.execute(tuple);
+		}
+		while (acks.get() < target) {
+			Thread.sleep(1);
+		}
+		return target;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HttpBoltBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.alerts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import backtype.storm.Config;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.MockTupleHelpers;
+import io.symcpe.wraith.actions.alerts.Alert;
+
+/**
+ * Unit tests for {@link DigestBolt}
+ * 
+ * @author ambud_sharma
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TestDigestBolt {
+
+	private Map<String, String> conf;
+	private List<Values> emitted;
+	private OutputCollector collector;
+	private DigestBolt bolt;
+
+	@Before
+	public void before() {
+		conf = new HashMap<>();
+		conf.put(DigestBolt.ALERT_DIGEST_WINDOW, "5");
+		conf.put(DigestBolt.ALERT_DIGEST_MAX_ALERTS, "10");
+		conf.put(Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS, "30");
+		emitted = new ArrayList<>();
+		Answer<Object> answer = new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				emitted.add((Values) invocation.getArguments()[2]);
+				return new ArrayList<>();
+			}
+		};
+		collector = MockTupleHelpers.mockCollector(answer);
+		when(collector.emit(any(String.class), anyListOf(Tuple.class), any(Values.class))).thenAnswer(answer);
+		bolt = new DigestBolt();
+		bolt.prepare(conf, null, collector);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCoalesceByTarget() {
+		List<Tuple> tuples = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			Tuple tuple = mockAlert("mail", i % 2 == 0 ? "a@xyz.com" : "b@xyz.com", "subject" + i, "body" + i);
+			tuples.add(tuple);
+			bolt.execute(tuple);
+		}
+		assertEquals(2, bolt.getOpenDigests());
+		for (int i = 0; i < 4; i++) {
+			bolt.execute(tick());
+		}
+		verify(collector, never()).emit(any(String.class), anyListOf(Tuple.class), any(Values.class));
+		bolt.execute(tick());
+		verify(collector, times(2)).emit(eq("mail"), anyListOf(Tuple.class), any(Values.class));
+		assertEquals(0, bolt.getOpenDigests());
+		for (Tuple tuple : tuples) {
+			verify(collector, times(1)).ack(tuple);
+		}
+		Alert digest = (Alert) emitted.get(0).get(0);
+		assertEquals("a@xyz.com", emitted.get(0).get(1));
+		assertEquals("[3 alerts] subject0", digest.getSubject());
+		for (int i = 0; i < 6; i += 2) {
+			assertTrue(digest.getBody().contains("subject" + i));
+			assertTrue(digest.getBody().contains("body" + i));
+		}
+		assertTrue(!digest.getBody().contains("body1"));
+	}
+
+	@Test
+	public void testSingleAlert() {
+		Tuple tuple = mockAlert("mail", "a@xyz.com", "subject", "body");
+		Alert alert = (Alert) tuple.getValueByField(Constants.FIELD_ALERT);
+		bolt.execute(tuple);
+		for (int i = 0; i < 5; i++) {
+			bolt.execute(tick());
+		}
+		assertEquals(1, emitted.size());
+		assertTrue(alert == emitted.get(0).get(0));
+		verify(collector, times(1)).ack(tuple);
+	}
+
+	@Test
+	public void testMaxAlertsFlush() {
+		for (int i = 0; i < 10; i++) {
+			bolt.execute(mockAlert("mail", "a@xyz.com", "subject" + i, "body" + i));
+		}
+		assertEquals(1, emitted.size());
+		assertEquals(0, bolt.getOpenDigests());
+		assertEquals("[10 alerts] subject0", ((Alert) emitted.get(0).get(0)).getSubject());
+	}
+
+	@Test
+	public void testPassThrough() {
+		Tuple tuple = mockAlert("http", "http://localhost/hook", "subject", "body");
+		bolt.execute(tuple);
+		verify(collector, times(1)).emit(eq("http"), eq(tuple), any(Values.class));
+		verify(collector, times(1)).ack(tuple);
+		assertEquals(0, bolt.getOpenDigests());
+	}
+
+	@Test
+	public void testWindowBoundedByTimeout() {
+		conf.put(DigestBolt.ALERT_DIGEST_WINDOW, "60");
+		bolt.prepare(conf, null, collector);
+		bolt.execute(mockAlert("mail", "a@xyz.com", "subject", "body"));
+		for (int i = 0; i < 15; i++) {
+			bolt.execute(tick());
+		}
+		assertEquals(1, emitted.size());
+	}
+
+	private static Tuple mockAlert(String media, String target, String subject, String body) {
+		Alert alert = new Alert();
+		alert.setId((short) 1);
+		alert.setRuleGroup("test");
+		alert.setMedia(media);
+		alert.setTarget(target);
+		alert.setSubject(subject);
+		alert.setBody(body);
+		alert.setTimestamp(System.currentTimeMillis());
+		Tuple tuple = mock(Tuple.class);
+		when(tuple.getSourceComponent()).thenReturn("alertRouterBolt");
+		when(tuple.getSourceStreamId()).thenReturn(media);
+		when(tuple.getValueByField(Constants.FIELD_ALERT)).thenReturn(alert);
+		return tuple;
+	}
+
+	private static Tuple tick() {
+		return MockTupleHelpers.mockTuple(backtype.storm.Constants.SYSTEM_COMPONENT_ID,
+				backtype.storm.Constants.SYSTEM_TICK_STREAM_ID, null);
+	}
+
+}
@@ -15,6 +15,9 @@
  */
 package io.symcpe.hendrix.alerts;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,6 +35,7 @@ import org.mockito.stubbing.Answer;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.alerts.media.HttpDeliveryService.DeliveryCallback;
 import io.symcpe.hendrix.alerts.media.HttpService;
 import io.symcpe.hendrix.storm.MockTupleHelpers;
 import io.symcpe.wraith.Constants;
@@ -49,7 +53,7 @@ public class TestHttpBolt {
 	private Tuple tuple;
 
 	@Test
-	public void testMailBolt() throws AlertDeliveryException {
+	public void testMailBolt() throws InterruptedException {
 		HttpBolt bolt = new HttpBolt();
 		final AtomicReference<Values> processedEventContainer = new AtomicReference<Values>(null);
 		OutputCollector collector = MockTupleHelpers.mockCollector(new Answer<Object>() {
@@ -66,9 +70,17 @@ public class TestHttpBolt {
 		bolt.setHttpService(service);
 		Alert alert = new Alert();
 		when(tuple.getValueByField(Constants.FIELD_ALERT)).thenReturn(alert);
+		doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((DeliveryCallback) invocation.getArguments()[1]).onCompletion(null);
+				return null;
+			}
+		}).when(service).sendHttpCallback(eq(alert), any(DeliveryCallback.class));
 		bolt.execute(tuple);
 		verify(collector, times(1)).ack(tuple);
-		verify(service, times(1)).sendHttpCallback(alert);
+		verify(service, times(1)).sendHttpCallback(eq(alert), any(DeliveryCallback.class));
 	}
 
 }
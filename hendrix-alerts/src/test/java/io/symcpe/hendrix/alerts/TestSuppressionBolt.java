@@ -18,6 +18,7 @@ package io.symcpe.hendrix.alerts;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,6 +42,7 @@ import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 import io.symcpe.hendrix.storm.Constants;
 import io.symcpe.hendrix.storm.MockTupleHelpers;
+import io.symcpe.hendrix.storm.bolts.SuppressionStateTupleMapper;
 import io.symcpe.hendrix.storm.bolts.TestAlertingEngineBolt;
 import io.symcpe.hendrix.storm.bolts.TestStore;
 import io.symcpe.wraith.actions.alerts.Alert;
@@ -103,19 +105,22 @@ public class TestSuppressionBolt {
 		int i = 0;
 		for (i = 0; i < 2; i++) {
 			bolt.execute(input);
-			assertEquals(i + 1, bolt.getCounter().get(alert.getId()).getVal());
+			assertEquals(i + 1, bolt.getThrottle().getCount(alert.getId()));
 			verify(collector, times(i + 1)).emit(eq(Constants.DELIVERY_STREAM), eq(input), any());
 			assertEquals(alert, (Alert) processedEventContainer.get().get(0));
 			verify(collector, times(i + 1)).ack(input);
 		}
 		bolt.execute(input);
-		assertEquals(i + 1, bolt.getCounter().get(alert.getId()).getVal());
+		assertEquals(i + 1, bolt.getThrottle().getCount(alert.getId()));
 		verify(collector, times(i + 1)).ack(input);
 		when(input.contains(Constants.FIELD_ALERT)).thenReturn(false);
 		when(input.getSourceComponent()).thenReturn(backtype.storm.Constants.SYSTEM_COMPONENT_ID);
 		when(input.getSourceStreamId()).thenReturn(backtype.storm.Constants.SYSTEM_TICK_STREAM_ID);
+		// window stays open for the 2s throttle duration
 		bolt.execute(input);
-		assertEquals(0, bolt.getCounter().get(alert.getId()).getVal());
+		assertEquals(i + 1, bolt.getThrottle().getCount(alert.getId()));
+		bolt.execute(input);
+		assertEquals(0, bolt.getThrottle().getCount(alert.getId()));
 	}
 
 	@Test
@@ -144,7 +149,7 @@ public class TestSuppressionBolt {
 		for (i = 1; i < 5; i++) {
 			when(input.contains(Constants.FIELD_ALERT)).thenReturn(true);
 			bolt.execute(input);
-			assertEquals(j % 3, bolt.getCounter().get(alert.getId()).getVal());
+			assertEquals(2 - i % 2, bolt.getThrottle().getCount(alert.getId()));
 			verify(collector, times(i)).emit(eq(Constants.DELIVERY_STREAM), eq(input), any());
 			assertEquals(alert, (Alert) processedEventContainer.get().get(0));
 			verify(collector, times(j++)).ack(input);
@@ -152,10 +157,13 @@ public class TestSuppressionBolt {
 				when(input.contains(Constants.FIELD_ALERT)).thenReturn(false);
 				when(input.getSourceComponent()).thenReturn(backtype.storm.Constants.SYSTEM_COMPONENT_ID);
 				when(input.getSourceStreamId()).thenReturn(backtype.storm.Constants.SYSTEM_TICK_STREAM_ID);
-				long counter = bolt.getGlobalCounter();
-				bolt.execute(input);
-				verify(collector, times(j++)).ack(input);
-				assertEquals(counter + 1, bolt.getGlobalCounter());
+				// a tick per second of the 2s throttle duration
+				for (int k = 0; k < 2; k++) {
+					long counter = bolt.getGlobalCounter();
+					bolt.execute(input);
+					verify(collector, times(j++)).ack(input);
+					assertEquals(counter + 1, bolt.getGlobalCounter());
+				}
 			}
 		}
 	}
@@ -193,4 +201,42 @@ public class TestSuppressionBolt {
 		bolt.execute(input);
 		assertEquals(1, bolt.getTemplateMap().size());
 	}
+
+	@Test
+	public void testThrottledEarly() {
+		conf.put(Constants.ALERT_THROTTLE_EARLY, "true");
+		SuppressionBolt bolt = new SuppressionBolt();
+		bolt.prepare(conf, null, mockCollector);
+		Alert alert = new Alert();
+		alert.setId((short) 1);
+		alert.setBody("test");
+		when(input.contains(Constants.FIELD_ALERT)).thenReturn(true);
+		when(input.getValueByField(Constants.FIELD_ALERT)).thenReturn(alert);
+		for (int i = 0; i < 3; i++) {
+			bolt.execute(input);
+		}
+		verify(mockCollector, times(3)).emit(eq(Constants.DELIVERY_STREAM), eq(input), any());
+		verify(mockCollector, times(0)).emit(eq(Constants.SUP_MON_STREAM), eq(input), any());
+	}
+
+	@Test
+	public void testMonitorNotifiedEarly() {
+		conf.put(Constants.ALERT_THROTTLE_EARLY, "true");
+		SuppressionBolt bolt = new SuppressionBolt();
+		bolt.prepare(conf, null, mockCollector);
+		SuppressionStateTupleMapper mapper = new SuppressionStateTupleMapper();
+		for (boolean state : new boolean[] { true, false }) {
+			// state change emitted by the templated alerting engine of the rules topology
+			Tuple change = mock(Tuple.class);
+			when(change.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID)).thenReturn((short) 1);
+			when(change.getBooleanByField(Constants.SUPRESSION_STATE)).thenReturn(state);
+			// and received from Kafka
+			Tuple tuple = MockTupleHelpers.mockTuple(Constants.SUPPRESSION_STATE_COMPONENT, "default",
+					mapper.getMessageFromTuple(change));
+			bolt.execute(tuple);
+			verify(mockCollector, times(1)).emit(Constants.SUP_MON_STREAM, tuple, new Values((short) 1, state));
+			verify(mockCollector, times(1)).ack(tuple);
+		}
+	}
+
 }
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.alerts.media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author ambud_sharma
+ */
+public class TestHttpDeliveryService {
+
+	private HttpServer server;
+	private HttpDeliveryService service;
+	private AtomicInteger requests;
+	private volatile int failures;
+	private CountDownLatch release;
+
+	@Before
+	public void before() throws IOException {
+		requests = new AtomicInteger();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/ok", exchange -> {
+			drain(exchange.getRequestBody());
+			int request = requests.incrementAndGet();
+			exchange.sendResponseHeaders(request <= failures ? 503 : 200, -1);
+			exchange.close();
+		});
+		server.createContext("/missing", exchange -> {
+			drain(exchange.getRequestBody());
+			requests.incrementAndGet();
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+		});
+		release = new CountDownLatch(1);
+		server.createContext("/slow", exchange -> {
+			drain(exchange.getRequestBody());
+			requests.incrementAndGet();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+		service = new HttpDeliveryService(4, 2, 2, 4, 2, 10, 3000);
+	}
+
+	@After
+	public void after() throws IOException {
+		service.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testRetryWithBackoff() throws Exception {
+		failures = 2;
+		assertNull(deliver("/ok"));
+		assertEquals(3, requests.get());
+		assertEquals(0, service.getInFlight());
+
+		requests.set(0);
+		failures = 3;
+		assertNotNull(deliver("/ok"));
+		assertEquals(3, requests.get());
+	}
+
+	@Test
+	public void testNoRetryOnClientError() throws Exception {
+		assertNotNull(deliver("/missing"));
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testInFlightBound() throws Exception {
+		final CountDownLatch delivered = new CountDownLatch(5);
+		final HttpPost request = new HttpPost("http://localhost:" + server.getAddress().getPort() + "/slow");
+		for (int i = 0; i < 4; i++) {
+			HttpPost post = new HttpPost(request.getURI());
+			service.send(post, e -> delivered.countDown());
+		}
+		assertEquals(4, service.getInFlight());
+		Thread blocked = new Thread(() -> {
+			try {
+				service.send(request, e -> delivered.countDown());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		blocked.start();
+		blocked.join(200);
+		// the 5th request waits for a permit
+		assertTrue(blocked.isAlive());
+		assertEquals(4, service.getInFlight());
+		release.countDown();
+		assertTrue(delivered.await(10, TimeUnit.SECONDS));
+		blocked.join(1000);
+		assertEquals(0, service.getInFlight());
+	}
+
+	@Test
+	public void testPooledConnections() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			assertNull(deliver("/ok"));
+		}
+		assertTrue(service.getConnectionManager().getTotalStats().getAvailable() <= 2);
+	}
+
+	private static void drain(InputStream stream) throws IOException {
+		try {
+			while (stream.read() != -1) {
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	private Exception deliver(String path) throws Exception {
+		HttpPost request = new HttpPost("http://localhost:" + server.getAddress().getPort() + path);
+		request.setEntity(new StringEntity("{}"));
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicReference<Exception> result = new AtomicReference<>();
+		service.send(request, e -> {
+			result.set(e);
+			latch.countDown();
+		});
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		return result.get();
+	}
+
+}
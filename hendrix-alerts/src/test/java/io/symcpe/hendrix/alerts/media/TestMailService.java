@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.alerts.media;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.mail.smtp.SMTPTransport;
+
+import io.symcpe.wraith.actions.alerts.Alert;
+
+/**
+ * @author ambud_sharma
+ */
+public class TestMailService {
+
+	private SMTPTransport transport;
+	private MailService service;
+	private Alert alert;
+
+	@Before
+	public void before() {
+		transport = mock(SMTPTransport.class);
+		service = new MailService();
+		service.init(Session.getInstance(new Properties()), "hendrix@xyz.com", transport);
+		alert = new Alert();
+		alert.setTarget("a@xyz.com,b@xyz.com");
+		alert.setSubject("test");
+		alert.setBody("test");
+		alert.setTimestamp(System.currentTimeMillis());
+	}
+
+	@Test
+	public void testReusedTransport() throws MessagingException {
+		when(transport.isConnected()).thenReturn(true);
+		assertTrue(service.sendMail(alert));
+		assertTrue(service.sendMail(alert));
+		verify(transport, times(2)).sendMessage(any(Message.class), any(Address[].class));
+		verify(transport, never()).connect();
+	}
+
+	@Test
+	public void testReconnectOnDroppedConnection() throws MessagingException {
+		when(transport.isConnected()).thenReturn(true, false, false, true);
+		doThrow(new MessagingException("connection reset")).doNothing().when(transport)
+				.sendMessage(any(Message.class), any(Address[].class));
+		assertTrue(service.sendMail(alert));
+		verify(transport, times(2)).sendMessage(any(Message.class), any(Address[].class));
+		verify(transport, times(1)).connect();
+	}
+
+	@Test
+	public void testNoResendAfterPartialDelivery() throws MessagingException {
+		when(transport.isConnected()).thenReturn(true);
+		doThrow(new SendFailedException("invalid recipient")).when(transport).sendMessage(any(Message.class),
+				any(Address[].class));
+		assertFalse(service.sendMail(alert));
+		verify(transport, times(1)).sendMessage(any(Message.class), any(Address[].class));
+	}
+
+	@Test
+	public void testNoResendOnLiveConnection() throws MessagingException {
+		when(transport.isConnected()).thenReturn(true);
+		doThrow(new MessagingException("rejected")).when(transport).sendMessage(any(Message.class),
+				any(Address[].class));
+		assertFalse(service.sendMail(alert));
+		verify(transport, times(1)).sendMessage(any(Message.class), any(Address[].class));
+	}
+
+}
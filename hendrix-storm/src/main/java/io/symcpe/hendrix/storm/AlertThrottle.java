@@ -0,0 +1,234 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.symcpe.wraith.actions.alerts.templated.AlertTemplate;
+import io.symcpe.wraith.actions.alerts.templated.ThrottleWindow;
+import io.symcpe.wraith.aggregations.TimerWheel;
+import io.symcpe.wraith.aggregations.TimerWheel.TimerVisitor;
+import io.symcpe.wraith.store.StoreFactory;
+import io.symcpe.wraith.store.ThrottleStore;
+
+/**
+ * Throttle accounting for alert templates, admits up to
+ * {@link AlertTemplate#getThrottleLimit()} alerts (0 means unlimited) per
+ * window of {@link AlertTemplate#getThrottleDuration()} seconds.<br>
+ * <br>
+ * Windows end on the duration boundary after the timestamp of the alert
+ * opening them and are closed by a {@link TimerWheel} advanced on every tick,
+ * so a tick only costs the windows that end on it. Alerts arriving for an
+ * older window count towards the open one. A window is kept open for at least
+ * a full duration of the clock so late alerts, or a lagging topology, still
+ * get one window per duration rather than one per tick. Windows are
+ * periodically snapshot to a {@link ThrottleStore} and restored on start so a
+ * restart doesn't release suppressed alerts.
+ * 
+ * @author ambud_sharma
+ */
+public class AlertThrottle implements TimerVisitor<Short> {
+
+	private static final Logger logger = Logger.getLogger(AlertThrottle.class.getName());
+	private final Map<Short, ThrottleWindow> windows;
+	private final TimerWheel<Short> wheel;
+	private final List<Short> released;
+	private final ThrottleStore store;
+	private final int taskId;
+	private final int snapshotInterval;
+	private long clock;
+	private long ticks;
+
+	/**
+	 * @param now
+	 *            milliseconds
+	 */
+	public AlertThrottle(long now) {
+		this(null, 0, 0, now);
+	}
+
+	/**
+	 * @param store
+	 *            to snapshot windows to, may be null
+	 * @param taskId
+	 * @param snapshotInterval
+	 *            ticks between snapshots
+	 * @param now
+	 *            milliseconds
+	 */
+	public AlertThrottle(ThrottleStore store, int taskId, int snapshotInterval, long now) {
+		this.store = store;
+		this.taskId = taskId;
+		this.snapshotInterval = snapshotInterval;
+		this.clock = now / 1000;
+		this.windows = new HashMap<>();
+		this.wheel = new TimerWheel<>(TimerWheel.DEFAULT_SLOTS, clock);
+		this.released = new ArrayList<>();
+	}
+
+	/**
+	 * Build a throttle for the task, restoring its last snapshot if a
+	 * {@link ThrottleStore} is configured
+	 * 
+	 * @param conf
+	 * @param taskId
+	 * @param storeFactory
+	 * @return throttle
+	 * @throws Exception
+	 */
+	public static AlertThrottle build(Map<String, String> conf, int taskId, StoreFactory storeFactory)
+			throws Exception {
+		ThrottleStore store = null;
+		if (conf.get(Constants.THROTTLE_STORE_TYPE) != null) {
+			store = storeFactory.getThrottleStore(String.valueOf(conf.get(Constants.THROTTLE_STORE_TYPE)), conf);
+			store.connect();
+		}
+		int snapshotInterval = Integer.parseInt(String.valueOf(
+				conf.getOrDefault(Constants.THROTTLE_SNAPSHOT_INTERVAL, Constants.DEFAULT_THROTTLE_SNAPSHOT_INTERVAL)));
+		AlertThrottle throttle = new AlertThrottle(store, taskId, snapshotInterval, System.currentTimeMillis());
+		if (store != null) {
+			Map<Short, ThrottleWindow> snapshot = store.retriveWindows(taskId);
+			throttle.restore(snapshot);
+			logger.info("Restored " + snapshot.size() + " throttle windows for task:" + taskId);
+		}
+		return throttle;
+	}
+
+	/**
+	 * Resume throttling from a snapshot
+	 * 
+	 * @param snapshot
+	 */
+	public void restore(Map<Short, ThrottleWindow> snapshot) {
+		for (Entry<Short, ThrottleWindow> entry : snapshot.entrySet()) {
+			windows.put(entry.getKey(), entry.getValue());
+			wheel.schedule(entry.getKey(), Math.max(entry.getValue().getEnd(), clock + 1), 0);
+		}
+	}
+
+	/**
+	 * Account an alert against its template
+	 * 
+	 * @param template
+	 * @param timestamp
+	 *            of the alert in milliseconds
+	 * @return admission decision for the alert
+	 */
+	public Admission admit(AlertTemplate template, long timestamp) {
+		ThrottleWindow window = windows.get(template.getTemplateId());
+		if (window == null) {
+			long duration = Math.max(1, template.getThrottleDuration());
+			long end = Math.max((timestamp / 1000 / duration + 1) * duration, clock + duration);
+			window = new ThrottleWindow(end, 0, false);
+			windows.put(template.getTemplateId(), window);
+			wheel.schedule(template.getTemplateId(), end, 0);
+		}
+		if (window.incrementAndGet() <= template.getThrottleLimit() || template.getThrottleLimit() == 0) {
+			return Admission.ADMITTED;
+		}
+		if (!window.isSuppressed()) {
+			window.setSuppressed(true);
+			return Admission.SUPPRESSION_STARTED;
+		}
+		return Admission.SUPPRESSED;
+	}
+
+	/**
+	 * Advance the clock by a second (or to now if it's behind) closing the
+	 * windows that ended
+	 * 
+	 * @param now
+	 *            milliseconds
+	 * @return ids of templates leaving suppression, valid till the next tick
+	 */
+	public List<Short> tick(long now) {
+		ticks++;
+		clock = Math.max(clock + 1, now / 1000);
+		released.clear();
+		wheel.advanceTo(clock, this);
+		if (store != null && snapshotInterval > 0 && ticks % snapshotInterval == 0) {
+			snapshot();
+		}
+		return released;
+	}
+
+	@Override
+	public void fire(Short templateId, long tick) {
+		ThrottleWindow window = windows.get(templateId);
+		if (window != null && window.getEnd() <= tick) {
+			windows.remove(templateId);
+			if (window.isSuppressed()) {
+				released.add(templateId);
+			}
+		}
+	}
+
+	/**
+	 * Persist the open windows to the {@link ThrottleStore}
+	 */
+	public void snapshot() {
+		try {
+			store.persistWindows(taskId, windows);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Failed to snapshot throttle windows for task:" + taskId, e);
+		}
+	}
+
+	/**
+	 * @param templateId
+	 * @return alerts counted in the open window of the template
+	 */
+	public int getCount(short templateId) {
+		ThrottleWindow window = windows.get(templateId);
+		return window != null ? window.getCount() : 0;
+	}
+
+	/**
+	 * @return the windows
+	 */
+	public Map<Short, ThrottleWindow> getWindows() {
+		return windows;
+	}
+
+	/**
+	 * @return number of ticks
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return current clock in epoch seconds
+	 */
+	public long getClock() {
+		return clock;
+	}
+
+	/**
+	 * Outcome of {@link AlertThrottle#admit(AlertTemplate, long)}
+	 */
+	public static enum Admission {
+		ADMITTED, SUPPRESSION_STARTED, SUPPRESSED
+	}
+
+}
@@ -42,6 +42,9 @@ public class Constants extends io.symcpe.wraith.Constants {
 	// public static final String RULE_ENGINE_STREAM_ID = "reStream";
 	public static final String RULE_SYNC_COMPONENT = "ruleComponent";
 	public static final String TEMPLATE_SYNC_COMPONENT = "templateComponent";
+	public static final String RULE_ENGINE_COMPONENT = "ruleEngineBolt";
+	public static final String AGGREGATION_STATE_SOURCE = "aggregation.state.source";
+	public static final String SUPPRESSION_STATE_COMPONENT = "suppressionStateComponent";
 	public static final String SYNC_STREAM_ID = "syncStream";
 	public static final String TICK_STREAM_ID = "tickStream";
 	public static final String STORE_STREAM_ID = "storeStream";
@@ -88,5 +91,21 @@ public class Constants extends io.symcpe.wraith.Constants {
 	public static final String TOPOLOGY_STATE_BOLT = "stateBolt";
 	public static final String FIELD_EVENT_TYPE = "_et";
 	public static final String EVENT_TYPE_STATE = "stateTrack";
+	public static final String KRYO_HEADER_DICTIONARY = "kryo.header.dictionary";
+	public static final String RULES_BATCH_SIZE = "rules.batch.size";
+	public static final String DEFAULT_RULES_BATCH_SIZE = "1";
+	public static final String RULES_BATCH_LATENCY = "rules.batch.latency.ms";
+	public static final String DEFAULT_RULES_BATCH_LATENCY = "100";
+	public static final String RULES_PARALLELISM = "rules.parallelism";
+	public static final String DEFAULT_RULES_PARALLELISM = "1";
+	public static final String DEFAULT_PARALLEL_RULES_BATCH_SIZE = "64";
+	public static final String TEMPLATE_CACHE_TTL = "template.cache.ttl.ms";
+	public static final String DEFAULT_TEMPLATE_CACHE_TTL = "1000";
+	public static final String TEMPLATE_CACHE_SIZE = "template.cache.size";
+	public static final String DEFAULT_TEMPLATE_CACHE_SIZE = "1024";
+	public static final String ALERT_THROTTLE_EARLY = "alert.throttle.early";
+	public static final String THROTTLE_STORE_TYPE = "throttle.store.type";
+	public static final String THROTTLE_SNAPSHOT_INTERVAL = "throttle.snapshot.interval.secs";
+	public static final String DEFAULT_THROTTLE_SNAPSHOT_INTERVAL = "10";
 
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.AbstractContext;
+
+import io.symcpe.wraith.Event;
+
+/**
+ * Velocity context viewing the headers of an {@link Event} instead of copying
+ * them into a {@link VelocityContext}. Variables set by the template (#set,
+ * #foreach) go to a local overlay so the event is never modified, tools are
+ * shared across renders. One instance is reset and reused for every alert.
+ * 
+ * @author ambud_sharma
+ */
+public class HeaderContext extends AbstractContext {
+
+	private final Map<String, Object> tools;
+	private Map<String, Object> headers;
+	private Map<String, Object> locals;
+
+	/**
+	 * @param tools
+	 *            shared across renders e.g. the date tool
+	 */
+	public HeaderContext(Map<String, Object> tools) {
+		this.tools = tools;
+	}
+
+	/**
+	 * View the headers of the next event to render
+	 * 
+	 * @param headers
+	 */
+	public void reset(Map<String, Object> headers) {
+		this.headers = headers;
+		if (locals != null) {
+			locals.clear();
+		}
+	}
+
+	@Override
+	public Object internalGet(String key) {
+		Object value;
+		if (locals != null && (value = locals.get(key)) != null) {
+			return value;
+		}
+		// tools win over headers of the same name, so the render cache can
+		// leave them out of its key
+		if ((value = tools.get(key)) != null) {
+			return value;
+		}
+		return headers != null ? headers.get(key) : null;
+	}
+
+	@Override
+	public Object internalPut(String key, Object value) {
+		if (locals == null) {
+			locals = new HashMap<>();
+		}
+		return locals.put(key, value);
+	}
+
+	@Override
+	public boolean internalContainsKey(Object key) {
+		return (locals != null && locals.containsKey(key)) || (headers != null && headers.containsKey(key))
+				|| tools.containsKey(key);
+	}
+
+	@Override
+	public Object[] internalGetKeys() {
+		Set<String> keys = new LinkedHashSet<>(tools.keySet());
+		if (headers != null) {
+			keys.addAll(headers.keySet());
+		}
+		if (locals != null) {
+			keys.addAll(locals.keySet());
+		}
+		return keys.toArray();
+	}
+
+	@Override
+	public Object internalRemove(Object key) {
+		return locals != null ? locals.remove(key) : null;
+	}
+
+}
@@ -17,12 +17,14 @@ package io.symcpe.hendrix.storm;
 
 import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import io.symcpe.wraith.Event;
+import io.symcpe.wraith.HeaderMap;
 
 /**
- * Storm event implementation.
+ * Storm event implementation. Headers are kept in a {@link HeaderMap} which
+ * assumes a single writer, an event that is still written to after being
+ * emitted must be emitted as a {@link #copyOf(Event)}.
  * 
  * @author ambud_sharma
  */
@@ -33,7 +35,7 @@ public class HendrixEvent implements Event {
 	private byte[] body;
 
 	HendrixEvent() {
-		headers = new ConcurrentHashMap<>(Constants.AVG_EVENT_FIELD_COUNT);
+		headers = new HeaderMap(Constants.AVG_EVENT_FIELD_COUNT);
 	}
 
 	HendrixEvent(Map<String, Object> headers) {
@@ -64,8 +66,23 @@ public class HendrixEvent implements Event {
 		this.headers = headers;
 	}
 	
+	/**
+	 * Copy an event so the copy can be emitted while the original keeps being
+	 * written to, the body is shared.
+	 * 
+	 * @param event
+	 * @return copy of the event
+	 */
+	public static HendrixEvent copyOf(Event event) {
+		Map<String, Object> headers = event.getHeaders();
+		HendrixEvent copy = new HendrixEvent(headers instanceof HeaderMap ? new HeaderMap((HeaderMap) headers)
+				: new HeaderMap(headers));
+		copy.setBody(event.getBody());
+		return copy;
+	}
+
 	public static Map<String, Object> getMapInstance() {
-		return new ConcurrentHashMap<>(Constants.AVG_EVENT_FIELD_COUNT);
+		return new HeaderMap(Constants.AVG_EVENT_FIELD_COUNT);
 	}
 
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.grouping.CustomStreamGrouping;
+import backtype.storm.task.WorkerTopologyContext;
+import backtype.storm.tuple.Fields;
+import io.symcpe.wraith.MurmurHash;
+
+/**
+ * Routes aggregation tuples to the aggregation tasks holding state for their
+ * ruleActionId.<br>
+ * <br>
+ * Each ruleActionId hashes to a home range of <i>spread</i> consecutive tasks.
+ * Tuples carrying an aggregation key (state tracking / aggregation streams)
+ * go to one task of the range picked by the key, tuples without one (the
+ * controller tick stream) go to every task of the range. Use the same spread
+ * on all streams into an aggregation bolt.
+ * 
+ * @author ambud_sharma
+ */
+public class RuleActionGrouping implements CustomStreamGrouping {
+
+	private static final long serialVersionUID = 1L;
+	public static final int DEFAULT_SPREAD = 2;
+	private int spread;
+	private transient List<Integer> tasks;
+	private transient int ruleActionIndex;
+	private transient int aggregationKeyIndex;
+	private transient Map<String, List<Integer>> homeCache;
+
+	public RuleActionGrouping() {
+		this(DEFAULT_SPREAD);
+	}
+
+	/**
+	 * @param spread
+	 *            tasks per ruleActionId, 0 for all tasks
+	 */
+	public RuleActionGrouping(int spread) {
+		this.spread = spread;
+	}
+
+	@Override
+	public void prepare(WorkerTopologyContext context, GlobalStreamId stream, List<Integer> targetTasks) {
+		this.tasks = new ArrayList<>(targetTasks);
+		Collections.sort(tasks);
+		if (spread <= 0 || spread > tasks.size()) {
+			spread = tasks.size();
+		}
+		Fields fields = context.getComponentOutputFields(stream);
+		this.ruleActionIndex = fields.fieldIndex(Constants.FIELD_RULE_ACTION_ID);
+		this.aggregationKeyIndex = fields.contains(Constants.FIELD_AGGREGATION_KEY)
+				? fields.fieldIndex(Constants.FIELD_AGGREGATION_KEY) : -1;
+		this.homeCache = new HashMap<>();
+	}
+
+	@Override
+	public List<Integer> chooseTasks(int taskId, List<Object> values) {
+		String ruleActionId = String.valueOf(values.get(ruleActionIndex));
+		if (aggregationKeyIndex < 0) {
+			return home(ruleActionId);
+		}
+		int offset = Math.floorMod(MurmurHash.hash32(String.valueOf(values.get(aggregationKeyIndex))), spread);
+		return Collections.singletonList(tasks.get((start(ruleActionId) + offset) % tasks.size()));
+	}
+
+	/**
+	 * @param ruleActionId
+	 * @return tasks holding state for the ruleActionId
+	 */
+	public List<Integer> home(String ruleActionId) {
+		List<Integer> home = homeCache.get(ruleActionId);
+		if (home == null) {
+			int start = start(ruleActionId);
+			home = new ArrayList<>(spread);
+			for (int i = 0; i < spread; i++) {
+				home.add(tasks.get((start + i) % tasks.size()));
+			}
+			home = Collections.unmodifiableList(home);
+			homeCache.put(ruleActionId, home);
+		}
+		return home;
+	}
+
+	private int start(String ruleActionId) {
+		return Math.floorMod(MurmurHash.hash32(ruleActionId), tasks.size());
+	}
+
+}
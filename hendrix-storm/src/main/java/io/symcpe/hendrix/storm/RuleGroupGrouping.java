@@ -0,0 +1,89 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.grouping.CustomStreamGrouping;
+import backtype.storm.task.WorkerTopologyContext;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.rules.TenantPartitioner;
+
+/**
+ * Routes event tuples to the rules engine task owning the event's rule group
+ * using a {@link TenantPartitioner} consistent hash ring.<br>
+ * <br>
+ * Events of a rule group split across several tasks are spread round robin
+ * across its owners, events without a rule group are spread across all
+ * tasks. The virtual nodes and splits must match
+ * {@link Constants#RULE_PARTITION_VNODES} and
+ * {@link Constants#RULE_PARTITION_SPLITS} of the topology so the engine tasks
+ * load the rule groups routed to them.
+ * 
+ * @author ambud_sharma
+ */
+public class RuleGroupGrouping implements CustomStreamGrouping {
+
+	private static final long serialVersionUID = 1L;
+	private int virtualNodes;
+	private String splits;
+	private transient TenantPartitioner partitioner;
+	private transient List<List<Integer>> targets;
+	private transient int counter;
+
+	public RuleGroupGrouping() {
+		this(TenantPartitioner.DEFAULT_VIRTUAL_NODES, null);
+	}
+
+	/**
+	 * @param virtualNodes
+	 * @param splits
+	 *            of the form <code>group1:3,group2:2</code>
+	 */
+	public RuleGroupGrouping(int virtualNodes, String splits) {
+		this.virtualNodes = virtualNodes;
+		this.splits = splits;
+	}
+
+	@Override
+	public void prepare(WorkerTopologyContext context, GlobalStreamId stream, List<Integer> targetTasks) {
+		// task indices of the engine are positions in the sorted task list
+		List<Integer> tasks = new ArrayList<>(targetTasks);
+		Collections.sort(tasks);
+		this.targets = new ArrayList<>(tasks.size());
+		for (Integer task : tasks) {
+			targets.add(Collections.singletonList(task));
+		}
+		this.partitioner = new TenantPartitioner(tasks.size(), virtualNodes, TenantPartitioner.parseSplits(splits));
+	}
+
+	@Override
+	public List<Integer> chooseTasks(int taskId, List<Object> values) {
+		counter++;
+		Object ruleGroup = null;
+		if (!values.isEmpty() && values.get(0) instanceof Event) {
+			ruleGroup = ((Event) values.get(0)).getHeaders().get(Constants.FIELD_RULE_GROUP);
+		}
+		if (ruleGroup == null) {
+			return targets.get(Math.floorMod(counter, targets.size()));
+		}
+		return targets.get(partitioner.route(ruleGroup.toString(), counter));
+	}
+
+}
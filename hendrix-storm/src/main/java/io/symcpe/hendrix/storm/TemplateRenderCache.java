@@ -0,0 +1,166 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of rendered alerts keyed by template id and the values of
+ * the fields the template references, entries expire after a short TTL so
+ * alert storms on one template render it once per distinct set of values.
+ * 
+ * @author ambud_sharma
+ */
+public class TemplateRenderCache {
+
+	private final LinkedHashMap<Key, Rendered> cache;
+	private final long ttl;
+
+	/**
+	 * @param maxEntries
+	 * @param ttl
+	 *            milliseconds
+	 */
+	public TemplateRenderCache(final int maxEntries, long ttl) {
+		this.ttl = ttl;
+		this.cache = new LinkedHashMap<Key, Rendered>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Rendered> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param templateId
+	 * @param values
+	 *            of the referenced fields
+	 * @param now
+	 *            milliseconds
+	 * @return rendered alert or null if absent or expired
+	 */
+	public Rendered get(short templateId, Object[] values, long now) {
+		Key key = new Key(templateId, values);
+		Rendered rendered = cache.get(key);
+		if (rendered == null) {
+			return null;
+		}
+		if (rendered.expiry <= now) {
+			cache.remove(key);
+			return null;
+		}
+		return rendered;
+	}
+
+	/**
+	 * @param templateId
+	 * @param values
+	 * @param subject
+	 * @param body
+	 * @param now
+	 *            milliseconds
+	 */
+	public void put(short templateId, Object[] values, String subject, String body, long now) {
+		cache.put(new Key(templateId, values), new Rendered(subject, body, now + ttl));
+	}
+
+	/**
+	 * Drop renders of a template that changed
+	 * 
+	 * @param templateId
+	 */
+	public void invalidate(short templateId) {
+		Iterator<Key> iterator = cache.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().templateId == templateId) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return number of cached renders
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Rendered subject and body of an alert
+	 */
+	public static final class Rendered {
+
+		private final String subject;
+		private final String body;
+		private final long expiry;
+
+		private Rendered(String subject, String body, long expiry) {
+			this.subject = subject;
+			this.body = body;
+			this.expiry = expiry;
+		}
+
+		/**
+		 * @return the subject, null if the template has none
+		 */
+		public String getSubject() {
+			return subject;
+		}
+
+		/**
+		 * @return the body
+		 */
+		public String getBody() {
+			return body;
+		}
+
+	}
+
+	private static final class Key {
+
+		private final short templateId;
+		private final Object[] values;
+		private final int hash;
+
+		private Key(short templateId, Object[] values) {
+			this.templateId = templateId;
+			this.values = values;
+			this.hash = 31 * templateId + Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return templateId == other.templateId && Arrays.equals(values, other.values);
+		}
+
+	}
+
+}
@@ -24,6 +24,7 @@ import io.symcpe.wraith.store.AggregationStore;
 import io.symcpe.wraith.store.RulesStore;
 import io.symcpe.wraith.store.StoreFactory;
 import io.symcpe.wraith.store.TemplateStore;
+import io.symcpe.wraith.store.ThrottleStore;
 
 /**
  * Unified factory implementation for Hendrix
@@ -73,4 +74,12 @@ public class UnifiedFactory implements StoreFactory, EventFactory {
 		return store;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public ThrottleStore getThrottleStore(String type, Map<String, String> stormConf) throws Exception {
+		Map<String, String> conf = getSubmap(STORE_PROP_PREFIX, stormConf);
+		ThrottleStore store = (ThrottleStore) Class.forName(type).newInstance();
+		store.initialize(conf);
+		return store;
+	}
+
+}
@@ -19,12 +19,14 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Map;
 
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 
+import backtype.storm.Config;
 import backtype.storm.tuple.Tuple;
 import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
 import io.symcpe.wraith.rules.Rule;
@@ -36,6 +38,8 @@ import io.symcpe.wraith.rules.Rule;
  */
 public final class Utils extends io.symcpe.wraith.Utils {
 
+	private static final int DEFAULT_MESSAGE_TIMEOUT = 30;
+
 	private Utils() {
 	}
 
@@ -62,6 +66,17 @@ public final class Utils extends io.symcpe.wraith.Utils {
 				&& tuple.getSourceComponent().equals(Constants.TEMPLATE_SYNC_COMPONENT);
 	}
 	
+	/**
+	 * Checks if the supplied tuple is a suppression state change published by
+	 * the rules topology
+	 * 
+	 * @param tuple
+	 * @return true if it's a suppression state tuple
+	 */
+	public static boolean isSuppressionStateTuple(Tuple tuple) {
+		return Constants.SUPPRESSION_STATE_COMPONENT.equals(tuple.getSourceComponent());
+	}
+
 	/**
 	 * @param tuple
 	 * @return
@@ -89,6 +104,43 @@ public final class Utils extends io.symcpe.wraith.Utils {
 		return tuple.getSourceStreamId().equals(Constants.STATE_STREAM_ID);
 	}
 
+	/**
+	 * @param tuple
+	 * @return true if the tuple carries a value to aggregate
+	 */
+	public static boolean isAggregationTuple(Tuple tuple) {
+		return tuple.getSourceStreamId().equals(Constants.AGGREGATION_STREAM_ID);
+	}
+
+	/**
+	 * @param stormConf
+	 * @return true if {@link Constants#AGGREGATION_STATE_SOURCE} wires the
+	 *         aggregation bolts directly to the rules engine
+	 */
+	@SuppressWarnings("rawtypes")
+	public static boolean isDirectAggregation(Map stormConf) {
+		return Constants.RULE_ENGINE_COMPONENT.equals(stormConf.get(Constants.AGGREGATION_STATE_SOURCE));
+	}
+
+	/**
+	 * Bolts ack buffered tuples on flush, when they are fed directly by the
+	 * rules engine the buffered tuples anchor the original event so the flush
+	 * must happen well within the message timeout or the spout replays the
+	 * event.
+	 * 
+	 * @param stormConf
+	 * @param flushTimeout
+	 *            seconds
+	 * @return flush timeout bounded to half the message timeout
+	 */
+	@SuppressWarnings("rawtypes")
+	public static int boundFlushTimeout(Map stormConf, int flushTimeout) {
+		Object messageTimeout = stormConf.get(Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS);
+		int bound = Math.max(1,
+				(messageTimeout != null ? Integer.parseInt(messageTimeout.toString()) : DEFAULT_MESSAGE_TIMEOUT) / 2);
+		return Math.min(flushTimeout, bound);
+	}
+
 	/**
 	 * Normalize and format Zookeeper connection string
 	 * 
@@ -30,6 +30,7 @@ public class VelocityAlertTemplate extends AlertTemplate {
 	
 	private Template velocitySubjectTemplate;
 	private Template velocityBodyTemplate;
+	private String[] referencedFields;
 	
 	public VelocityAlertTemplate() {
 	}
@@ -76,4 +77,21 @@ public class VelocityAlertTemplate extends AlertTemplate {
 		this.velocityBodyTemplate = velocityBodyTemplate;
 	}
 
+	/**
+	 * Header fields referenced by the subject and body, null if the output
+	 * depends on more than these fields and can't be cached
+	 * 
+	 * @return the referencedFields
+	 */
+	public String[] getReferencedFields() {
+		return referencedFields;
+	}
+
+	/**
+	 * @param referencedFields the referencedFields to set
+	 */
+	public void setReferencedFields(String[] referencedFields) {
+		this.referencedFields = referencedFields;
+	}
+
 }
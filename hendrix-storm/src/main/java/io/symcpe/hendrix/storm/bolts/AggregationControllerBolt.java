@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import backtype.storm.Config;
@@ -32,20 +33,34 @@ import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.RuleActionGrouping;
 import io.symcpe.hendrix.storm.StormContextUtil;
 import io.symcpe.hendrix.storm.UnifiedFactory;
 import io.symcpe.hendrix.storm.Utils;
 import io.symcpe.wraith.PerformantException;
 import io.symcpe.wraith.actions.Action;
 import io.symcpe.wraith.actions.aggregations.AggregationAction;
+import io.symcpe.wraith.aggregations.TimerWheel;
+import io.symcpe.wraith.aggregations.TimerWheel.Timer;
 import io.symcpe.wraith.rules.Rule;
 import io.symcpe.wraith.rules.RuleCommand;
+import io.symcpe.wraith.rules.RuleSerializer;
 import io.symcpe.wraith.rules.StatelessRulesEngine;
+import io.symcpe.wraith.rules.TenantPartitioner;
 import io.symcpe.wraith.store.RulesStore;
 
 /**
  * An Aggregation controller is responsible for sending synchronously
- * controlling how aggregations tumbling windows are controlled.
+ * controlling how aggregations tumbling windows are controlled.<br>
+ * <br>
+ * 
+ * Emissions are scheduled on a {@link TimerWheel} so each tick only visits the
+ * ruleActionIds due in it instead of scanning every rule. With parallelism &gt;
+ * 1 the controller tasks split the rule groups (or rules if rule groups aren't
+ * active) with a {@link TenantPartitioner}, each task loading and scheduling
+ * only the ones it owns. Pair with {@link RuleActionGrouping} on the tick
+ * stream so ticks reach only the aggregation tasks holding state for the
+ * ruleActionId.
  * 
  * @author ambud_sharma
  */
@@ -59,6 +74,10 @@ public class AggregationControllerBolt extends BaseRichBolt {
 	private transient long tickCounter;
 	private transient boolean ruleGroupsActive;
 	private transient int hashSize;
+	private transient TimerWheel<Emission> wheel;
+	private transient Map<String, List<Timer<Emission>>> timers;
+	private transient TenantPartitioner partitioner;
+	private transient int partition;
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
@@ -70,6 +89,15 @@ public class AggregationControllerBolt extends BaseRichBolt {
 				.parseBoolean(stormConf.getOrDefault(Constants.RULE_GROUP_ACTIVE, Constants.FALSE).toString());
 		this.hashSize = Integer.parseInt(
 				stormConf.getOrDefault(Constants.RULE_HASH_INIT_SIZE, Constants.DEFAULT_RULE_HASH_SIZE).toString());
+		this.wheel = new TimerWheel<>(TimerWheel.DEFAULT_SLOTS, tickCounter);
+		this.timers = new HashMap<>(hashSize);
+		if (context != null && context.getComponentTasks(context.getThisComponentId()).size() > 1) {
+			this.partitioner = new TenantPartitioner(context.getComponentTasks(context.getThisComponentId()).size(),
+					Integer.parseInt(stormConf.getOrDefault(Constants.RULE_PARTITION_VNODES,
+							Constants.DEFAULT_RULE_PARTITION_VNODES).toString()),
+					null);
+			this.partition = context.getThisTaskIndex();
+		}
 		this.ruleMap = new LinkedHashMap<>(hashSize);
 		if (!ruleGroupsActive) {
 			this.ruleMap = new LinkedHashMap<>(hashSize);
@@ -85,9 +113,21 @@ public class AggregationControllerBolt extends BaseRichBolt {
 		try {
 			store.connect();
 			if (!ruleGroupsActive) {
-				this.ruleMap.putAll(store.listRules());
+				for (Rule rule : store.listRules().values()) {
+					if (owns(null, rule.getRuleId())) {
+						this.ruleMap.put(rule.getRuleId(), rule);
+						scheduleEmissions(null, rule);
+					}
+				}
 			} else {
-				this.ruleGroupMap.putAll(store.listGroupedRules());
+				for (Entry<String, Map<Short, Rule>> entry : store.listGroupedRules().entrySet()) {
+					if (owns(entry.getKey(), (short) 0)) {
+						this.ruleGroupMap.put(entry.getKey(), entry.getValue());
+						for (Rule rule : entry.getValue().values()) {
+							scheduleEmissions(entry.getKey(), rule);
+						}
+					}
+				}
 			}
 			store.disconnect();
 		} catch (IOException e) {
@@ -100,18 +140,8 @@ public class AggregationControllerBolt extends BaseRichBolt {
 	public void execute(Tuple tuple) {
 		if (Utils.isTickTuple(tuple)) {
 			tickCounter++;
-			if (!ruleGroupsActive) {
-				for (Rule rule : ruleMap.values()) {
-					sendEmissionsForRule(tuple, null, rule);
-				}
-			} else {
-				for (String ruleGroup : ruleGroupMap.keySet()) {
-					Map<Short, Rule> map = ruleGroupMap.get(ruleGroup);
-					for (Rule rule : map.values()) {
-						sendEmissionsForRule(tuple, ruleGroup, rule);
-					}
-				}
-			}
+			wheel.advanceTo(tickCounter, (emission, tick) -> collector.emit(Constants.TICK_STREAM_ID, tuple,
+					new Values(emission.ruleActionId, emission.window, emission.ruleGroup, emission.slide)));
 		} else if (Utils.isRuleSyncTuple(tuple)) {
 			logger.info(
 					"Attempting to apply rule update:" + (tuple.getValueByField(Constants.FIELD_RULE_CONTENT) == null));
@@ -145,15 +175,79 @@ public class AggregationControllerBolt extends BaseRichBolt {
 		List<AggregationAction> aggregationActions = filterAggregationActions(rule);
 		if (aggregationActions != null) {
 			for (AggregationAction action : aggregationActions) {
-				if (tickCounter % action.getAggregationWindow() == 0) {
+				// sliding windows are emitted every slide
+				if (tickCounter % action.getPaneSize() == 0) {
 					collector.emit(Constants.TICK_STREAM_ID, tuple,
 							new Values(Utils.combineRuleActionId(rule.getRuleId(), action.getActionId()),
-									action.getAggregationWindow(), ruleGroup));
+									action.getAggregationWindow(), ruleGroup, action.getAggregationSlide()));
 				}
 			}
 		}
 	}
 
+	/**
+	 * Schedule emissions of the aggregation actions of a rule, replacing
+	 * previously scheduled ones. Sliding windows are emitted every slide, the
+	 * first emission is aligned to a multiple of the pane size.
+	 * 
+	 * @param ruleGroup
+	 * @param rule
+	 */
+	protected void scheduleEmissions(String ruleGroup, Rule rule) {
+		String key = ruleKey(ruleGroup, rule.getRuleId());
+		List<Timer<Emission>> scheduled = timers.remove(key);
+		if (scheduled != null) {
+			for (Timer<Emission> timer : scheduled) {
+				wheel.cancel(timer);
+			}
+		}
+		List<AggregationAction> aggregationActions = filterAggregationActions(rule);
+		if (aggregationActions.isEmpty()) {
+			return;
+		}
+		scheduled = new ArrayList<>(aggregationActions.size());
+		for (AggregationAction action : aggregationActions) {
+			int paneSize = action.getPaneSize();
+			Emission emission = new Emission(ruleGroup,
+					Utils.combineRuleActionId(rule.getRuleId(), action.getActionId()), action.getAggregationWindow(),
+					action.getAggregationSlide());
+			scheduled.add(wheel.schedule(emission, (tickCounter / paneSize + 1) * paneSize, paneSize));
+		}
+		timers.put(key, scheduled);
+	}
+
+	/**
+	 * Cancel scheduled emissions of a rule
+	 * 
+	 * @param ruleGroup
+	 * @param ruleId
+	 */
+	protected void cancelEmissions(String ruleGroup, short ruleId) {
+		List<Timer<Emission>> scheduled = timers.remove(ruleKey(ruleGroup, ruleId));
+		if (scheduled != null) {
+			for (Timer<Emission> timer : scheduled) {
+				wheel.cancel(timer);
+			}
+		}
+	}
+
+	/**
+	 * @param ruleGroup
+	 * @param ruleId
+	 * @return true if this task controls the rule group, or the rule if rule
+	 *         groups aren't active
+	 */
+	protected boolean owns(String ruleGroup, short ruleId) {
+		if (partitioner == null) {
+			return true;
+		}
+		return partitioner.owns(partition, ruleGroup != null ? ruleGroup : String.valueOf(ruleId));
+	}
+
+	private static String ruleKey(String ruleGroup, short ruleId) {
+		return ruleGroup != null ? ruleGroup + RulesEngineBolt.TENANTID_SEPARATOR + ruleId : String.valueOf(ruleId);
+	}
+
 	/**
 	 * Update rule and trigger emissions for that rule so there are no orphan
 	 * entries in aggregation maps since rule update may change the rule
@@ -166,6 +260,11 @@ public class AggregationControllerBolt extends BaseRichBolt {
 	 * @throws Exception
 	 */
 	public void updateRule(Tuple tuple, String ruleGroup, String ruleJson, boolean delete) throws Exception {
+		Rule rule = RuleSerializer.deserializeJSONStringToRule(ruleJson);
+		if (!owns(ruleGroupsActive ? ruleGroup : null, rule.getRuleId())) {
+			// controlled by another task
+			return;
+		}
 		Map<Short, Rule> ruleMap = this.ruleMap;
 		if (ruleGroupsActive) {
 			if (ruleGroup != null) {
@@ -181,8 +280,15 @@ public class AggregationControllerBolt extends BaseRichBolt {
 		if (ruleMap == null) {
 			throw new PerformantException("Rule map not found for rule:" + ruleJson + "\trule-group:" + ruleGroup);
 		}
-		Rule rule = StatelessRulesEngine.updateRuleMap(ruleMap, ruleJson, delete);
-		sendEmissionsForRule(tuple, ruleGroup, rule);
+		Rule previous = StatelessRulesEngine.updateRuleMap(ruleMap, ruleJson, delete);
+		if (delete) {
+			cancelEmissions(ruleGroup, rule.getRuleId());
+		} else {
+			scheduleEmissions(ruleGroup, rule);
+		}
+		if (previous != null) {
+			sendEmissionsForRule(tuple, ruleGroup, previous);
+		}
 	}
 
 	public static List<AggregationAction> filterAggregationActions(Rule rule) {
@@ -198,7 +304,7 @@ public class AggregationControllerBolt extends BaseRichBolt {
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
 		declarer.declareStream(Constants.TICK_STREAM_ID, new Fields(Constants.FIELD_RULE_ACTION_ID,
-				Constants.FIELD_AGGREGATION_WINDOW, Constants.FIELD_RULE_GROUP));
+				Constants.FIELD_AGGREGATION_WINDOW, Constants.FIELD_RULE_GROUP, Constants.FIELD_AGGREGATION_SLIDE));
 	}
 
 	@Override
@@ -251,4 +357,30 @@ public class AggregationControllerBolt extends BaseRichBolt {
 		return ruleGroupsActive;
 	}
 
+	/**
+	 * @return the wheel
+	 */
+	protected TimerWheel<Emission> getWheel() {
+		return wheel;
+	}
+
+	/**
+	 * Tick stream values of an aggregation action
+	 */
+	protected static final class Emission {
+
+		private final String ruleGroup;
+		private final String ruleActionId;
+		private final int window;
+		private final int slide;
+
+		private Emission(String ruleGroup, String ruleActionId, int window, int slide) {
+			this.ruleGroup = ruleGroup;
+			this.ruleActionId = ruleActionId;
+			this.window = window;
+			this.slide = slide;
+		}
+
+	}
+
 }
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.bolts;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import backtype.storm.metric.api.CountMetric;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.base.BaseRichBolt;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.interceptors.ValidationInterceptor;
+import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.StormContextUtil;
+import io.symcpe.hendrix.storm.UnifiedFactory;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.PerformantException;
+
+/**
+ * Fused replacement for {@link InterceptionBolt} followed by
+ * {@link JSONTranslatorBolt}. The raw JSON is parsed once, the
+ * {@link ValidationInterceptor} chain runs over the parsed tree and the
+ * {@link Event} headers are built from it directly instead of serializing
+ * the validated event and parsing it again.<br>
+ * <br>
+ * Header values carry the same types the translator produces: numbers are
+ * {@link Double}s, nested objects are {@link Map}s and arrays are
+ * {@link List}s. Null values are dropped.
+ * 
+ * @author ambud_sharma
+ */
+public class IngestionBolt extends BaseRichBolt {
+
+	private static final String _METRIC_INGEST_FAIL = "cm.ingest.fail";
+	private static final String _METRIC_INGEST_SUCCESS = "cm.ingest.success";
+	private static final String DEFAULT_TENANT_ID = "tenant_id";
+	private static final String DEFAULT_TIMESTAMP = "@timestamp";
+	private static final String TRANSLATOR_TIMESTAMP_KEY = "translator.timestampKey";
+	private static final String TRANSLATOR_TENAN_ID_KEY = "translator.tenanIdKey";
+	private static final long serialVersionUID = 1L;
+	private static final PerformantException INVALID_JSON = new PerformantException("Invalid JSON");
+	private transient Logger logger;
+	private transient OutputCollector collector;
+	private transient ValidationInterceptor interceptor;
+	private transient JsonParser parser;
+	private transient UnifiedFactory factory;
+	private transient String timestampKey;
+	private transient String tenantIdKey;
+	private transient CountMetric sucessMetric;
+	private transient CountMetric failMetric;
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+		this.logger = Logger.getLogger(IngestionBolt.class.getName());
+		this.collector = collector;
+		this.interceptor = InterceptionBolt.buildInterceptorChain(stormConf);
+		this.parser = new JsonParser();
+		this.factory = new UnifiedFactory();
+		if (stormConf.get(TRANSLATOR_TIMESTAMP_KEY) != null) {
+			this.timestampKey = stormConf.get(TRANSLATOR_TIMESTAMP_KEY).toString();
+		} else {
+			timestampKey = DEFAULT_TIMESTAMP;
+		}
+		if (stormConf.get(TRANSLATOR_TENAN_ID_KEY) != null) {
+			this.tenantIdKey = stormConf.get(TRANSLATOR_TENAN_ID_KEY).toString();
+		} else {
+			tenantIdKey = DEFAULT_TENANT_ID;
+		}
+		sucessMetric = new CountMetric();
+		failMetric = new CountMetric();
+		if (context != null) {
+			context.registerMetric(_METRIC_INGEST_SUCCESS, sucessMetric, Constants.METRICS_FREQUENCY);
+			context.registerMetric(_METRIC_INGEST_FAIL, failMetric, Constants.METRICS_FREQUENCY);
+		}
+		logger.info("Ingestion bolt initialized");
+	}
+
+	@Override
+	public void execute(Tuple input) {
+		String eventLine = input.getString(0);
+		try {
+			JsonElement element = parser.parse(eventLine);
+			if (!element.isJsonObject()) {
+				throw INVALID_JSON;
+			}
+			JsonObject json = element.getAsJsonObject();
+			interceptor.validate(json);
+			Event event = factory.buildEvent();
+			Map<String, Object> headers = event.getHeaders();
+			for (Entry<String, JsonElement> entry : json.entrySet()) {
+				Object value = toObject(entry.getValue());
+				if (value != null) {
+					headers.put(entry.getKey(), value);
+				}
+			}
+			headers.put(Constants.FIELD_TIMESTAMP, ((Number) headers.get(timestampKey)).longValue());
+			Object tenantId = headers.get(tenantIdKey);
+			if (tenantId != null) {
+				headers.put(Constants.FIELD_RULE_GROUP, tenantId);
+			}
+			collector.emit(input, new Values(event));
+			if (sucessMetric != null) {
+				sucessMetric.incr();
+			}
+		} catch (Exception e) {
+			// parse, validation and translation failures
+			if (failMetric != null) {
+				failMetric.incr();
+			}
+			StormContextUtil.emitErrorTuple(collector, input, IngestionBolt.class, eventLine, e.getMessage(), e);
+		}
+		collector.ack(input);
+	}
+
+	/**
+	 * Convert a parsed JSON element to the value types used in {@link Event}
+	 * headers
+	 * 
+	 * @param element
+	 * @return header value or null for JSON null
+	 */
+	public static Object toObject(JsonElement element) {
+		if (element.isJsonPrimitive()) {
+			JsonPrimitive primitive = element.getAsJsonPrimitive();
+			if (primitive.isNumber()) {
+				return primitive.getAsDouble();
+			} else if (primitive.isBoolean()) {
+				return primitive.getAsBoolean();
+			} else {
+				return primitive.getAsString();
+			}
+		} else if (element.isJsonObject()) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+				map.put(entry.getKey(), toObject(entry.getValue()));
+			}
+			return map;
+		} else if (element.isJsonArray()) {
+			JsonArray array = element.getAsJsonArray();
+			List<Object> list = new ArrayList<>(array.size());
+			for (JsonElement item : array) {
+				list.add(toObject(item));
+			}
+			return list;
+		}
+		return null;
+	}
+
+	@Override
+	public void declareOutputFields(OutputFieldsDeclarer declarer) {
+		declarer.declare(new Fields(Constants.FIELD_EVENT));
+		StormContextUtil.declareErrorStream(declarer);
+	}
+
+	/**
+	 * @return the interceptor
+	 */
+	protected ValidationInterceptor getInterceptor() {
+		return interceptor;
+	}
+
+	/**
+	 * @return the collector
+	 */
+	protected OutputCollector getCollector() {
+		return collector;
+	}
+
+}
@@ -51,29 +51,11 @@ public class InterceptionBolt extends BaseRichBolt {
 	private transient CountMetric sucessMetric;
 	private transient CountMetric failMetric;
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@SuppressWarnings("rawtypes")
 	@Override
 	public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
 		this.collector = collector;
-		if (stormConf.containsKey(INTERCEPTORS)) {
-			try {
-				String[] vals = stormConf.get(INTERCEPTORS).toString().split(",");
-				ValidationInterceptor temp = getInstance(vals[0]);
-				temp.configure(stormConf);
-				this.interceptor = temp;
-				for (int i = 1; i < vals.length; i++) {
-					ValidationInterceptor temp2 = getInstance(vals[i]);
-					temp2.configure(stormConf);
-					temp.setNext(temp2);
-					temp = temp2;
-				}
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
-		} else {
-			interceptor = new DateInterceptor();
-			interceptor.configure(stormConf);
-		}
+		this.interceptor = buildInterceptorChain(stormConf);
 		sucessMetric = new CountMetric();
 		failMetric = new CountMetric();
 		if (context != null) {
@@ -115,6 +97,38 @@ public class InterceptionBolt extends BaseRichBolt {
 		StormContextUtil.declareErrorStream(declarer);
 	}
 
+	/**
+	 * Build the chain of {@link ValidationInterceptor}s listed in the
+	 * interceptors config, defaults to a {@link DateInterceptor}
+	 * 
+	 * @param stormConf
+	 * @return head of the interceptor chain
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ValidationInterceptor buildInterceptorChain(Map stormConf) {
+		ValidationInterceptor interceptor;
+		if (stormConf.containsKey(INTERCEPTORS)) {
+			try {
+				String[] vals = stormConf.get(INTERCEPTORS).toString().split(",");
+				ValidationInterceptor temp = getInstance(vals[0]);
+				temp.configure(stormConf);
+				interceptor = temp;
+				for (int i = 1; i < vals.length; i++) {
+					ValidationInterceptor temp2 = getInstance(vals[i]);
+					temp2.configure(stormConf);
+					temp.setNext(temp2);
+					temp = temp2;
+				}
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			interceptor = new DateInterceptor();
+			interceptor.configure(stormConf);
+		}
+		return interceptor;
+	}
+
 	public static ValidationInterceptor getInstance(String interceptorFQCN)
 			throws InstantiationException, IllegalAccessException, ClassNotFoundException {
 		return (ValidationInterceptor) Class.forName(interceptorFQCN).newInstance();
@@ -36,9 +36,16 @@ import io.symcpe.hendrix.storm.StormContextUtil;
 import io.symcpe.hendrix.storm.UnifiedFactory;
 import io.symcpe.hendrix.storm.Utils;
 import io.symcpe.wraith.Event;
+import io.symcpe.wraith.actions.Action;
+import io.symcpe.wraith.actions.aggregations.CoarseCountingAggregationAction;
 import io.symcpe.wraith.aggregations.MarkovianAggregationEngine;
 import io.symcpe.wraith.aggregations.MarkovianAggregationEngineImpl;
 import io.symcpe.wraith.aggregators.AggregationRejectException;
+import io.symcpe.wraith.aggregators.CoarseCountingAggregator;
+import io.symcpe.wraith.rules.Rule;
+import io.symcpe.wraith.rules.RuleCommand;
+import io.symcpe.wraith.rules.RuleSerializer;
+import io.symcpe.wraith.store.RulesStore;
 
 /**
  * Bolt implementation of {@link MarkovianAggregationEngine}
@@ -61,7 +68,7 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 	private transient MarkovianAggregationEngineImpl engine;
 	private transient long bufferTickCounter;
 	private transient int flushTimeout;
-	private transient String aggregatorType;
+	private String aggregatorType;
 	
 	public MarkovianAggregationBolt(String aggregatorType) {
 		this.aggregatorType = aggregatorType;
@@ -86,6 +93,10 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
+		if (CoarseCountingAggregator.class.getName().equals(aggregatorType)
+				&& stormConf.get(Constants.RSTORE_TYPE) != null) {
+			loadTemplates(stormConf);
+		}
 		aggregationHit = new MultiCountMetric();
 		if (context != null) {
 			context.registerMetric(_METRIC_AGGREGATION_HIT, aggregationHit, Constants.METRICS_FREQUENCY);
@@ -94,16 +105,97 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 		if (stormConf.containsKey(AGGREGATION_FLUSH_TIMEOUT)) {
 			this.flushTimeout = Integer.parseInt(stormConf.get(AGGREGATION_FLUSH_TIMEOUT).toString());
 		}
+		// buffered tuples anchor the events when fed by the rules engine
+		int bounded = Utils.boundFlushTimeout(stormConf, flushTimeout);
+		if (Utils.isDirectAggregation(stormConf) && bounded < flushTimeout) {
+			logger.warning("Flush timeout " + flushTimeout + "s reduced to " + bounded + "s to ack within "
+					+ Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS);
+			this.flushTimeout = bounded;
+		}
 	}
 
 	@Override
 	public void execute(Tuple tuple) {
-		if (Utils.isStateTrackingTuple(tuple)) {
+		if (Utils.isAggregationTuple(tuple)) {
 			aggregate(tuple);
 		} else if (Utils.isWraithTickTuple(tuple)) {
 			performEmits(tuple);
 		} else if (Utils.isTickTuple(tuple)) {
 			checkAndPerformTimeBasedFlush(tuple);
+		} else if (Utils.isRuleSyncTuple(tuple)) {
+			updateTemplates(tuple);
+		}
+	}
+
+	/**
+	 * Apply per action aggregator settings carried by rule updates, currently
+	 * the HLL precision of {@link CoarseCountingAggregationAction}s
+	 * 
+	 * @param tuple
+	 */
+	protected void updateTemplates(Tuple tuple) {
+		if (CoarseCountingAggregator.class.getName().equals(aggregatorType)) {
+			RuleCommand ruleCommand = (RuleCommand) tuple.getValueByField(Constants.FIELD_RULE_CONTENT);
+			try {
+				updateTemplates(RuleSerializer.deserializeJSONStringToRule(ruleCommand.getRuleContent()),
+						ruleCommand.isDelete());
+			} catch (Exception e) {
+				StormContextUtil.emitErrorTuple(collector, tuple, MarkovianAggregationBolt.class, "",
+						"Failed to apply rule update", e);
+			}
+		}
+		collector.ack(tuple);
+	}
+
+	/**
+	 * Register the HLL precision overrides of a rule's
+	 * {@link CoarseCountingAggregationAction}s
+	 * 
+	 * @param rule
+	 * @param delete
+	 */
+	protected void updateTemplates(Rule rule, boolean delete) {
+		for (Action action : rule.getActions()) {
+			if (action instanceof CoarseCountingAggregationAction) {
+				int precision = ((CoarseCountingAggregationAction) action).getPrecision();
+				engine.setTemplate(Utils.combineRuleActionId(rule.getRuleId(), action.getActionId()),
+						delete || precision == 0 ? null : new CoarseCountingAggregator(precision));
+			}
+		}
+	}
+
+	/**
+	 * Load the precision overrides of the rules in the {@link RulesStore} so
+	 * new buckets match the ones stored before a restart
+	 * 
+	 * @param stormConf
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void loadTemplates(Map stormConf) {
+		RulesStore store = null;
+		try {
+			store = unifiedFactory.getRulesStore(stormConf.get(Constants.RSTORE_TYPE).toString(), stormConf);
+		} catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+		try {
+			store.connect();
+			if (!Boolean.parseBoolean(
+					stormConf.getOrDefault(Constants.RULE_GROUP_ACTIVE, Constants.FALSE).toString())) {
+				for (Rule rule : store.listRules().values()) {
+					updateTemplates(rule, false);
+				}
+			} else {
+				for (Map<Short, Rule> rules : store.listGroupedRules().values()) {
+					for (Rule rule : rules.values()) {
+						updateTemplates(rule, false);
+					}
+				}
+			}
+			store.disconnect();
+		} catch (IOException e) {
+			logger.severe("Failed to load rules from store, reason:" + e.getMessage());
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -115,7 +207,7 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 					tuple.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW),
 					tuple.getStringByField(Constants.FIELD_RULE_ACTION_ID),
 					tuple.getStringByField(Constants.FIELD_AGGREGATION_KEY),
-					tuple.getStringByField(Constants.FIELD_AGGREGATION_VALUE));
+					tuple.getValueByField(Constants.FIELD_AGGREGATION_VALUE));
 			buffer.add(tuple);
 			if (buffer.size() >= bufferSize) {
 				flushAckAndClearBuffer();
@@ -137,8 +229,9 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 		Entry<Short, Short> ruleActionIdSeparates = Utils.separateRuleActionId(ruleActionId);
 		try {
 			List<Event> aggregateHeaders = new ArrayList<>();
-			emitAndResetAggregates((int) tuple.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW), ruleActionId,
-					aggregateHeaders);
+			Integer aggregationSlide = tuple.getIntegerByField(Constants.FIELD_AGGREGATION_SLIDE);
+			emitAndResetAggregates((int) tuple.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW),
+					aggregationSlide != null ? aggregationSlide : 0, ruleActionId, aggregateHeaders);
 			if (!aggregateHeaders.isEmpty()) {
 				for (Event event : aggregateHeaders) {
 					event.getHeaders().put(Constants.FIELD_RULE_GROUP, ruleGroup);
@@ -150,7 +243,10 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 				logger.warning("No state aggregations to emit:" + engine.getAggregationMap());
 			}
 		} catch (Exception e) {
-			// throw e;
+			StormContextUtil.emitErrorTuple(collector, tuple, MarkovianAggregationBolt.class, "",
+					"Aggregation emit failed", e);
+			collector.fail(tuple);
+			return;
 		}
 		collector.ack(tuple);
 	}
@@ -192,14 +288,17 @@ public class MarkovianAggregationBolt extends BaseRichBolt {
 	}
 
 	/**
+	 * @param aggregationWindow
+	 * @param aggregationSlide
+	 *            0 for tumbling windows
 	 * @param ruleActionId
 	 * @param aggregationEmitEvents
 	 * @throws IOException
 	 */
-	public void emitAndResetAggregates(int aggregationWindow, String ruleActionId,
+	public void emitAndResetAggregates(int aggregationWindow, int aggregationSlide, String ruleActionId,
 			List<Event> aggregationEmitEvents) throws IOException {
 		if (engine.containsRuleActionId(ruleActionId)) {
-			engine.emit(aggregationWindow, ruleActionId, aggregationEmitEvents);
+			engine.emit(aggregationWindow, aggregationSlide, ruleActionId, aggregationEmitEvents);
 		}
 	}
 
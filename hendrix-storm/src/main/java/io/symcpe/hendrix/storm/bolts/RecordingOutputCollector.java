@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.bolts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * {@link IOutputCollector} buffering emits made off the executor thread so
+ * they can be replayed on the bolt's {@link OutputCollector}, which isn't
+ * thread safe. Emits are grouped by their first anchor so they can be replayed
+ * in input tuple order; acks and fails aren't supported as input tuples are
+ * acked by the executor thread.
+ * 
+ * @author ambud_sharma
+ */
+public class RecordingOutputCollector implements IOutputCollector {
+
+	private final Map<Tuple, List<Emit>> emits = new IdentityHashMap<>();
+	private final List<Emit> unanchored = new ArrayList<>();
+	private final List<Throwable> errors = new ArrayList<>();
+
+	@Override
+	public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+		Emit emit = new Emit(streamId, anchors, tuple);
+		if (anchors == null || anchors.isEmpty()) {
+			unanchored.add(emit);
+		} else {
+			Tuple anchor = anchors.iterator().next();
+			List<Emit> list = emits.get(anchor);
+			if (list == null) {
+				list = new ArrayList<>(2);
+				emits.put(anchor, list);
+			}
+			list.add(emit);
+		}
+		// task ids are unknown until replay
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+		throw new UnsupportedOperationException("Direct emits can't be recorded");
+	}
+
+	@Override
+	public void ack(Tuple input) {
+		throw new UnsupportedOperationException("Acks are done by the executor thread");
+	}
+
+	@Override
+	public void fail(Tuple input) {
+		throw new UnsupportedOperationException("Fails are done by the executor thread");
+	}
+
+	@Override
+	public void reportError(Throwable error) {
+		errors.add(error);
+	}
+
+	/**
+	 * Replay emits anchored to the supplied input tuple
+	 * 
+	 * @param collector
+	 * @param input
+	 */
+	public void replay(OutputCollector collector, Tuple input) {
+		List<Emit> list = emits.get(input);
+		if (list != null) {
+			for (Emit emit : list) {
+				emit.replay(collector);
+			}
+		}
+	}
+
+	/**
+	 * Replay unanchored emits and errors then clear all recorded state
+	 * 
+	 * @param collector
+	 */
+	public void replayRemaining(OutputCollector collector) {
+		for (Emit emit : unanchored) {
+			emit.replay(collector);
+		}
+		for (Throwable error : errors) {
+			collector.reportError(error);
+		}
+		emits.clear();
+		unanchored.clear();
+		errors.clear();
+	}
+
+	/**
+	 * A recorded emit
+	 */
+	private static final class Emit {
+
+		private final String streamId;
+		private final Collection<Tuple> anchors;
+		private final List<Object> tuple;
+
+		private Emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+			this.streamId = streamId;
+			this.anchors = anchors;
+			this.tuple = tuple;
+		}
+
+		private void replay(OutputCollector collector) {
+			if (anchors != null && anchors.size() == 1) {
+				collector.emit(streamId, anchors.iterator().next(), tuple);
+			} else {
+				collector.emit(streamId, anchors, tuple);
+			}
+		}
+
+	}
+
+}
@@ -15,15 +15,19 @@
  */
 package io.symcpe.hendrix.storm.bolts;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
 
-import backtype.storm.metric.api.MeanReducer;
-import backtype.storm.metric.api.MultiCountMetric;
-import backtype.storm.metric.api.MultiReducedMetric;
+import backtype.storm.Config;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -36,6 +40,8 @@ import io.symcpe.hendrix.storm.HendrixEvent;
 import io.symcpe.hendrix.storm.StormContextUtil;
 import io.symcpe.hendrix.storm.UnifiedFactory;
 import io.symcpe.hendrix.storm.Utils;
+import io.symcpe.hendrix.storm.metrics.ConcurrentMultiCountMetric;
+import io.symcpe.hendrix.storm.metrics.RuleLatencyMetric;
 import io.symcpe.wraith.Event;
 import io.symcpe.wraith.actions.Action;
 import io.symcpe.wraith.rules.Rule;
@@ -44,7 +50,25 @@ import io.symcpe.wraith.rules.RulesEngineCaller;
 import io.symcpe.wraith.rules.StatelessRulesEngine;
 
 /**
- * Bolt implementing {@link StatelessRulesEngine}
+ * Bolt implementing {@link StatelessRulesEngine}<br>
+ * <br>
+ * When {@link Constants#RULES_BATCH_SIZE} is more than 1 event tuples are
+ * buffered and evaluated column-wise with
+ * {@link StatelessRulesEngine#evaluateEventBatch(Object, List, List)} once the
+ * batch is full or its oldest tuple has waited
+ * {@link Constants#RULES_BATCH_LATENCY} milliseconds; the buffered tuples are
+ * then acked together. The latency bound is checked on every tuple. Tick
+ * tuples are requested only when the batch size is set on the bolt with
+ * {@link #withBatchSize(int)}, the latency bound is then also checked on the 1
+ * second tick tuple so an idle bolt holds a partial batch for at most
+ * max(latency, 1s). Rule updates flush the buffered batch before they are
+ * applied.<br>
+ * <br>
+ * When {@link Constants#RULES_PARALLELISM} is more than 1 each batch is split
+ * into contiguous slices evaluated on a {@link ForkJoinPool} against the
+ * engine's shared immutable rule snapshot. Emits of the workers are recorded
+ * and replayed on the executor thread in input tuple order since the
+ * {@link OutputCollector} isn't thread safe.
  * 
  * @author ambud_sharma
  */
@@ -54,17 +78,25 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 	private static final long serialVersionUID = 1L;
 	public static final String _METRIC_RULE_HIT_COUNT = "mcm.rule.hit.count";
 	public static final String _METRIC_RULE_NO_HIT_COUNT = "mcm.rule.nohit.count";
-	public static final String _METRIC_CONDITION_EFFICIENCY = "mcm.condition.efficiency";
-	public static final String _METRIC_RULE_EFFICIENCY = "mcm.rule.efficiency";
+	public static final String _METRIC_CONDITION_LATENCY = "hm.condition.latency";
+	public static final String _METRIC_RULE_LATENCY = "hm.rule.latency";
+	private int configuredBatchSize;
 	private transient Logger logger;
 	private transient Gson gson;
 	private transient StatelessRulesEngine<Tuple, OutputCollector> rulesEngine;
 	private transient OutputCollector collector;
-	private transient MultiReducedMetric ruleEfficiency;
-	private transient MultiReducedMetric conditionEfficiency;
-	private transient MultiCountMetric ruleHitCount;
-	private transient MultiCountMetric ruleNoHitCount;
+	private transient ConcurrentMultiCountMetric ruleHitCount;
+	private transient ConcurrentMultiCountMetric ruleNoHitCount;
 	private transient boolean multiTenancyActive;
+	private transient int batchSize;
+	private transient long batchLatency;
+	private transient long batchStartTime;
+	private transient List<Tuple> batchTuples;
+	private transient List<Event> batchEvents;
+	private transient int parallelism;
+	private transient ForkJoinPool pool;
+	private transient RecordingOutputCollector[] recorders;
+	private transient OutputCollector[] workerCollectors;
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
@@ -74,29 +106,73 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 		this.logger = Logger.getLogger(RulesEngineBolt.class.getName());
 		UnifiedFactory factory = new UnifiedFactory();
 		this.rulesEngine = new StatelessRulesEngine<Tuple, OutputCollector>(this, factory, factory);
+		if (multiTenancyActive && context != null && Boolean
+				.parseBoolean(stormConf.getOrDefault(Constants.RULE_PARTITION_ACTIVE, Constants.FALSE).toString())) {
+			// load only the rule groups this task owns, see RuleGroupGrouping
+			stormConf = new HashMap<>(stormConf);
+			stormConf.put(Constants.RULE_PARTITION_COUNT,
+					String.valueOf(context.getComponentTasks(context.getThisComponentId()).size()));
+			stormConf.put(Constants.RULE_PARTITION_INDEX, String.valueOf(context.getThisTaskIndex()));
+		}
 		try {
 			this.rulesEngine.initializeRules(stormConf);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
+		this.parallelism = Integer.parseInt(
+				stormConf.getOrDefault(Constants.RULES_PARALLELISM, Constants.DEFAULT_RULES_PARALLELISM).toString());
+		// parallel evaluation splits micro-batches across workers
+		if (configuredBatchSize > 0) {
+			this.batchSize = configuredBatchSize;
+		} else {
+			this.batchSize = Integer.parseInt(stormConf.getOrDefault(Constants.RULES_BATCH_SIZE,
+					parallelism > 1 ? Constants.DEFAULT_PARALLEL_RULES_BATCH_SIZE : Constants.DEFAULT_RULES_BATCH_SIZE)
+					.toString());
+			if (batchSize > 1) {
+				logger.warning("Batch size isn't set on the bolt, partial batches are only flushed by the next tuple");
+			}
+		}
+		if (parallelism > 1 && batchSize <= 1) {
+			logger.warning("Parallel rule evaluation needs " + Constants.RULES_BATCH_SIZE + " > 1, disabling it");
+			parallelism = 1;
+		}
+		if (parallelism > 1) {
+			this.pool = new ForkJoinPool(parallelism);
+			this.recorders = new RecordingOutputCollector[parallelism];
+			this.workerCollectors = new OutputCollector[parallelism];
+			for (int i = 0; i < parallelism; i++) {
+				recorders[i] = new RecordingOutputCollector();
+				workerCollectors[i] = new OutputCollector(recorders[i]);
+			}
+		}
+		this.batchLatency = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(stormConf
+				.getOrDefault(Constants.RULES_BATCH_LATENCY, Constants.DEFAULT_RULES_BATCH_LATENCY).toString()));
+		this.batchTuples = new ArrayList<>(Math.max(batchSize, 1));
+		this.batchEvents = new ArrayList<>(Math.max(batchSize, 1));
 		this.gson = new Gson();
 		this.collector = collector;
-		this.ruleEfficiency = new MultiReducedMetric(new MeanReducer());
-		this.conditionEfficiency = new MultiReducedMetric(new MeanReducer());
-		this.ruleHitCount = new MultiCountMetric();
-		this.ruleNoHitCount = new MultiCountMetric();
+		this.ruleHitCount = new ConcurrentMultiCountMetric();
+		this.ruleNoHitCount = new ConcurrentMultiCountMetric();
 		if (context != null) {
-			context.registerMetric(_METRIC_RULE_EFFICIENCY, ruleEfficiency, Constants.METRICS_FREQUENCY);
-			context.registerMetric(_METRIC_CONDITION_EFFICIENCY, conditionEfficiency, Constants.METRICS_FREQUENCY);
+			context.registerMetric(_METRIC_RULE_LATENCY, new RuleLatencyMetric(rulesEngine, false),
+					Constants.METRICS_FREQUENCY);
+			context.registerMetric(_METRIC_CONDITION_LATENCY, new RuleLatencyMetric(rulesEngine, true),
+					Constants.METRICS_FREQUENCY);
 			context.registerMetric(_METRIC_RULE_HIT_COUNT, ruleHitCount, Constants.METRICS_FREQUENCY);
-			context.registerMetric(_METRIC_RULE_NO_HIT_COUNT, ruleHitCount, Constants.METRICS_FREQUENCY);
+			context.registerMetric(_METRIC_RULE_NO_HIT_COUNT, ruleNoHitCount, Constants.METRICS_FREQUENCY);
 		}
 		logger.info("Rules Engine Bolt initialized");
 	}
 
 	@Override
 	public void execute(Tuple tuple) {
-		if (Utils.isRuleSyncTuple(tuple)) {
+		if (Utils.isTickTuple(tuple)) {
+			if (!batchTuples.isEmpty() && System.nanoTime() - batchStartTime >= batchLatency) {
+				flushBatch();
+			}
+		} else if (Utils.isRuleSyncTuple(tuple)) {
+			// rule updates apply after the events received before them
+			flushBatch();
 			logger.info("Attempting to apply rule update:" + tuple.getValueByField(Constants.FIELD_RULE_CONTENT));
 			RuleCommand ruleCommand = (RuleCommand) tuple.getValueByField(Constants.FIELD_RULE_CONTENT);
 			try {
@@ -111,6 +187,23 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 				StormContextUtil.emitErrorTuple(collector, tuple, RulesEngineBolt.class, tuple.toString(),
 						"Failed to apply rule update", e);
 			}
+		} else if (batchSize > 1) {
+			try {
+				HendrixEvent event = (HendrixEvent) tuple.getValueByField(Constants.FIELD_EVENT);
+				if (batchTuples.isEmpty()) {
+					batchStartTime = System.nanoTime();
+				}
+				batchTuples.add(tuple);
+				batchEvents.add(event);
+			} catch (Exception e) {
+				// unknown event type
+				logger.log(Level.SEVERE, "Unknown event type:" + tuple, e);
+				collector.ack(tuple);
+			}
+			if (batchTuples.size() >= batchSize || System.nanoTime() - batchStartTime >= batchLatency) {
+				flushBatch();
+			}
+			return;
 		} else {
 			try {
 				HendrixEvent event = (HendrixEvent) tuple.getValueByField(Constants.FIELD_EVENT);
@@ -129,6 +222,98 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 		collector.ack(tuple);
 	}
 
+	/**
+	 * Evaluate buffered events and ack their tuples
+	 */
+	protected void flushBatch() {
+		if (batchTuples.isEmpty()) {
+			return;
+		}
+		if (parallelism > 1) {
+			evaluateParallel();
+		} else {
+			evaluateSlice(collector, batchTuples, batchEvents);
+		}
+		for (Tuple tuple : batchTuples) {
+			collector.ack(tuple);
+		}
+		batchTuples.clear();
+		batchEvents.clear();
+	}
+
+	/**
+	 * Evaluate slices of the batch on the pool, the last slice on this thread,
+	 * and replay the recorded emits in input order
+	 */
+	protected void evaluateParallel() {
+		int size = batchTuples.size();
+		int slices = Math.min(parallelism, size);
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[slices - 1];
+		for (int i = 0; i < slices; i++) {
+			final OutputCollector sliceCollector = workerCollectors[i];
+			final List<Tuple> tuples = batchTuples.subList(i * size / slices, (i + 1) * size / slices);
+			final List<Event> events = batchEvents.subList(i * size / slices, (i + 1) * size / slices);
+			if (i < slices - 1) {
+				tasks[i] = pool.submit(() -> evaluateSlice(sliceCollector, tuples, events));
+			} else {
+				evaluateSlice(sliceCollector, tuples, events);
+			}
+		}
+		for (ForkJoinTask<?> task : tasks) {
+			task.join();
+		}
+		for (int i = 0; i < slices; i++) {
+			for (int j = i * size / slices; j < (i + 1) * size / slices; j++) {
+				recorders[i].replay(collector, batchTuples.get(j));
+			}
+			recorders[i].replayRemaining(collector);
+		}
+	}
+
+	/**
+	 * Evaluate events against the rules engine, failures are logged
+	 * 
+	 * @param eventCollector
+	 * @param tuples
+	 * @param events
+	 */
+	protected void evaluateSlice(OutputCollector eventCollector, List<Tuple> tuples, List<Event> events) {
+		try {
+			rulesEngine.evaluateEventBatch(eventCollector, tuples, events);
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, "Failed to evaluate batch of " + tuples.size() + " events", e);
+		}
+	}
+
+	@Override
+	public void cleanup() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	@Override
+	public Map<String, Object> getComponentConfiguration() {
+		Config conf = new Config();
+		if (configuredBatchSize > 1) {
+			// tick tuples bound the latency of partial batches
+			conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+		}
+		return conf;
+	}
+
+	/**
+	 * Set the batch size on the bolt so it's known when the topology is built,
+	 * overrides {@link Constants#RULES_BATCH_SIZE}
+	 * 
+	 * @param batchSize
+	 * @return this bolt
+	 */
+	public RulesEngineBolt withBatchSize(int batchSize) {
+		this.configuredBatchSize = batchSize;
+		return this;
+	}
+
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
 		// Disabled non-templated alerts
@@ -144,6 +329,10 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 		declarer.declareStream(Constants.STATE_STREAM_ID,
 				new Fields(Constants.FIELD_STATE_TRACK, Constants.FIELD_TIMESTAMP, Constants.FIELD_AGGREGATION_WINDOW,
 						Constants.FIELD_RULE_ACTION_ID, Constants.FIELD_AGGREGATION_KEY));
+		declarer.declareStream(Constants.AGGREGATION_STREAM_ID,
+				new Fields(Constants.FIELD_TIMESTAMP, Constants.FIELD_AGGREGATION_WINDOW,
+						Constants.FIELD_RULE_ACTION_ID, Constants.FIELD_AGGREGATION_KEY,
+						Constants.FIELD_AGGREGATION_VALUE));
 		StormContextUtil.declareErrorStream(declarer);
 	}
 
@@ -157,6 +346,8 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 	@Override
 	public void emitRawAlert(OutputCollector eventCollector, Tuple eventContainer, Event outputEvent, Short ruleId,
 			Short actionId, String target, String mediaType) {
+		// rule actions keep writing headers after the emit, see HeaderMap
+		outputEvent = HendrixEvent.copyOf(outputEvent);
 		if (multiTenancyActive) {
 			eventCollector.emit(Constants.ALERT_STREAM_ID, eventContainer,
 					new Values(outputEvent, ruleId, actionId, target, mediaType,
@@ -170,35 +361,15 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 
 	@Override
 	public void handleRuleNoMatch(OutputCollector eventCollector, Tuple eventContainer, Event inputEvent, Rule rule) {
-		ruleNoHitCount.scope(String.valueOf(rule.getRuleId())).incr();
-	}
-
-	@Override
-	public void reportConditionEfficiency(String ruleGroup, short ruleId, long executeTime) {
-		if (multiTenancyActive) {
-			conditionEfficiency.scope(Utils.concat(ruleGroup, TENANTID_SEPARATOR, String.valueOf(ruleId)))
-					.update(executeTime);
-		} else {
-			conditionEfficiency.scope(String.valueOf(ruleId)).update(executeTime);
-		}
-	}
-
-	@Override
-	public void reportRuleEfficiency(String ruleGroup, short ruleId, long executeTime) {
-		if (multiTenancyActive) {
-			ruleEfficiency.scope(Utils.concat(ruleGroup, TENANTID_SEPARATOR, String.valueOf(ruleId)))
-					.update(executeTime);
-		} else {
-			ruleEfficiency.scope(String.valueOf(ruleId)).update(executeTime);
-		}
+		ruleNoHitCount.incr(String.valueOf(rule.getRuleId()));
 	}
 
 	@Override
 	public void reportRuleHit(String ruleGroup, short ruleId) {
 		if (multiTenancyActive) {
-			ruleHitCount.scope(Utils.concat(ruleGroup, TENANTID_SEPARATOR, String.valueOf(ruleId))).incr();
+			ruleHitCount.incr(Utils.concat(ruleGroup, TENANTID_SEPARATOR, String.valueOf(ruleId)));
 		} else {
-			ruleHitCount.scope(String.valueOf(ruleId)).incr();
+			ruleHitCount.incr(String.valueOf(ruleId));
 		}
 	}
 
@@ -208,6 +379,13 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 				"Rule action failed to fire", null);
 	}
 
+	/**
+	 * @return number of buffered event tuples
+	 */
+	public int getBatchedTupleCount() {
+		return batchTuples.size();
+	}
+
 	/**
 	 * @return the rulesEngine
 	 */
@@ -219,7 +397,10 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 	public void emitAggregationEvent(Class<? extends Action> action, OutputCollector eventCollector,
 			Tuple eventContainer, Event originalEvent, Long timestamp, int windowSize, String ruleActionId,
 			String aggregationKey, Object aggregationValue) {
-		throw new UnsupportedOperationException();
+		// same fields as the AggregationClassifierBolt aggregation stream, the
+		// aggregation bolt of each aggregator type subscribes to it
+		eventCollector.emit(Constants.AGGREGATION_STREAM_ID, eventContainer,
+				new Values(timestamp, windowSize, ruleActionId, aggregationKey, aggregationValue));
 	}
 
 	@Override
@@ -247,6 +428,7 @@ public class RulesEngineBolt extends BaseRichBolt implements RulesEngineCaller<T
 	@Override
 	public void emitTemplatedAlert(OutputCollector eventCollector, Tuple eventContainer, Event outputEvent,
 			Short ruleId, Short actionId, String ruleName, Short templateId, Long timestamp) {
+		outputEvent = HendrixEvent.copyOf(outputEvent);
 		if (multiTenancyActive) {
 			eventCollector.emit(Constants.ALERT_STREAM_ID, eventContainer, new Values(outputEvent, ruleId, actionId,
 					ruleName, templateId, outputEvent.getHeaders().get(Constants.FIELD_RULE_GROUP), timestamp));
@@ -88,6 +88,13 @@ public class StateTrackingBolt extends BaseRichBolt {
 		if (stormConf.containsKey(STATE_FLUSH_TIMEOUT)) {
 			this.flushTimeout = Integer.parseInt(stormConf.get(STATE_FLUSH_TIMEOUT).toString());
 		}
+		// buffered tuples anchor the events when fed by the rules engine
+		int bounded = Utils.boundFlushTimeout(stormConf, flushTimeout);
+		if (Utils.isDirectAggregation(stormConf) && bounded < flushTimeout) {
+			logger.warning("Flush timeout " + flushTimeout + "s reduced to " + bounded + "s to ack within "
+					+ Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS);
+			this.flushTimeout = bounded;
+		}
 	}
 
 	@Override
@@ -139,8 +146,9 @@ public class StateTrackingBolt extends BaseRichBolt {
 		Entry<Short, Short> ruleActionIdSeparates = Utils.separateRuleActionId(ruleActionId);
 		try {
 			List<Event> aggregateHeaders = new ArrayList<>();
-			emitAndResetAggregates((int) tuple.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW), ruleActionId,
-					aggregateHeaders);
+			Integer aggregationSlide = tuple.getIntegerByField(Constants.FIELD_AGGREGATION_SLIDE);
+			emitAndResetAggregates((int) tuple.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW),
+					aggregationSlide != null ? aggregationSlide : 0, ruleActionId, aggregateHeaders);
 			if (!aggregateHeaders.isEmpty()) {
 				for (Event event : aggregateHeaders) {
 					event.getHeaders().put(Constants.FIELD_RULE_GROUP, ruleGroup);
@@ -195,14 +203,17 @@ public class StateTrackingBolt extends BaseRichBolt {
 	}
 
 	/**
+	 * @param aggregationWindow
+	 * @param aggregationSlide
+	 *            0 for tumbling windows
 	 * @param ruleActionId
-	 * @param aggregateHeaders
+	 * @param aggregationEmitEvents
 	 * @throws IOException
 	 */
-	public void emitAndResetAggregates(int aggregationWindow, String ruleActionId,
-			List<Event> aggregateHeaders) throws IOException {
+	public void emitAndResetAggregates(int aggregationWindow, int aggregationSlide, String ruleActionId,
+			List<Event> aggregationEmitEvents) throws IOException {
 		if (stateTrackingEngine.containsRuleActionId(ruleActionId)) {
-			stateTrackingEngine.emit(aggregationWindow, ruleActionId, aggregateHeaders);
+			stateTrackingEngine.emit(aggregationWindow, aggregationSlide, ruleActionId, aggregationEmitEvents);
 		}
 	}
 
@@ -243,4 +254,11 @@ public class StateTrackingBolt extends BaseRichBolt {
 		return stateTrackingEngine;
 	}
 
+	/**
+	 * @return flush timeout in seconds
+	 */
+	protected int getFlushTimeout() {
+		return flushTimeout;
+	}
+
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.bolts;
+
+import com.google.gson.JsonObject;
+
+import backtype.storm.tuple.Tuple;
+import io.symcpe.hendrix.storm.Constants;
+import storm.kafka.bolt.mapper.TupleToKafkaMapper;
+
+/**
+ * Publishes suppression state changes of templates throttled in the rules
+ * topology so the alerts topology can forward them to the suppression monitor.
+ * 
+ * @author ambud_sharma
+ */
+public class SuppressionStateTupleMapper implements TupleToKafkaMapper<String, String> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getKeyFromTuple(Tuple tuple) {
+		return String.valueOf(tuple.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID));
+	}
+
+	@Override
+	public String getMessageFromTuple(Tuple tuple) {
+		return toMessage(tuple.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID),
+				tuple.getBooleanByField(Constants.SUPRESSION_STATE));
+	}
+
+	/**
+	 * @param templateId
+	 * @param suppressed
+	 * @return json message
+	 */
+	public static String toMessage(short templateId, boolean suppressed) {
+		JsonObject message = new JsonObject();
+		message.addProperty(Constants.FIELD_ALERT_TEMPLATE_ID, templateId);
+		message.addProperty(Constants.SUPRESSION_STATE, suppressed);
+		return message.toString();
+	}
+
+}
@@ -19,23 +19,28 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.velocity.Template;
-import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.Velocity;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.RuntimeSingleton;
 import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTReference;
+import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.tools.generic.DateTool;
 
 import com.google.gson.Gson;
 
+import backtype.storm.Config;
 import backtype.storm.metric.api.MeanReducer;
 import backtype.storm.metric.api.MultiCountMetric;
 import backtype.storm.metric.api.MultiReducedMetric;
@@ -46,8 +51,13 @@ import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.storm.AlertThrottle;
+import io.symcpe.hendrix.storm.AlertThrottle.Admission;
 import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.HeaderContext;
 import io.symcpe.hendrix.storm.StormContextUtil;
+import io.symcpe.hendrix.storm.TemplateRenderCache;
+import io.symcpe.hendrix.storm.TemplateRenderCache.Rendered;
 import io.symcpe.hendrix.storm.UnifiedFactory;
 import io.symcpe.hendrix.storm.Utils;
 import io.symcpe.hendrix.storm.VelocityAlertTemplate;
@@ -64,7 +74,11 @@ import io.symcpe.wraith.store.TemplateStore;
  * {@link TemplatedAlertEngine} implementation in form of a Storm
  * {@link BaseRichBolt} . This bolt is responsible for converting an alert
  * generated by RulesEngineBolt to an actual user facing alert by materializing
- * the Velocity template body of the actual alert configuration.
+ * the Velocity template body of the actual alert configuration.<br>
+ * <br>
+ * When {@link Constants#ALERT_THROTTLE_EARLY} is enabled the throttle policy
+ * of the template is applied before rendering so suppressed alerts are never
+ * materialized. This requires the alert stream to be grouped by template id.
  * 
  * @author ambud_sharma
  */
@@ -72,6 +86,8 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 
 	private static final String _METRIC_TEMPLATE_HIT = "mcm.template.hit.count";
 	private static final String _METRIC_TEMPLATE_EFFICIENCY = "mcm.template.efficiency";
+	private static final String _METRIC_TEMPLATE_CACHE_HIT = "mcm.template.cache.hit.count";
+	private static final String _METRIC_TEMPLATE_SUPPRESSED = "mcm.template.suppressed.count";
 	private static final String VELOCITY_VAR_DATE = "date";
 	private static final long serialVersionUID = 1L;
 	private static final Logger logger = Logger.getLogger(TemplatedAlertingEngineBolt.class.getName());
@@ -83,6 +99,12 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 	private transient boolean multiTenancyActive;
 	private transient MultiReducedMetric templateEfficiency;
 	private transient MultiCountMetric templateHit;
+	private transient MultiCountMetric templateCacheHit;
+	private transient HeaderContext headerContext;
+	private transient StringWriter writer;
+	private transient TemplateRenderCache renderCache;
+	private transient AlertThrottle throttle;
+	private transient MultiCountMetric templateSuppressed;
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
@@ -100,11 +122,36 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 			logger.log(Level.SEVERE, "Failed to initialize templates for alerts", e);
 			throw new RuntimeException(e);
 		}
+		Map<String, Object> tools = new HashMap<>();
+		tools.put(VELOCITY_VAR_DATE, new DateTool());
+		this.headerContext = new HeaderContext(tools);
+		this.writer = new StringWriter(1000);
+		long cacheTtl = Long.parseLong(
+				stormConf.getOrDefault(Constants.TEMPLATE_CACHE_TTL, Constants.DEFAULT_TEMPLATE_CACHE_TTL).toString());
+		if (cacheTtl > 0) {
+			this.renderCache = new TemplateRenderCache(Integer.parseInt(stormConf
+					.getOrDefault(Constants.TEMPLATE_CACHE_SIZE, Constants.DEFAULT_TEMPLATE_CACHE_SIZE).toString()),
+					cacheTtl);
+		}
+		if (Boolean.parseBoolean(
+				stormConf.getOrDefault(Constants.ALERT_THROTTLE_EARLY, Constants.FALSE).toString())) {
+			try {
+				this.throttle = AlertThrottle.build(stormConf, context != null ? context.getThisTaskIndex() : 0,
+						storeFactory);
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Failed to initialize alert throttle", e);
+				throw new RuntimeException(e);
+			}
+		}
 		templateEfficiency = new MultiReducedMetric(new MeanReducer());
 		templateHit = new MultiCountMetric();
+		templateCacheHit = new MultiCountMetric();
+		templateSuppressed = new MultiCountMetric();
 		if (context != null) {
 			context.registerMetric(_METRIC_TEMPLATE_EFFICIENCY, templateEfficiency, Constants.METRICS_FREQUENCY);
 			context.registerMetric(_METRIC_TEMPLATE_HIT, templateHit, Constants.METRICS_FREQUENCY);
+			context.registerMetric(_METRIC_TEMPLATE_CACHE_HIT, templateCacheHit, Constants.METRICS_FREQUENCY);
+			context.registerMetric(_METRIC_TEMPLATE_SUPPRESSED, templateSuppressed, Constants.METRICS_FREQUENCY);
 		}
 		logger.info("Templated alerting Engine Bolt initialized");
 	}
@@ -127,7 +174,16 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 				StormContextUtil.emitErrorTuple(collector, tuple, TemplatedAlertingEngineBolt.class, tuple.toString(),
 						"Failed to apply template update", e);
 			}
-		} else {
+		} else if (Utils.isTickTuple(tuple)) {
+			if (throttle != null) {
+				List<Short> released = throttle.tick(System.currentTimeMillis());
+				for (Short templateId : released) {
+					collector.emit(Constants.SUP_MON_STREAM, tuple, new Values(templateId, false));
+					logger.fine("Leaving suppression state for template:" + templateId);
+				}
+			}
+		} else if (throttle == null || admit(tuple)) {
+			// suppressed alerts are acked without rendering them
 			Alert alertResult = null;
 			if (multiTenancyActive) {
 				alertResult = materialize((Event) tuple.getValueByField(Constants.FIELD_EVENT),
@@ -159,6 +215,31 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 		collector.ack(tuple);
 	}
 
+	/**
+	 * Applies the throttle policy of the alert template to the alert tuple
+	 * 
+	 * @param tuple
+	 * @return true if the alert should be rendered and emitted
+	 */
+	protected boolean admit(Tuple tuple) {
+		short templateId = tuple.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID);
+		VelocityAlertTemplate template = templateMap.get(templateId);
+		if (template == null) {
+			// let materialization report the missing template
+			return true;
+		}
+		Admission admission = throttle.admit(template, tuple.getLongByField(Constants.FIELD_TIMESTAMP));
+		if (admission == Admission.ADMITTED) {
+			return true;
+		}
+		if (admission == Admission.SUPPRESSION_STARTED) {
+			collector.emit(Constants.SUP_MON_STREAM, tuple, new Values(templateId, true));
+			logger.fine("Entering suppression state for template:" + templateId);
+		}
+		templateSuppressed.scope(String.valueOf(templateId)).incr();
+		return false;
+	}
+
 	@Override
 	public Alert materialize(Event event, String ruleGroup, short ruleId, short actionId, String ruleName,
 			short templateId, long timestamp) {
@@ -177,20 +258,33 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 		VelocityAlertTemplate template = templateMap.get(templateId);
 		if (template != null) {
 			long time = System.nanoTime();
-			VelocityContext ctx = new VelocityContext();
-			for (Entry<String, Object> entry : event.getHeaders().entrySet()) {
-				ctx.put(entry.getKey(), entry.getValue());
+			Object[] values = null;
+			Rendered rendered = null;
+			if (renderCache != null && template.getReferencedFields() != null) {
+				String[] fields = template.getReferencedFields();
+				values = new Object[fields.length];
+				for (int i = 0; i < fields.length; i++) {
+					values[i] = event.getHeaders().get(fields[i]);
+				}
+				rendered = renderCache.get(templateId, values, System.currentTimeMillis());
 			}
-			ctx.put(VELOCITY_VAR_DATE, new DateTool());
-			StringWriter writer = new StringWriter(1000);
-			template.getVelocityBodyTemplate().merge(ctx, writer);
-			alert.setBody(writer.toString());
-			if (template.getSubject() == null) {
-				alert.setSubject(ruleName);
+			if (rendered != null) {
+				templateCacheHit.scope(String.valueOf(templateId)).incr();
+				alert.setBody(rendered.getBody());
+				alert.setSubject(rendered.getSubject());
 			} else {
-				writer = new StringWriter(1000);
-				template.getVelocitySubjectTemplate().merge(ctx, writer);
-				alert.setSubject(writer.toString());
+				headerContext.reset(event.getHeaders());
+				alert.setBody(render(template.getVelocityBodyTemplate()));
+				if (template.getSubject() != null) {
+					alert.setSubject(render(template.getVelocitySubjectTemplate()));
+				}
+				if (values != null) {
+					renderCache.put(templateId, values, alert.getSubject(), alert.getBody(),
+							System.currentTimeMillis());
+				}
+			}
+			if (alert.getSubject() == null) {
+				alert.setSubject(ruleName);
 			}
 			alert.setTarget(template.getDestination());
 			alert.setMedia(template.getMedia());
@@ -204,9 +298,31 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 		}
 	}
 
+	@Override
+	public Map<String, Object> getComponentConfiguration() {
+		Config conf = new Config();
+		// throttle windows are measured in ticks of a second
+		conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+		return conf;
+	}
+
+	/**
+	 * Merge the template into the reused writer
+	 * 
+	 * @param velocityTemplate
+	 * @return rendered output
+	 */
+	private String render(Template velocityTemplate) {
+		writer.getBuffer().setLength(0);
+		velocityTemplate.merge(headerContext, writer);
+		return writer.toString();
+	}
+
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
 		declarer.declareStream(Constants.ALERT_STREAM_ID, new Fields(Constants.FIELD_ALERT));
+		declarer.declareStream(Constants.SUP_MON_STREAM,
+				new Fields(Constants.FIELD_ALERT_TEMPLATE_ID, Constants.SUPRESSION_STATE));
 		StormContextUtil.declareErrorStream(declarer);
 	}
 
@@ -219,6 +335,9 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 			} else {
 				buildTemplateMap(runtimeServices, templateMap, template);
 			}
+			if (renderCache != null) {
+				renderCache.invalidate(template.getTemplateId());
+			}
 		} catch (Exception e) {
 			logger.log(Level.SEVERE, "Alert template error", e);
 		}
@@ -278,6 +397,8 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 		velocityTemplate.initDocument();
 		VelocityAlertTemplate alertTemplate = new VelocityAlertTemplate(template);
 		alertTemplate.setVelocityBodyTemplate(velocityTemplate);
+		Set<String> referencedFields = new LinkedHashSet<>();
+		boolean cacheable = collectReferences(node, referencedFields);
 
 		if (template.getSubject() != null) {
 			reader = new StringReader(template.getSubject());
@@ -287,11 +408,43 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 			velocityTemplate.setData(node);
 			velocityTemplate.initDocument();
 			alertTemplate.setVelocitySubjectTemplate(velocityTemplate);
+			cacheable &= collectReferences(node, referencedFields);
+		}
+		if (cacheable) {
+			referencedFields.remove(VELOCITY_VAR_DATE);
+			alertTemplate.setReferencedFields(referencedFields.toArray(new String[referencedFields.size()]));
 		}
 
 		templateMap.put(template.getTemplateId(), alertTemplate);
 	}
 
+	/**
+	 * Collects the root names of all references in the template so renders can
+	 * be keyed by the values of just those fields.
+	 * 
+	 * @param node
+	 * @param referencedFields
+	 * @return false if the template pulls in content that isn't visible in its
+	 *         AST (#parse, #include, #evaluate)
+	 */
+	protected static boolean collectReferences(Node node, Set<String> referencedFields) {
+		if (node instanceof ASTReference) {
+			referencedFields.add(((ASTReference) node).getRootString());
+		} else if (node instanceof ASTDirective) {
+			switch (((ASTDirective) node).getDirectiveName()) {
+			case "parse":
+			case "include":
+			case "evaluate":
+				return false;
+			}
+		}
+		boolean cacheable = true;
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			cacheable &= collectReferences(node.jjtGetChild(i), referencedFields);
+		}
+		return cacheable;
+	}
+
 	/**
 	 * @return the templateMap
 	 */
@@ -299,6 +452,13 @@ public class TemplatedAlertingEngineBolt extends BaseRichBolt implements Templat
 		return templateMap;
 	}
 
+	/**
+	 * @return the throttle, null unless alerts are throttled before rendering
+	 */
+	protected AlertThrottle getThrottle() {
+		return throttle;
+	}
+
 	/**
 	 * @return the storeFactory
 	 */
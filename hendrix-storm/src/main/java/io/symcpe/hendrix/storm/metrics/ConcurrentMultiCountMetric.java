@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import backtype.storm.metric.api.IMetric;
+import backtype.storm.metric.api.MultiCountMetric;
+
+/**
+ * Thread safe alternative to {@link MultiCountMetric} for bolts updating
+ * metrics from worker threads, reports the same map of scope to count.
+ * Increments racing with {@link #getValueAndReset()} may be counted in the
+ * next interval or lost, metrics are expected to be collected while workers
+ * are idle.
+ * 
+ * @author ambud_sharma
+ */
+public class ConcurrentMultiCountMetric implements IMetric {
+
+	private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+	/**
+	 * @param scope
+	 */
+	public void incr(String scope) {
+		LongAdder count = counts.get(scope);
+		if (count == null) {
+			count = counts.computeIfAbsent(scope, key -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	@Override
+	public Object getValueAndReset() {
+		Map<String, Long> value = new HashMap<>();
+		for (String scope : counts.keySet()) {
+			LongAdder count = counts.remove(scope);
+			if (count != null) {
+				value.put(scope, count.sum());
+			}
+		}
+		return value;
+	}
+
+}
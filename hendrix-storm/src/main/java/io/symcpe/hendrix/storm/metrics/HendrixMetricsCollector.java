@@ -73,6 +73,7 @@ public class HendrixMetricsCollector implements IMetricsConsumer {
 			metricsProcessors.add(new GaugeMetricsProcessor(statsDClient));
 			metricsProcessors.add(new CountMetricsProcessor(statsDClient));
 			metricsProcessors.add(new MultiCountMetricsProcessor(statsDClient));
+			metricsProcessors.add(new HistogramMetricsProcessor(statsDClient));
 		} else {
 			if (stormConf.containsKey(METRICS_JSON_INSTANCES)) {
 				String[] instances = stormConf.get(METRICS_JSON_INSTANCES).toString().split(",");
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.metrics;
+
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.timgroup.statsd.StatsDClient;
+
+import backtype.storm.metric.api.IMetricsConsumer.DataPoint;
+
+/**
+ * Handles histogram metrics e.g. {@link RuleLatencyMetric} and pushes each
+ * statistic of each scope as a statsD gauge.
+ * 
+ * @author ambud_sharma
+ */
+public class HistogramMetricsProcessor extends AbstractMetricsProcessor {
+
+	private Logger logger = Logger.getLogger(HistogramMetricsProcessor.class);
+
+	public HistogramMetricsProcessor(StatsDClient statsDClient) {
+		super(statsDClient, "hm.");
+	}
+
+	@Override
+	protected Logger getLogger() {
+		return logger;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void processDataPoint(DataPoint dataPoint) {
+		for (Map.Entry<String, Map<String, Number>> entry : ((Map<String, Map<String, Number>>) dataPoint.value)
+				.entrySet()) {
+			for (Map.Entry<String, Number> stat : entry.getValue().entrySet()) {
+				statsDClient.gauge(dataPoint.name + "." + stat.getKey() + ",filterKey=" + entry.getKey(),
+						stat.getValue().doubleValue());
+			}
+		}
+	}
+
+}
@@ -102,6 +102,28 @@ public class JsonMetricProcessor implements IMetricsProcessor {
 						logger.log(Level.SEVERE, "Exception parsin/sending instrumentation metrics", e);
 					}
 				}
+			} else if (point.name.startsWith("hm")) {
+				for (Map.Entry<String, Map<String, Number>> entry : ((Map<String, Map<String, Number>>) point.value)
+						.entrySet()) {
+					try {
+						JsonObject histogram = new JsonObject();
+						histogram.addProperty("seriesName", point.name);
+						histogram.addProperty("name", point.name + "." + entry.getKey());
+						String[] split = entry.getKey().split(RulesEngineBolt.TENANTID_SEPARATOR);
+						if (split.length > 1) {
+							histogram.addProperty("ruleId", split[1]);
+							histogram.addProperty("tenantId", split[0]);
+						} else {
+							histogram.addProperty("ruleId", split[0]);
+						}
+						for (Map.Entry<String, Number> stat : entry.getValue().entrySet()) {
+							histogram.addProperty(stat.getKey(), stat.getValue());
+						}
+						messageSender.sendMessage(gson.toJson(histogram));
+					} catch (Exception e) {
+						logger.log(Level.SEVERE, "Exception parsin/sending instrumentation metrics", e);
+					}
+				}
 			} else {
 				if (point.value instanceof Number) {
 					obj.addProperty("seriesName", point.name);
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import backtype.storm.metric.api.IMetric;
+import io.symcpe.wraith.LatencyHistogram;
+import io.symcpe.wraith.rules.Rule;
+import io.symcpe.wraith.rules.RuleLatencyRecorder;
+import io.symcpe.wraith.rules.RuleSnapshot;
+import io.symcpe.wraith.rules.StatelessRulesEngine;
+
+/**
+ * Reports the sampled latency histograms of the rules currently published by
+ * a {@link StatelessRulesEngine} as a map of rule scope to count, mean, p50,
+ * p99 and p999 in nanoseconds. Rules without samples in the interval are
+ * skipped.
+ * 
+ * @author ambud_sharma
+ */
+public class RuleLatencyMetric implements IMetric {
+
+	public static final String COUNT = "count";
+	public static final String MEAN = "mean";
+	public static final String P50 = "p50";
+	public static final String P99 = "p99";
+	public static final String P999 = "p999";
+	private final StatelessRulesEngine<?, ?> rulesEngine;
+	private final boolean condition;
+
+	/**
+	 * @param rulesEngine
+	 * @param condition
+	 *            report condition latency instead of rule latency
+	 */
+	public RuleLatencyMetric(StatelessRulesEngine<?, ?> rulesEngine, boolean condition) {
+		this.rulesEngine = rulesEngine;
+		this.condition = condition;
+	}
+
+	@Override
+	public Object getValueAndReset() {
+		Map<String, Map<String, Number>> value = new HashMap<>();
+		RuleSnapshot snapshot = rulesEngine.getSnapshot();
+		if (snapshot == null) {
+			return value;
+		}
+		if (rulesEngine.isRuleGroupsActive()) {
+			for (Map<Short, Rule> rules : snapshot.getRuleGroupMap().values()) {
+				report(rules, value);
+			}
+		} else {
+			report(snapshot.getRuleMap(), value);
+		}
+		return value;
+	}
+
+	private void report(Map<Short, Rule> rules, Map<String, Map<String, Number>> value) {
+		for (Rule rule : rules.values()) {
+			RuleLatencyRecorder recorder = rule.getLatencyRecorder();
+			if (recorder == null) {
+				continue;
+			}
+			LatencyHistogram histogram = condition ? recorder.getConditionLatency() : recorder.getRuleLatency();
+			LatencyHistogram.Snapshot latency = histogram.snapshotAndReset();
+			if (latency.getCount() == 0) {
+				continue;
+			}
+			Map<String, Number> stats = new HashMap<>();
+			stats.put(COUNT, latency.getCount());
+			stats.put(MEAN, latency.getMean());
+			stats.put(P50, latency.getPercentile(50));
+			stats.put(P99, latency.getPercentile(99));
+			stats.put(P999, latency.getPercentile(99.9));
+			value.put(recorder.getScope(), stats);
+		}
+	}
+
+}
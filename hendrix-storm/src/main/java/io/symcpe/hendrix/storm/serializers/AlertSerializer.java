@@ -0,0 +1,56 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.symcpe.wraith.actions.alerts.Alert;
+
+/**
+ * Kryo serializer for {@link Alert}
+ * 
+ * @author ambud_sharma
+ */
+public class AlertSerializer extends Serializer<Alert> {
+
+	@Override
+	public void write(Kryo kryo, Output output, Alert alert) {
+		output.writeString(alert.getTarget());
+		output.writeString(alert.getSubject());
+		output.writeString(alert.getMedia());
+		output.writeString(alert.getBody());
+		output.writeString(alert.getRuleGroup());
+		output.writeShort(alert.getId());
+		output.writeLong(alert.getTimestamp(), true);
+	}
+
+	@Override
+	public Alert read(Kryo kryo, Input input, Class<Alert> type) {
+		Alert alert = new Alert();
+		alert.setTarget(input.readString());
+		alert.setSubject(input.readString());
+		alert.setMedia(input.readString());
+		alert.setBody(input.readString());
+		alert.setRuleGroup(input.readString());
+		alert.setId(input.readShort());
+		alert.setTimestamp(input.readLong(true));
+		return alert;
+	}
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.serializers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.HendrixEvent;
+import io.symcpe.hendrix.storm.UnifiedFactory;
+import io.symcpe.wraith.Event;
+
+/**
+ * Compact Kryo serializer for {@link HendrixEvent}.<br>
+ * <br>
+ * Header names found in the header dictionary are written as a varint id
+ * instead of a string. The dictionary is made of the well known Hendrix
+ * fields followed by the names listed in the
+ * {@link Constants#KRYO_HEADER_DICTIONARY} topology config, so every worker
+ * of a topology builds the same one. Long, int, short, double, boolean and
+ * String values are written with a one byte type tag, anything else falls
+ * back to Kryo's class and object encoding.
+ * 
+ * @author ambud_sharma
+ */
+public class HendrixEventSerializer extends Serializer<HendrixEvent> {
+
+	private static final String[] DEFAULT_HEADERS = new String[] { Constants.FIELD_TIMESTAMP,
+			Constants.FIELD_EVENT_ID, Constants.FIELD_RULE_ID, Constants.FIELD_RULE_NAME, Constants.FIELD_ACTION_ID,
+			Constants.FIELD_STATE_TRACK, Constants.FIELD_AGGREGATION_KEY, Constants.FIELD_AGGREGATION_TYPE,
+			Constants.FIELD_AGGREGATION_VALUE, Constants.FIELD_AGGREGATION_WINDOW, Constants.FIELD_RULE_ACTION_ID,
+			Constants.FIELD_RULE_GROUP, Constants.FIELD_ALERT_TARGET, Constants.FIELD_ALERT_MEDIA,
+			Constants.FIELD_ALERT_TEMPLATE_ID, Constants.FIELD_EVENT_TYPE, Event.HEADER_EVENT_TYPE,
+			Event.HEADER_EVENT_ERROR_TYPE, Event.HEADER_EVENT_ERROR_FIELD, Event.HEADER_EVENT_ERROR_VALUE,
+			"@timestamp", "tenant_id", "host", "message" };
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_LONG = 2;
+	private static final byte TYPE_INT = 3;
+	private static final byte TYPE_SHORT = 4;
+	private static final byte TYPE_DOUBLE = 5;
+	private static final byte TYPE_TRUE = 6;
+	private static final byte TYPE_FALSE = 7;
+	private static final byte TYPE_OBJECT = 8;
+	private final String[] headerNames;
+	private final Map<String, Integer> headerIds;
+	private final UnifiedFactory factory;
+
+	public HendrixEventSerializer() {
+		this(null);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public HendrixEventSerializer(Kryo kryo, Map conf) {
+		this(conf != null && conf.get(Constants.KRYO_HEADER_DICTIONARY) != null
+				? Arrays.asList(conf.get(Constants.KRYO_HEADER_DICTIONARY).toString().split(","))
+				: null);
+	}
+
+	/**
+	 * @param extraHeaders
+	 *            header names to add to the dictionary, may be null
+	 */
+	public HendrixEventSerializer(List<String> extraHeaders) {
+		List<String> names = new ArrayList<>(Arrays.asList(DEFAULT_HEADERS));
+		if (extraHeaders != null) {
+			for (String header : extraHeaders) {
+				header = header.trim();
+				if (!header.isEmpty() && !names.contains(header)) {
+					names.add(header);
+				}
+			}
+		}
+		headerNames = names.toArray(new String[names.size()]);
+		headerIds = new HashMap<>(headerNames.length * 2);
+		for (int i = 0; i < headerNames.length; i++) {
+			headerIds.put(headerNames[i], i);
+		}
+		factory = new UnifiedFactory();
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, HendrixEvent event) {
+		Map<String, Object> headers = event.getHeaders();
+		output.writeInt(headers.size(), true);
+		for (Entry<String, Object> entry : headers.entrySet()) {
+			Integer id = headerIds.get(entry.getKey());
+			if (id != null) {
+				output.writeInt(id + 1, true);
+			} else {
+				output.writeInt(0, true);
+				output.writeString(entry.getKey());
+			}
+			writeValue(kryo, output, entry.getValue());
+		}
+		byte[] body = event.getBody();
+		if (body == null) {
+			output.writeInt(0, true);
+		} else {
+			output.writeInt(body.length + 1, true);
+			output.writeBytes(body);
+		}
+	}
+
+	@Override
+	public HendrixEvent read(Kryo kryo, Input input, Class<HendrixEvent> type) {
+		HendrixEvent event = (HendrixEvent) factory.buildEvent();
+		Map<String, Object> headers = event.getHeaders();
+		int size = input.readInt(true);
+		for (int i = 0; i < size; i++) {
+			int id = input.readInt(true);
+			String name = id == 0 ? input.readString() : headerNames[id - 1];
+			Object value = readValue(kryo, input);
+			if (value != null) {
+				headers.put(name, value);
+			}
+		}
+		int bodyLength = input.readInt(true);
+		if (bodyLength > 0) {
+			event.setBody(input.readBytes(bodyLength - 1));
+		}
+		return event;
+	}
+
+	private static void writeValue(Kryo kryo, Output output, Object value) {
+		if (value == null) {
+			output.writeByte(TYPE_NULL);
+		} else if (value instanceof String) {
+			output.writeByte(TYPE_STRING);
+			output.writeString((String) value);
+		} else if (value instanceof Long) {
+			output.writeByte(TYPE_LONG);
+			output.writeLong((Long) value, false);
+		} else if (value instanceof Integer) {
+			output.writeByte(TYPE_INT);
+			output.writeInt((Integer) value, false);
+		} else if (value instanceof Short) {
+			output.writeByte(TYPE_SHORT);
+			output.writeShort((Short) value);
+		} else if (value instanceof Double) {
+			output.writeByte(TYPE_DOUBLE);
+			output.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			output.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+		} else {
+			output.writeByte(TYPE_OBJECT);
+			kryo.writeClassAndObject(output, value);
+		}
+	}
+
+	private static Object readValue(Kryo kryo, Input input) {
+		byte type = input.readByte();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_STRING:
+			return input.readString();
+		case TYPE_LONG:
+			return input.readLong(false);
+		case TYPE_INT:
+			return input.readInt(false);
+		case TYPE_SHORT:
+			return input.readShort();
+		case TYPE_DOUBLE:
+			return input.readDouble();
+		case TYPE_TRUE:
+			return Boolean.TRUE;
+		case TYPE_FALSE:
+			return Boolean.FALSE;
+		case TYPE_OBJECT:
+			return kryo.readClassAndObject(input);
+		default:
+			throw new IllegalStateException("Unknown header value type:" + type);
+		}
+	}
+
+	/**
+	 * @return the header dictionary
+	 */
+	public String[] getHeaderNames() {
+		return headerNames;
+	}
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.symcpe.wraith.rules.RuleCommand;
+
+/**
+ * Kryo serializer for {@link RuleCommand}
+ * 
+ * @author ambud_sharma
+ */
+public class RuleCommandSerializer extends Serializer<RuleCommand> {
+
+	@Override
+	public void write(Kryo kryo, Output output, RuleCommand command) {
+		output.writeString(command.getRuleGroup());
+		output.writeBoolean(command.isDelete());
+		output.writeString(command.getRuleContent());
+	}
+
+	@Override
+	public RuleCommand read(Kryo kryo, Input input, Class<RuleCommand> type) {
+		return new RuleCommand(input.readString(), input.readBoolean(), input.readString());
+	}
+
+}
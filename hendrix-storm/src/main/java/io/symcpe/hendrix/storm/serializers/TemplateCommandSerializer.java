@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.symcpe.wraith.actions.alerts.templated.TemplateCommand;
+
+/**
+ * Kryo serializer for {@link TemplateCommand}
+ * 
+ * @author ambud_sharma
+ */
+public class TemplateCommandSerializer extends Serializer<TemplateCommand> {
+
+	@Override
+	public void write(Kryo kryo, Output output, TemplateCommand command) {
+		output.writeString(command.getRuleGroup());
+		output.writeBoolean(command.isDelete());
+		output.writeString(command.getTemplate());
+	}
+
+	@Override
+	public TemplateCommand read(Kryo kryo, Input input, Class<TemplateCommand> type) {
+		return new TemplateCommand(input.readString(), input.readBoolean(), input.readString());
+	}
+
+}
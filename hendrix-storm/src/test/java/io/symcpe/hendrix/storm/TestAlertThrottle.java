@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import io.symcpe.hendrix.storm.AlertThrottle.Admission;
+import io.symcpe.wraith.actions.alerts.templated.AlertTemplate;
+import io.symcpe.wraith.actions.alerts.templated.ThrottleWindow;
+import io.symcpe.wraith.store.ThrottleStore;
+
+/**
+ * @author ambud_sharma
+ */
+public class TestAlertThrottle {
+
+	@Test
+	public void testThrottleWindow() {
+		AlertTemplate template = new AlertTemplate((short) 0, "t1", "t1@xyz.com", "mail", "t1", "hello t1", 3, 2);
+		AlertThrottle throttle = new AlertThrottle(100_000);
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 100_500));
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 100_600));
+		assertEquals(Admission.SUPPRESSION_STARTED, throttle.admit(template, 100_700));
+		assertEquals(Admission.SUPPRESSED, throttle.admit(template, 101_700));
+		// aligned end of 102 is less than a duration from the clock
+		assertEquals(103, throttle.getWindows().get((short) 0).getEnd());
+		assertTrue(throttle.tick(101_000).isEmpty());
+		assertTrue(throttle.tick(102_000).isEmpty());
+		assertEquals(Arrays.asList((short) 0), throttle.tick(103_000));
+		assertEquals(0, throttle.getCount((short) 0));
+		// alert ahead of the clock keeps its aligned end
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 107_100));
+		assertEquals(108, throttle.getWindows().get((short) 0).getEnd());
+		assertEquals(3, throttle.getTicks());
+	}
+
+	@Test
+	public void testLateAlerts() {
+		AlertTemplate template = new AlertTemplate((short) 0, "t1", "t1@xyz.com", "mail", "t1", "hello t1", 3, 1);
+		AlertThrottle throttle = new AlertThrottle(100_000);
+		// window of the alert has already ended, it's kept open for a duration
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 10_000));
+		assertEquals(Admission.SUPPRESSION_STARTED, throttle.admit(template, 10_000));
+		assertEquals(103, throttle.getWindows().get((short) 0).getEnd());
+		assertTrue(throttle.tick(100_000).isEmpty());
+		assertTrue(throttle.tick(102_000).isEmpty());
+		assertEquals(Arrays.asList((short) 0), throttle.tick(103_000));
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 10_000));
+	}
+
+	@Test
+	public void testLaggingAlerts() {
+		AlertTemplate template = new AlertTemplate((short) 0, "t1", "t1@xyz.com", "mail", "t1", "hello t1", 3, 1);
+		AlertThrottle throttle = new AlertThrottle(100_000);
+		int admitted = 0;
+		int released = 0;
+		// backlog of alerts 90s behind the clock, 5 a second for 9 seconds
+		for (int second = 0; second < 9; second++) {
+			for (int i = 0; i < 5; i++) {
+				if (throttle.admit(template, (10 + second) * 1000L + i) == Admission.ADMITTED) {
+					admitted++;
+				}
+			}
+			released += throttle.tick((101 + second) * 1000L).size();
+		}
+		// limit per duration of 3s, not per tick
+		assertEquals(3, admitted);
+		assertEquals(3, released);
+	}
+
+	@Test
+	public void testUnlimited() {
+		AlertTemplate template = new AlertTemplate((short) 0, "t1", "t1@xyz.com", "mail", "t1", "hello t1", 3, 0);
+		AlertThrottle throttle = new AlertThrottle(100_000);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Admission.ADMITTED, throttle.admit(template, 100_000));
+		}
+	}
+
+	@Test
+	public void testSnapshotRestore() {
+		AlertTemplate template = new AlertTemplate((short) 0, "t1", "t1@xyz.com", "mail", "t1", "hello t1", 60, 1);
+		MemoryThrottleStore store = new MemoryThrottleStore();
+		AlertThrottle throttle = new AlertThrottle(store, 2, 2, 120_000);
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 120_000));
+		assertEquals(Admission.SUPPRESSION_STARTED, throttle.admit(template, 120_000));
+		throttle.tick(121_000);
+		assertTrue(store.windows.isEmpty());
+		throttle.tick(122_000);
+		assertEquals(180, store.windows.get((short) 0).getEnd());
+		assertTrue(store.windows.get((short) 0).isSuppressed());
+
+		// restarted task keeps suppressing
+		throttle = new AlertThrottle(store, 2, 2, 130_000);
+		throttle.restore(store.retriveWindows(2));
+		assertEquals(Admission.SUPPRESSED, throttle.admit(template, 130_000));
+		assertTrue(throttle.tick(179_000).isEmpty());
+		assertEquals(Arrays.asList((short) 0), throttle.tick(180_000));
+		assertEquals(Admission.ADMITTED, throttle.admit(template, 180_000));
+	}
+
+	private static class MemoryThrottleStore implements ThrottleStore {
+
+		private Map<Short, ThrottleWindow> windows = new HashMap<>();
+
+		@Override
+		public void initialize(Map<String, String> conf) {
+		}
+
+		@Override
+		public void connect() throws IOException {
+		}
+
+		@Override
+		public void disconnect() throws IOException {
+		}
+
+		@Override
+		public void persistWindows(int taskId, Map<Short, ThrottleWindow> windows) throws IOException {
+			this.windows = new HashMap<>();
+			for (Entry<Short, ThrottleWindow> entry : windows.entrySet()) {
+				ThrottleWindow window = entry.getValue();
+				this.windows.put(entry.getKey(),
+						new ThrottleWindow(window.getEnd(), window.getCount(), window.isSuppressed()));
+			}
+		}
+
+		@Override
+		public Map<Short, ThrottleWindow> retriveWindows(int taskId) {
+			return new HashMap<>(windows);
+		}
+
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.task.WorkerTopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
+
+/**
+ * Tests for {@link RuleActionGrouping}
+ * 
+ * @author ambud_sharma
+ */
+public class TestRuleActionGrouping {
+
+	@Test
+	public void testTicksReachStateTasks() {
+		GlobalStreamId stateStream = new GlobalStreamId("aggregationClassifierBolt", Constants.STATE_STREAM_ID);
+		GlobalStreamId tickStream = new GlobalStreamId("aggregationController", Constants.TICK_STREAM_ID);
+		WorkerTopologyContext context = mock(WorkerTopologyContext.class);
+		when(context.getComponentOutputFields(stateStream))
+				.thenReturn(new Fields(Constants.FIELD_STATE_TRACK, Constants.FIELD_TIMESTAMP,
+						Constants.FIELD_AGGREGATION_WINDOW, Constants.FIELD_RULE_ACTION_ID,
+						Constants.FIELD_AGGREGATION_KEY));
+		when(context.getComponentOutputFields(tickStream)).thenReturn(new Fields(Constants.FIELD_RULE_ACTION_ID,
+				Constants.FIELD_AGGREGATION_WINDOW, Constants.FIELD_RULE_GROUP, Constants.FIELD_AGGREGATION_SLIDE));
+		List<Integer> targets = Arrays.asList(8, 2, 6, 4, 10);
+		RuleActionGrouping stateGrouping = new RuleActionGrouping(2);
+		stateGrouping.prepare(context, stateStream, targets);
+		RuleActionGrouping tickGrouping = new RuleActionGrouping(2);
+		tickGrouping.prepare(context, tickStream, targets);
+		Set<Integer> allTicked = new HashSet<>();
+		for (int rule = 0; rule < 50; rule++) {
+			String ruleActionId = Utils.combineRuleActionId((short) rule, (short) 0);
+			List<Integer> ticked = tickGrouping.chooseTasks(1, new Values(ruleActionId, 10, "test", 0));
+			assertEquals(2, ticked.size());
+			allTicked.addAll(ticked);
+			Set<Integer> stateTasks = new HashSet<>();
+			for (int key = 0; key < 20; key++) {
+				List<Integer> tasks = stateGrouping.chooseTasks(1,
+						new Values(true, 1L, 10, ruleActionId, "key" + key));
+				assertEquals(1, tasks.size());
+				stateTasks.addAll(tasks);
+			}
+			assertTrue(ticked.containsAll(stateTasks));
+		}
+		assertEquals(5, allTicked.size());
+	}
+
+	@Test
+	public void testSpreadAll() {
+		GlobalStreamId tickStream = new GlobalStreamId("aggregationController", Constants.TICK_STREAM_ID);
+		WorkerTopologyContext context = mock(WorkerTopologyContext.class);
+		when(context.getComponentOutputFields(tickStream)).thenReturn(new Fields(Constants.FIELD_RULE_ACTION_ID,
+				Constants.FIELD_AGGREGATION_WINDOW, Constants.FIELD_RULE_GROUP, Constants.FIELD_AGGREGATION_SLIDE));
+		RuleActionGrouping grouping = new RuleActionGrouping(0);
+		grouping.prepare(context, tickStream, Arrays.asList(1, 2, 3));
+		assertEquals(3, grouping.chooseTasks(1, new Values("2_0", 10, null, 0)).size());
+	}
+
+}
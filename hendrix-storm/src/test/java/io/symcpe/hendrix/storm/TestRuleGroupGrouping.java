@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import backtype.storm.tuple.Values;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.rules.TenantPartitioner;
+
+/**
+ * Tests for {@link RuleGroupGrouping}
+ * 
+ * @author ambud_sharma
+ */
+public class TestRuleGroupGrouping {
+
+	@Test
+	public void testRouteToOwner() {
+		RuleGroupGrouping grouping = new RuleGroupGrouping(16, "heavy:2");
+		grouping.prepare(null, null, Arrays.asList(7, 3, 5));
+		TenantPartitioner partitioner = new TenantPartitioner(3, 16, TenantPartitioner.parseSplits("heavy:2"));
+		List<Integer> sortedTasks = Arrays.asList(3, 5, 7);
+		UnifiedFactory factory = new UnifiedFactory();
+		for (int i = 0; i < 100; i++) {
+			Event event = factory.buildEvent();
+			event.getHeaders().put(Constants.FIELD_RULE_GROUP, "tenant" + i);
+			List<Integer> tasks = grouping.chooseTasks(1, new Values(event));
+			assertEquals(1, tasks.size());
+			assertEquals(sortedTasks.get(partitioner.owners("tenant" + i)[0]), tasks.get(0));
+		}
+		Event heavy = factory.buildEvent();
+		heavy.getHeaders().put(Constants.FIELD_RULE_GROUP, "heavy");
+		Set<Integer> heavyTasks = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			heavyTasks.addAll(grouping.chooseTasks(1, new Values(heavy)));
+		}
+		assertEquals(2, heavyTasks.size());
+		for (int owner : partitioner.owners("heavy")) {
+			assertTrue(heavyTasks.contains(sortedTasks.get(owner)));
+		}
+	}
+
+	@Test
+	public void testNoRuleGroup() {
+		RuleGroupGrouping grouping = new RuleGroupGrouping();
+		grouping.prepare(null, null, Arrays.asList(1, 2));
+		Event event = new UnifiedFactory().buildEvent();
+		Set<Integer> tasks = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			tasks.addAll(grouping.chooseTasks(1, new Values(event)));
+		}
+		assertEquals(2, tasks.size());
+	}
+
+}
@@ -17,13 +17,19 @@ package io.symcpe.hendrix.storm.bolts;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,6 +39,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import com.google.gson.Gson;
 
 import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 import io.symcpe.hendrix.storm.Constants;
@@ -89,7 +96,7 @@ public class TestAggregationControllerBolt {
 		assertEquals(2, bolt.getTickCounter());
 		verify(collector, times(1)).ack(tuple);
 		verify(collector, times(1)).emit(Constants.TICK_STREAM_ID, tuple,
-				new Values(Utils.combineRuleActionId((short) 2, (short) 0), 2, null));
+				new Values(Utils.combineRuleActionId((short) 2, (short) 0), 2, null, 0));
 	}
 
 	@Test
@@ -115,4 +122,97 @@ public class TestAggregationControllerBolt {
 		verify(collector, times(1)).ack(tuple);
 	}
 
+	@Test
+	public void testScheduledEmissions() {
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.RSTORE_TYPE, TopologyTestRulesStore.class.getName());
+		AggregationControllerBolt bolt = new AggregationControllerBolt();
+		SimpleRule rule = new SimpleRule((short) 2, "test", true, new EqualsCondition("test", "test"), new Action[] {
+				new StateAggregationAction((short) 0, "test", 3, new EqualsCondition("test", "test")) });
+		RuleCommand rc = new RuleCommand("test", false,
+				RuleSerializer.serializeRulesToJSONString(Arrays.asList(rule), false));
+		conf.put(TestAlertingEngineBolt.RULES_CONTENT, new Gson().toJson(new RuleCommand[] { rc }));
+		bolt.prepare(conf, null, collector);
+		assertEquals(1, bolt.getWheel().size());
+		when(tuple.getSourceComponent()).thenReturn(backtype.storm.Constants.SYSTEM_COMPONENT_ID);
+		when(tuple.getSourceStreamId()).thenReturn(backtype.storm.Constants.SYSTEM_TICK_STREAM_ID);
+		Values values = new Values(Utils.combineRuleActionId((short) 2, (short) 0), 3, null, 0);
+		for (int i = 0; i < 9; i++) {
+			bolt.execute(tuple);
+		}
+		assertEquals(10, bolt.getTickCounter());
+		// due at ticks 3, 6 and 9
+		verify(collector, times(3)).emit(Constants.TICK_STREAM_ID, tuple, values);
+
+		// rescheduled with the new window on update
+		rule = new SimpleRule((short) 2, "test", true, new EqualsCondition("test", "test"), new Action[] {
+				new StateAggregationAction((short) 0, "test", 15, new EqualsCondition("test", "test")) });
+		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, RuleSerializer.serializeRuleToJSONString(rule, false)));
+		assertEquals(1, bolt.getWheel().size());
+		Values updated = new Values(Utils.combineRuleActionId((short) 2, (short) 0), 15, null, 0);
+		for (int i = 0; i < 5; i++) {
+			bolt.execute(tuple);
+		}
+		verify(collector, times(3)).emit(Constants.TICK_STREAM_ID, tuple, values);
+		verify(collector, times(1)).emit(Constants.TICK_STREAM_ID, tuple, updated);
+
+		bolt.execute(MockTupleHelpers.mockRuleTuple(true, null, RuleSerializer.serializeRuleToJSONString(rule, false)));
+		assertEquals(0, bolt.getWheel().size());
+		for (int i = 0; i < 10; i++) {
+			bolt.execute(tuple);
+		}
+		verify(collector, times(1)).emit(Constants.TICK_STREAM_ID, tuple, updated);
+	}
+
+	@Test
+	public void testShardedControllers() {
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_GROUP_ACTIVE, "true");
+		conf.put(Constants.RSTORE_TYPE, TopologyTestRulesStore.class.getName());
+		List<RuleCommand> commands = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			commands.add(new RuleCommand("tenant" + i, false, RuleSerializer.serializeRulesToJSONString(
+					Arrays.asList(new SimpleRule((short) 2, "test", true, new EqualsCondition("test", "test"),
+							new Action[] { new StateAggregationAction((short) 0, "test", 2,
+									new EqualsCondition("test", "test")) })),
+					false)));
+		}
+		conf.put(TestAlertingEngineBolt.RULES_CONTENT, new Gson().toJson(commands));
+		Set<String> ruleGroups = new HashSet<>();
+		int total = 0;
+		for (int index = 0; index < 2; index++) {
+			TopologyContext context = mock(TopologyContext.class);
+			when(context.getThisComponentId()).thenReturn("aggregationController");
+			when(context.getComponentTasks("aggregationController")).thenReturn(Arrays.asList(3, 4));
+			when(context.getThisTaskIndex()).thenReturn(index);
+			AggregationControllerBolt bolt = new AggregationControllerBolt();
+			OutputCollector collector = mock(OutputCollector.class);
+			bolt.prepare(conf, context, collector);
+			assertTrue(bolt.getRuleGroupMap().size() > 0);
+			ruleGroups.addAll(bolt.getRuleGroupMap().keySet());
+			total += bolt.getRuleGroupMap().size();
+			assertEquals(bolt.getRuleGroupMap().size(), bolt.getWheel().size());
+
+			// updates of rule groups owned by the other task are ignored
+			String foreign = null;
+			for (int i = 0; i < 20; i++) {
+				if (!bolt.getRuleGroupMap().containsKey("tenant" + i)) {
+					foreign = "tenant" + i;
+					break;
+				}
+			}
+			Tuple update = MockTupleHelpers.mockRuleTuple(false, foreign,
+					RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 3, "test", true,
+							new EqualsCondition("test", "test"), new Action[] { new StateAggregationAction(
+									(short) 0, "test", 20, new EqualsCondition("test", "test")) }),
+							false));
+			bolt.execute(update);
+			assertTrue(!bolt.getRuleGroupMap().containsKey(foreign));
+			verify(collector, never()).emit(Constants.TICK_STREAM_ID, update,
+					new Values(Utils.combineRuleActionId((short) 3, (short) 0), 20, foreign, 0));
+		}
+		assertEquals(20, total);
+		assertEquals(20, ruleGroups.size());
+	}
+
 }
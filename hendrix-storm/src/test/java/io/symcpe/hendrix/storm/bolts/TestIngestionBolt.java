@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.bolts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import backtype.storm.task.OutputCollector;
+import backtype.storm.topology.base.BaseRichBolt;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.MockTupleHelpers;
+import io.symcpe.wraith.Event;
+
+/**
+ * Tests for {@link IngestionBolt}
+ * 
+ * @author ambud_sharma
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TestIngestionBolt {
+
+	private static final String[] EVENTS = new String[] {
+			"{\"@timestamp\":\"2016-04-21T20:54:41.103Z\",\"tenant_id\":\"asdas\",\"host\":\"test1\",\"value\":5}",
+			"{\"@timestamp\":\"2016-04-21T20:54:42.000Z\",\"tenant_id\":\"asdas\",\"ok\":true,"
+					+ "\"tags\":[\"a\",2],\"nested\":{\"x\":1.5,\"y\":\"z\"}}" };
+
+	@Mock
+	private Tuple input;
+
+	@Test
+	public void testMatchesInterceptionAndTranslation() {
+		for (String line : EVENTS) {
+			Event fused = (Event) execute(new IngestionBolt(), line).get(0);
+			String intercepted = execute(new InterceptionBolt(), line).get(0).toString();
+			Event translated = (Event) execute(new JSONTranslatorBolt(), intercepted).get(0);
+			assertEquals(translated.getHeaders(), fused.getHeaders());
+		}
+		Event event = (Event) execute(new IngestionBolt(), EVENTS[1]).get(0);
+		assertEquals(1461272082000L, event.getHeaders().get(Constants.FIELD_TIMESTAMP));
+		assertTrue(event.getHeaders().get("@timestamp") instanceof Double);
+		assertEquals("asdas", event.getHeaders().get(Constants.FIELD_RULE_GROUP));
+		assertEquals(Arrays.asList("a", 2.0), event.getHeaders().get("tags"));
+		assertEquals(1.5, ((Map<?, ?>) event.getHeaders().get("nested")).get("x"));
+		assertEquals(true, event.getHeaders().get("ok"));
+	}
+
+	@Test
+	public void testInvalidEvents() {
+		for (String line : new String[] { "{\"@timestamp\":\"2016-04-21T20:54:41.103Z\"", "[1,2]",
+				"{\"host\":\"test1\"}", "{\"@timestamp\":\"notadate\"}" }) {
+			IngestionBolt bolt = new IngestionBolt();
+			OutputCollector collector = MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable {
+					return new ArrayList<>();
+				}
+			});
+			bolt.prepare(new HashMap<>(), null, collector);
+			assertNotNull(bolt.getInterceptor());
+			when(input.getString(0)).thenReturn(line);
+			bolt.execute(input);
+			verify(collector, times(1)).emit(eq(Constants.ERROR_STREAM), eq(input), any());
+			verify(collector, times(1)).ack(input);
+		}
+	}
+
+	private Values execute(BaseRichBolt bolt, String line) {
+		final AtomicReference<Values> processedEventContainer = new AtomicReference<Values>(null);
+		bolt.prepare(new HashMap<>(), null, MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				processedEventContainer.set((Values) invocation.getArguments()[1]);
+				return new ArrayList<>();
+			}
+		}));
+		when(input.getString(0)).thenReturn(line);
+		bolt.execute(input);
+		assertNotNull(processedEventContainer.get());
+		return processedEventContainer.get();
+	}
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.bolts;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.MockTupleHelpers;
+import io.symcpe.hendrix.storm.UnifiedFactory;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.Utils;
+import io.symcpe.wraith.actions.aggregations.CoarseCountingAggregationAction;
+import io.symcpe.wraith.actions.aggregations.PercentileAggregationAction;
+import io.symcpe.wraith.aggregators.Aggregator;
+import io.symcpe.wraith.aggregators.CoarseCountingAggregator;
+import io.symcpe.wraith.aggregators.TDigestAggregator;
+import io.symcpe.wraith.conditions.relational.ExistsCondition;
+import io.symcpe.wraith.rules.Rule;
+import io.symcpe.wraith.rules.RuleSerializer;
+import io.symcpe.wraith.rules.SimpleRule;
+import io.symcpe.wraith.rules.validator.RuleValidator;
+
+/**
+ * Unit tests for {@link MarkovianAggregationBolt}
+ * 
+ * @author ambud_sharma
+ */
+public class TestMarkovianAggregationBolt {
+
+	@Test
+	public void testSketchRuleAggregation() throws Exception {
+		Rule rule = new SimpleRule((short) 21, "latency", true, new ExistsCondition("host"),
+				new PercentileAggregationAction((short) 0, "host", "latency", 10));
+		RuleValidator.getInstance().validate(rule);
+		String ruleActionId = Utils.combineRuleActionId((short) 21, (short) 0);
+
+		// rules engine emits the values to aggregate
+		final List<Values> aggregations = new ArrayList<>();
+		OutputCollector engineCollector = MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				if (Constants.AGGREGATION_STREAM_ID.equals(invocation.getArguments()[0])) {
+					aggregations.add((Values) invocation.getArguments()[2]);
+				}
+				return new ArrayList<>();
+			}
+		});
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.RSTORE_TYPE, TestStore.class.getCanonicalName());
+		RulesEngineBolt engineBolt = new RulesEngineBolt();
+		engineBolt.prepare(conf, null, engineCollector);
+		engineBolt.execute(
+				MockTupleHelpers.mockRuleTuple(false, null, RuleSerializer.serializeRuleToJSONString(rule, false)));
+		UnifiedFactory factory = new UnifiedFactory();
+		for (int i = 1; i <= 100; i++) {
+			Event event = factory.buildEvent();
+			event.getHeaders().put("host", "host1");
+			event.getHeaders().put("latency", i);
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, 1464038054645L);
+			engineBolt.execute(MockTupleHelpers.mockEventTuple(event));
+		}
+		assertEquals(100, aggregations.size());
+
+		// aggregation bolt consumes them as emitted
+		final List<Values> emits = new ArrayList<>();
+		OutputCollector collector = MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				if (Constants.AGGREGATION_OUTPUT_STREAM.equals(invocation.getArguments()[0])) {
+					emits.add((Values) invocation.getArguments()[2]);
+				}
+				return new ArrayList<>();
+			}
+		});
+		TopologyContext context = mock(TopologyContext.class);
+		MarkovianAggregationBolt bolt = new MarkovianAggregationBolt(TDigestAggregator.class.getName());
+		bolt.prepare(new HashMap<>(), context, collector);
+		for (Values values : aggregations) {
+			bolt.execute(aggregationTuple(values));
+		}
+		Tuple tick = tickTuple(ruleActionId, 10, 0);
+		// 10s jitter tolerance and the window itself before the bucket emits
+		for (int i = 0; i < 3; i++) {
+			bolt.execute(tick);
+		}
+		verify(collector, times(3)).ack(tick);
+		assertEquals(1, emits.size());
+		Event aggregate = (Event) emits.get(0).get(0);
+		assertEquals((short) 21, aggregate.getHeaders().get(Constants.FIELD_RULE_ID));
+		assertEquals(99.0, (Double) aggregate.getHeaders().get(Constants.FIELD_AGGREGATION_VALUE), 1.0);
+		bolt.cleanup();
+	}
+
+	@Test
+	public void testSlidingEmitFailure() {
+		String ruleActionId = Utils.combineRuleActionId((short) 22, (short) 0);
+		OutputCollector collector = MockTupleHelpers.mockBasicCollector();
+		MarkovianAggregationBolt bolt = new MarkovianAggregationBolt(TDigestAggregator.class.getName());
+		bolt.prepare(new HashMap<>(), mock(TopologyContext.class), collector);
+		// two panes of a 10s window sliding every 5s
+		bolt.execute(aggregationTuple(new Values(1464038050000L, 5, ruleActionId, "host1", 1.0)));
+		bolt.execute(aggregationTuple(new Values(1464038055000L, 5, ruleActionId, "host1", 2.0)));
+		Tuple tick = tickTuple(ruleActionId, 10, 5);
+		for (int i = 0; i < 6; i++) {
+			bolt.execute(tick);
+		}
+		// t-digests can't be merged into a window, the tick is failed instead
+		// of the window silently disappearing
+		verify(collector, atLeastOnce()).emit(eq(Constants.ERROR_STREAM), eq(tick), any(Values.class));
+		verify(collector, atLeastOnce()).fail(tick);
+		bolt.cleanup();
+	}
+
+	@Test
+	public void testTemplatesAfterRestart() {
+		Rule rule = new SimpleRule((short) 23, "users", true, new ExistsCondition("host"),
+				new CoarseCountingAggregationAction((short) 0, "host", "user", 10, 14));
+		String ruleActionId = Utils.combineRuleActionId((short) 23, (short) 0);
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.RSTORE_TYPE, TestStore.class.getName());
+		conf.put(TestAlertingEngineBolt.RULES_CONTENT,
+				RuleSerializer.serializeRulesToJSONString(Arrays.asList(rule), false));
+		// a restarted worker doesn't get rule sync tuples for existing rules
+		MarkovianAggregationBolt bolt = new MarkovianAggregationBolt(CoarseCountingAggregator.class.getName());
+		bolt.prepare(conf, mock(TopologyContext.class), MockTupleHelpers.mockBasicCollector());
+		bolt.execute(aggregationTuple(new Values(1464038050000L, 10, ruleActionId, "host1", "user1")));
+		List<Aggregator> aggregators = bolt.getStateTrackingEngine().getAggregationMap().values();
+		assertEquals(1, aggregators.size());
+		assertEquals(14, ((CoarseCountingAggregator) aggregators.get(0)).getPrecision());
+		bolt.cleanup();
+	}
+
+	private static Tuple aggregationTuple(Values values) {
+		Tuple tuple = mock(Tuple.class);
+		when(tuple.getSourceStreamId()).thenReturn(Constants.AGGREGATION_STREAM_ID);
+		when(tuple.getLongByField(Constants.FIELD_TIMESTAMP)).thenReturn((Long) values.get(0));
+		when(tuple.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW)).thenReturn((Integer) values.get(1));
+		when(tuple.getStringByField(Constants.FIELD_RULE_ACTION_ID)).thenReturn((String) values.get(2));
+		when(tuple.getStringByField(Constants.FIELD_AGGREGATION_KEY)).thenReturn((String) values.get(3));
+		when(tuple.getValueByField(Constants.FIELD_AGGREGATION_VALUE)).thenReturn(values.get(4));
+		return tuple;
+	}
+
+	private static Tuple tickTuple(String ruleActionId, int window, int slide) {
+		Tuple tick = mock(Tuple.class);
+		when(tick.getSourceStreamId()).thenReturn(Constants.TICK_STREAM_ID);
+		when(tick.getStringByField(Constants.FIELD_RULE_ACTION_ID)).thenReturn(ruleActionId);
+		when(tick.getStringByField(Constants.FIELD_RULE_GROUP)).thenReturn("test");
+		when(tick.getIntegerByField(Constants.FIELD_AGGREGATION_WINDOW)).thenReturn(window);
+		when(tick.getIntegerByField(Constants.FIELD_AGGREGATION_SLIDE)).thenReturn(slide);
+		return tick;
+	}
+
+}
@@ -16,7 +16,9 @@
 package io.symcpe.hendrix.storm.bolts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -38,9 +40,13 @@ import backtype.storm.tuple.Values;
 import io.symcpe.hendrix.storm.HendrixEvent;
 import io.symcpe.hendrix.storm.MockTupleHelpers;
 import io.symcpe.hendrix.storm.TestUtils;
+import io.symcpe.hendrix.storm.UnifiedFactory;
+import io.symcpe.hendrix.storm.Utils;
+import io.symcpe.hendrix.storm.metrics.RuleLatencyMetric;
 import io.symcpe.wraith.Constants;
 import io.symcpe.wraith.Event;
 import io.symcpe.wraith.actions.Action;
+import io.symcpe.wraith.actions.aggregations.StateAggregationAction;
 import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
 import io.symcpe.wraith.conditions.Condition;
 import io.symcpe.wraith.conditions.relational.ExistsCondition;
@@ -92,7 +98,9 @@ public class TestRulesEngineBolt {
 		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, ruleString));
 		Map<Short, Rule> rules = bolt.getRulesEngine().getRuleMap();
 		bolt.execute(MockTupleHelpers.mockRuleTuple(true, null, ruleString));
-		assertEquals(0, rules.size());
+		// published rule maps are immutable snapshots
+		assertEquals(1, rules.size());
+		assertEquals(0, bolt.getRulesEngine().getRuleMap().size());
 	}
 
 	@Test
@@ -132,4 +140,185 @@ public class TestRulesEngineBolt {
 		}
 	}
 
+	@Test
+	public void testBatchedRuleExecution() throws IOException, InterruptedException {
+		stormConf.put(io.symcpe.hendrix.storm.Constants.RULES_BATCH_LATENCY, "50");
+		String ruleString = RuleSerializer.serializeRuleToJSONString(testRule, false);
+		// tick tuples are only requested when batching
+		assertFalse(new RulesEngineBolt().getComponentConfiguration()
+				.containsKey(backtype.storm.Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+		RulesEngineBolt bolt = new RulesEngineBolt().withBatchSize(3);
+		assertEquals(1, bolt.getComponentConfiguration().get(backtype.storm.Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+		final List<Values> emits = new ArrayList<>();
+		OutputCollector mockCollector = MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				emits.add((Values) invocation.getArguments()[2]);
+				return new ArrayList<>();
+			}
+		});
+		bolt.prepare(stormConf, null, mockCollector);
+		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, ruleString));
+		List<Tuple> inputs = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Event testEvent = new UnifiedFactory().buildEvent();
+			testEvent.getHeaders().put("host", "host" + i);
+			testEvent.getHeaders().put(Constants.FIELD_TIMESTAMP, (long) i);
+			inputs.add(MockTupleHelpers.mockEventTuple(testEvent));
+		}
+		bolt.execute(inputs.get(0));
+		bolt.execute(inputs.get(1));
+		assertEquals(0, emits.size());
+		assertEquals(2, bolt.getBatchedTupleCount());
+		verify(mockCollector, never()).ack(inputs.get(0));
+		// full batch
+		bolt.execute(inputs.get(2));
+		assertEquals(3, emits.size());
+		assertEquals(0, bolt.getBatchedTupleCount());
+		for (int i = 0; i < 3; i++) {
+			verify(mockCollector, times(1)).ack(inputs.get(i));
+		}
+		// tick before the latency bound keeps the batch
+		bolt.execute(inputs.get(3));
+		Tuple tick = MockTupleHelpers.mockTuple(backtype.storm.Constants.SYSTEM_COMPONENT_ID,
+				backtype.storm.Constants.SYSTEM_TICK_STREAM_ID, null);
+		bolt.execute(tick);
+		assertEquals(1, bolt.getBatchedTupleCount());
+		Thread.sleep(60);
+		bolt.execute(tick);
+		assertEquals(0, bolt.getBatchedTupleCount());
+		assertEquals(4, emits.size());
+		verify(mockCollector, times(1)).ack(inputs.get(3));
+		// rule update flushes pending events with the old rules
+		bolt.execute(inputs.get(4));
+		bolt.execute(MockTupleHelpers.mockRuleTuple(true, null, ruleString));
+		assertEquals(5, emits.size());
+		verify(mockCollector, times(1)).ack(inputs.get(4));
+		assertEquals(0, bolt.getRulesEngine().getRuleMap().size());
+	}
+
+	@Test
+	public void testDirectStateStream() {
+		Rule rule = new SimpleRule((short) 12, "state", true, new ExistsCondition("host"),
+				new StateAggregationAction((short) 0, "host", 20, new ExistsCondition("host")));
+		RulesEngineBolt bolt = new RulesEngineBolt();
+		OutputCollector collector = MockTupleHelpers.mockBasicCollector();
+		bolt.prepare(stormConf, null, collector);
+		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, RuleSerializer.serializeRuleToJSONString(rule, false)));
+		Event event = new UnifiedFactory().buildEvent();
+		event.getHeaders().put("host", "host1");
+		event.getHeaders().put(Constants.FIELD_TIMESTAMP, 1000L);
+		Tuple input = MockTupleHelpers.mockEventTuple(event);
+		bolt.execute(input);
+		// same fields as the AggregationClassifierBolt state stream so the
+		// state tracker can subscribe to either
+		verify(collector, times(1)).emit(io.symcpe.hendrix.storm.Constants.STATE_STREAM_ID, input,
+				new Values(true, 1000L, 20, Utils.combineRuleActionId((short) 12, (short) 0), "host1"));
+		verify(collector, times(1)).ack(input);
+	}
+
+	@Test
+	public void testEmittedEventCopy() {
+		Rule rule = new SimpleRule((short) 12, "alertAndState", true, new ExistsCondition("host"),
+				new TemplatedAlertAction((short) 0, (short) 1),
+				new StateAggregationAction((short) 1, "host", 20, new ExistsCondition("host")));
+		final AtomicReference<Values> alert = new AtomicReference<Values>(null);
+		OutputCollector collector = MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				if (invocation.getArguments()[0].equals(io.symcpe.hendrix.storm.Constants.ALERT_STREAM_ID)) {
+					alert.set((Values) invocation.getArguments()[2]);
+				}
+				return new ArrayList<>();
+			}
+		});
+		RulesEngineBolt bolt = new RulesEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, RuleSerializer.serializeRuleToJSONString(rule, false)));
+		Event event = new UnifiedFactory().buildEvent();
+		event.getHeaders().put("host", "host1");
+		event.getHeaders().put(Constants.FIELD_TIMESTAMP, 1000L);
+		bolt.execute(MockTupleHelpers.mockEventTuple(event));
+		// the state action writes the input event after the alert is emitted,
+		// the emitted event may already be read by a downstream executor
+		Event emitted = (Event) alert.get().get(0);
+		assertTrue(emitted != event);
+		assertTrue(event.getHeaders().containsKey(Constants.FIELD_STATE_TRACK));
+		assertFalse(emitted.getHeaders().containsKey(Constants.FIELD_STATE_TRACK));
+		assertEquals((short) 1, emitted.getHeaders().get(Constants.FIELD_ALERT_TEMPLATE_ID));
+		assertEquals("host1", emitted.getHeaders().get("host"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testRuleLatencyMetric() {
+		String ruleString = RuleSerializer.serializeRuleToJSONString(testRule, false);
+		RulesEngineBolt bolt = new RulesEngineBolt();
+		bolt.prepare(stormConf, null, MockTupleHelpers.mockBasicCollector());
+		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, ruleString));
+		UnifiedFactory factory = new UnifiedFactory();
+		for (int i = 0; i < 100; i++) {
+			Event event = factory.buildEvent();
+			event.getHeaders().put("host", "host" + i);
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, (long) i);
+			bolt.execute(MockTupleHelpers.mockEventTuple(event));
+		}
+		RuleLatencyMetric metric = new RuleLatencyMetric(bolt.getRulesEngine(), false);
+		Map<String, Map<String, Number>> value = (Map<String, Map<String, Number>>) metric.getValueAndReset();
+		assertEquals(1, value.size());
+		Map<String, Number> stats = value.get("1233");
+		assertEquals(100L, stats.get(RuleLatencyMetric.COUNT));
+		assertTrue(stats.get(RuleLatencyMetric.P50).longValue() <= stats.get(RuleLatencyMetric.P99).longValue());
+		assertTrue(stats.get(RuleLatencyMetric.P99).longValue() <= stats.get(RuleLatencyMetric.P999).longValue());
+		assertTrue(((Map<String, Map<String, Number>>) metric.getValueAndReset()).isEmpty());
+	}
+
+	@Test
+	public void testParallelRuleExecution() {
+		stormConf.put(io.symcpe.hendrix.storm.Constants.RULES_PARALLELISM, "4");
+		stormConf.put(io.symcpe.hendrix.storm.Constants.RULES_BATCH_SIZE, "10");
+		String ruleString = RuleSerializer.serializeRuleToJSONString(testRule, false);
+		RulesEngineBolt bolt = new RulesEngineBolt();
+		final List<Values> emits = new ArrayList<>();
+		final List<Thread> threads = new ArrayList<>();
+		OutputCollector mockCollector = MockTupleHelpers.mockCollector(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				emits.add((Values) invocation.getArguments()[2]);
+				threads.add(Thread.currentThread());
+				return new ArrayList<>();
+			}
+		});
+		bolt.prepare(stormConf, null, mockCollector);
+		bolt.execute(MockTupleHelpers.mockRuleTuple(false, null, ruleString));
+		List<Tuple> inputs = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Event testEvent = new UnifiedFactory().buildEvent();
+			if (i != 3) {
+				testEvent.getHeaders().put("host", "host" + i);
+			}
+			testEvent.getHeaders().put(Constants.FIELD_TIMESTAMP, (long) i);
+			Tuple input = MockTupleHelpers.mockEventTuple(testEvent);
+			inputs.add(input);
+			bolt.execute(input);
+		}
+		// emits are replayed on the executor thread in input order
+		assertEquals(9, emits.size());
+		long previous = -1;
+		for (int i = 0; i < emits.size(); i++) {
+			long timestamp = (Long) emits.get(i).get(6);
+			assertTrue(timestamp > previous);
+			assertTrue(timestamp != 3);
+			previous = timestamp;
+			assertEquals(Thread.currentThread(), threads.get(i));
+		}
+		for (Tuple input : inputs) {
+			verify(mockCollector, times(1)).ack(input);
+		}
+		bolt.cleanup();
+	}
+
 }
@@ -77,6 +77,23 @@ public class TestStateTrackingBolt {
 		bolt.cleanup();
 	}
 
+	@Test
+	public void testFlushTimeoutBound() {
+		StateTrackingBolt bolt = new StateTrackingBolt();
+		Map<String, Object> conf = new HashMap<>();
+		conf.put(backtype.storm.Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS, 20);
+		bolt.prepare(conf, contex, mockCollector);
+		// buffered tuples are acked by the classifier, flush timeout is kept
+		assertEquals(30, bolt.getFlushTimeout());
+		bolt.cleanup();
+
+		conf.put(Constants.AGGREGATION_STATE_SOURCE, Constants.RULE_ENGINE_COMPONENT);
+		bolt = new StateTrackingBolt();
+		bolt.prepare(conf, contex, mockCollector);
+		assertEquals(10, bolt.getFlushTimeout());
+		bolt.cleanup();
+	}
+
 	@Test
 	public void testTrackStateEmit() {
 		StateTrackingBolt bolt = new StateTrackingBolt();
@@ -15,7 +15,17 @@
  */
 package io.symcpe.hendrix.storm.bolts;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -41,6 +51,7 @@ import backtype.storm.tuple.Values;
 import io.symcpe.hendrix.storm.Constants;
 import io.symcpe.hendrix.storm.MockTupleHelpers;
 import io.symcpe.hendrix.storm.TestUtils;
+import io.symcpe.wraith.Event;
 import io.symcpe.wraith.actions.alerts.Alert;
 import io.symcpe.wraith.actions.alerts.templated.AlertTemplate;
 import io.symcpe.wraith.actions.alerts.templated.AlertTemplateSerializer;
@@ -84,6 +95,7 @@ public class TestTemplatedAlertingEngineBolt {
 	@Test
 	public void testAlertExecution() {
 		TemplatedAlertingEngineBolt bolt = new TemplatedAlertingEngineBolt();
+		when(input.getSourceComponent()).thenReturn(Constants.RULE_ENGINE_COMPONENT);
 		when(input.getSourceStreamId()).thenReturn(Constants.EVENT_STREAM_ID);
 		int hostCounter = 0;
 		for (String event : events) {
@@ -117,4 +129,116 @@ public class TestTemplatedAlertingEngineBolt {
 		assertEquals(4, hostCounter);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testReferencedFields() {
+		TemplatedAlertingEngineBolt bolt = new TemplatedAlertingEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		assertArrayEquals(new String[] { "host" }, bolt.getTemplateMap().get((short) 0).getReferencedFields());
+		assertArrayEquals(new String[0], bolt.getTemplateMap().get((short) 1).getReferencedFields());
+		bolt.updateTemplate("test", AlertTemplateSerializer.serialize(new AlertTemplate((short) 2, "t3", "t3@xyz.com",
+				"mail", "$message on $date.get('yyyy')", "#parse('x.vm') $host", 5, 2), false), false);
+		assertNull(bolt.getTemplateMap().get((short) 2).getReferencedFields());
+		bolt.updateTemplate("test", AlertTemplateSerializer.serialize(new AlertTemplate((short) 2, "t3", "t3@xyz.com",
+				"mail", "$message on $date.get('yyyy')", "$host.length()", 5, 2), false), false);
+		assertArrayEquals(new String[] { "host", "message" },
+				bolt.getTemplateMap().get((short) 2).getReferencedFields());
+	}
+
+	@Test
+	public void testRenderCache() throws IOException {
+		TemplatedAlertingEngineBolt bolt = new TemplatedAlertingEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		Event event = TestUtils.stringToEvent(events.get(0));
+		Alert first = bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 0, 1L);
+		Alert second = bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 0, 2L);
+		assertEquals("test1 t1", first.getBody());
+		assertSame(first.getBody(), second.getBody());
+		assertEquals(2L, second.getTimestamp());
+		Alert other = bolt.materialize(TestUtils.stringToEvent(events.get(1)), (short) 1, (short) 0, "hello",
+				(short) 0, 3L);
+		assertEquals("test2 t1", other.getBody());
+
+		bolt.updateTemplate("test", AlertTemplateSerializer.serialize(new AlertTemplate((short) 0, "t1", "t1@xyz.com",
+				"mail", "t1", "$host changed", 5, 2), false), false);
+		assertEquals("test1 changed",
+				bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 0, 4L).getBody());
+
+		stormConf.put(Constants.TEMPLATE_CACHE_TTL, "0");
+		bolt = new TemplatedAlertingEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		first = bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 0, 1L);
+		second = bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 0, 2L);
+		assertEquals(first.getBody(), second.getBody());
+		assertNotSame(first.getBody(), second.getBody());
+	}
+
+	@Test
+	public void testSetDoesNotModifyEvent() throws IOException {
+		TemplatedAlertingEngineBolt bolt = new TemplatedAlertingEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		bolt.updateTemplate("test", AlertTemplateSerializer.serialize(new AlertTemplate((short) 2, "t3", "t3@xyz.com",
+				"mail", null, "#set($level = 'high')$level $host", 5, 2), false), false);
+		Event event = TestUtils.stringToEvent(events.get(0));
+		Alert alert = bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 2, 1L);
+		assertEquals("high test1", alert.getBody());
+		assertEquals("hello", alert.getSubject());
+		assertFalse(event.getHeaders().containsKey("level"));
+		alert = bolt.materialize(TestUtils.stringToEvent(events.get(1)), (short) 1, (short) 0, "hello", (short) 2,
+				2L);
+		assertEquals("high test2", alert.getBody());
+	}
+
+	@Test
+	public void testDateHeader() throws IOException {
+		TemplatedAlertingEngineBolt bolt = new TemplatedAlertingEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		bolt.updateTemplate("test", AlertTemplateSerializer.serialize(new AlertTemplate((short) 2, "t3", "t3@xyz.com",
+				"mail", null, "$date.get('yyyy') $host", 5, 2), false), false);
+		Event event = TestUtils.stringToEvent(events.get(0));
+		event.getHeaders().put("date", "yesterday");
+		Alert alert = bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 2, 1L);
+		// the date tool isn't hidden by a header of the same name
+		assertTrue(alert.getBody(), alert.getBody().matches("\\d{4} test1"));
+		event.getHeaders().put("date", "today");
+		assertEquals(alert.getBody(), bolt.materialize(event, (short) 1, (short) 0, "hello", (short) 2, 2L).getBody());
+	}
+
+	@Test
+	public void testThrottleBeforeRender() throws IOException {
+		stormConf.put(Constants.ALERT_THROTTLE_EARLY, "true");
+		TemplatedAlertingEngineBolt bolt = new TemplatedAlertingEngineBolt();
+		bolt.prepare(stormConf, null, collector);
+		when(input.getSourceComponent()).thenReturn(Constants.RULE_ENGINE_COMPONENT);
+		when(input.getSourceStreamId()).thenReturn(Constants.ALERT_STREAM_ID);
+		when(input.getValueByField(Constants.FIELD_EVENT)).thenReturn(TestUtils.stringToEvent(events.get(0)));
+		when(input.getShortByField(Constants.FIELD_RULE_ID)).thenReturn((short) 1123);
+		when(input.getStringByField(Constants.FIELD_RULE_NAME)).thenReturn("hello");
+		when(input.getLongByField(Constants.FIELD_TIMESTAMP)).thenReturn(1L);
+		when(input.getShortByField(Constants.FIELD_ALERT_TEMPLATE_ID)).thenReturn((short) 1);
+		when(input.getShortByField(Constants.FIELD_ACTION_ID)).thenReturn((short) 0);
+		for (int i = 0; i < 3; i++) {
+			bolt.execute(input);
+		}
+		verify(collector, times(1)).emit(eq(Constants.ALERT_STREAM_ID), eq(input), any());
+		verify(collector, times(1)).emit(Constants.SUP_MON_STREAM, input, new Values((short) 1, true));
+		verify(collector, times(3)).ack(input);
+		assertEquals(3, bolt.getThrottle().getCount((short) 1));
+
+		when(input.getSourceComponent()).thenReturn(backtype.storm.Constants.SYSTEM_COMPONENT_ID);
+		when(input.getSourceStreamId()).thenReturn(backtype.storm.Constants.SYSTEM_TICK_STREAM_ID);
+		// late alerts keep the window open for the 10s throttle duration
+		for (int i = 0; i < 9; i++) {
+			bolt.execute(input);
+		}
+		verify(collector, times(0)).emit(Constants.SUP_MON_STREAM, input, new Values((short) 1, false));
+		bolt.execute(input);
+		verify(collector, times(1)).emit(Constants.SUP_MON_STREAM, input, new Values((short) 1, false));
+		assertEquals(0, bolt.getThrottle().getCount((short) 1));
+
+		when(input.getSourceComponent()).thenReturn(Constants.RULE_ENGINE_COMPONENT);
+		when(input.getSourceStreamId()).thenReturn(Constants.ALERT_STREAM_ID);
+		bolt.execute(input);
+		verify(collector, times(2)).emit(eq(Constants.ALERT_STREAM_ID), eq(input), any());
+	}
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.serializers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+
+import io.symcpe.hendrix.storm.HendrixEvent;
+
+/**
+ * JMH benchmark comparing Storm's Java serialization fallback against
+ * {@link HendrixEventSerializer} for a typical log event tuple.<br>
+ * <br>
+ * Bytes per tuple are reported as the secondary result
+ * serialize:bytesPerTuple. Run with:<br>
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.symcpe.hendrix.storm.serializers.EventSerializationBenchmark</code>
+ * 
+ * @author ambud_sharma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+	@Param({ "java", "kryo" })
+	private String serializer;
+	private Kryo kryo;
+	private HendrixEvent event;
+	private Output output;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() {
+		kryo = buildKryo(serializer);
+		event = TestKryoSerializers.buildEvent();
+		output = new Output(4096, -1);
+		bytes = write();
+	}
+
+	@Benchmark
+	public byte[] serialize(SizeCounters counters) {
+		byte[] serialized = write();
+		counters.bytesPerTuple = serialized.length;
+		return serialized;
+	}
+
+	@Benchmark
+	public HendrixEvent deserialize() {
+		return kryo.readObject(new Input(bytes), HendrixEvent.class);
+	}
+
+	private byte[] write() {
+		output.clear();
+		kryo.writeObject(output, event);
+		return output.toBytes();
+	}
+
+	private static Kryo buildKryo(String serializer) {
+		Kryo kryo = new Kryo();
+		if ("kryo".equals(serializer)) {
+			kryo.register(HendrixEvent.class, new HendrixEventSerializer(null));
+		} else {
+			kryo.register(HendrixEvent.class, new JavaSerializer());
+		}
+		return kryo;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventSerializationBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	/**
+	 * Serialized size of the event, reported next to the timings
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class SizeCounters {
+
+		public long bytesPerTuple;
+
+	}
+
+}
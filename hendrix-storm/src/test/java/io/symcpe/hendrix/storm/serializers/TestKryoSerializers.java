@@ -0,0 +1,169 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.hendrix.storm.serializers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import backtype.storm.Config;
+import backtype.storm.serialization.SerializationFactory;
+import io.symcpe.hendrix.storm.Constants;
+import io.symcpe.hendrix.storm.HendrixEvent;
+import io.symcpe.hendrix.storm.UnifiedFactory;
+import io.symcpe.wraith.actions.alerts.Alert;
+import io.symcpe.wraith.actions.alerts.templated.TemplateCommand;
+import io.symcpe.wraith.rules.RuleCommand;
+
+/**
+ * Tests for the tuple value Kryo serializers
+ * 
+ * @author ambud_sharma
+ */
+public class TestKryoSerializers {
+
+	private Kryo kryo;
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Before
+	public void before() {
+		Map conf = backtype.storm.utils.Utils.readDefaultConfig();
+		List<Map<String, String>> register = new ArrayList<>();
+		register.add(registration(HendrixEvent.class.getName(), HendrixEventSerializer.class.getName()));
+		register.add(registration(Alert.class.getName(), AlertSerializer.class.getName()));
+		register.add(registration(RuleCommand.class.getName(), RuleCommandSerializer.class.getName()));
+		register.add(registration(TemplateCommand.class.getName(), TemplateCommandSerializer.class.getName()));
+		conf.put(Config.TOPOLOGY_KRYO_REGISTER, register);
+		conf.put(Constants.KRYO_HEADER_DICTIONARY, "status, bytes");
+		kryo = SerializationFactory.getKryo(conf);
+	}
+
+	@Test
+	public void testEventRoundTrip() throws Exception {
+		HendrixEvent event = buildEvent();
+		byte[] bytes = serialize(event);
+		HendrixEvent result = deserialize(bytes, HendrixEvent.class);
+		assertEquals(event.getHeaders(), result.getHeaders());
+		assertTrue(result.getHeaders().get(Constants.FIELD_TIMESTAMP) instanceof Long);
+		assertTrue(result.getHeaders().get(Constants.FIELD_RULE_ID) instanceof Short);
+		assertTrue(result.getHeaders().get("status") instanceof Integer);
+		assertArrayEquals(event.getBody(), result.getBody());
+
+		ByteArrayOutputStream java = new ByteArrayOutputStream();
+		ObjectOutputStream stream = new ObjectOutputStream(java);
+		stream.writeObject(event);
+		stream.close();
+		assertTrue(bytes.length * 4 < java.size());
+
+		event.setBody(null);
+		event.getHeaders().clear();
+		result = deserialize(serialize(event), HendrixEvent.class);
+		assertTrue(result.getHeaders().isEmpty());
+		assertNull(result.getBody());
+	}
+
+	@Test
+	public void testHeaderDictionary() {
+		HendrixEventSerializer serializer = new HendrixEventSerializer(Arrays.asList("status", " bytes", "host", ""));
+		String[] names = serializer.getHeaderNames();
+		assertEquals("bytes", names[names.length - 1]);
+		assertEquals("status", names[names.length - 2]);
+		assertEquals(names.length,
+				new HendrixEventSerializer(null).getHeaderNames().length + 2);
+
+		// dictionary names take a single byte, others are written inline
+		HendrixEvent event = (HendrixEvent) new UnifiedFactory().buildEvent();
+		event.getHeaders().put("status", true);
+		Output known = new Output(64);
+		serializer.write(kryo, known, event);
+		event.getHeaders().clear();
+		event.getHeaders().put("unknown", true);
+		Output unknown = new Output(64);
+		serializer.write(kryo, unknown, event);
+		assertEquals(4, known.position());
+		assertEquals(4 + "unknown".length(), unknown.position());
+	}
+
+	@Test
+	public void testCommandsAndAlerts() {
+		Alert alert = new Alert();
+		alert.setBody("test body");
+		alert.setId((short) 1023);
+		alert.setMedia("mail");
+		alert.setRuleGroup("tenant");
+		alert.setTarget("test@xyz.com");
+		alert.setTimestamp(1461272081103L);
+		assertEquals(alert.toString(), deserialize(serialize(alert), Alert.class).toString());
+		alert = new Alert();
+		assertEquals(alert.toString(), deserialize(serialize(alert), Alert.class).toString());
+
+		RuleCommand ruleCommand = new RuleCommand("tenant", true, "{\"ruleId\":1}");
+		assertEquals(ruleCommand.toString(), deserialize(serialize(ruleCommand), RuleCommand.class).toString());
+		TemplateCommand templateCommand = new TemplateCommand("tenant", false, null);
+		assertEquals(templateCommand.toString(),
+				deserialize(serialize(templateCommand), TemplateCommand.class).toString());
+	}
+
+	public static HendrixEvent buildEvent() {
+		HendrixEvent event = (HendrixEvent) new UnifiedFactory().buildEvent();
+		Map<String, Object> headers = event.getHeaders();
+		headers.put(Constants.FIELD_TIMESTAMP, 1461272081103L);
+		headers.put("@timestamp", 1.461272081103E12);
+		headers.put(Constants.FIELD_RULE_GROUP, "tenant1");
+		headers.put(Constants.FIELD_RULE_ID, (short) 12);
+		headers.put("host", "host1.symcpe.io");
+		headers.put("message", "GET /index.html HTTP/1.1 200");
+		headers.put("status", 200);
+		headers.put("bytes", 2326.0);
+		headers.put("secure", false);
+		headers.put("tags", new ArrayList<>(Arrays.asList("web", "prod")));
+		event.setBody(new byte[] { 1, 2, 3 });
+		return event;
+	}
+
+	private byte[] serialize(Object object) {
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, object);
+		return output.toBytes();
+	}
+
+	private <T> T deserialize(byte[] bytes, Class<T> type) {
+		return type.cast(kryo.readClassAndObject(new Input(bytes)));
+	}
+
+	private static Map<String, String> registration(String type, String serializer) {
+		Map<String, String> map = new HashMap<>();
+		map.put(type, serializer);
+		return map;
+	}
+
+}
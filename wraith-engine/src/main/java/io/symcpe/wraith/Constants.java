@@ -46,6 +46,7 @@ public abstract class Constants {
 	public static final String FIELD_RULE_GROUP = "_rg";
 //	public static final String FIELD_AGGREGATION_EMIT = "age";
 	public static final String FIELD_AGGREGATION_WINDOW = "_agw";
+	public static final String FIELD_AGGREGATION_SLIDE = "_ags";
 	public static final String FIELD_RULE_ACTION_ID = "_ri";
 	public static final String FIELD_RULE_ACTION = "_ra";
 	
@@ -62,6 +63,16 @@ public abstract class Constants {
 	public static final String ACTION_FAIL = "act_fail";
 	
 	public static final String RULE_GROUP_ACTIVE = "rule.group.active";
+	public static final String RULE_INDEX_ACTIVE = "rule.index.active";
+	public static final String RULE_COMPILE_ACTIVE = "rule.compile.active";
+	public static final String RULE_PARTITION_ACTIVE = "rule.partition.active";
+	public static final String RULE_PARTITION_COUNT = "rule.partition.count";
+	public static final String RULE_PARTITION_INDEX = "rule.partition.index";
+	public static final String RULE_PARTITION_VNODES = "rule.partition.vnodes";
+	public static final String DEFAULT_RULE_PARTITION_VNODES = "64";
+	public static final String RULE_PARTITION_SPLITS = "rule.partition.splits";
+	public static final String RULE_LATENCY_SAMPLE_RATE = "rule.latency.sample.rate";
+	public static final String DEFAULT_RULE_LATENCY_SAMPLE_RATE = "1";
 	public static final String FALSE = "false";
 	public static final String TRUE = "true";
 	
@@ -69,6 +80,21 @@ public abstract class Constants {
 	public static final String AGGREGATIONS_FCOUNT_LIMIT = "aggregations.fcount.limit";
 	public static final String DEFAULT_AGGREGATION_SET_LIMIT = "5000";
 	public static final String DEFAULT_AGGREGATION_FCOUNT_LIMIT = "5000";
+	public static final String AGGREGATIONS_FCOUNT_OFFHEAP = "aggregations.fcount.offheap";
+	public static final String AGGREGATIONS_HLL_PRECISION = "aggregations.hll.precision";
+	public static final String DEFAULT_AGGREGATION_HLL_PRECISION = "10";
+	public static final String AGGREGATIONS_CMS_WIDTH = "aggregations.cms.width";
+	public static final String AGGREGATIONS_CMS_DEPTH = "aggregations.cms.depth";
+	public static final String DEFAULT_AGGREGATION_CMS_WIDTH = "2048";
+	public static final String DEFAULT_AGGREGATION_CMS_DEPTH = "4";
+	public static final String AGGREGATIONS_TDIGEST_COMPRESSION = "aggregations.tdigest.compression";
+	public static final String AGGREGATIONS_TDIGEST_QUANTILE = "aggregations.tdigest.quantile";
+	public static final String DEFAULT_AGGREGATION_TDIGEST_COMPRESSION = "100";
+	public static final String DEFAULT_AGGREGATION_TDIGEST_QUANTILE = "0.99";
+	public static final String AGGREGATIONS_TOPK_K = "aggregations.topk.k";
+	public static final String AGGREGATIONS_TOPK_CAPACITY = "aggregations.topk.capacity";
+	public static final String DEFAULT_AGGREGATION_TOPK_K = "10";
+	public static final String DEFAULT_AGGREGATION_TOPK_CAPACITY = "100";
 	public static final String AGGREGATION_HASH_INIT_SIZE = "aggregation.hash.init.size";
 	public static final String DEFAULT_AGGREGATION_HASH_SIZE = "1000";
 	public static final String AGGREGATOR_SET = "aggregator.set";
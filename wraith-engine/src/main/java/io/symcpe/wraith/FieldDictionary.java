@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide dictionary interning header names to dense integer field ids
+ * used as keys by {@link HeaderMap}. Ids are only meaningful within a JVM and
+ * must never be serialized.<br>
+ * <br>
+ * The dictionary is bounded by the <code>header.field.limit</code> system
+ * property so that events with arbitrary field names can't grow it without
+ * limit, names seen after the limit is reached don't get an id.
+ * 
+ * @author ambud_sharma
+ */
+public final class FieldDictionary {
+
+	public static final int NO_FIELD = -1;
+	private static final int LIMIT = Integer.parseInt(System.getProperty("header.field.limit", "65536"));
+	private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+	private static volatile String[] names = new String[64];
+	private static int size;
+	private static volatile boolean full;
+
+	private FieldDictionary() {
+	}
+
+	/**
+	 * Get the id of a field, assigning a new one if needed
+	 * 
+	 * @param name
+	 * @return field id or {@link #NO_FIELD} if the dictionary is full
+	 */
+	public static int intern(String name) {
+		Integer id = IDS.get(name);
+		if (id != null) {
+			return id;
+		} else if (full) {
+			return NO_FIELD;
+		}
+		synchronized (IDS) {
+			id = IDS.get(name);
+			if (id != null) {
+				return id;
+			}
+			if (size >= LIMIT) {
+				full = true;
+				return NO_FIELD;
+			}
+			String[] temp = names;
+			if (size == temp.length) {
+				temp = Arrays.copyOf(temp, temp.length * 2);
+			}
+			temp[size] = name;
+			// publish the name before the id
+			names = temp;
+			IDS.put(name, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return field id or {@link #NO_FIELD} if the name was never interned
+	 */
+	public static int lookup(String name) {
+		Integer id = IDS.get(name);
+		return id != null ? id : NO_FIELD;
+	}
+
+	/**
+	 * @param id
+	 * @return name of the field
+	 */
+	public static String name(int id) {
+		return names[id];
+	}
+
+}
@@ -0,0 +1,506 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Flat, non-concurrent {@link Map} for {@link Event} headers. Header names are
+ * interned through the {@link FieldDictionary} and entries are kept in an
+ * open addressed table keyed by field id, {@link Long} and {@link Double}
+ * values are held in primitive slots and boxed only when read through the
+ * {@link Map} interface.<br>
+ * <br>
+ * Callers that resolve a field id once, e.g. conditions at rule load, can
+ * read headers with {@link #get(int)} and {@link #getDouble(int)} skipping
+ * the name lookup and boxing; {@link #get(Map, int, String)} and
+ * {@link #getDouble(Map, int, String)} fall back to {@link Map#get(Object)}
+ * for other {@link Map} implementations.<br>
+ * <br>
+ * Like {@link java.util.concurrent.ConcurrentHashMap} null keys and values
+ * are rejected. A map assumes a single writer and no concurrent readers while
+ * it is being written: an event handed to another thread, e.g. emitted as a
+ * tuple value that Storm passes by reference within a worker, must be handed
+ * over as a copy ({@link #HeaderMap(HeaderMap)}) if the owner keeps writing
+ * to it. Serialized form carries header names, never field ids.
+ * 
+ * @author ambud_sharma
+ */
+public class HeaderMap extends AbstractMap<String, Object> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final int EMPTY = 0;
+	private static final int DELETED = -1;
+	private static final byte KIND_OBJECT = 0;
+	private static final byte KIND_LONG = 1;
+	private static final byte KIND_DOUBLE = 2;
+	private transient int[] keys;
+	private transient Object[] values;
+	private transient long[] primitives;
+	private transient byte[] kinds;
+	private transient int mask;
+	private transient int size;
+	private transient int used;
+	private transient Map<String, Object> overflow;
+	private transient EntrySet entrySet;
+
+	public HeaderMap() {
+		this(16);
+	}
+
+	public HeaderMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public HeaderMap(Map<String, Object> map) {
+		this(map.size());
+		putAll(map);
+	}
+
+	/**
+	 * Copy the table of another {@link HeaderMap} without re-hashing
+	 * 
+	 * @param map
+	 */
+	public HeaderMap(HeaderMap map) {
+		keys = map.keys.clone();
+		values = map.values.clone();
+		primitives = map.primitives.clone();
+		kinds = map.kinds.clone();
+		mask = map.mask;
+		size = map.size;
+		used = map.used;
+		if (map.overflow != null) {
+			overflow = new HashMap<>(map.overflow);
+		}
+	}
+
+	/**
+	 * @param fieldId
+	 * @return value of the field or null if absent
+	 */
+	public Object get(int fieldId) {
+		int slot = find(fieldId);
+		return slot >= 0 ? valueAt(slot) : null;
+	}
+
+	/**
+	 * @param fieldId
+	 * @return numeric value of the field or {@link Double#NaN} if absent or
+	 *         not a {@link Number}
+	 */
+	public double getDouble(int fieldId) {
+		int slot = find(fieldId);
+		if (slot < 0) {
+			return Double.NaN;
+		}
+		switch (kinds[slot]) {
+		case KIND_LONG:
+			return primitives[slot];
+		case KIND_DOUBLE:
+			return Double.longBitsToDouble(primitives[slot]);
+		default:
+			Object value = values[slot];
+			return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+		}
+	}
+
+	/**
+	 * Read a header using a pre-resolved field id when possible
+	 * 
+	 * @param headers
+	 * @param fieldId
+	 * @param key
+	 * @return header value
+	 */
+	public static Object get(Map<String, Object> headers, int fieldId, String key) {
+		if (fieldId != FieldDictionary.NO_FIELD && headers instanceof HeaderMap) {
+			return ((HeaderMap) headers).get(fieldId);
+		}
+		return headers.get(key);
+	}
+
+	/**
+	 * Read a numeric header using a pre-resolved field id when possible
+	 * 
+	 * @param headers
+	 * @param fieldId
+	 * @param key
+	 * @return numeric value or {@link Double#NaN} if absent or not a
+	 *         {@link Number}
+	 */
+	public static double getDouble(Map<String, Object> headers, int fieldId, String key) {
+		if (fieldId != FieldDictionary.NO_FIELD && headers instanceof HeaderMap) {
+			return ((HeaderMap) headers).getDouble(fieldId);
+		}
+		Object value = headers.get(key);
+		return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		int fieldId = FieldDictionary.lookup((String) key);
+		if (fieldId == FieldDictionary.NO_FIELD) {
+			return overflow != null ? overflow.get(key) : null;
+		}
+		return get(fieldId);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof String)) {
+			return false;
+		}
+		int fieldId = FieldDictionary.lookup((String) key);
+		if (fieldId == FieldDictionary.NO_FIELD) {
+			return overflow != null && overflow.containsKey(key);
+		}
+		return find(fieldId) >= 0;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		int fieldId = FieldDictionary.intern(key);
+		if (fieldId == FieldDictionary.NO_FIELD) {
+			if (overflow == null) {
+				overflow = new HashMap<>();
+			}
+			return overflow.put(key, value);
+		}
+		int slot = find(fieldId);
+		if (slot >= 0) {
+			Object old = valueAt(slot);
+			setValueAt(slot, value);
+			return old;
+		}
+		if (used + 1 > (mask + 1) * 3 / 4) {
+			rehash();
+		}
+		slot = insertionSlot(fieldId);
+		if (keys[slot] == EMPTY) {
+			used++;
+		}
+		keys[slot] = fieldId + 1;
+		setValueAt(slot, value);
+		size++;
+		return null;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		int fieldId = FieldDictionary.lookup((String) key);
+		if (fieldId == FieldDictionary.NO_FIELD) {
+			return overflow != null ? overflow.remove(key) : null;
+		}
+		int slot = find(fieldId);
+		if (slot < 0) {
+			return null;
+		}
+		Object old = valueAt(slot);
+		removeAt(slot);
+		return old;
+	}
+
+	@Override
+	public int size() {
+		return overflow != null ? size + overflow.size() : size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+		used = 0;
+		overflow = null;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	private int find(int fieldId) {
+		int key = fieldId + 1;
+		int slot = hash(fieldId) & mask;
+		while (true) {
+			int current = keys[slot];
+			if (current == key) {
+				return slot;
+			} else if (current == EMPTY) {
+				return -1;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int insertionSlot(int fieldId) {
+		int slot = hash(fieldId) & mask;
+		while (keys[slot] > EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private Object valueAt(int slot) {
+		switch (kinds[slot]) {
+		case KIND_LONG:
+			return primitives[slot];
+		case KIND_DOUBLE:
+			return Double.longBitsToDouble(primitives[slot]);
+		default:
+			return values[slot];
+		}
+	}
+
+	private void setValueAt(int slot, Object value) {
+		if (value instanceof Long) {
+			kinds[slot] = KIND_LONG;
+			primitives[slot] = (Long) value;
+			values[slot] = null;
+		} else if (value instanceof Double) {
+			kinds[slot] = KIND_DOUBLE;
+			primitives[slot] = Double.doubleToRawLongBits((Double) value);
+			values[slot] = null;
+		} else {
+			kinds[slot] = KIND_OBJECT;
+			values[slot] = value;
+		}
+	}
+
+	private void removeAt(int slot) {
+		keys[slot] = DELETED;
+		values[slot] = null;
+		size--;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		long[] oldPrimitives = primitives;
+		byte[] oldKinds = kinds;
+		// grow only if the table is actually full, otherwise just drop
+		// tombstones
+		allocate(size + 1 > (mask + 1) / 2 ? (mask + 1) * 2 : mask + 1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] > EMPTY) {
+				int slot = insertionSlot(oldKeys[i] - 1);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				primitives[slot] = oldPrimitives[i];
+				kinds[slot] = oldKinds[i];
+				used++;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Object[capacity];
+		primitives = new long[capacity];
+		kinds = new byte[capacity];
+		mask = capacity - 1;
+		used = 0;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = 8;
+		while (capacity * 3 / 4 < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(int fieldId) {
+		int h = fieldId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+		stream.writeInt(size());
+		for (Entry<String, Object> entry : entrySet()) {
+			stream.writeObject(entry.getKey());
+			stream.writeObject(entry.getValue());
+		}
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		int count = stream.readInt();
+		allocate(capacityFor(count));
+		for (int i = 0; i < count; i++) {
+			put((String) stream.readObject(), stream.readObject());
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return HeaderMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			HeaderMap.this.clear();
+		}
+
+	}
+
+	private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+		private int next = -1;
+		private int current = -1;
+		private boolean overflowCurrent;
+		private Iterator<Entry<String, Object>> overflowIterator;
+
+		private EntryIterator() {
+			advance();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next <= mask) {
+				return true;
+			}
+			if (overflowIterator == null && overflow != null) {
+				overflowIterator = overflow.entrySet().iterator();
+			}
+			return overflowIterator != null && overflowIterator.hasNext();
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (next <= mask) {
+				current = next;
+				advance();
+				return new SlotEntry(current);
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			current = -1;
+			overflowCurrent = true;
+			return overflowIterator.next();
+		}
+
+		@Override
+		public void remove() {
+			if (current >= 0 && keys[current] > EMPTY) {
+				removeAt(current);
+				current = -1;
+			} else if (overflowCurrent) {
+				overflowIterator.remove();
+				overflowCurrent = false;
+			} else {
+				throw new IllegalStateException();
+			}
+		}
+
+		private void advance() {
+			do {
+				next++;
+			} while (next <= mask && keys[next] <= EMPTY);
+		}
+
+	}
+
+	private final class SlotEntry implements Entry<String, Object> {
+
+		private final int slot;
+		private final String key;
+
+		private SlotEntry(int slot) {
+			this.slot = slot;
+			this.key = FieldDictionary.name(keys[slot] - 1);
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return valueAt(slot);
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			if (value == null) {
+				throw new NullPointerException();
+			}
+			Object old = valueAt(slot);
+			setValueAt(slot, value);
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> other = (Entry<?, ?>) obj;
+			return key.equals(other.getKey()) && getValue().equals(other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() ^ getValue().hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+
+	}
+
+}
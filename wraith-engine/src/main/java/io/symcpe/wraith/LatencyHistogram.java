@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log-linear histogram of nanosecond latencies, in the style of
+ * HdrHistogram.<br>
+ * <br>
+ * Values below 32 are counted exactly, larger values fall in one of 16 linear
+ * sub-buckets of their power of 2 giving a relative error under 6.25%. Values
+ * above {@link #MAX_VALUE} (~4.3s) are counted in the last bucket. Buckets are
+ * allocated on the first recorded value so histograms of idle rules cost a
+ * few bytes. Recording is safe from several threads,
+ * {@link #snapshotAndReset()} is expected to be called by a single reporting
+ * thread.
+ * 
+ * @author ambud_sharma
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	public static final long MAX_VALUE = (1L << 32) - 1;
+	public static final int BUCKETS = index(MAX_VALUE) + 1;
+	private volatile AtomicIntegerArray counts;
+	private final LongAdder count;
+	private final LongAdder sum;
+
+	public LatencyHistogram() {
+		count = new LongAdder();
+		sum = new LongAdder();
+	}
+
+	/**
+	 * @param value
+	 *            in nanoseconds, negative values are ignored
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			return;
+		}
+		AtomicIntegerArray counts = this.counts;
+		if (counts == null) {
+			counts = allocate();
+		}
+		counts.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+		count.increment();
+		sum.add(value);
+	}
+
+	private synchronized AtomicIntegerArray allocate() {
+		if (counts == null) {
+			counts = new AtomicIntegerArray(BUCKETS);
+		}
+		return counts;
+	}
+
+	/**
+	 * @param value
+	 * @return bucket index of the value
+	 */
+	public static int index(long value) {
+		if (value < SUB_BUCKETS << 1) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	/**
+	 * @param index
+	 * @return highest value counted in the bucket
+	 */
+	public static long highestValue(int index) {
+		if (index < SUB_BUCKETS << 1) {
+			return index;
+		}
+		int shift = (index >> SUB_BUCKET_BITS) - 1;
+		long subBucket = index - (shift << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Copy the recorded values and reset this histogram
+	 * 
+	 * @return snapshot of the values recorded since the last reset
+	 */
+	public Snapshot snapshotAndReset() {
+		long total = count.sumThenReset();
+		long totalSum = sum.sumThenReset();
+		AtomicIntegerArray counts = this.counts;
+		int[] copy = new int[counts != null && total > 0 ? BUCKETS : 0];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = counts.getAndSet(i, 0);
+		}
+		return new Snapshot(copy, total, totalSum);
+	}
+
+	/**
+	 * Immutable copy of a {@link LatencyHistogram}
+	 */
+	public static final class Snapshot {
+
+		private final int[] counts;
+		private final long count;
+		private final long sum;
+
+		private Snapshot(int[] counts, long count, long sum) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+		}
+
+		/**
+		 * @return number of recorded values
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return mean of the recorded values, 0 if there are none
+		 */
+		public double getMean() {
+			return count > 0 ? (double) sum / count : 0;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return highest value of the bucket holding the percentile, 0 if no
+		 *         values were recorded
+		 */
+		public long getPercentile(double percentile) {
+			long total = 0;
+			for (int c : counts) {
+				total += c;
+			}
+			long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulative += counts[i];
+				if (cumulative >= target) {
+					return highestValue(i);
+				}
+			}
+			return 0;
+		}
+
+	}
+
+}
@@ -24,6 +24,10 @@ import io.symcpe.wraith.actions.Action;
 
 /**
  * Aggregation Action defines abstractly aggregation capabilities in the system
+ * <br>
+ * <br>
+ * Windows are tumbling unless an aggregation slide smaller than the window is
+ * set, in which case a window is emitted every slide seconds.
  * 
  * @author ambud_sharma
  */
@@ -33,6 +37,7 @@ public abstract class AggregationAction implements Action {
 	private short actionId;
 	private String aggregationKey;
 	private int aggregationWindow;
+	private int aggregationSlide;
 	
 	public AggregationAction(short actionId, String aggregationKey, int aggregationWindow) {
 		this.actionId = actionId;
@@ -105,4 +110,26 @@ public abstract class AggregationAction implements Action {
 	public void setAggregationWindow(int aggregationWindow) {
 		this.aggregationWindow = aggregationWindow;
 	}
+
+	/**
+	 * @return the aggregationSlide, 0 for tumbling windows
+	 */
+	public int getAggregationSlide() {
+		return aggregationSlide;
+	}
+
+	/**
+	 * @param aggregationSlide the aggregationSlide to set
+	 */
+	public void setAggregationSlide(int aggregationSlide) {
+		this.aggregationSlide = aggregationSlide;
+	}
+
+	/**
+	 * @return size of the buckets values are aggregated in, the slide for
+	 *         sliding windows otherwise the window
+	 */
+	public int getPaneSize() {
+		return aggregationSlide > 0 && aggregationSlide < aggregationWindow ? aggregationSlide : aggregationWindow;
+	}
 }
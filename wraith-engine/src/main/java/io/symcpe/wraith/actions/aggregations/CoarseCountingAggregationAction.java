@@ -16,17 +16,40 @@
 package io.symcpe.wraith.actions.aggregations;
 
 /**
- * HyperLogLog based counting of unique items
+ * HyperLogLog based counting of unique items, precision can be set per action
+ * to override the aggregator default
  * 
  * @author ambud_sharma
  */
 public class CoarseCountingAggregationAction extends CountingAggregationAction {
 
 	private static final long serialVersionUID = 1L;
+	private int precision;
 
 	public CoarseCountingAggregationAction(short actionId, String aggregationHeaderKey,
 			String aggregationHeaderValueKey, int aggregationWindow) {
 		super(actionId, aggregationHeaderKey, aggregationHeaderValueKey, aggregationWindow);
 	}
 
+	public CoarseCountingAggregationAction(short actionId, String aggregationHeaderKey,
+			String aggregationHeaderValueKey, int aggregationWindow, int precision) {
+		super(actionId, aggregationHeaderKey, aggregationHeaderValueKey, aggregationWindow);
+		this.precision = precision;
+	}
+
+	/**
+	 * @return the HLL precision, 0 to use the aggregator default
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @param precision
+	 *            the precision to set
+	 */
+	public void setPrecision(int precision) {
+		this.precision = precision;
+	}
+
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.actions.aggregations;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.PerformantException;
+
+/**
+ * t-digest based percentiles of a numeric header e.g. latency, events with a
+ * non-numeric value are not aggregated
+ * 
+ * @author ambud_sharma
+ */
+public class PercentileAggregationAction extends ValueAggregationAction {
+
+	private static final long serialVersionUID = 1L;
+	private static final PerformantException NOT_NUMERIC = new PerformantException("Value is not numeric");
+
+	public PercentileAggregationAction(short actionId, String aggregationHeaderKey, String aggregationHeaderValueKey,
+			int aggregationWindow) {
+		super(actionId, aggregationHeaderKey, aggregationHeaderValueKey, aggregationWindow);
+	}
+
+	@Override
+	public void postProcessEvent(Event inputEvent) throws PerformantException {
+		Object value = inputEvent.getHeaders().get(Constants.FIELD_AGGREGATION_VALUE);
+		if (value instanceof Number) {
+			inputEvent.getHeaders().put(Constants.FIELD_AGGREGATION_VALUE, ((Number) value).doubleValue());
+			return;
+		}
+		try {
+			inputEvent.getHeaders().put(Constants.FIELD_AGGREGATION_VALUE, Double.parseDouble(value.toString()));
+		} catch (NumberFormatException e) {
+			throw NOT_NUMERIC;
+		}
+	}
+
+}
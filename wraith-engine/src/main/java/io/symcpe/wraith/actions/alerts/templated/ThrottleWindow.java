@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.actions.alerts.templated;
+
+import java.io.Serializable;
+
+/**
+ * Throttle window of an {@link AlertTemplate}, the number of alerts counted in
+ * it and whether alerts are being suppressed.
+ * 
+ * @author ambud_sharma
+ */
+public class ThrottleWindow implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private long end;
+	private int count;
+	private boolean suppressed;
+
+	public ThrottleWindow() {
+	}
+
+	public ThrottleWindow(long end, int count, boolean suppressed) {
+		this.end = end;
+		this.count = count;
+		this.suppressed = suppressed;
+	}
+
+	/**
+	 * @return end of the window in epoch seconds (exclusive)
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * @param end the end to set
+	 */
+	public void setEnd(long end) {
+		this.end = end;
+	}
+
+	/**
+	 * @return the count
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param count the count to set
+	 */
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	/**
+	 * @return count after incrementing it
+	 */
+	public int incrementAndGet() {
+		return ++count;
+	}
+
+	/**
+	 * @return the suppressed
+	 */
+	public boolean isSuppressed() {
+		return suppressed;
+	}
+
+	/**
+	 * @param suppressed the suppressed to set
+	 */
+	public void setSuppressed(boolean suppressed) {
+		this.suppressed = suppressed;
+	}
+
+	@Override
+	public String toString() {
+		return end + "," + count + "," + suppressed;
+	}
+
+}
@@ -0,0 +1,556 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Utils;
+
+/**
+ * Primitive keyed map for aggregation state, replacing the
+ * <code>ruleActionId_hexTs_aggregationKey</code> String keys built by
+ * {@link Utils#createMapKey(long, int, String, String)}.<br>
+ * <br>
+ * 
+ * Every entry is addressed by a compact binary key: the rule id and action id
+ * packed in an int, the time bucket as an int and a 64-bit hash of the
+ * aggregation key. Entries live in an open addressing table of primitive
+ * arrays; the original aggregation key is retained only to resolve hash
+ * collisions and to rebuild String keys for stores and emitted events, so
+ * lookups of existing entries don't allocate.<br>
+ * <br>
+ * 
+ * Each ruleAction has a {@link BucketWheel} indexing it's buckets so expired
+ * windows are drained in O(expired entries). Wheels are evicted once drained
+ * and the table shrinks after large drains, keeping memory bounded by the live
+ * windows.<br>
+ * <br>
+ * 
+ * Entries can be marked dirty, dirty entries are tracked in reusable buffers so
+ * incremental flushes only visit entries mutated since the last flush. The map
+ * is not thread-safe.
+ * 
+ * @author ambud_sharma
+ */
+public class AggregationKeyMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final long LOW_BITS = 0xFFFFFFFFL;
+	private final int minCapacity;
+	private long[] keys;
+	private long[] hashes;
+	private String[] aggregationKeys;
+	private Object[] values;
+	private boolean[] dirty;
+	private long[] dirtyKeys;
+	private long[] dirtyHashes;
+	private String[] dirtyAggregationKeys;
+	private int dirtyCount;
+	private int size;
+	private int mask;
+	private Map<Integer, BucketWheel> wheels;
+	private Map<String, Integer> ruleActionCodes;
+
+	public AggregationKeyMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public AggregationKeyMap(int capacity) {
+		minCapacity = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+		allocate(minCapacity);
+		wheels = new HashMap<>();
+		ruleActionCodes = new HashMap<>();
+		dirtyKeys = new long[16];
+		dirtyHashes = new long[16];
+		dirtyAggregationKeys = new String[16];
+	}
+
+	/**
+	 * Decode a ruleActionId String to it's packed int representation, decoded
+	 * values are cached so repeated calls don't allocate
+	 * 
+	 * @param ruleActionId
+	 * @return packed rule action
+	 */
+	public int ruleAction(String ruleActionId) {
+		Integer code = ruleActionCodes.get(ruleActionId);
+		if (code == null) {
+			Entry<Short, Short> ids = Utils.separateRuleActionId(ruleActionId);
+			code = ruleAction(ids.getKey(), ids.getValue());
+			ruleActionCodes.put(ruleActionId, code);
+		}
+		return code;
+	}
+
+	/**
+	 * @param ruleAction
+	 * @param bucket
+	 * @param aggregationKey
+	 * @return value or null if not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int ruleAction, int bucket, String aggregationKey) {
+		int slot = find(key(ruleAction, bucket), hash(aggregationKey), aggregationKey);
+		return slot >= 0 ? (V) values[slot] : null;
+	}
+
+	/**
+	 * Lookup using a legacy String map key
+	 * 
+	 * @param mapKey
+	 * @return value or null if not present
+	 */
+	public V get(String mapKey) {
+		String[] parts = splitMapKey(mapKey);
+		return get(ruleAction(parts[0]), Utils.stringToInt(parts[1]), parts[2]);
+	}
+
+	/**
+	 * @param ruleAction
+	 * @param bucket
+	 * @param aggregationKey
+	 * @param value
+	 * @return previous value
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int ruleAction, int bucket, String aggregationKey, V value) {
+		long key = key(ruleAction, bucket);
+		long hash = hash(aggregationKey);
+		int slot = find(key, hash, aggregationKey);
+		if (slot >= 0) {
+			V previous = (V) values[slot];
+			values[slot] = value;
+			return previous;
+		}
+		if (size + 1 > (values.length >> 1) + (values.length >> 2)) {
+			rehash(values.length << 1);
+			slot = find(key, hash, aggregationKey);
+		}
+		slot = -slot - 1;
+		keys[slot] = key;
+		hashes[slot] = hash;
+		aggregationKeys[slot] = aggregationKey;
+		values[slot] = value;
+		size++;
+		BucketWheel wheel = wheels.get(ruleAction);
+		if (wheel == null) {
+			wheel = new BucketWheel();
+			wheels.put(ruleAction, wheel);
+		}
+		wheel.add(bucket, aggregationKey);
+		return null;
+	}
+
+	/**
+	 * Insert using a legacy String map key
+	 * 
+	 * @param mapKey
+	 * @param value
+	 * @return previous value
+	 */
+	public V put(String mapKey, V value) {
+		String[] parts = splitMapKey(mapKey);
+		return put(ruleAction(parts[0]), Utils.stringToInt(parts[1]), parts[2], value);
+	}
+
+	/**
+	 * @param ruleAction
+	 * @param bucket
+	 * @param aggregationKey
+	 * @return removed value
+	 */
+	public V remove(int ruleAction, int bucket, String aggregationKey) {
+		V value = removeSlot(key(ruleAction, bucket), hash(aggregationKey), aggregationKey);
+		if (value != null) {
+			BucketWheel wheel = wheels.get(ruleAction);
+			wheel.remove(bucket, aggregationKey);
+			if (wheel.isEmpty()) {
+				wheels.remove(ruleAction);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Mark an entry as mutated since the last
+	 * {@link #drainDirty(EntryVisitor)}
+	 * 
+	 * @param ruleAction
+	 * @param bucket
+	 * @param aggregationKey
+	 * @return value or null if not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V markDirty(int ruleAction, int bucket, String aggregationKey) {
+		long key = key(ruleAction, bucket);
+		long hash = hash(aggregationKey);
+		int slot = find(key, hash, aggregationKey);
+		if (slot < 0) {
+			return null;
+		}
+		if (!dirty[slot]) {
+			dirty[slot] = true;
+			if (dirtyCount == dirtyKeys.length) {
+				dirtyKeys = Arrays.copyOf(dirtyKeys, dirtyCount << 1);
+				dirtyHashes = Arrays.copyOf(dirtyHashes, dirtyCount << 1);
+				dirtyAggregationKeys = Arrays.copyOf(dirtyAggregationKeys, dirtyCount << 1);
+			}
+			dirtyKeys[dirtyCount] = key;
+			dirtyHashes[dirtyCount] = hash;
+			dirtyAggregationKeys[dirtyCount] = aggregationKey;
+			dirtyCount++;
+		}
+		return (V) values[slot];
+	}
+
+	/**
+	 * Visit all dirty entries still present in the map in the order they were
+	 * marked and clear their dirty flags
+	 * 
+	 * @param visitor
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public void drainDirty(EntryVisitor<V> visitor) throws IOException {
+		int count = dirtyCount;
+		dirtyCount = 0;
+		for (int i = 0; i < count; i++) {
+			String aggregationKey = dirtyAggregationKeys[i];
+			dirtyAggregationKeys[i] = null;
+			int slot = find(dirtyKeys[i], dirtyHashes[i], aggregationKey);
+			if (slot >= 0 && dirty[slot]) {
+				dirty[slot] = false;
+				visitor.visit((int) (dirtyKeys[i] >> 32), (int) (dirtyKeys[i] & LOW_BITS), aggregationKey,
+						(V) values[slot]);
+			}
+		}
+	}
+
+	/**
+	 * @return number of entries marked dirty since the last drain
+	 */
+	public int dirtyCount() {
+		return dirtyCount;
+	}
+
+	/**
+	 * @param ruleAction
+	 * @return true if there's at-least one entry for the rule action
+	 */
+	public boolean containsRuleAction(int ruleAction) {
+		return wheels.containsKey(ruleAction);
+	}
+
+	/**
+	 * @param ruleAction
+	 * @return latest bucket for the rule action or {@link Integer#MIN_VALUE}
+	 *         if there are no entries
+	 */
+	public int lastBucket(int ruleAction) {
+		BucketWheel wheel = wheels.get(ruleAction);
+		return wheel == null ? Integer.MIN_VALUE : wheel.lastBucket();
+	}
+
+	/**
+	 * Visit and remove all entries of the rule action with bucket less than or
+	 * equal to the supplied bucket, in bucket order
+	 * 
+	 * @param ruleAction
+	 * @param maxBucket
+	 * @param visitor
+	 * @throws IOException
+	 */
+	public void drainUntil(int ruleAction, int maxBucket, EntryVisitor<V> visitor) throws IOException {
+		BucketWheel wheel = wheels.get(ruleAction);
+		if (wheel == null) {
+			return;
+		}
+		wheel.drainUntil(maxBucket, (bucket, aggregationKeys) -> {
+			long key = key(ruleAction, bucket);
+			for (String aggregationKey : aggregationKeys) {
+				visitor.visit(ruleAction, bucket, aggregationKey,
+						removeSlot(key, hash(aggregationKey), aggregationKey));
+			}
+		});
+		if (wheel.isEmpty()) {
+			wheels.remove(ruleAction);
+		}
+		if (values.length > minCapacity && size < values.length >> 3) {
+			rehash(Math.max(minCapacity, Integer.highestOneBit(Math.max(size, 1)) << 2));
+		}
+	}
+
+	/**
+	 * Visit all entries, in no particular order
+	 * 
+	 * @param visitor
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryVisitor<V> visitor) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (aggregationKeys[i] != null) {
+				visitor.visit((int) (keys[i] >> 32), (int) (keys[i] & LOW_BITS), aggregationKeys[i], (V) values[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return values ordered by rule action and bucket
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		Integer[] order = new Integer[size];
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (aggregationKeys[i] != null) {
+				order[count++] = i;
+			}
+		}
+		Arrays.sort(order, (o1, o2) -> {
+			int result = Long.compare(keys[o1], keys[o2]);
+			return result != 0 ? result : aggregationKeys[o1].compareTo(aggregationKeys[o2]);
+		});
+		List<V> list = new ArrayList<>(size);
+		for (Integer slot : order) {
+			list.add((V) values[slot]);
+		}
+		return list;
+	}
+
+	/**
+	 * @return number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		allocate(minCapacity);
+		wheels.clear();
+		Arrays.fill(dirtyAggregationKeys, 0, dirtyCount, null);
+		dirtyCount = 0;
+	}
+
+	/**
+	 * Build the legacy String map key
+	 * 
+	 * @param ruleAction
+	 * @param bucket
+	 * @param aggregationKey
+	 * @return <code>ruleActionId_hexTs_aggregationKey</code>
+	 */
+	public static String toMapKey(int ruleAction, int bucket, String aggregationKey) {
+		return toMapKey(Utils.combineRuleActionId(ruleId(ruleAction), actionId(ruleAction)), bucket, aggregationKey);
+	}
+
+	/**
+	 * Build the legacy String map key
+	 * 
+	 * @param ruleActionId
+	 * @param bucket
+	 * @param aggregationKey
+	 * @return <code>ruleActionId_hexTs_aggregationKey</code>
+	 */
+	public static String toMapKey(String ruleActionId, int bucket, String aggregationKey) {
+		String ts = Utils.intToString(bucket);
+		return new StringBuilder(ruleActionId.length() + ts.length() + aggregationKey.length() + 2)
+				.append(ruleActionId).append(Constants.KEY_SEPARATOR).append(ts).append(Constants.KEY_SEPARATOR)
+				.append(aggregationKey).toString();
+	}
+
+	/**
+	 * @param ruleId
+	 * @param actionId
+	 * @return packed rule action
+	 */
+	public static int ruleAction(short ruleId, short actionId) {
+		return (ruleId << 16) | (actionId & 0xFFFF);
+	}
+
+	/**
+	 * @param ruleAction
+	 * @return rule id
+	 */
+	public static short ruleId(int ruleAction) {
+		return (short) (ruleAction >> 16);
+	}
+
+	/**
+	 * @param ruleAction
+	 * @return action id
+	 */
+	public static short actionId(int ruleAction) {
+		return (short) ruleAction;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the characters followed by a murmur3 finalizer
+	 * 
+	 * @param aggregationKey
+	 * @return hash
+	 */
+	public static long hash(String aggregationKey) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < aggregationKey.length(); i++) {
+			h ^= aggregationKey.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static long key(int ruleAction, int bucket) {
+		return ((long) ruleAction << 32) | (bucket & LOW_BITS);
+	}
+
+	private static String[] splitMapKey(String mapKey) {
+		// aggregation keys may contain the separator
+		String[] parts = mapKey.split(Constants.KEY_SEPARATOR, 3);
+		if (parts.length != 3) {
+			throw new IllegalArgumentException("Invalid aggregation map key:" + mapKey);
+		}
+		return parts;
+	}
+
+	private int slot(long key, long hash) {
+		long h = (key * 0x9E3779B97F4A7C15L) ^ hash;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * @return slot index if found, otherwise -(insertion slot + 1)
+	 */
+	private int find(long key, long hash, String aggregationKey) {
+		int slot = slot(key, hash);
+		while (aggregationKeys[slot] != null) {
+			if (keys[slot] == key && hashes[slot] == hash && aggregationKeys[slot].equals(aggregationKey)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V removeSlot(long key, long hash, String aggregationKey) {
+		int slot = find(key, hash, aggregationKey);
+		if (slot < 0) {
+			return null;
+		}
+		V value = (V) values[slot];
+		// backward shift deletion keeps probe sequences intact
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (aggregationKeys[next] == null) {
+				break;
+			}
+			int home = slot(keys[next], hashes[next]);
+			boolean between = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+			if (between) {
+				continue;
+			}
+			keys[slot] = keys[next];
+			hashes[slot] = hashes[next];
+			aggregationKeys[slot] = aggregationKeys[next];
+			values[slot] = values[next];
+			dirty[slot] = dirty[next];
+			slot = next;
+		}
+		aggregationKeys[slot] = null;
+		values[slot] = null;
+		dirty[slot] = false;
+		size--;
+		return value;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		hashes = new long[capacity];
+		aggregationKeys = new String[capacity];
+		values = new Object[capacity];
+		dirty = new boolean[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldHashes = hashes;
+		String[] oldAggregationKeys = aggregationKeys;
+		Object[] oldValues = values;
+		boolean[] oldDirty = dirty;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldAggregationKeys[i] != null) {
+				int slot = -find(oldKeys[i], oldHashes[i], oldAggregationKeys[i]) - 1;
+				keys[slot] = oldKeys[i];
+				hashes[slot] = oldHashes[i];
+				aggregationKeys[slot] = oldAggregationKeys[i];
+				values[slot] = oldValues[i];
+				dirty[slot] = oldDirty[i];
+				size++;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AggregationKeyMap [size=" + size + ", ruleActions=" + wheels.size() + "]";
+	}
+
+	/**
+	 * Callback for entry iteration
+	 * 
+	 * @author ambud_sharma
+	 */
+	@FunctionalInterface
+	public static interface EntryVisitor<V> {
+
+		/**
+		 * @param ruleAction
+		 * @param bucket
+		 * @param aggregationKey
+		 * @param value
+		 * @throws IOException
+		 */
+		public void visit(int ruleAction, int bucket, String aggregationKey, V value) throws IOException;
+
+	}
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel indexing the time buckets of a single ruleAction.<br>
+ * <br>
+ * 
+ * Buckets are non-negative ints (see
+ * {@link io.symcpe.wraith.Utils#floorTs(long, int)}), the wheel has 6 levels of
+ * 64 slots, each level resolving 6 bits of the bucket relative to the wheel
+ * cursor. A 64-bit occupancy mask per level lets the wheel jump straight to
+ * the next occupied slot, so draining expired buckets costs O(expired buckets)
+ * plus cascades and never touches live ones.<br>
+ * <br>
+ * 
+ * The cursor starts at 0 and never moves past a drained bucket + 1, buckets
+ * inserted behind it (late data within jitter tolerance) are kept in an
+ * overdue list and drained by value.
+ * 
+ * @author ambud_sharma
+ */
+public class BucketWheel {
+
+	private static final int LEVELS = 6;
+	private static final int SLOT_BITS = 6;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private final long[] occupancy;
+	private final Bucket[][] slots;
+	private Bucket overdue;
+	private int cursor;
+	private int size;
+	private int lastBucket;
+
+	public BucketWheel() {
+		occupancy = new long[LEVELS];
+		slots = new Bucket[LEVELS][];
+		lastBucket = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Add an aggregation key to a bucket
+	 * 
+	 * @param bucket
+	 * @param aggregationKey
+	 */
+	public void add(int bucket, String aggregationKey) {
+		Bucket entry = find(bucket);
+		if (entry == null) {
+			entry = new Bucket(bucket);
+			place(entry);
+			size++;
+			if (bucket > lastBucket) {
+				lastBucket = bucket;
+			}
+		}
+		entry.keys.add(aggregationKey);
+	}
+
+	/**
+	 * Remove an aggregation key from a bucket
+	 * 
+	 * @param bucket
+	 * @param aggregationKey
+	 * @return true if the key was present
+	 */
+	public boolean remove(int bucket, String aggregationKey) {
+		Bucket entry = find(bucket);
+		if (entry == null || !entry.keys.remove(aggregationKey)) {
+			return false;
+		}
+		if (entry.keys.isEmpty()) {
+			unlink(entry);
+			size--;
+			if (bucket == lastBucket) {
+				lastBucket = computeLastBucket();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Visit and remove all buckets less than or equal to the supplied bucket in
+	 * ascending order
+	 * 
+	 * @param maxBucket
+	 * @param visitor
+	 * @throws IOException
+	 */
+	public void drainUntil(int maxBucket, BucketVisitor visitor) throws IOException {
+		if (overdue != null) {
+			drainOverdue(maxBucket, visitor);
+		}
+		Bucket entry;
+		while ((entry = next(maxBucket)) != null) {
+			int slot = entry.bucket & SLOT_MASK;
+			slots[0][slot] = null;
+			occupancy[0] &= ~(1L << slot);
+			size--;
+			visitor.visit(entry.bucket, entry.keys);
+		}
+		if (size == 0) {
+			lastBucket = Integer.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * @return latest bucket or {@link Integer#MIN_VALUE} if empty
+	 */
+	public int lastBucket() {
+		return lastBucket;
+	}
+
+	/**
+	 * @return true if there are no buckets
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return number of buckets
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the earliest bucket, cascading higher level slots down as the
+	 * cursor advances. The cursor never moves past maxBucket + 1.
+	 * 
+	 * @param maxBucket
+	 * @return earliest bucket if it's not after maxBucket otherwise null
+	 */
+	private Bucket next(int maxBucket) {
+		if (maxBucket < 0) {
+			return null;
+		}
+		outer: while (true) {
+			for (int level = 0; level < LEVELS; level++) {
+				if (occupancy[level] == 0) {
+					continue;
+				}
+				int slot = Long.numberOfTrailingZeros(occupancy[level]);
+				if (level == 0) {
+					Bucket entry = slots[0][slot];
+					return entry.bucket <= maxBucket ? entry : null;
+				}
+				int shift = SLOT_BITS * level;
+				int prefix = level == LEVELS - 1 ? 0 : cursor & (-1 << (shift + SLOT_BITS));
+				int lowerBound = prefix | (slot << shift);
+				if (lowerBound > maxBucket) {
+					return null;
+				}
+				advance(lowerBound);
+				continue outer;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Move the cursor forward, all buckets must be at or after the new cursor
+	 * 
+	 * @param newCursor
+	 */
+	private void advance(int newCursor) {
+		cursor = newCursor;
+		for (int level = LEVELS - 1; level > 0; level--) {
+			int slot = (newCursor >>> (SLOT_BITS * level)) & SLOT_MASK;
+			if ((occupancy[level] & (1L << slot)) != 0) {
+				Bucket entry = slots[level][slot];
+				slots[level][slot] = null;
+				occupancy[level] &= ~(1L << slot);
+				while (entry != null) {
+					Bucket next = entry.next;
+					place(entry);
+					entry = next;
+				}
+			}
+		}
+	}
+
+	private void place(Bucket entry) {
+		entry.previous = null;
+		if (entry.bucket < cursor) {
+			entry.next = overdue;
+			if (overdue != null) {
+				overdue.previous = entry;
+			}
+			overdue = entry;
+			entry.level = -1;
+			return;
+		}
+		int diff = entry.bucket ^ cursor;
+		int level = diff == 0 ? 0 : (31 - Integer.numberOfLeadingZeros(diff)) / SLOT_BITS;
+		int slot = (entry.bucket >>> (SLOT_BITS * level)) & SLOT_MASK;
+		if (slots[level] == null) {
+			slots[level] = new Bucket[1 << SLOT_BITS];
+		}
+		Bucket head = slots[level][slot];
+		entry.next = head;
+		if (head != null) {
+			head.previous = entry;
+		}
+		slots[level][slot] = entry;
+		occupancy[level] |= 1L << slot;
+		entry.level = level;
+	}
+
+	private void unlink(Bucket entry) {
+		if (entry.previous != null) {
+			entry.previous.next = entry.next;
+		} else if (entry.level < 0) {
+			overdue = entry.next;
+		} else {
+			int slot = (entry.bucket >>> (SLOT_BITS * entry.level)) & SLOT_MASK;
+			slots[entry.level][slot] = entry.next;
+			if (entry.next == null) {
+				occupancy[entry.level] &= ~(1L << slot);
+			}
+		}
+		if (entry.next != null) {
+			entry.next.previous = entry.previous;
+		}
+		entry.next = null;
+		entry.previous = null;
+	}
+
+	private Bucket find(int bucket) {
+		Bucket entry;
+		if (bucket < cursor) {
+			entry = overdue;
+		} else {
+			int diff = bucket ^ cursor;
+			int level = diff == 0 ? 0 : (31 - Integer.numberOfLeadingZeros(diff)) / SLOT_BITS;
+			if (slots[level] == null) {
+				return null;
+			}
+			entry = slots[level][(bucket >>> (SLOT_BITS * level)) & SLOT_MASK];
+		}
+		while (entry != null && entry.bucket != bucket) {
+			entry = entry.next;
+		}
+		return entry;
+	}
+
+	private void drainOverdue(int maxBucket, BucketVisitor visitor) throws IOException {
+		List<Bucket> expired = new ArrayList<>();
+		for (Bucket entry = overdue; entry != null; entry = entry.next) {
+			if (entry.bucket <= maxBucket) {
+				expired.add(entry);
+			}
+		}
+		expired.sort((o1, o2) -> Integer.compare(o1.bucket, o2.bucket));
+		for (Bucket entry : expired) {
+			unlink(entry);
+			size--;
+			visitor.visit(entry.bucket, entry.keys);
+		}
+	}
+
+	private int computeLastBucket() {
+		int last = Integer.MIN_VALUE;
+		for (Bucket entry = overdue; entry != null; entry = entry.next) {
+			last = Math.max(last, entry.bucket);
+		}
+		for (int level = 0; level < LEVELS; level++) {
+			long mask = occupancy[level];
+			while (mask != 0) {
+				int slot = Long.numberOfTrailingZeros(mask);
+				mask &= mask - 1;
+				for (Bucket entry = slots[level][slot]; entry != null; entry = entry.next) {
+					last = Math.max(last, entry.bucket);
+				}
+			}
+		}
+		return last;
+	}
+
+	/**
+	 * A time bucket and the aggregation keys in it
+	 */
+	private static final class Bucket {
+
+		private final int bucket;
+		private final List<String> keys;
+		private int level;
+		private Bucket next;
+		private Bucket previous;
+
+		private Bucket(int bucket) {
+			this.bucket = bucket;
+			this.keys = new ArrayList<>(2);
+		}
+
+	}
+
+	/**
+	 * Callback for drained buckets
+	 * 
+	 * @author ambud_sharma
+	 */
+	@FunctionalInterface
+	public static interface BucketVisitor {
+
+		/**
+		 * @param bucket
+		 * @param aggregationKeys
+		 * @throws IOException
+		 */
+		public void visit(int bucket, List<String> aggregationKeys) throws IOException;
+
+	}
+
+}
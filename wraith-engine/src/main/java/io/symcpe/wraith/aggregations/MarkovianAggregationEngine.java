@@ -31,4 +31,17 @@ public interface MarkovianAggregationEngine extends AggregationEngine {
 
 	public void emit(int aggregationWindow, String ruleActionId, List<Event> emits) throws IOException;
 
+	/**
+	 * Emit sliding windows of aggregationWindow seconds every aggregationSlide
+	 * seconds, values must have been aggregated in buckets of the slide size
+	 * 
+	 * @param aggregationWindow
+	 * @param aggregationSlide
+	 * @param ruleActionId
+	 * @param emits
+	 * @throws IOException
+	 */
+	public void emit(int aggregationWindow, int aggregationSlide, String ruleActionId, List<Event> emits)
+			throws IOException;
+
 }
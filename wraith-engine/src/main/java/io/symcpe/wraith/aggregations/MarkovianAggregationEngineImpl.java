@@ -17,13 +17,10 @@ package io.symcpe.wraith.aggregations;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import io.symcpe.wraith.Constants;
 import io.symcpe.wraith.Event;
@@ -32,6 +29,9 @@ import io.symcpe.wraith.Utils;
 import io.symcpe.wraith.aggregators.AggregationRejectException;
 import io.symcpe.wraith.aggregators.Aggregator;
 import io.symcpe.wraith.aggregators.CountingAggregator;
+import io.symcpe.wraith.aggregators.IncrementalAggregator;
+import io.symcpe.wraith.aggregators.MergeableAggregator;
+import io.symcpe.wraith.aggregators.SketchAggregator;
 import io.symcpe.wraith.aggregators.StaleDataException;
 import io.symcpe.wraith.store.AggregationStore;
 import io.symcpe.wraith.store.StoreFactory;
@@ -57,9 +57,13 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	private AggregationRejectException AggregationRejectException = new AggregationRejectException();
 	private int jitterTolerance;
 	private Map<String, Integer> lastEmittedBucketMap;
-	private SortedMap<String, Aggregator> aggregationMap;
-	private SortedMap<String, Aggregator> flushAggregationMap;
+	private AggregationKeyMap<Aggregator> aggregationMap;
+	private AggregationKeyMap<Aggregator> flushAggregationMap;
+	private Map<String, Aggregator> flushBuffer;
+	private Map<String, Aggregator> flushedAggregators;
 	private Aggregator template;
+	private Map<Integer, Aggregator> ruleActionTemplates;
+	private Map<String, PaneBuffer<Aggregator>> paneBuffers;
 	private AggregationStore store;
 	private int taskId;
 	private EventFactory eventFactory;
@@ -86,6 +90,12 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 		template.initialize(conf);
 		this.taskId = taskId;
 		lastEmittedBucketMap = new HashMap<String, Integer>();
+		ruleActionTemplates = new HashMap<>();
+		paneBuffers = new HashMap<>();
+		aggregationMap = new AggregationKeyMap<>();
+		flushAggregationMap = new AggregationKeyMap<>();
+		flushBuffer = new LinkedHashMap<>();
+		flushedAggregators = new LinkedHashMap<>();
 		if (conf.get(Constants.ASTORE_TYPE) != null) {
 			store = storeFactory.getAggregationStore(conf.get(Constants.ASTORE_TYPE), conf);
 			if (store != null) {
@@ -93,8 +103,6 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 				restore();
 			}
 		}
-		aggregationMap = new TreeMap<>();
-		flushAggregationMap = new TreeMap<>();
 		jitterTolerance = Integer.parseInt(conf.getOrDefault(Constants.AGGREGATION_JITTER_TOLERANCE, "10")) * 1000;
 	}
 
@@ -115,16 +123,19 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	public boolean aggregate(long timestamp, int aggregationWindow, String ruleActionId, String aggregationKey,
 			Object aggregationValue) throws AggregationRejectException {
 		checkStaleData(timestamp, ruleActionId);
-		String key = Utils.createMapKey(timestamp, aggregationWindow, ruleActionId, aggregationKey);
-		Aggregator aggregator = getAggregationMap().get(key);
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int bucket = Utils.floorTs(timestamp, aggregationWindow);
+		Aggregator aggregator = aggregationMap.get(ruleAction, bucket, aggregationKey);
 		if (aggregator == null) {
-			aggregator = template.getInstance();
-			getAggregationMap().put(key, aggregator);
-			getFlushMap().put(key, template.getInstance());
+			Aggregator ruleActionTemplate = ruleActionTemplates.get(ruleAction);
+			aggregator = (ruleActionTemplate != null ? ruleActionTemplate : template).getInstance();
+			aggregationMap.put(ruleAction, bucket, aggregationKey, aggregator);
+			flushAggregationMap.put(ruleAction, bucket, aggregationKey, flushInstance(aggregator));
 		}
 		if (aggregator.disableLimitChecks() || (aggregator.size() < aggregator.getHardLimit())) {
 			if (aggregator.add(aggregationValue)) {
-				return getFlushMap().get(key).add(aggregationValue);
+				Aggregator flushAggregator = flushAggregationMap.markDirty(ruleAction, bucket, aggregationKey);
+				return flushAggregator == aggregator || flushAggregator.add(aggregationValue);
 			} else {
 				return false;
 			}
@@ -141,16 +152,72 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	}
 
 	/**
-	 * Flush and commit data
+	 * Flush and commit data, only aggregators mutated since the last flush are
+	 * written to the store in a single batch
 	 * 
 	 * @throws IOException
 	 */
 	public void flush() throws IOException {
-		for (Entry<String, Aggregator> entry : getFlushMap().entrySet()) {
-			if (store != null) {
-				store.persist(taskId, entry.getKey(), entry.getValue());
-			}
-			entry.getValue().reset();
+		if (flushAggregationMap.dirtyCount() == 0 && flushBuffer.isEmpty()) {
+			return;
+		}
+		if (store == null) {
+			flushAggregationMap.drainDirty(
+					(ruleAction, bucket, aggregationKey, aggregator) -> resetFlushed(aggregator));
+			return;
+		}
+		flushAggregationMap.drainDirty((ruleAction, bucket, aggregationKey, aggregator) -> {
+			String key = AggregationKeyMap.toMapKey(ruleAction, bucket, aggregationKey);
+			flushBuffer.put(key, aggregator instanceof IncrementalAggregator
+					? ((IncrementalAggregator) aggregator).getDelta() : aggregator);
+			flushedAggregators.put(key, aggregator);
+		});
+		// on failure the buffers are retained and retried on the next flush
+		store.persist(taskId, flushBuffer);
+		for (Aggregator aggregator : flushedAggregators.values()) {
+			resetFlushed(aggregator);
+		}
+		flushBuffer.clear();
+		flushedAggregators.clear();
+	}
+
+	/**
+	 * {@link IncrementalAggregator}s track their own delta and are shared with
+	 * the flush map, others need a mirror instance to collect the delta
+	 * 
+	 * @param aggregator
+	 * @return instance to put in the flush map
+	 */
+	private Aggregator flushInstance(Aggregator aggregator) {
+		if (aggregator instanceof IncrementalAggregator) {
+			((IncrementalAggregator) aggregator).trackDelta();
+			return aggregator;
+		}
+		return aggregator.getInstance();
+	}
+
+	/**
+	 * Use a dedicated {@link Aggregator} template for a ruleActionId e.g. to
+	 * honour per action settings, buckets already open keep their instances
+	 * 
+	 * @param ruleActionId
+	 * @param ruleActionTemplate
+	 *            null to fall back to the default template
+	 */
+	public void setTemplate(String ruleActionId, Aggregator ruleActionTemplate) {
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		if (ruleActionTemplate == null) {
+			ruleActionTemplates.remove(ruleAction);
+		} else {
+			ruleActionTemplates.put(ruleAction, ruleActionTemplate);
+		}
+	}
+
+	private static void resetFlushed(Aggregator aggregator) {
+		if (aggregator instanceof IncrementalAggregator) {
+			((IncrementalAggregator) aggregator).resetDelta();
+		} else {
+			aggregator.reset();
 		}
 	}
 
@@ -161,7 +228,9 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	 * @return true if it is
 	 */
 	public boolean containsRuleActionId(String ruleActionId) {
-		return getAggregationMap().containsKey(ruleActionId);
+		PaneBuffer<Aggregator> panes = paneBuffers.get(ruleActionId);
+		return aggregationMap.containsRuleAction(aggregationMap.ruleAction(ruleActionId))
+				|| (panes != null && !panes.isEmpty());
 	}
 
 	/**
@@ -173,35 +242,150 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	 */
 	public void emit(int aggregationWindow, String ruleActionId, List<Event> emits) throws IOException {
 		flush();
-		SortedMap<String, Aggregator> map = getAggregationMap().subMap(
-				Utils.concat(ruleActionId, Constants.KEY_SEPARATOR),
-				Utils.concat(ruleActionId, Constants.KEY_SEPARATOR, String.valueOf(Character.MAX_VALUE)));
-		int lastTs = 0;
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int lastTs = lastBucketToEmit(aggregationWindow, ruleActionId, ruleAction);
+		if (lastTs == Integer.MIN_VALUE) {
+			return;
+		}
+		aggregationMap.drainUntil(ruleAction, lastTs, (rAction, bucket, aggregationKey, aggregator) -> {
+			addEmit(ruleActionId, bucket, aggregationKey, aggregator, emits);
+			flushAggregationMap.remove(rAction, bucket, aggregationKey);
+		});
+		getLastEmittedBucketMap().put(ruleActionId, lastTs);
+	}
+
+	/**
+	 * Emit the sliding windows for a given ruleActionId that ended since the
+	 * last emit. Values are aggregated in panes of the slide size, each window
+	 * merges the panes it spans, see {@link PaneBuffer}.
+	 * 
+	 * @param aggregationWindow
+	 * @param aggregationSlide
+	 *            tumbling windows are emitted if it's not smaller than the
+	 *            window
+	 * @param ruleActionId
+	 * @param emits
+	 * @throws IOException
+	 */
+	@Override
+	public void emit(int aggregationWindow, int aggregationSlide, String ruleActionId, List<Event> emits)
+			throws IOException {
+		if (aggregationSlide <= 0 || aggregationSlide >= aggregationWindow) {
+			emit(aggregationWindow, ruleActionId, emits);
+			return;
+		}
+		flush();
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int lastTs = lastBucketToEmit(aggregationSlide, ruleActionId, ruleAction);
+		if (lastTs == Integer.MIN_VALUE) {
+			return;
+		}
+		PaneBuffer<Aggregator> panes = paneBuffers.get(ruleActionId);
+		if (panes == null || panes.getWindow() != aggregationWindow || panes.getSlide() != aggregationSlide) {
+			panes = new PaneBuffer<>(aggregationWindow, aggregationSlide);
+			paneBuffers.put(ruleActionId, panes);
+		}
+		PaneBuffer<Aggregator> buffer = panes;
+		aggregationMap.drainUntil(ruleAction, lastTs, (rAction, bucket, aggregationKey, aggregator) -> {
+			buffer.add(bucket, aggregationKey, aggregator);
+			flushAggregationMap.remove(rAction, bucket, aggregationKey);
+		});
+		buffer.close(getLastEmittedBucketMap().get(ruleActionId), lastTs, (windowStart, aggregationKey,
+				paneAggregators) -> addEmit(ruleActionId, windowStart, aggregationKey, merge(paneAggregators), emits));
+		getLastEmittedBucketMap().put(ruleActionId, lastTs);
+	}
+
+	/**
+	 * @return last bucket to emit or {@link Integer#MIN_VALUE} if there is
+	 *         nothing to emit
+	 */
+	private int lastBucketToEmit(int bucketSize, String ruleActionId, int ruleAction) {
 		if (getLastEmittedBucketMap().containsKey(ruleActionId)) {
-			lastTs = getLastEmittedBucketMap().get(ruleActionId) + aggregationWindow;
-		} else {
-			lastTs = MarkovianAggregationEngineImpl.extractTsFromAggregationKey(map.lastKey());
-			lastTs = lastTs - aggregationWindow - (int) (getJitterTolerance() / 1000);
+			return getLastEmittedBucketMap().get(ruleActionId) + bucketSize;
+		}
+		int lastTs = aggregationMap.lastBucket(ruleAction);
+		if (lastTs == Integer.MIN_VALUE) {
+			return lastTs;
+		}
+		return lastTs - bucketSize - (int) (getJitterTolerance() / 1000);
+	}
+
+	private void addEmit(String ruleActionId, int bucket, String aggregationKey, Aggregator aggregator,
+			List<Event> emits) {
+		Object value = null;
+		if (template instanceof CountingAggregator) {
+			value = ((CountingAggregator) aggregator).getCardinality();
+		} else if (template instanceof SketchAggregator) {
+			value = ((SketchAggregator) aggregator).getSummary();
+		}
+		if (value != null) {
+			Event event = eventFactory.buildEvent();
+			event.getHeaders().put(Constants.FIELD_AGGREGATION_KEY,
+					AggregationKeyMap.toMapKey(ruleActionId, bucket, aggregationKey));
+			event.getHeaders().put(Constants.FIELD_AGGREGATION_VALUE, value);
+			emits.add(event);
+		}
+	}
+
+	/**
+	 * @param aggregators
+	 * @return a single aggregator as is otherwise a new instance with all of
+	 *         them merged
+	 * @throws IllegalArgumentException
+	 *             if the aggregators can't be merged
+	 */
+	private static Aggregator merge(List<Aggregator> aggregators) {
+		if (aggregators.size() == 1) {
+			return aggregators.get(0);
 		}
-		String val = Utils.intToString(lastTs);
-		val = new StringBuilder(ruleActionId.length() + 3 + val.length()).append(ruleActionId)
-				.append(Constants.KEY_SEPARATOR).append(val).append(Constants.KEY_SEPARATOR).append(Character.MAX_VALUE)
-				.toString();
-		map = getAggregationMap().subMap(ruleActionId, val);
-		Set<Entry<String, Aggregator>> set = map.entrySet();
-		for (Iterator<Entry<String, Aggregator>> iterator = set.iterator(); iterator.hasNext();) {
-			Entry<String, Aggregator> entry = iterator.next();
-			if (template instanceof CountingAggregator) {
-				Event event = eventFactory.buildEvent();
-				event.getHeaders().put(Constants.FIELD_AGGREGATION_KEY, entry.getKey());
-				event.getHeaders().put(Constants.FIELD_AGGREGATION_VALUE,
-						((CountingAggregator) entry.getValue()).getCardinality());
-				emits.add(event);
+		Aggregator merged = null;
+		for (Aggregator aggregator : aggregators) {
+			if (!(aggregator instanceof MergeableAggregator)) {
+				throw new IllegalArgumentException(aggregator.getClass().getName() + " can't be merged");
 			}
-			getFlushAggregationMap().remove(entry.getKey());
-			iterator.remove();
+			if (merged == null) {
+				merged = aggregator.getInstance();
+			}
+			((MergeableAggregator) merged).merge(aggregator);
 		}
-		getLastEmittedBucketMap().put(ruleActionId, lastTs);
+		return merged;
+	}
+
+	/**
+	 * Roll up the open buckets of an aggregation key into a single
+	 * {@link Aggregator} by merging them instead of recounting raw values
+	 * 
+	 * @param aggregationWindow
+	 * @param ruleActionId
+	 * @param aggregationKey
+	 * @param fromBucket
+	 *            first bucket inclusive
+	 * @param toBucket
+	 *            last bucket inclusive
+	 * @return merged aggregator, null if none of the buckets are open
+	 * @throws IllegalArgumentException
+	 *             if the aggregators can't be merged
+	 */
+	public Aggregator rollup(int aggregationWindow, String ruleActionId, String aggregationKey, int fromBucket,
+			int toBucket) {
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		MergeableAggregator rollup = null;
+		// buckets are aligned to the window
+		int first = Utils.floorTs(fromBucket * 1000L, aggregationWindow);
+		for (int bucket = first; bucket <= toBucket; bucket += aggregationWindow) {
+			Aggregator aggregator = aggregationMap.get(ruleAction, bucket, aggregationKey);
+			if (aggregator == null) {
+				continue;
+			}
+			if (!(aggregator instanceof MergeableAggregator)) {
+				throw new IllegalArgumentException(aggregator.getClass().getName() + " can't be rolled up");
+			}
+			if (rollup == null) {
+				rollup = (MergeableAggregator) aggregator.getInstance();
+			}
+			rollup.merge(aggregator);
+		}
+		return rollup;
 	}
 
 	public static int extractTsFromAggregationKey(String key) {
@@ -211,14 +395,14 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	/**
 	 * @return
 	 */
-	public final SortedMap<String, Aggregator> getAggregationMap() {
+	public final AggregationKeyMap<Aggregator> getAggregationMap() {
 		return aggregationMap;
 	}
 
 	/**
 	 * @return
 	 */
-	public final SortedMap<String, Aggregator> getFlushMap() {
+	public final AggregationKeyMap<Aggregator> getFlushMap() {
 		return flushAggregationMap;
 	}
 
@@ -239,18 +423,27 @@ public class MarkovianAggregationEngineImpl implements MarkovianAggregationEngin
 	/**
 	 * @return the flushAggregationMap
 	 */
-	public SortedMap<String, Aggregator> getFlushAggregationMap() {
+	public AggregationKeyMap<Aggregator> getFlushAggregationMap() {
 		return flushAggregationMap;
 	}
 
 	@Override
 	public void cleanup() throws IOException {
-		store.disconnect();
+		if (store != null) {
+			store.disconnect();
+		}
 	}
 
 	@Override
 	public void restore() throws IOException {
-		aggregationMap.putAll(store.retrive(taskId, template));
+		Map<String, Aggregator> aggregators = store.retrive(taskId, template);
+		if (aggregators == null) {
+			return;
+		}
+		for (Entry<String, Aggregator> entry : aggregators.entrySet()) {
+			aggregationMap.put(entry.getKey(), entry.getValue());
+			flushAggregationMap.put(entry.getKey(), flushInstance(entry.getValue()));
+		}
 	}
 
 }
\ No newline at end of file
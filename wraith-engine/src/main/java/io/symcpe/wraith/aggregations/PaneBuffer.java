@@ -0,0 +1,198 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Closed panes of sliding windows for one ruleActionId. Values are aggregated
+ * in panes of the slide size, a window is assembled from the window/slide
+ * panes it spans so overlapping windows share partial aggregates instead of
+ * each keeping a full one.
+ * 
+ * @author ambud_sharma
+ */
+public class PaneBuffer<V> {
+
+	private final int window;
+	private final int slide;
+	private final Map<String, ArrayDeque<Pane<V>>> panes;
+
+	public PaneBuffer(int window, int slide) {
+		if (slide <= 0 || window % slide != 0) {
+			throw new IllegalArgumentException("Slide must be a positive divisor of the window");
+		}
+		this.window = window;
+		this.slide = slide;
+		this.panes = new HashMap<>();
+	}
+
+	/**
+	 * Add a closed pane
+	 * 
+	 * @param bucket
+	 *            start of the pane in seconds
+	 * @param aggregationKey
+	 * @param value
+	 */
+	public void add(int bucket, String aggregationKey, V value) {
+		ArrayDeque<Pane<V>> keyPanes = panes.get(aggregationKey);
+		if (keyPanes == null) {
+			keyPanes = new ArrayDeque<>();
+			panes.put(aggregationKey, keyPanes);
+		}
+		Pane<V> pane = new Pane<>(bucket, value);
+		if (keyPanes.isEmpty() || keyPanes.peekLast().bucket < bucket) {
+			keyPanes.addLast(pane);
+		} else {
+			// late pane, keep panes ordered by bucket
+			List<Pane<V>> ordered = new ArrayList<>(keyPanes);
+			int i = ordered.size();
+			while (i > 0 && ordered.get(i - 1).bucket > bucket) {
+				i--;
+			}
+			ordered.add(i, pane);
+			keyPanes.clear();
+			keyPanes.addAll(ordered);
+		}
+	}
+
+	/**
+	 * Visit every window ending with a pane after lastEmitted up to and
+	 * including lastPane, then evict panes no later window needs
+	 * 
+	 * @param lastEmitted
+	 *            last pane visited by the previous call, null if none
+	 * @param lastPane
+	 * @param visitor
+	 * @throws IOException
+	 */
+	public void close(Integer lastEmitted, int lastPane, WindowVisitor<V> visitor) throws IOException {
+		int firstPane = Integer.MAX_VALUE;
+		for (ArrayDeque<Pane<V>> keyPanes : panes.values()) {
+			firstPane = Math.min(firstPane, keyPanes.peekFirst().bucket);
+		}
+		int end = firstPane;
+		if (lastEmitted != null) {
+			end = Math.max(end, Math.floorDiv(lastEmitted, slide) * slide + slide);
+		}
+		List<V> values = new ArrayList<>(window / slide);
+		for (; end <= lastPane; end += slide) {
+			int start = end - window + slide;
+			for (Entry<String, ArrayDeque<Pane<V>>> entry : panes.entrySet()) {
+				values.clear();
+				for (Pane<V> pane : entry.getValue()) {
+					if (pane.bucket > end) {
+						break;
+					}
+					if (pane.bucket >= start) {
+						values.add(pane.value);
+					}
+				}
+				if (!values.isEmpty()) {
+					visitor.visit(start, entry.getKey(), values);
+				}
+			}
+		}
+		evict(lastPane - window + slide);
+	}
+
+	/**
+	 * @return number of panes held
+	 */
+	public int size() {
+		int size = 0;
+		for (ArrayDeque<Pane<V>> keyPanes : panes.values()) {
+			size += keyPanes.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return true if no panes are held
+	 */
+	public boolean isEmpty() {
+		return panes.isEmpty();
+	}
+
+	/**
+	 * @return the window
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * @return the slide
+	 */
+	public int getSlide() {
+		return slide;
+	}
+
+	private void evict(int maxBucket) {
+		Iterator<ArrayDeque<Pane<V>>> iterator = panes.values().iterator();
+		while (iterator.hasNext()) {
+			ArrayDeque<Pane<V>> keyPanes = iterator.next();
+			while (!keyPanes.isEmpty() && keyPanes.peekFirst().bucket <= maxBucket) {
+				keyPanes.pollFirst();
+			}
+			if (keyPanes.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static final class Pane<V> {
+
+		private final int bucket;
+		private final V value;
+
+		private Pane(int bucket, V value) {
+			this.bucket = bucket;
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Callback for windows assembled from panes
+	 * 
+	 * @author ambud_sharma
+	 */
+	@FunctionalInterface
+	public static interface WindowVisitor<V> {
+
+		/**
+		 * @param windowStart
+		 *            start of the window in seconds
+		 * @param aggregationKey
+		 * @param panes
+		 *            values of the panes in the window ordered by time, the
+		 *            list is reused between calls
+		 * @throws IOException
+		 */
+		public void visit(int windowStart, String aggregationKey, List<V> panes) throws IOException;
+
+	}
+
+}
@@ -17,13 +17,10 @@ package io.symcpe.wraith.aggregations;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import io.symcpe.wraith.Constants;
 import io.symcpe.wraith.Event;
@@ -43,8 +40,10 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 	private StaleDataException StaleDataException = new StaleDataException();
 	private long jitterTolerance;
 	private Map<String, Integer> lastEmittedBucketMap;
-	private SortedMap<String, MutableBoolean> aggregationMap;
-	private SortedMap<String, MutableBoolean> flushAggregationMap;
+	private AggregationKeyMap<MutableBoolean> aggregationMap;
+	private AggregationKeyMap<MutableBoolean> flushAggregationMap;
+	private Map<String, PaneBuffer<MutableBoolean>> paneBuffers;
+	private Map<String, MutableBoolean> flushBuffer;
 	private AggregationStore store;
 	private int taskId;
 	private StoreFactory factory;
@@ -59,8 +58,10 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 	public void initialize(Map<String, String> conf, int taskId) throws Exception {
 		this.taskId = taskId;
 		lastEmittedBucketMap = new HashMap<String, Integer>();
-		aggregationMap = new TreeMap<>();
-		flushAggregationMap = new TreeMap<>();
+		aggregationMap = new AggregationKeyMap<>();
+		flushAggregationMap = new AggregationKeyMap<>();
+		flushBuffer = new LinkedHashMap<>();
+		paneBuffers = new HashMap<>();
 		jitterTolerance = Integer.parseInt(
 				conf.getOrDefault(Constants.AGGREGATION_JITTER_TOLERANCE, Constants.DEFAULT_JITTER_TOLERANCE)) * 1000;
 		if (conf.get(Constants.ASTORE_TYPE) != null) {
@@ -79,6 +80,9 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 	@Override
 	public void restore() throws IOException {
 		Map<String, MutableBoolean> states = store.retriveStates(taskId);
+		if (states == null) {
+			return;
+		}
 		for (Entry<String, MutableBoolean> entry : states.entrySet()) {
 			aggregationMap.put(entry.getKey(), entry.getValue());
 		}
@@ -87,23 +91,31 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 	public void track(long timestamp, int aggregationWindow, String ruleActionId, String aggregationKey)
 			throws AggregationRejectException {
 		checkStaleData(timestamp, aggregationWindow, ruleActionId);
-		String key = Utils.createMapKey(timestamp, aggregationWindow, ruleActionId, aggregationKey);
-		MutableBoolean val = aggregationMap.get(key);
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int bucket = Utils.floorTs(timestamp, aggregationWindow);
+		MutableBoolean val = aggregationMap.get(ruleAction, bucket, aggregationKey);
 		if (val == null) {
 			val = new MutableBoolean();
 			val.setVal(true);
-			getAggregationMap().put(key, val);
-			getFlushAggregationMap().put(key, val);
+			aggregationMap.put(ruleAction, bucket, aggregationKey, val);
+			flushAggregationMap.put(ruleAction, bucket, aggregationKey, val);
+			flushAggregationMap.markDirty(ruleAction, bucket, aggregationKey);
 		}
 	}
 
 	public void untrack(long timestamp, int aggregationWindow, String ruleActionId, String aggregationKey)
 			throws AggregationRejectException {
 		checkStaleData(timestamp, aggregationWindow, ruleActionId);
-		String key = Utils.createMapKey(timestamp, aggregationWindow, ruleActionId, aggregationKey);
-		MutableBoolean val = getAggregationMap().get(key);
-		if (val != null) {
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int bucket = Utils.floorTs(timestamp, aggregationWindow);
+		MutableBoolean val = aggregationMap.get(ruleAction, bucket, aggregationKey);
+		if (val != null && val.isVal()) {
 			val.setVal(false);
+			if (flushAggregationMap.markDirty(ruleAction, bucket, aggregationKey) == null) {
+				// restored states are not in the flush map yet
+				flushAggregationMap.put(ruleAction, bucket, aggregationKey, val);
+				flushAggregationMap.markDirty(ruleAction, bucket, aggregationKey);
+			}
 		}
 	}
 
@@ -114,53 +126,105 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 		}
 	}
 
+	/**
+	 * Persist states changed since the last flush in a single batch
+	 */
 	@Override
 	public void flush() throws IOException {
-		if (store != null) {
-			for (Entry<String, MutableBoolean> entry : getFlushAggregationMap().entrySet()) {
-				store.persistState(taskId, entry.getKey(), entry.getValue());
-			}
+		if (flushAggregationMap.dirtyCount() == 0 && flushBuffer.isEmpty()) {
+			return;
+		}
+		if (store == null) {
+			flushAggregationMap.drainDirty((ruleAction, bucket, aggregationKey, val) -> {
+			});
+			return;
 		}
+		flushAggregationMap.drainDirty((ruleAction, bucket, aggregationKey, val) -> flushBuffer
+				.put(AggregationKeyMap.toMapKey(ruleAction, bucket, aggregationKey), val));
+		// on failure the buffer is retained and retried on the next flush
+		store.persistStates(taskId, flushBuffer);
+		flushBuffer.clear();
 	}
 
 	@Override
 	public void emit(int aggregationWindow, String ruleActionId, List<Event> events) throws IOException {
 		flush();
-		SortedMap<String, MutableBoolean> map = getAggregationMap().subMap(
-				Utils.concat(ruleActionId, Constants.KEY_SEPARATOR),
-				Utils.concat(ruleActionId, Constants.KEY_SEPARATOR, String.valueOf(Character.MAX_VALUE)));
-		int lastTs = 0;
-		if (getLastEmittedBucketMap().containsKey(ruleActionId)) {
-			lastTs = getLastEmittedBucketMap().get(ruleActionId) + aggregationWindow;
-		} else {
-			lastTs = MarkovianAggregationEngineImpl.extractTsFromAggregationKey(map.lastKey());
-			lastTs = lastTs - aggregationWindow - (int) (getJitterTolerance() / 1000);
-		}
-		String val = Utils.intToString(lastTs);
-		val = new StringBuilder(ruleActionId.length() + 3 + val.length()).append(ruleActionId)
-				.append(Constants.KEY_SEPARATOR).append(val).append(Constants.KEY_SEPARATOR).append(Character.MAX_VALUE)
-				.toString();
-		map = getAggregationMap().subMap(ruleActionId, val);
-		Set<Entry<String, MutableBoolean>> set = map.entrySet();
-		for (Iterator<Entry<String, MutableBoolean>> iterator = set.iterator(); iterator.hasNext();) {
-			Entry<String, MutableBoolean> entry = iterator.next();
-			if (entry.getValue().isVal()) {
-				Event event = eventFactory.buildEvent();
-				String[] keyParts = Utils.splitMapKey(entry.getKey());
-				long ts = MarkovianAggregationEngineImpl.extractTsFromAggregationKey(entry.getKey());
-				event.getHeaders().put(Constants.FIELD_AGGREGATION_KEY, keyParts[keyParts.length - 1]);
-				event.getHeaders().put(Constants.FIELD_TIMESTAMP, ts*1000);
-				events.add(event);
-			}
-			if (store != null) {
-				store.purgeState(taskId, entry.getKey());
-			}
-			getFlushAggregationMap().remove(entry.getKey());
-			iterator.remove();
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int lastTs = lastBucketToEmit(aggregationWindow, ruleActionId, ruleAction);
+		if (lastTs == Integer.MIN_VALUE) {
+			return;
 		}
+		aggregationMap.drainUntil(ruleAction, lastTs, (rAction, bucket, aggregationKey, val) -> {
+			addEmit(bucket, aggregationKey, val, events);
+			purge(ruleActionId, rAction, bucket, aggregationKey);
+		});
 		getLastEmittedBucketMap().put(ruleActionId, lastTs);
 	}
 
+	/**
+	 * Emit sliding windows, the state of a key in a window is the state of its
+	 * latest pane in that window
+	 */
+	@Override
+	public void emit(int aggregationWindow, int aggregationSlide, String ruleActionId, List<Event> events)
+			throws IOException {
+		if (aggregationSlide <= 0 || aggregationSlide >= aggregationWindow) {
+			emit(aggregationWindow, ruleActionId, events);
+			return;
+		}
+		flush();
+		int ruleAction = aggregationMap.ruleAction(ruleActionId);
+		int lastTs = lastBucketToEmit(aggregationSlide, ruleActionId, ruleAction);
+		if (lastTs == Integer.MIN_VALUE) {
+			return;
+		}
+		PaneBuffer<MutableBoolean> panes = paneBuffers.get(ruleActionId);
+		if (panes == null || panes.getWindow() != aggregationWindow || panes.getSlide() != aggregationSlide) {
+			panes = new PaneBuffer<>(aggregationWindow, aggregationSlide);
+			paneBuffers.put(ruleActionId, panes);
+		}
+		PaneBuffer<MutableBoolean> buffer = panes;
+		aggregationMap.drainUntil(ruleAction, lastTs, (rAction, bucket, aggregationKey, val) -> {
+			buffer.add(bucket, aggregationKey, val);
+			purge(ruleActionId, rAction, bucket, aggregationKey);
+		});
+		buffer.close(getLastEmittedBucketMap().get(ruleActionId), lastTs,
+				(windowStart, aggregationKey, states) -> addEmit(windowStart, aggregationKey,
+						states.get(states.size() - 1), events));
+		getLastEmittedBucketMap().put(ruleActionId, lastTs);
+	}
+
+	/**
+	 * @return last bucket to emit or {@link Integer#MIN_VALUE} if there is
+	 *         nothing to emit
+	 */
+	private int lastBucketToEmit(int bucketSize, String ruleActionId, int ruleAction) {
+		if (getLastEmittedBucketMap().containsKey(ruleActionId)) {
+			return getLastEmittedBucketMap().get(ruleActionId) + bucketSize;
+		}
+		int lastTs = aggregationMap.lastBucket(ruleAction);
+		if (lastTs == Integer.MIN_VALUE) {
+			return lastTs;
+		}
+		return lastTs - bucketSize - (int) (getJitterTolerance() / 1000);
+	}
+
+	private void addEmit(int bucket, String aggregationKey, MutableBoolean val, List<Event> events) {
+		if (val.isVal()) {
+			Event event = eventFactory.buildEvent();
+			event.getHeaders().put(Constants.FIELD_AGGREGATION_KEY, aggregationKey);
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, bucket * 1000L);
+			events.add(event);
+		}
+	}
+
+	private void purge(String ruleActionId, int ruleAction, int bucket, String aggregationKey) throws IOException {
+		if (store != null) {
+			store.purgeState(taskId, AggregationKeyMap.toMapKey(ruleActionId, bucket, aggregationKey));
+		}
+		flushAggregationMap.remove(ruleAction, bucket, aggregationKey);
+	}
+
 	/**
 	 * Is this aggregator processing data for a supplied ruleActionId key
 	 * 
@@ -168,9 +232,9 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 	 * @return true if it is
 	 */
 	public boolean containsRuleActionId(String ruleActionId) {
-		StringBuilder builder = new StringBuilder(ruleActionId.length() + 2);
-		builder.append(ruleActionId).append(Constants.KEY_SEPARATOR).append(Character.MAX_VALUE);
-		return getAggregationMap().subMap(ruleActionId, builder.toString()).size() > 0;
+		PaneBuffer<MutableBoolean> panes = paneBuffers.get(ruleActionId);
+		return aggregationMap.containsRuleAction(aggregationMap.ruleAction(ruleActionId))
+				|| (panes != null && !panes.isEmpty());
 	}
 
 	/**
@@ -190,14 +254,14 @@ public class StateTrackingEngine implements MarkovianAggregationEngine {
 	/**
 	 * @return the aggregationMap
 	 */
-	public SortedMap<String, MutableBoolean> getAggregationMap() {
+	public AggregationKeyMap<MutableBoolean> getAggregationMap() {
 		return aggregationMap;
 	}
 
 	/**
 	 * @return the flushAggregationMap
 	 */
-	public SortedMap<String, MutableBoolean> getFlushAggregationMap() {
+	public AggregationKeyMap<MutableBoolean> getFlushAggregationMap() {
 		return flushAggregationMap;
 	}
 
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel of periodic timers advanced one tick at a time, used to
+ * schedule aggregation window emissions.<br>
+ * <br>
+ * 
+ * Timers hash to the slot of their deadline, advancing the wheel visits only
+ * the slot of each tick so the cost is O(due timers) plus timers sharing the
+ * slot with a later deadline (periods longer than the wheel). Cancelled
+ * timers are dropped lazily when their slot is visited.
+ * 
+ * @author ambud_sharma
+ *
+ * @param <T>
+ */
+public class TimerWheel<T> {
+
+	public static final int DEFAULT_SLOTS = 512;
+	private final List<Timer<T>>[] slots;
+	private final int mask;
+	private final List<Timer<T>> rescheduled;
+	private long tick;
+	private int size;
+
+	/**
+	 * @param slots
+	 *            rounded up to a power of 2
+	 * @param tick
+	 *            current tick, timers must be scheduled after it
+	 */
+	@SuppressWarnings("unchecked")
+	public TimerWheel(int slots, long tick) {
+		int capacity = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+		this.slots = new List[capacity];
+		this.mask = capacity - 1;
+		this.rescheduled = new ArrayList<>();
+		this.tick = tick;
+	}
+
+	/**
+	 * @param value
+	 * @param deadline
+	 *            first tick to fire at, must be after the current tick
+	 * @param period
+	 *            ticks between firings, 0 fires once
+	 * @return timer handle for {@link #cancel(Timer)}
+	 */
+	public Timer<T> schedule(T value, long deadline, int period) {
+		if (deadline <= tick) {
+			throw new IllegalArgumentException("Deadline " + deadline + " isn't after tick " + tick);
+		}
+		if (period < 0) {
+			throw new IllegalArgumentException("Negative period " + period);
+		}
+		Timer<T> timer = new Timer<>(value, deadline, period);
+		insert(timer);
+		size++;
+		return timer;
+	}
+
+	/**
+	 * @param timer
+	 * @return true if the timer was pending
+	 */
+	public boolean cancel(Timer<T> timer) {
+		if (timer.cancelled) {
+			return false;
+		}
+		timer.cancelled = true;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Advance the wheel tick by tick, firing due timers in order
+	 * 
+	 * @param tick
+	 * @param visitor
+	 */
+	public void advanceTo(long tick, TimerVisitor<T> visitor) {
+		while (this.tick < tick) {
+			this.tick++;
+			List<Timer<T>> slot = slots[(int) (this.tick & mask)];
+			if (slot == null || slot.isEmpty()) {
+				continue;
+			}
+			// compact the slot in place, firing due timers
+			int kept = 0;
+			for (int i = 0; i < slot.size(); i++) {
+				Timer<T> timer = slot.get(i);
+				if (timer.cancelled) {
+					continue;
+				}
+				if (timer.deadline > this.tick) {
+					slot.set(kept++, timer);
+					continue;
+				}
+				visitor.fire(timer.value, this.tick);
+				if (timer.cancelled) {
+					// cancelled by the visitor
+				} else if (timer.period > 0) {
+					timer.deadline = this.tick + timer.period;
+					rescheduled.add(timer);
+				} else {
+					timer.cancelled = true;
+					size--;
+				}
+			}
+			slot.subList(kept, slot.size()).clear();
+			for (Timer<T> timer : rescheduled) {
+				insert(timer);
+			}
+			rescheduled.clear();
+		}
+	}
+
+	private void insert(Timer<T> timer) {
+		int index = (int) (timer.deadline & mask);
+		List<Timer<T>> slot = slots[index];
+		if (slot == null) {
+			slot = new ArrayList<>(2);
+			slots[index] = slot;
+		}
+		slot.add(timer);
+	}
+
+	/**
+	 * @return current tick
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return number of pending timers
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Handle of a scheduled value
+	 * 
+	 * @param <T>
+	 */
+	public static final class Timer<T> {
+
+		private final T value;
+		private final int period;
+		private long deadline;
+		private boolean cancelled;
+
+		private Timer(T value, long deadline, int period) {
+			this.value = value;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		/**
+		 * @return the value
+		 */
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * @return next tick this timer fires at
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+
+		/**
+		 * @return true if cancelled or fired once
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+	}
+
+	/**
+	 * Callback for due timers
+	 * 
+	 * @param <T>
+	 */
+	public static interface TimerVisitor<T> {
+
+		/**
+		 * @param value
+		 * @param tick
+		 */
+		public void fire(T value, long tick);
+
+	}
+
+}
@@ -18,30 +18,36 @@ package io.symcpe.wraith.aggregators;
 import java.io.IOException;
 import java.util.Map;
 
-import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+import io.symcpe.wraith.Constants;
 
 /**
- * Coarse grain counting of unique items based on HyperLogLog (plus)
- * probabilistic data structure.
+ * Coarse grain counting of unique items based on HyperLogLog probabilistic
+ * data structure.
  * 
  * Use of Coarse counting should be used for counts above 10K to millions with
- * about 98-995 accuracy.
+ * about 98-995 accuracy. Precision is configurable, keys with few values stay
+ * in the sparse representation and reset clears registers in place.
  * 
  * @author ambud_sharma
  */
-public class CoarseCountingAggregator implements CountingAggregator {
+public class CoarseCountingAggregator implements CountingAggregator, MergeableAggregator {
 
 	private static final boolean DISABLE_HARD_LIMIT_CHECKS = true;
 	private static final long serialVersionUID = 1L;
-	private static final int HLL_PRECISION = 10;
-	private HyperLogLogPlus hll;
+	private SparseHyperLogLog hll;
 
 	public CoarseCountingAggregator() {
-		hll = new HyperLogLogPlus(HLL_PRECISION);
+		this(Integer.parseInt(Constants.DEFAULT_AGGREGATION_HLL_PRECISION));
+	}
+
+	public CoarseCountingAggregator(int precision) {
+		hll = new SparseHyperLogLog(precision);
 	}
 
 	@Override
 	public void initialize(Map<String, String> conf) {
+		hll = new SparseHyperLogLog(Integer.parseInt(
+				conf.getOrDefault(Constants.AGGREGATIONS_HLL_PRECISION, Constants.DEFAULT_AGGREGATION_HLL_PRECISION)));
 	}
 
 	@Override
@@ -52,7 +58,7 @@ public class CoarseCountingAggregator implements CountingAggregator {
 
 	@Override
 	public CountingAggregator getInstance() {
-		return new CoarseCountingAggregator();
+		return new CoarseCountingAggregator(hll.getPrecision());
 	}
 
 	@Override
@@ -62,7 +68,7 @@ public class CoarseCountingAggregator implements CountingAggregator {
 
 	@Override
 	public boolean add(Object aggregationValue) {
-		return hll.offer((Integer) aggregationValue);
+		return hll.offer(aggregationValue);
 	}
 
 	@Override
@@ -77,7 +83,7 @@ public class CoarseCountingAggregator implements CountingAggregator {
 
 	@Override
 	public void reset() {
-		hll = new HyperLogLogPlus(HLL_PRECISION);
+		hll.clear();
 	}
 
 	@Override
@@ -85,11 +91,30 @@ public class CoarseCountingAggregator implements CountingAggregator {
 		return size();
 	}
 
+	/**
+	 * Aggregates stored as {@link com.clearspring.analytics.stream.cardinality.HyperLogLogPlus}
+	 * bytes are converted, see {@link SparseHyperLogLog#fromBytes(byte[])}
+	 */
 	@Override
 	public void initialize(Object data) throws IOException {
 		if (data instanceof byte[]) {
-			hll = HyperLogLogPlus.Builder.build((byte[]) data);
+			hll = SparseHyperLogLog.fromBytes((byte[]) data);
+		}
+	}
+
+	@Override
+	public void merge(Aggregator other) {
+		if (!(other instanceof CoarseCountingAggregator)) {
+			throw new IllegalArgumentException("Can't merge " + other.getClass().getName() + " into HLL");
 		}
+		hll.union((SparseHyperLogLog) other.getDatastructure());
+	}
+
+	/**
+	 * @return the HLL precision
+	 */
+	public int getPrecision() {
+		return hll.getPrecision();
 	}
 
 }
@@ -0,0 +1,208 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.MurmurHash;
+
+/**
+ * Count-Min sketch estimating the frequency of each value added to it in
+ * constant memory. Estimates never undercount and overcount by at most
+ * e/width of the total with a probability of 1-e^-depth.<br>
+ * <br>
+ * 
+ * The summary is the highest frequency estimated for any single value i.e.
+ * the heavy hitter count of the window.
+ * 
+ * @author ambud_sharma
+ */
+public class CountMinSketchAggregator implements SketchAggregator {
+
+	private static final long serialVersionUID = 1L;
+	private int width;
+	private int depth;
+	private long[] counters;
+	private long total;
+	private long peak;
+
+	public CountMinSketchAggregator() {
+		this(Integer.parseInt(Constants.DEFAULT_AGGREGATION_CMS_WIDTH),
+				Integer.parseInt(Constants.DEFAULT_AGGREGATION_CMS_DEPTH));
+	}
+
+	public CountMinSketchAggregator(int width, int depth) {
+		allocate(width, depth);
+	}
+
+	@Override
+	public void initialize(Map<String, String> conf) {
+		allocate(
+				Integer.parseInt(
+						conf.getOrDefault(Constants.AGGREGATIONS_CMS_WIDTH, Constants.DEFAULT_AGGREGATION_CMS_WIDTH)),
+				Integer.parseInt(
+						conf.getOrDefault(Constants.AGGREGATIONS_CMS_DEPTH, Constants.DEFAULT_AGGREGATION_CMS_DEPTH)));
+	}
+
+	@Override
+	public void initialize(Object data) throws IOException {
+		if (data instanceof byte[]) {
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap((byte[]) data);
+				allocate(Varint.readVarInt(buffer), Varint.readVarInt(buffer));
+				total = Varint.readVarLong(buffer);
+				peak = Varint.readVarLong(buffer);
+				for (int i = 0; i < counters.length; i++) {
+					counters[i] = Varint.readVarLong(buffer);
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Corrupt count-min sketch", e);
+			}
+		}
+	}
+
+	@Override
+	public int getHardLimit() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public CountMinSketchAggregator getInstance() {
+		return new CountMinSketchAggregator(width, depth);
+	}
+
+	@Override
+	public long size() {
+		return total;
+	}
+
+	@Override
+	public boolean add(Object aggregationValue) {
+		long hash = hash(aggregationValue);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		long min = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			int index = row * width + ((h1 + row * h2) & (width - 1));
+			min = Math.min(min, ++counters[index]);
+		}
+		total++;
+		if (min > peak) {
+			peak = min;
+		}
+		return true;
+	}
+
+	/**
+	 * @param value
+	 * @return estimated number of times the value was added
+	 */
+	public long estimate(Object value) {
+		long hash = hash(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		long min = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counters[row * width + ((h1 + row * h2) & (width - 1))]);
+		}
+		return min;
+	}
+
+	@Override
+	public boolean disableLimitChecks() {
+		return true;
+	}
+
+	@Override
+	public Object getDatastructure() {
+		return counters;
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(counters, 0);
+		total = 0;
+		peak = 0;
+	}
+
+	/**
+	 * @return the highest frequency estimated for a single value
+	 */
+	@Override
+	public Long getSummary() {
+		return peak;
+	}
+
+	/**
+	 * Compact form: varint width, depth, total and peak followed by varint
+	 * counters
+	 */
+	@Override
+	public byte[] toBytes() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(counters.length + 16);
+		Varint.writeVarInt(stream, width);
+		Varint.writeVarInt(stream, depth);
+		Varint.writeVarLong(stream, total);
+		Varint.writeVarLong(stream, peak);
+		for (long counter : counters) {
+			Varint.writeVarLong(stream, counter);
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	private void allocate(int width, int depth) {
+		if (width < 1 || depth < 1) {
+			throw new IllegalArgumentException("Count-min width and depth must be positive");
+		}
+		// round up to a power of two to index with a mask
+		this.width = Integer.highestOneBit(width - 1) << 1;
+		if (this.width == 0) {
+			this.width = 1;
+		}
+		this.depth = depth;
+		this.counters = new long[this.width * depth];
+		this.total = 0;
+		this.peak = 0;
+	}
+
+	private static long hash(Object value) {
+		if (value instanceof Integer) {
+			long h = ((Integer) value) * 0x9E3779B97F4A7C15L;
+			return h ^ (h >>> 29);
+		}
+		return MurmurHash.hash64(value.toString());
+	}
+
+}
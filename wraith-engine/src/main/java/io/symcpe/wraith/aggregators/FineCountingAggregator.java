@@ -16,21 +16,23 @@
 package io.symcpe.wraith.aggregators;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
 
 import io.symcpe.wraith.Constants;
 
 /**
  * To count exact values for a given quantity. The maximum hard limit of number
  * of accurately counted values is 100K to guarantee predictable performance.
- * This aggregator does counting based on a hashset and pre-hashes inbound
- * values to integers using MD5 thus ensuring predictable size.<br>
+ * This aggregator does counting based on a primitive {@link IntHashSet} and
+ * pre-hashes inbound values to integers using MD5 thus ensuring predictable
+ * size.<br>
  * <br>
  * 
- * Each instance can / will store up to 400K bytes therefore allowing a decent
- * count number of accurate aggregations to be run.<br>
+ * Sets grow on demand and can optionally be allocated off-heap using
+ * {@link Constants#AGGREGATIONS_FCOUNT_OFFHEAP}. Values added since the last
+ * flush are tracked in a small delta set so engines don't need a mirror
+ * aggregator to flush incrementally.<br>
  * <br>
  * 
  * For quantities greater than 100K, you will need to use
@@ -41,18 +43,21 @@ import io.symcpe.wraith.Constants;
  * 
  * @author ambud_sharma
  */
-public class FineCountingAggregator implements CountingAggregator {
+public class FineCountingAggregator implements CountingAggregator, IncrementalAggregator, MergeableAggregator {
 
 	private static final boolean DISABLE_HARD_LIMIT_CHECKS = false;
 	private static final long serialVersionUID = 1L;
 	private int hardLimit;
-	private Set<Integer> set;
+	private boolean offHeap;
+	private IntHashSet set;
+	private transient FineCountingAggregator delta;
 
 	public FineCountingAggregator() {
 	}
 
-	private FineCountingAggregator(int hardLimit) {
+	private FineCountingAggregator(int hardLimit, boolean offHeap) {
 		this.hardLimit = hardLimit;
+		this.offHeap = offHeap;
 		initialize();
 	}
 
@@ -61,11 +66,12 @@ public class FineCountingAggregator implements CountingAggregator {
 		hardLimit = Integer.parseInt(
 				conf.getOrDefault(Constants.AGGREGATIONS_FCOUNT_LIMIT, Constants.DEFAULT_AGGREGATION_FCOUNT_LIMIT)
 						.toString());
+		offHeap = Boolean.parseBoolean(conf.getOrDefault(Constants.AGGREGATIONS_FCOUNT_OFFHEAP, Constants.FALSE));
 		initialize();
 	}
 
 	protected void initialize() {
-		set = new HashSet<>((int) (hardLimit * Constants.SET_CAPACITY_AMPLIFICATION), Constants.HASHSET_LOAD_FACTOR);
+		set = new IntHashSet(0, offHeap);
 	}
 
 	@Override
@@ -75,7 +81,7 @@ public class FineCountingAggregator implements CountingAggregator {
 
 	@Override
 	public CountingAggregator getInstance() {
-		return new FineCountingAggregator(hardLimit);
+		return new FineCountingAggregator(hardLimit, offHeap);
 	}
 
 	@Override
@@ -85,7 +91,14 @@ public class FineCountingAggregator implements CountingAggregator {
 
 	@Override
 	public boolean add(Object aggregationValue) {
-		return set.add((Integer) aggregationValue);
+		int value = (Integer) aggregationValue;
+		if (set.add(value)) {
+			if (delta != null) {
+				delta.set.add(value);
+			}
+			return true;
+		}
+		return false;
 	}
 
 	@Override
@@ -94,13 +107,34 @@ public class FineCountingAggregator implements CountingAggregator {
 	}
 
 	@Override
-	public Set<Integer> getDatastructure() {
+	public IntHashSet getDatastructure() {
 		return set;
 	}
 
 	@Override
 	public void reset() {
 		set.clear();
+		resetDelta();
+	}
+
+	@Override
+	public void trackDelta() {
+		if (delta == null) {
+			delta = new FineCountingAggregator(hardLimit, false);
+		}
+	}
+
+	@Override
+	public Aggregator getDelta() {
+		trackDelta();
+		return delta;
+	}
+
+	@Override
+	public void resetDelta() {
+		if (delta != null) {
+			delta.set.clear();
+		}
 	}
 
 	@Override
@@ -108,11 +142,29 @@ public class FineCountingAggregator implements CountingAggregator {
 		return size();
 	}
 
+	@Override
+	public void merge(Aggregator other) {
+		if (!(other instanceof FineCountingAggregator)) {
+			throw new IllegalArgumentException("Can't merge " + other.getClass().getName() + " into a fine count");
+		}
+		IntHashSet values = ((FineCountingAggregator) other).set;
+		set.addAll(values);
+		if (delta != null) {
+			delta.set.addAll(values);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void initialize(Object data) throws IOException {
-		if (data instanceof Set) {
-			set.addAll((Set<Integer>) data);
+		if (data instanceof byte[]) {
+			set.addAll(IntHashSet.fromBytes((byte[]) data, false));
+		} else if (data instanceof IntHashSet) {
+			set.addAll((IntHashSet) data);
+		} else if (data instanceof Collection) {
+			for (Integer value : (Collection<Integer>) data) {
+				set.add(value);
+			}
 		}
 	}
 
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+/**
+ * An {@link Aggregator} that tracks the values added since the last flush
+ * itself, so aggregation engines don't need to keep a mirror
+ * {@link Aggregator} per key to compute what to persist.
+ * 
+ * @author ambud_sharma
+ */
+public interface IncrementalAggregator extends Aggregator {
+
+	/**
+	 * Start tracking values added from now on as delta, aggregators don't
+	 * track deltas unless asked to
+	 */
+	public void trackDelta();
+
+	/**
+	 * @return an {@link Aggregator} holding only the values added since the
+	 *         last {@link #resetDelta()}, the returned instance may be reused
+	 */
+	public Aggregator getDelta();
+
+	/**
+	 * Clear the values tracked as delta after they have been persisted
+	 */
+	public void resetDelta();
+
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Open addressing hash set of primitive ints, avoiding the boxed Integers and
+ * hash nodes of a {@link java.util.HashSet}. Slots are held in an
+ * {@link IntBuffer} which is either a heap int array or a direct (off-heap)
+ * buffer.<br>
+ * <br>
+ * 
+ * 0 marks a free slot, presence of the value 0 is tracked separately. The set
+ * has a compact serialized form of varint encoded deltas between sorted
+ * values, used by {@link #toBytes()} and java serialization.
+ * 
+ * @author ambud_sharma
+ */
+public class IntHashSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final int MIN_CAPACITY = 16;
+	private transient IntBuffer slots;
+	private transient int mask;
+	private transient int size;
+	private transient boolean containsZero;
+	private transient int resizeThreshold;
+	private boolean offHeap;
+
+	public IntHashSet() {
+		this(MIN_CAPACITY, false);
+	}
+
+	/**
+	 * @param expectedSize
+	 * @param offHeap
+	 *            allocate slots in a direct buffer
+	 */
+	public IntHashSet(int expectedSize, boolean offHeap) {
+		this.offHeap = offHeap;
+		allocate(capacityFor(expectedSize));
+	}
+
+	/**
+	 * @param value
+	 * @return true if the value wasn't already present
+	 */
+	public boolean add(int value) {
+		if (value == 0) {
+			if (containsZero) {
+				return false;
+			}
+			containsZero = true;
+			size++;
+			return true;
+		}
+		int slot = mix(value) & mask;
+		int current;
+		while ((current = slots.get(slot)) != 0) {
+			if (current == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		slots.put(slot, value);
+		if (++size > resizeThreshold) {
+			rehash(slots.capacity() << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * @param value
+	 * @return true if present
+	 */
+	public boolean contains(int value) {
+		if (value == 0) {
+			return containsZero;
+		}
+		int slot = mix(value) & mask;
+		int current;
+		while ((current = slots.get(slot)) != 0) {
+			if (current == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Add all values of the other set
+	 * 
+	 * @param other
+	 */
+	public void addAll(IntHashSet other) {
+		other.forEach(this::add);
+	}
+
+	/**
+	 * @param consumer
+	 */
+	public void forEach(IntConsumer consumer) {
+		if (containsZero) {
+			consumer.accept(0);
+		}
+		for (int i = 0; i < slots.capacity(); i++) {
+			int value = slots.get(i);
+			if (value != 0) {
+				consumer.accept(value);
+			}
+		}
+	}
+
+	/**
+	 * @return values in no particular order
+	 */
+	public int[] toArray() {
+		int[] values = new int[size];
+		int count = 0;
+		if (containsZero) {
+			values[count++] = 0;
+		}
+		for (int i = 0; i < slots.capacity(); i++) {
+			int value = slots.get(i);
+			if (value != 0) {
+				values[count++] = value;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all values retaining the allocated capacity
+	 */
+	public void clear() {
+		if (size == 0) {
+			return;
+		}
+		if (slots.hasArray()) {
+			Arrays.fill(slots.array(), 0);
+		} else {
+			for (int i = 0; i < slots.capacity(); i++) {
+				slots.put(i, 0);
+			}
+		}
+		size = 0;
+		containsZero = false;
+	}
+
+	/**
+	 * @return true if slots are allocated off-heap
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Compact form: varint count followed by varint deltas of the sorted
+	 * values
+	 * 
+	 * @return serialized bytes
+	 */
+	public byte[] toBytes() {
+		int[] values = toArray();
+		Arrays.sort(values);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(values.length * 2 + 5);
+		Varint.writeVarInt(stream, values.length);
+		long previous = Integer.MIN_VALUE;
+		for (int value : values) {
+			Varint.writeVarInt(stream, (int) (value - previous));
+			previous = value;
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            compact form produced by {@link #toBytes()}
+	 * @param offHeap
+	 * @return set
+	 */
+	public static IntHashSet fromBytes(byte[] bytes, boolean offHeap) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int count = Varint.readVarInt(buffer);
+		IntHashSet set = new IntHashSet(count, offHeap);
+		long previous = Integer.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			previous += Varint.readVarInt(buffer) & 0xFFFFFFFFL;
+			set.add((int) previous);
+		}
+		return set;
+	}
+
+	private void allocate(int capacity) {
+		slots = offHeap ? ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer()
+				: IntBuffer.allocate(capacity);
+		mask = capacity - 1;
+		resizeThreshold = (capacity >> 1) + (capacity >> 2);
+	}
+
+	private void rehash(int capacity) {
+		IntBuffer old = slots;
+		allocate(capacity);
+		for (int i = 0; i < old.capacity(); i++) {
+			int value = old.get(i);
+			if (value != 0) {
+				int slot = mix(value) & mask;
+				while (slots.get(slot) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots.put(slot, value);
+			}
+		}
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, (int) (expectedSize / 0.75f) + 1) - 1) << 1;
+		return Math.max(MIN_CAPACITY, capacity);
+	}
+
+	private static int mix(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		byte[] bytes = toBytes();
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		IntHashSet set = fromBytes(bytes, offHeap);
+		slots = set.slots;
+		mask = set.mask;
+		size = set.size;
+		containsZero = set.containsZero;
+		resizeThreshold = set.resizeThreshold;
+	}
+
+	@Override
+	public String toString() {
+		return "IntHashSet [size=" + size + ", offHeap=" + offHeap + "]";
+	}
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+/**
+ * An {@link Aggregator} whose state can be combined with another instance of
+ * the same type and configuration, e.g. to roll up buckets into a longer
+ * window without recounting the raw values.
+ * 
+ * @author ambud_sharma
+ */
+public interface MergeableAggregator extends Aggregator {
+
+	/**
+	 * Merge the state of the supplied {@link Aggregator} into this one
+	 * 
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if the aggregators are not compatible
+	 */
+	public void merge(Aggregator other);
+
+}
@@ -32,7 +32,7 @@ import io.symcpe.wraith.Event;
  * 
  * @author ambud_sharma
  */
-public class SetAggregator implements Aggregator {
+public class SetAggregator implements MergeableAggregator {
 
 	private static final boolean DISABLE_HARD_LIMIT_CHECKS = false;
 	private static final long serialVersionUID = 1L;
@@ -94,6 +94,14 @@ public class SetAggregator implements Aggregator {
 		set.clear();
 	}
 
+	@Override
+	public void merge(Aggregator other) {
+		if (!(other instanceof SetAggregator)) {
+			throw new IllegalArgumentException("Can't merge " + other.getClass().getName() + " into a set");
+		}
+		set.addAll(((SetAggregator) other).set);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void initialize(Object data) throws IOException {
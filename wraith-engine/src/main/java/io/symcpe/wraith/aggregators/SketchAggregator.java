@@ -0,0 +1,51 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+/**
+ * A constant memory probabilistic {@link Aggregator}. Sketches have a fixed
+ * size regardless of the number of values added, so the whole sketch is
+ * persisted on flush instead of tracking a separate delta.
+ * 
+ * @author ambud_sharma
+ */
+public interface SketchAggregator extends IncrementalAggregator {
+
+	/**
+	 * @return compact serialized form of this sketch, accepted by
+	 *         {@link #initialize(Object)}
+	 */
+	public byte[] toBytes();
+
+	/**
+	 * @return value emitted for this sketch when its window closes
+	 */
+	public Object getSummary();
+
+	@Override
+	public default void trackDelta() {
+	}
+
+	@Override
+	public default Aggregator getDelta() {
+		return this;
+	}
+
+	@Override
+	public default void resetDelta() {
+	}
+
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+import com.clearspring.analytics.stream.cardinality.ICardinality;
+
+import io.symcpe.wraith.MurmurHash;
+
+/**
+ * HyperLogLog with a sparse representation for low cardinalities. Registers
+ * that were touched are kept as a sorted list of (index, rank) entries until
+ * the list would outgrow the dense register array, which is then allocated
+ * once and cleared in place on {@link #clear()}.
+ * 
+ * @author ambud_sharma
+ */
+public class SparseHyperLogLog implements ICardinality, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	public static final int MIN_PRECISION = 4;
+	public static final int MAX_PRECISION = 18;
+	private static final byte SPARSE = 0;
+	private static final byte DENSE = 1;
+	// HyperLogLogPlus bytes start with a 0 or -1 byte
+	private static final byte FORMAT_VERSION = 1;
+	private static final int HLLP_REGISTER_BITS = 5;
+	private static final int HLLP_REGISTERS_PER_WORD = 6;
+	private final int precision;
+	private final int registerCount;
+	private final int sparseLimit;
+	private boolean sparse;
+	private int[] entries;
+	private int entryCount;
+	private byte[] registers;
+
+	public SparseHyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException(
+					"HLL precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+		}
+		this.precision = precision;
+		this.registerCount = 1 << precision;
+		// an int entry costs as much as 4 dense registers
+		this.sparseLimit = registerCount >> 2;
+		this.sparse = true;
+		this.entries = new int[4];
+	}
+
+	@Override
+	public boolean offer(Object o) {
+		if (o instanceof Integer) {
+			return offerHashed((int) o);
+		} else if (o instanceof Long) {
+			return offerHashed(fmix((long) o));
+		}
+		return offerHashed(MurmurHash.hash64(o.toString()));
+	}
+
+	@Override
+	public boolean offerHashed(int hashedInt) {
+		return offerHashed(fmix(hashedInt));
+	}
+
+	@Override
+	public boolean offerHashed(long hashedLong) {
+		int index = (int) (hashedLong >>> (Long.SIZE - precision));
+		int rank = Long.numberOfLeadingZeros((hashedLong << precision) | (1L << (precision - 1))) + 1;
+		return sparse ? offerSparse(index, rank) : offerDense(index, rank);
+	}
+
+	@Override
+	public long cardinality() {
+		double sum = 0;
+		int zeros = 0;
+		if (sparse) {
+			zeros = registerCount - entryCount;
+			sum = zeros;
+			for (int i = 0; i < entryCount; i++) {
+				sum += Math.scalb(1.0, -(entries[i] & 0xFF));
+			}
+		} else {
+			for (byte register : registers) {
+				if (register == 0) {
+					zeros++;
+				}
+				sum += Math.scalb(1.0, -register);
+			}
+		}
+		double estimate = alpha() * registerCount * registerCount / sum;
+		if (estimate <= 2.5 * registerCount && zeros > 0) {
+			// linear counting for the small range
+			estimate = registerCount * Math.log((double) registerCount / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	@Override
+	public int sizeof() {
+		return sparse ? entries.length * Integer.BYTES : registerCount;
+	}
+
+	/**
+	 * Compact form: version, precision and mode byte followed by either varint
+	 * count and varint deltas of sparse entries or the dense registers
+	 */
+	@Override
+	public byte[] getBytes() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(
+				sparse ? entryCount * 2 + 9 : registerCount + 3);
+		stream.write(FORMAT_VERSION);
+		stream.write(precision);
+		if (sparse) {
+			stream.write(SPARSE);
+			Varint.writeVarInt(stream, entryCount);
+			int previous = 0;
+			for (int i = 0; i < entryCount; i++) {
+				Varint.writeVarInt(stream, entries[i] - previous);
+				previous = entries[i];
+			}
+		} else {
+			stream.write(DENSE);
+			stream.write(registers, 0, registerCount);
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * @param bytes
+	 *            compact form produced by {@link #getBytes()} or, for
+	 *            aggregates stored before, {@link HyperLogLogPlus#getBytes()}
+	 * @return sketch
+	 * @throws IOException
+	 */
+	public static SparseHyperLogLog fromBytes(byte[] bytes) throws IOException {
+		if (bytes.length == 0 || bytes[0] != FORMAT_VERSION) {
+			return fromHyperLogLogPlus(bytes);
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+			SparseHyperLogLog hll = new SparseHyperLogLog(buffer.get());
+			if (buffer.get() == SPARSE) {
+				int count = Varint.readVarInt(buffer);
+				int entry = 0;
+				for (int i = 0; i < count; i++) {
+					entry += Varint.readVarInt(buffer);
+					hll.offerSparse(entry >>> 8, entry & 0xFF);
+				}
+			} else {
+				hll.toDense();
+				buffer.get(hll.registers);
+			}
+			return hll;
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt HLL", e);
+		}
+	}
+
+	/**
+	 * Read a sketch serialized by {@link HyperLogLogPlus}, which coarse counting
+	 * used before. Registers hold the same (index, rank) pairs and are copied
+	 * over, but values are hashed differently so one offered both before and
+	 * after the conversion may be counted twice.
+	 * 
+	 * @param bytes
+	 * @return sketch
+	 * @throws IOException
+	 */
+	public static SparseHyperLogLog fromHyperLogLogPlus(byte[] bytes) throws IOException {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			int version = buffer.getInt();
+			int precision = version < 0 ? Varint.readVarInt(buffer) : version;
+			// a normal mode sketch serializes its packed registers
+			HyperLogLogPlus normal = new HyperLogLogPlus(precision);
+			normal.addAll(HyperLogLogPlus.Builder.build(bytes));
+			buffer = ByteBuffer.wrap(normal.getBytes());
+			buffer.getInt();
+			// precision, sparse precision and format
+			Varint.readVarInt(buffer);
+			Varint.readVarInt(buffer);
+			Varint.readVarInt(buffer);
+			int words = Varint.readVarInt(buffer) / Integer.BYTES;
+			SparseHyperLogLog hll = new SparseHyperLogLog(precision);
+			int index = 0;
+			for (int i = 0; i < words; i++) {
+				int word = buffer.getInt();
+				for (int j = 0; j < HLLP_REGISTERS_PER_WORD && index < hll.registerCount; j++, index++) {
+					int rank = (word >>> (j * HLLP_REGISTER_BITS)) & ((1 << HLLP_REGISTER_BITS) - 1);
+					if (rank > 0) {
+						if (hll.sparse) {
+							hll.offerSparse(index, rank);
+						} else {
+							hll.offerDense(index, rank);
+						}
+					}
+				}
+			}
+			return hll;
+		} catch (RuntimeException | CardinalityMergeException e) {
+			throw new IOException("Corrupt HLL", e);
+		}
+	}
+
+	/**
+	 * Union the supplied sketch into this one in place
+	 * 
+	 * @param other
+	 *            sketch with the same precision
+	 */
+	public void union(SparseHyperLogLog other) {
+		if (other.precision != precision) {
+			throw new IllegalArgumentException(
+					"Can't union HLLs with precision " + precision + " and " + other.precision);
+		}
+		if (other.sparse) {
+			for (int i = 0; i < other.entryCount; i++) {
+				int entry = other.entries[i];
+				if (sparse) {
+					offerSparse(entry >>> 8, entry & 0xFF);
+				} else {
+					offerDense(entry >>> 8, entry & 0xFF);
+				}
+			}
+		} else {
+			if (sparse) {
+				toDense();
+			}
+			for (int i = 0; i < registerCount; i++) {
+				if (other.registers[i] > registers[i]) {
+					registers[i] = other.registers[i];
+				}
+			}
+		}
+	}
+
+	@Override
+	public ICardinality merge(ICardinality... estimators) throws CardinalityMergeException {
+		SparseHyperLogLog merged = new SparseHyperLogLog(precision);
+		merged.union(this);
+		for (ICardinality estimator : estimators) {
+			if (!(estimator instanceof SparseHyperLogLog)
+					|| ((SparseHyperLogLog) estimator).precision != precision) {
+				throw new SparseHyperLogLogMergeException("Can only merge HLLs with precision " + precision);
+			}
+			merged.union((SparseHyperLogLog) estimator);
+		}
+		return merged;
+	}
+
+	/**
+	 * Reset to an empty sketch, dense registers are cleared in place and kept
+	 */
+	public void clear() {
+		entryCount = 0;
+		if (registers != null) {
+			Arrays.fill(registers, (byte) 0);
+		}
+	}
+
+	/**
+	 * @return the precision
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @return true if registers are still kept as sparse entries
+	 */
+	public boolean isSparse() {
+		return sparse;
+	}
+
+	private boolean offerSparse(int index, int rank) {
+		int low = 0;
+		int high = entryCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midIndex = entries[mid] >>> 8;
+			if (midIndex < index) {
+				low = mid + 1;
+			} else if (midIndex > index) {
+				high = mid - 1;
+			} else {
+				if ((entries[mid] & 0xFF) >= rank) {
+					return false;
+				}
+				entries[mid] = (index << 8) | rank;
+				return true;
+			}
+		}
+		if (entryCount == sparseLimit) {
+			toDense();
+			return offerDense(index, rank);
+		}
+		if (entryCount == entries.length) {
+			entries = Arrays.copyOf(entries, Math.min(entries.length << 1, sparseLimit));
+		}
+		System.arraycopy(entries, low, entries, low + 1, entryCount - low);
+		entries[low] = (index << 8) | rank;
+		entryCount++;
+		return true;
+	}
+
+	private boolean offerDense(int index, int rank) {
+		if (registers[index] >= rank) {
+			return false;
+		}
+		registers[index] = (byte) rank;
+		return true;
+	}
+
+	private void toDense() {
+		if (registers == null) {
+			registers = new byte[registerCount];
+		}
+		for (int i = 0; i < entryCount; i++) {
+			registers[entries[i] >>> 8] = (byte) (entries[i] & 0xFF);
+		}
+		entryCount = 0;
+		entries = new int[0];
+		sparse = false;
+	}
+
+	private double alpha() {
+		switch (precision) {
+		case 4:
+			return 0.673;
+		case 5:
+			return 0.697;
+		case 6:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / registerCount);
+		}
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	/**
+	 * Thrown when merging incompatible sketches
+	 * 
+	 * @author ambud_sharma
+	 */
+	public static class SparseHyperLogLogMergeException extends CardinalityMergeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public SparseHyperLogLogMergeException(String message) {
+			super(message);
+		}
+
+	}
+
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import io.symcpe.wraith.Constants;
+
+/**
+ * Merging t-digest estimating quantiles of numeric values in constant memory.
+ * Values are buffered and periodically merged into at most ~compression
+ * centroids, centroids near the tails are kept small so extreme quantiles like
+ * p99 stay accurate.<br>
+ * <br>
+ * 
+ * The summary is the configured quantile, p99 by default.
+ * 
+ * @author ambud_sharma
+ */
+public class TDigestAggregator implements SketchAggregator {
+
+	private static final long serialVersionUID = 1L;
+	private double compression;
+	private double quantile;
+	private double[] means;
+	private long[] weights;
+	private int centroids;
+	private long totalWeight;
+	private double min;
+	private double max;
+	private double[] buffer;
+	private int buffered;
+	private transient double[] mergeMeans;
+	private transient long[] mergeWeights;
+
+	public TDigestAggregator() {
+		this(Double.parseDouble(Constants.DEFAULT_AGGREGATION_TDIGEST_COMPRESSION),
+				Double.parseDouble(Constants.DEFAULT_AGGREGATION_TDIGEST_QUANTILE));
+	}
+
+	public TDigestAggregator(double compression, double quantile) {
+		this.quantile = quantile;
+		allocate(compression);
+	}
+
+	@Override
+	public void initialize(Map<String, String> conf) {
+		quantile = Double.parseDouble(conf.getOrDefault(Constants.AGGREGATIONS_TDIGEST_QUANTILE,
+				Constants.DEFAULT_AGGREGATION_TDIGEST_QUANTILE));
+		allocate(Double.parseDouble(conf.getOrDefault(Constants.AGGREGATIONS_TDIGEST_COMPRESSION,
+				Constants.DEFAULT_AGGREGATION_TDIGEST_COMPRESSION)));
+	}
+
+	@Override
+	public void initialize(Object data) throws IOException {
+		if (data instanceof byte[]) {
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap((byte[]) data);
+				allocate(buffer.getDouble());
+				min = buffer.getDouble();
+				max = buffer.getDouble();
+				centroids = Varint.readVarInt(buffer);
+				for (int i = 0; i < centroids; i++) {
+					means[i] = buffer.getDouble();
+					weights[i] = Varint.readVarLong(buffer);
+					totalWeight += weights[i];
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Corrupt t-digest", e);
+			}
+		}
+	}
+
+	@Override
+	public int getHardLimit() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public TDigestAggregator getInstance() {
+		return new TDigestAggregator(compression, quantile);
+	}
+
+	@Override
+	public long size() {
+		return totalWeight + buffered;
+	}
+
+	/**
+	 * Values must be {@link Number}s or their string representation, anything
+	 * else is ignored
+	 */
+	@Override
+	public boolean add(Object aggregationValue) {
+		double value;
+		if (aggregationValue instanceof Number) {
+			value = ((Number) aggregationValue).doubleValue();
+		} else {
+			try {
+				value = Double.parseDouble(aggregationValue.toString());
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		if (Double.isNaN(value)) {
+			return false;
+		}
+		if (buffered == buffer.length) {
+			merge();
+		}
+		buffer[buffered++] = value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		return true;
+	}
+
+	/**
+	 * @param q
+	 *            between 0 and 1
+	 * @return estimated value at quantile q, NaN if the digest is empty
+	 */
+	public double quantile(double q) {
+		merge();
+		if (centroids == 0) {
+			return Double.NaN;
+		}
+		if (centroids == 1) {
+			return means[0];
+		}
+		double index = q * totalWeight;
+		double firstHalf = weights[0] / 2.0;
+		if (index < firstHalf) {
+			return min + (means[0] - min) * (index / firstHalf);
+		}
+		double cumulative = firstHalf;
+		for (int i = 0; i < centroids - 1; i++) {
+			double step = (weights[i] + weights[i + 1]) / 2.0;
+			if (cumulative + step > index) {
+				return means[i] + (means[i + 1] - means[i]) * ((index - cumulative) / step);
+			}
+			cumulative += step;
+		}
+		double lastHalf = weights[centroids - 1] / 2.0;
+		return means[centroids - 1]
+				+ (max - means[centroids - 1]) * Math.min(1, (index - cumulative) / lastHalf);
+	}
+
+	@Override
+	public boolean disableLimitChecks() {
+		return true;
+	}
+
+	@Override
+	public Object getDatastructure() {
+		merge();
+		return Arrays.copyOf(means, centroids);
+	}
+
+	@Override
+	public void reset() {
+		centroids = 0;
+		buffered = 0;
+		totalWeight = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * @return estimate of the configured quantile
+	 */
+	@Override
+	public Double getSummary() {
+		return quantile(quantile);
+	}
+
+	/**
+	 * Compact form: compression, min and max followed by varint centroid count
+	 * and mean, varint weight pairs
+	 */
+	@Override
+	public byte[] toBytes() {
+		merge();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(24 + centroids * 10);
+		Varint.writeDouble(stream, compression);
+		Varint.writeDouble(stream, min);
+		Varint.writeDouble(stream, max);
+		Varint.writeVarInt(stream, centroids);
+		for (int i = 0; i < centroids; i++) {
+			Varint.writeDouble(stream, means[i]);
+			Varint.writeVarLong(stream, weights[i]);
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * @return number of centroids after merging buffered values
+	 */
+	public int centroidCount() {
+		merge();
+		return centroids;
+	}
+
+	private void allocate(double compression) {
+		if (compression < 10) {
+			throw new IllegalArgumentException("t-digest compression must be at least 10");
+		}
+		this.compression = compression;
+		int capacity = (int) Math.ceil(compression) * 2 + 10;
+		means = new double[capacity];
+		weights = new long[capacity];
+		buffer = new double[(int) Math.ceil(compression) * 5];
+		mergeMeans = null;
+		mergeWeights = null;
+		reset();
+	}
+
+	/**
+	 * Merge buffered values into the centroids, a centroid may absorb its
+	 * neighbour as long as it spans at most one unit of the k1 scale function
+	 */
+	private void merge() {
+		if (buffered == 0) {
+			return;
+		}
+		int count = centroids + buffered;
+		if (mergeMeans == null || mergeMeans.length < count) {
+			mergeMeans = new double[means.length + buffer.length];
+			mergeWeights = new long[means.length + buffer.length];
+		}
+		Arrays.sort(buffer, 0, buffered);
+		// merge two sorted runs
+		int i = 0, j = 0, n = 0;
+		while (i < centroids || j < buffered) {
+			if (j == buffered || (i < centroids && means[i] <= buffer[j])) {
+				mergeMeans[n] = means[i];
+				mergeWeights[n++] = weights[i++];
+			} else {
+				mergeMeans[n] = buffer[j++];
+				mergeWeights[n++] = 1;
+			}
+		}
+		totalWeight += buffered;
+		buffered = 0;
+		centroids = 0;
+		double total = totalWeight;
+		double weightSoFar = 0;
+		double mean = mergeMeans[0];
+		long weight = mergeWeights[0];
+		double kLow = scale(0);
+		for (int k = 1; k < n; k++) {
+			long proposed = weight + mergeWeights[k];
+			if (scale((weightSoFar + proposed) / total) - kLow <= 1) {
+				mean += (mergeMeans[k] - mean) * mergeWeights[k] / proposed;
+				weight = proposed;
+			} else {
+				means[centroids] = mean;
+				weights[centroids++] = weight;
+				weightSoFar += weight;
+				kLow = scale(weightSoFar / total);
+				mean = mergeMeans[k];
+				weight = mergeWeights[k];
+			}
+		}
+		means[centroids] = mean;
+		weights[centroids++] = weight;
+	}
+
+	private double scale(double q) {
+		return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, q) - 1);
+	}
+
+}
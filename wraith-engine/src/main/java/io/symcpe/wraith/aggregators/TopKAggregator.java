@@ -0,0 +1,255 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.symcpe.wraith.Constants;
+
+/**
+ * Space-Saving top-K tracking the most frequent values with a fixed number of
+ * counters. When all counters are taken the least frequent value is evicted
+ * and its count inherited by the new value as overestimation error.<br>
+ * <br>
+ * 
+ * The summary is an ordered map of the top k values to their estimated
+ * counts.
+ * 
+ * @author ambud_sharma
+ */
+public class TopKAggregator implements SketchAggregator {
+
+	private static final long serialVersionUID = 1L;
+	private int k;
+	private int capacity;
+	private Map<String, Counter> index;
+	private Counter[] heap;
+	private int size;
+	private long total;
+
+	public TopKAggregator() {
+		this(Integer.parseInt(Constants.DEFAULT_AGGREGATION_TOPK_K),
+				Integer.parseInt(Constants.DEFAULT_AGGREGATION_TOPK_CAPACITY));
+	}
+
+	public TopKAggregator(int k, int capacity) {
+		allocate(k, capacity);
+	}
+
+	@Override
+	public void initialize(Map<String, String> conf) {
+		allocate(Integer.parseInt(conf.getOrDefault(Constants.AGGREGATIONS_TOPK_K, Constants.DEFAULT_AGGREGATION_TOPK_K)),
+				Integer.parseInt(conf.getOrDefault(Constants.AGGREGATIONS_TOPK_CAPACITY,
+						Constants.DEFAULT_AGGREGATION_TOPK_CAPACITY)));
+	}
+
+	@Override
+	public void initialize(Object data) throws IOException {
+		if (data instanceof byte[]) {
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap((byte[]) data);
+				allocate(Varint.readVarInt(buffer), Varint.readVarInt(buffer));
+				total = Varint.readVarLong(buffer);
+				int count = Varint.readVarInt(buffer);
+				for (int i = 0; i < count; i++) {
+					Counter counter = new Counter(Varint.readString(buffer));
+					counter.count = Varint.readVarLong(buffer);
+					counter.error = Varint.readVarLong(buffer);
+					index.put(counter.item, counter);
+					heap[size] = counter;
+					counter.position = size;
+					siftUp(size++);
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Corrupt top-k", e);
+			}
+		}
+	}
+
+	@Override
+	public int getHardLimit() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public TopKAggregator getInstance() {
+		return new TopKAggregator(k, capacity);
+	}
+
+	@Override
+	public long size() {
+		return total;
+	}
+
+	@Override
+	public boolean add(Object aggregationValue) {
+		String item = aggregationValue.toString();
+		Counter counter = index.get(item);
+		if (counter == null) {
+			if (size < capacity) {
+				counter = new Counter(item);
+				heap[size] = counter;
+				counter.position = size++;
+				index.put(item, counter);
+			} else {
+				// evict the least frequent value, its count becomes the error
+				counter = heap[0];
+				index.remove(counter.item);
+				counter.item = item;
+				counter.error = counter.count;
+				index.put(item, counter);
+			}
+		}
+		counter.count++;
+		siftDown(counter.position);
+		total++;
+		return true;
+	}
+
+	/**
+	 * @return top k values ordered by descending estimated count
+	 */
+	public LinkedHashMap<String, Long> topK() {
+		Counter[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted, (o1, o2) -> Long.compare(o2.count, o1.count));
+		LinkedHashMap<String, Long> top = new LinkedHashMap<>();
+		for (int i = 0; i < Math.min(k, size); i++) {
+			top.put(sorted[i].item, sorted[i].count);
+		}
+		return top;
+	}
+
+	/**
+	 * @param item
+	 * @return maximum overestimation of the count of this item, -1 if it's
+	 *         not tracked
+	 */
+	public long error(String item) {
+		Counter counter = index.get(item);
+		return counter == null ? -1 : counter.error;
+	}
+
+	@Override
+	public boolean disableLimitChecks() {
+		return true;
+	}
+
+	@Override
+	public Object getDatastructure() {
+		return topK();
+	}
+
+	@Override
+	public void reset() {
+		index.clear();
+		Arrays.fill(heap, null);
+		size = 0;
+		total = 0;
+	}
+
+	@Override
+	public LinkedHashMap<String, Long> getSummary() {
+		return topK();
+	}
+
+	/**
+	 * Compact form: varint k, capacity, total and counter count followed by
+	 * value, varint count, varint error triplets
+	 */
+	@Override
+	public byte[] toBytes() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(16 + size * 16);
+		Varint.writeVarInt(stream, k);
+		Varint.writeVarInt(stream, capacity);
+		Varint.writeVarLong(stream, total);
+		Varint.writeVarInt(stream, size);
+		for (int i = 0; i < size; i++) {
+			Varint.writeString(stream, heap[i].item);
+			Varint.writeVarLong(stream, heap[i].count);
+			Varint.writeVarLong(stream, heap[i].error);
+		}
+		return stream.toByteArray();
+	}
+
+	private void allocate(int k, int capacity) {
+		if (k < 1 || capacity < k) {
+			throw new IllegalArgumentException("Top-k capacity must be at least k");
+		}
+		this.k = k;
+		this.capacity = capacity;
+		this.index = new HashMap<>(capacity * 2);
+		this.heap = new Counter[capacity];
+		this.size = 0;
+		this.total = 0;
+	}
+
+	private void siftUp(int position) {
+		Counter counter = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (heap[parent].count <= counter.count) {
+				break;
+			}
+			place(heap[parent], position);
+			position = parent;
+		}
+		place(counter, position);
+	}
+
+	private void siftDown(int position) {
+		Counter counter = heap[position];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+				child++;
+			}
+			if (counter.count <= heap[child].count) {
+				break;
+			}
+			place(heap[child], position);
+			position = child;
+		}
+		place(counter, position);
+	}
+
+	private void place(Counter counter, int position) {
+		heap[position] = counter;
+		counter.position = position;
+	}
+
+	private static final class Counter implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private String item;
+		private long count;
+		private long error;
+		private int position;
+
+		private Counter(String item) {
+			this.item = item;
+		}
+
+	}
+
+}
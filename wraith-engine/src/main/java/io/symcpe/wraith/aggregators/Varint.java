@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for the compact serialized forms of {@link Aggregator} data
+ * structures
+ * 
+ * @author ambud_sharma
+ */
+final class Varint {
+
+	private Varint() {
+	}
+
+	static void writeVarInt(ByteArrayOutputStream stream, int value) {
+		while ((value & ~0x7F) != 0) {
+			stream.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		stream.write(value);
+	}
+
+	static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	static void writeVarLong(ByteArrayOutputStream stream, long value) {
+		while ((value & ~0x7FL) != 0) {
+			stream.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		stream.write((int) value);
+	}
+
+	static long readVarLong(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	static void writeDouble(ByteArrayOutputStream stream, double value) {
+		long bits = Double.doubleToLongBits(value);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			stream.write((int) (bits >>> shift));
+		}
+	}
+
+	static void writeString(ByteArrayOutputStream stream, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(stream, bytes.length);
+		stream.write(bytes, 0, bytes.length);
+	}
+
+	static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[readVarInt(buffer)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
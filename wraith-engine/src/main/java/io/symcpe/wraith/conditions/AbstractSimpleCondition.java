@@ -15,12 +15,20 @@
  */
 package io.symcpe.wraith.conditions;
 
+import java.util.Map;
+
 import io.symcpe.wraith.Event;
+import io.symcpe.wraith.FieldDictionary;
+import io.symcpe.wraith.HeaderMap;
 import io.symcpe.wraith.Required;
 
 /**
  * A partial condition that checks if the supplied header exists, if yes then delegates
- * the logic downstream.
+ * the logic downstream.<br>
+ * <br>
+ * The header key is resolved to a {@link FieldDictionary} id once, either by
+ * {@link FieldResolver} at rule load or on first evaluation, so that
+ * {@link HeaderMap} headers are read without a name lookup.
  * 
  * @author ambud_sharma
  */
@@ -29,6 +37,9 @@ public abstract class AbstractSimpleCondition implements Condition {
 	private static final long serialVersionUID = 1L;
 	@Required
 	private String key;
+	// field id + 2 once resolved so that a single write publishes it, 0 if
+	// unresolved
+	private transient int fieldRef;
 
 	public AbstractSimpleCondition(String headerKey) {
 		this.key = headerKey;
@@ -36,7 +47,17 @@ public abstract class AbstractSimpleCondition implements Condition {
 
 	@Override
 	public final boolean matches(Event event) {
-		Object value = event.getHeaders().get(key);
+		return matches(event.getHeaders(), getFieldId());
+	}
+
+	/**
+	 * @param headers
+	 * @param fieldId
+	 *            resolved id of the header key
+	 * @return true if the header exists and satisfies the condition
+	 */
+	protected boolean matches(Map<String, Object> headers, int fieldId) {
+		Object value = HeaderMap.get(headers, fieldId, key);
 		if(value!=null) {
 			return satisfiesCondition(value);
 		}
@@ -45,6 +66,28 @@ public abstract class AbstractSimpleCondition implements Condition {
 	
 	public abstract boolean satisfiesCondition(Object value);
 
+	/**
+	 * Resolve the header key to a field id
+	 * 
+	 * @return field id or {@link FieldDictionary#NO_FIELD}
+	 */
+	public int resolveField() {
+		int fieldId = FieldDictionary.intern(key);
+		fieldRef = fieldId + 2;
+		return fieldId;
+	}
+
+	/**
+	 * @return field id of the header key, resolved if needed
+	 */
+	public int getFieldId() {
+		int ref = fieldRef;
+		if (ref == 0) {
+			return resolveField();
+		}
+		return ref - 2;
+	}
+
 	/**
 	 * @return header key
 	 */
@@ -57,6 +100,7 @@ public abstract class AbstractSimpleCondition implements Condition {
 	 */
 	public void setKey(String key) {
 		this.key = key;
+		this.fieldRef = 0;
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,342 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.conditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.HeaderMap;
+import io.symcpe.wraith.conditions.logical.AndCondition;
+import io.symcpe.wraith.conditions.logical.ComplexCondition;
+import io.symcpe.wraith.conditions.logical.OrCondition;
+import io.symcpe.wraith.conditions.relational.EqualsCondition;
+import io.symcpe.wraith.conditions.relational.ExistsCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.JavaRegexCondition;
+import io.symcpe.wraith.conditions.relational.LessThanCondition;
+import io.symcpe.wraith.conditions.relational.LessThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.NotEqualsCondition;
+import io.symcpe.wraith.conditions.relational.NumericCondition;
+
+/**
+ * Compiles a {@link Condition} tree into a single generated class so that rule
+ * evaluation doesn't walk the tree with virtual
+ * {@link Condition#matches(Event)} calls.<br>
+ * <br>
+ * 
+ * The generated {@link Condition#matches(Event)} fetches the headers once,
+ * inlines header lookups by pre-resolved {@link HeaderMap} field id, turns {@link AndCondition} and {@link OrCondition}
+ * into short-circuit branches and compares {@link NumericCondition}s on
+ * primitive doubles. Conditions the compiler doesn't know about are embedded
+ * as-is and invoked through the interpreted path, therefore results are
+ * always identical to {@link Condition#matches(Event)} of the source tree.<br>
+ * <br>
+ * 
+ * Every compiled condition is defined in it's own {@link ClassLoader} so that
+ * it can be garbage collected once the rule is updated or deleted.
+ * 
+ * @author ambud_sharma
+ */
+public class ConditionCompiler {
+
+	private static final String PACKAGE = "io/symcpe/wraith/conditions/compiled/CompiledCondition";
+	private static final String OBJECT = Type.getInternalName(Object.class);
+	private static final String MAP = Type.getInternalName(java.util.Map.class);
+	private static final String STRING = Type.getInternalName(String.class);
+	private static final String PATTERN = Type.getInternalName(Pattern.class);
+	private static final String MATCHER = Type.getInternalName(java.util.regex.Matcher.class);
+	private static final String EVENT = Type.getInternalName(Event.class);
+	private static final String CONDITION = Type.getInternalName(Condition.class);
+	private static final String HEADER_MAP = Type.getInternalName(HeaderMap.class);
+	private static final int THIS = 0;
+	private static final int EVENT_VAR = 1;
+	private static final int HEADERS_VAR = 2;
+	private static final int VALUE_VAR = 3;
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private String className;
+	private List<Object> constants;
+	private List<String> constantTypes;
+
+	private ConditionCompiler() {
+		this.className = PACKAGE + COUNTER.incrementAndGet();
+		this.constants = new ArrayList<>();
+		this.constantTypes = new ArrayList<>();
+	}
+
+	/**
+	 * Compile the supplied {@link Condition} tree to bytecode
+	 * 
+	 * @param condition
+	 * @return compiled condition
+	 * @throws ReflectiveOperationException
+	 *             if the generated class can't be instantiated
+	 */
+	public static Condition compile(Condition condition) throws ReflectiveOperationException {
+		ConditionCompiler compiler = new ConditionCompiler();
+		byte[] bytecode = compiler.generate(condition);
+		Class<?> type = new ConditionClassLoader(ConditionCompiler.class.getClassLoader())
+				.define(compiler.className.replace('/', '.'), bytecode);
+		return (Condition) type.getConstructor(Object[].class)
+				.newInstance(new Object[] { compiler.constants.toArray() });
+	}
+
+	private byte[] generate(Condition condition) {
+		// class version 1.5 is used so that no stack map frames are needed
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+				OBJECT, new String[] { CONDITION });
+
+		MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "matches", "(L" + EVENT + ";)Z", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, EVENT_VAR);
+		invoke(mv, Opcodes.INVOKEINTERFACE, EVENT, "getHeaders", "()L" + MAP + ";");
+		mv.visitVarInsn(Opcodes.ASTORE, HEADERS_VAR);
+		Label noMatch = new Label();
+		jump(mv, condition, false, noMatch);
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitLabel(noMatch);
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// constants referenced by the generated code are final fields
+		mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([L" + OBJECT + ";)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, THIS);
+		invoke(mv, Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V");
+		for (int i = 0; i < constants.size(); i++) {
+			String type = constantTypes.get(i);
+			writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "c" + i, "L" + type + ";", null, null)
+					.visitEnd();
+			mv.visitVarInsn(Opcodes.ALOAD, THIS);
+			mv.visitVarInsn(Opcodes.ALOAD, 1);
+			mv.visitLdcInsn(i);
+			mv.visitInsn(Opcodes.AALOAD);
+			mv.visitTypeInsn(Opcodes.CHECKCAST, type);
+			mv.visitFieldInsn(Opcodes.PUTFIELD, className, "c" + i, "L" + type + ";");
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Emit code that jumps to target if the condition evaluates to jumpIf,
+	 * falls through otherwise
+	 * 
+	 * @param mv
+	 * @param condition
+	 * @param jumpIf
+	 * @param target
+	 */
+	private void jump(MethodVisitor mv, Condition condition, boolean jumpIf, Label target) {
+		if (isBranch(condition, AndCondition.class) || isBranch(condition, OrCondition.class)) {
+			List<Condition> conditions = ((ComplexCondition) condition).getConditions();
+			boolean and = condition.getClass() == AndCondition.class;
+			if (and != jumpIf) {
+				// AND jumping on false or OR jumping on true, any child decides
+				for (Condition child : conditions) {
+					jump(mv, child, jumpIf, target);
+				}
+			} else {
+				// every child but the last one can short-circuit past the
+				// jump
+				Label skip = new Label();
+				for (int i = 0; i < conditions.size() - 1; i++) {
+					jump(mv, conditions.get(i), !jumpIf, skip);
+				}
+				jump(mv, conditions.get(conditions.size() - 1), jumpIf, target);
+				mv.visitLabel(skip);
+			}
+		} else if (jumpIf) {
+			Label noMatch = new Label();
+			leaf(mv, condition, noMatch);
+			mv.visitJumpInsn(Opcodes.GOTO, target);
+			mv.visitLabel(noMatch);
+		} else {
+			leaf(mv, condition, target);
+		}
+	}
+
+	/**
+	 * Emit code that falls through if the leaf condition matches and jumps to
+	 * noMatch otherwise
+	 * 
+	 * @param mv
+	 * @param condition
+	 * @param noMatch
+	 */
+	private void leaf(MethodVisitor mv, Condition condition, Label noMatch) {
+		Class<?> type = condition.getClass();
+		String key = condition instanceof AbstractSimpleCondition ? ((AbstractSimpleCondition) condition).getkey()
+				: null;
+		if (key == null || !isCompilable(condition)) {
+			// delegate to the interpreted path
+			String field = constant(condition, CONDITION);
+			mv.visitVarInsn(Opcodes.ALOAD, THIS);
+			mv.visitFieldInsn(Opcodes.GETFIELD, className, field, "L" + CONDITION + ";");
+			mv.visitVarInsn(Opcodes.ALOAD, EVENT_VAR);
+			invoke(mv, Opcodes.INVOKEINTERFACE, CONDITION, "matches", "(L" + EVENT + ";)Z");
+			mv.visitJumpInsn(Opcodes.IFEQ, noMatch);
+			return;
+		}
+		int fieldId = ((AbstractSimpleCondition) condition).getFieldId();
+		if (condition instanceof NumericCondition) {
+			numeric(mv, (NumericCondition) condition, fieldId, key, noMatch);
+			return;
+		}
+		mv.visitVarInsn(Opcodes.ALOAD, HEADERS_VAR);
+		mv.visitLdcInsn(fieldId);
+		mv.visitLdcInsn(key);
+		invoke(mv, Opcodes.INVOKESTATIC, HEADER_MAP, "get",
+				"(L" + MAP + ";IL" + STRING + ";)L" + OBJECT + ";");
+		mv.visitVarInsn(Opcodes.ASTORE, VALUE_VAR);
+		mv.visitVarInsn(Opcodes.ALOAD, VALUE_VAR);
+		mv.visitJumpInsn(Opcodes.IFNULL, noMatch);
+		if (type == ExistsCondition.class) {
+			return;
+		} else if (type == EqualsCondition.class || type == NotEqualsCondition.class) {
+			Object value = type == EqualsCondition.class ? ((EqualsCondition) condition).getValue()
+					: ((NotEqualsCondition) condition).getValue();
+			if (value instanceof String) {
+				mv.visitLdcInsn(value);
+				mv.visitVarInsn(Opcodes.ALOAD, VALUE_VAR);
+				invoke(mv, Opcodes.INVOKEVIRTUAL, STRING, "equals", "(L" + OBJECT + ";)Z");
+			} else {
+				String field = constant(value, OBJECT);
+				mv.visitVarInsn(Opcodes.ALOAD, THIS);
+				mv.visitFieldInsn(Opcodes.GETFIELD, className, field, "L" + OBJECT + ";");
+				mv.visitVarInsn(Opcodes.ALOAD, VALUE_VAR);
+				invoke(mv, Opcodes.INVOKEVIRTUAL, OBJECT, "equals", "(L" + OBJECT + ";)Z");
+			}
+			mv.visitJumpInsn(type == EqualsCondition.class ? Opcodes.IFEQ : Opcodes.IFNE, noMatch);
+		} else if (type == JavaRegexCondition.class) {
+			String field = constant(((JavaRegexCondition) condition).getPattern(), PATTERN);
+			mv.visitVarInsn(Opcodes.ALOAD, VALUE_VAR);
+			mv.visitTypeInsn(Opcodes.INSTANCEOF, STRING);
+			mv.visitJumpInsn(Opcodes.IFEQ, noMatch);
+			mv.visitVarInsn(Opcodes.ALOAD, THIS);
+			mv.visitFieldInsn(Opcodes.GETFIELD, className, field, "L" + PATTERN + ";");
+			mv.visitVarInsn(Opcodes.ALOAD, VALUE_VAR);
+			mv.visitTypeInsn(Opcodes.CHECKCAST, STRING);
+			invoke(mv, Opcodes.INVOKEVIRTUAL, PATTERN, "matcher", "(Ljava/lang/CharSequence;)L" + MATCHER + ";");
+			invoke(mv, Opcodes.INVOKEVIRTUAL, MATCHER, "matches", "()Z");
+			mv.visitJumpInsn(Opcodes.IFEQ, noMatch);
+		}
+	}
+
+	/**
+	 * Emit a numeric comparison on the primitive header value, absent and non
+	 * numeric headers read as NaN and never match
+	 * 
+	 * @param mv
+	 * @param condition
+	 * @param fieldId
+	 * @param key
+	 * @param noMatch
+	 */
+	private void numeric(MethodVisitor mv, NumericCondition condition, int fieldId, String key, Label noMatch) {
+		Class<?> type = condition.getClass();
+		mv.visitVarInsn(Opcodes.ALOAD, HEADERS_VAR);
+		mv.visitLdcInsn(fieldId);
+		mv.visitLdcInsn(key);
+		invoke(mv, Opcodes.INVOKESTATIC, HEADER_MAP, "getDouble", "(L" + MAP + ";IL" + STRING + ";)D");
+		// numeric comparisons follow javac NaN semantics, dcmpl for > and
+		// >=, dcmpg for < and <=
+		mv.visitLdcInsn(condition.getValue());
+		if (type == GreaterThanCondition.class) {
+			mv.visitInsn(Opcodes.DCMPL);
+			mv.visitJumpInsn(Opcodes.IFLE, noMatch);
+		} else if (type == GreaterThanEqualToCondition.class) {
+			mv.visitInsn(Opcodes.DCMPL);
+			mv.visitJumpInsn(Opcodes.IFLT, noMatch);
+		} else if (type == LessThanCondition.class) {
+			mv.visitInsn(Opcodes.DCMPG);
+			mv.visitJumpInsn(Opcodes.IFGE, noMatch);
+		} else {
+			mv.visitInsn(Opcodes.DCMPG);
+			mv.visitJumpInsn(Opcodes.IFGT, noMatch);
+		}
+	}
+
+	private static boolean isCompilable(Condition condition) {
+		Class<?> type = condition.getClass();
+		if (type == ExistsCondition.class || type == GreaterThanCondition.class
+				|| type == GreaterThanEqualToCondition.class || type == LessThanCondition.class
+				|| type == LessThanEqualToCondition.class) {
+			return true;
+		} else if (type == EqualsCondition.class) {
+			return ((EqualsCondition) condition).getValue() != null;
+		} else if (type == NotEqualsCondition.class) {
+			return ((NotEqualsCondition) condition).getValue() != null;
+		} else if (type == JavaRegexCondition.class) {
+			return ((JavaRegexCondition) condition).getPattern() != null;
+		}
+		return false;
+	}
+
+	private static boolean isBranch(Condition condition, Class<?> type) {
+		if (condition.getClass() != type) {
+			return false;
+		}
+		List<Condition> conditions = ((ComplexCondition) condition).getConditions();
+		return conditions != null && !conditions.isEmpty();
+	}
+
+	private String constant(Object value, String type) {
+		constants.add(value);
+		constantTypes.add(type);
+		return "c" + (constants.size() - 1);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void invoke(MethodVisitor mv, int opcode, String owner, String name, String desc) {
+		// 4 argument variant keeps the generator compatible with ASM 4 which
+		// ships with the Storm runtime
+		mv.visitMethodInsn(opcode, owner, name, desc);
+	}
+
+	/**
+	 * Isolated {@link ClassLoader} for generated conditions
+	 */
+	private static final class ConditionClassLoader extends ClassLoader {
+
+		private ConditionClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		private Class<?> define(String name, byte[] bytecode) {
+			return defineClass(name, bytecode, 0, bytecode.length);
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.conditions;
+
+import io.symcpe.wraith.FieldDictionary;
+import io.symcpe.wraith.conditions.logical.ComplexCondition;
+import io.symcpe.wraith.conditions.logical.NotCondition;
+
+/**
+ * Resolves header keys of a {@link Condition} tree to {@link FieldDictionary}
+ * ids when a rule is loaded so that evaluation never resolves them.
+ * 
+ * @author ambud_sharma
+ */
+public class FieldResolver {
+
+	private FieldResolver() {
+	}
+
+	/**
+	 * Resolve header keys of all {@link AbstractSimpleCondition}s in the tree
+	 * 
+	 * @param condition
+	 */
+	public static void resolve(Condition condition) {
+		if (condition instanceof AbstractSimpleCondition) {
+			((AbstractSimpleCondition) condition).resolveField();
+		} else if (condition instanceof ComplexCondition) {
+			if (((ComplexCondition) condition).getConditions() != null) {
+				for (Condition child : ((ComplexCondition) condition).getConditions()) {
+					resolve(child);
+				}
+			}
+		} else if (condition instanceof NotCondition) {
+			resolve(((NotCondition) condition).getCondition());
+		}
+	}
+
+}
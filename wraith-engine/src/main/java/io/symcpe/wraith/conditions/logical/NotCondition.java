@@ -37,4 +37,11 @@ public class NotCondition implements Condition {
 		return !condition.matches(event);
 	}
 
+	/**
+	 * @return the negated condition
+	 */
+	public Condition getCondition() {
+		return condition;
+	}
+
 }
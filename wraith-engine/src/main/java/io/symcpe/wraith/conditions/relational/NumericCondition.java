@@ -15,6 +15,9 @@
  */
 package io.symcpe.wraith.conditions.relational;
 
+import java.util.Map;
+
+import io.symcpe.wraith.HeaderMap;
 import io.symcpe.wraith.Required;
 import io.symcpe.wraith.conditions.AbstractSimpleCondition;
 
@@ -36,6 +39,13 @@ public abstract class NumericCondition extends AbstractSimpleCondition {
 
 	public abstract boolean compare(double number, double val);
 
+	@Override
+	protected boolean matches(Map<String, Object> headers, int fieldId) {
+		// compares the primitive slot of HeaderMap headers without boxing
+		double number = HeaderMap.getDouble(headers, fieldId, getkey());
+		return !Double.isNaN(number) && compare(number, getValue());
+	}
+
 	@Override
 	public final boolean satisfiesCondition(Object val) {
 		if (val instanceof Number) {
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton that finds all literals contained in a
+ * string in a single pass.<br>
+ * <br>
+ * 
+ * Every literal carries a {@link BitSet} of ids that are set in the result
+ * when the literal occurs anywhere in the scanned text, outputs of suffix
+ * literals are merged at build time so the scan never follows output links.
+ * 
+ * @author ambud_sharma
+ */
+public class AhoCorasickMatcher {
+
+	private char[][] keys;
+	private int[][] targets;
+	private int[] fail;
+	private int[][] outputs;
+
+	public AhoCorasickMatcher(Map<String, BitSet> literals) {
+		List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+		List<BitSet> out = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		out.add(new BitSet());
+		for (Entry<String, BitSet> entry : literals.entrySet()) {
+			int state = 0;
+			for (char c : entry.getKey().toCharArray()) {
+				Integer next = trie.get(state).get(c);
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<>());
+					out.add(new BitSet());
+					trie.get(state).put(c, next);
+				}
+				state = next;
+			}
+			out.get(state).or(entry.getValue());
+		}
+		int size = trie.size();
+		this.keys = new char[size][];
+		this.targets = new int[size][];
+		this.fail = new int[size];
+		this.outputs = new int[size][];
+		for (int i = 0; i < size; i++) {
+			TreeMap<Character, Integer> children = trie.get(i);
+			keys[i] = new char[children.size()];
+			targets[i] = new int[children.size()];
+			int j = 0;
+			for (Entry<Character, Integer> child : children.entrySet()) {
+				keys[i][j] = child.getKey();
+				targets[i][j++] = child.getValue();
+			}
+		}
+		// breadth first so that failure states are complete before use
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[0]) {
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int j = 0; j < keys[state].length; j++) {
+				int child = targets[state][j];
+				int f = fail[state];
+				int next;
+				while ((next = transition(f, keys[state][j])) < 0 && f != 0) {
+					f = fail[f];
+				}
+				fail[child] = next < 0 ? 0 : next;
+				out.get(child).or(out.get(fail[child]));
+				queue.add(child);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			outputs[i] = out.get(i).stream().toArray();
+		}
+	}
+
+	/**
+	 * Set ids of all literals occurring in the supplied text
+	 * 
+	 * @param text
+	 * @param result
+	 */
+	public void scan(CharSequence text, BitSet result) {
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int next;
+			while ((next = transition(state, c)) < 0 && state != 0) {
+				state = fail[state];
+			}
+			state = next < 0 ? 0 : next;
+			for (int id : outputs[state]) {
+				result.set(id);
+			}
+		}
+	}
+
+	/**
+	 * @return number of states in this automaton
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	private int transition(int state, char c) {
+		char[] stateKeys = keys[state];
+		int lo = 0;
+		int hi = stateKeys.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (stateKeys[mid] < c) {
+				lo = mid + 1;
+			} else if (stateKeys[mid] > c) {
+				hi = mid - 1;
+			} else {
+				return targets[state][mid];
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Static centered interval tree used to look up which numeric bounds contain
+ * a given value. The tree is built once and never mutated, a rebuild is
+ * expected whenever the set of intervals changes.<br>
+ * <br>
+ *
+ * Each {@link Interval} carries an integer id which is set in the supplied
+ * {@link BitSet} when a stabbing query hits it.
+ *
+ * @author ambud_sharma
+ */
+public class IntervalTree {
+
+	private Node root;
+	private int size;
+
+	public IntervalTree(List<Interval> intervals) {
+		List<Interval> nonEmpty = new ArrayList<>(intervals.size());
+		for (Interval interval : intervals) {
+			if (!interval.isEmpty()) {
+				nonEmpty.add(interval);
+			}
+		}
+		this.size = nonEmpty.size();
+		this.root = build(nonEmpty);
+	}
+
+	/**
+	 * Mark the ids of all intervals containing the supplied value
+	 *
+	 * @param value
+	 * @param result
+	 */
+	public void stab(double value, BitSet result) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		Node node = root;
+		while (node != null) {
+			if (value < node.center) {
+				for (Interval interval : node.byLo) {
+					if (interval.lo > value) {
+						break;
+					}
+					if (interval.contains(value)) {
+						result.set(interval.id);
+					}
+				}
+				node = node.left;
+			} else if (value > node.center) {
+				for (Interval interval : node.byHi) {
+					if (interval.hi < value) {
+						break;
+					}
+					if (interval.contains(value)) {
+						result.set(interval.id);
+					}
+				}
+				node = node.right;
+			} else {
+				for (Interval interval : node.byLo) {
+					if (interval.contains(value)) {
+						result.set(interval.id);
+					}
+				}
+				node = null;
+			}
+		}
+	}
+
+	/**
+	 * @return number of intervals in this tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static Node build(List<Interval> intervals) {
+		if (intervals.isEmpty()) {
+			return null;
+		}
+		double[] endpoints = new double[intervals.size() * 2];
+		int count = 0;
+		for (Interval interval : intervals) {
+			if (!Double.isInfinite(interval.lo)) {
+				endpoints[count++] = interval.lo;
+			}
+			if (!Double.isInfinite(interval.hi)) {
+				endpoints[count++] = interval.hi;
+			}
+		}
+		double center = 0;
+		if (count > 0) {
+			Arrays.sort(endpoints, 0, count);
+			center = endpoints[count / 2];
+		}
+		List<Interval> left = new ArrayList<>();
+		List<Interval> right = new ArrayList<>();
+		List<Interval> overlapping = new ArrayList<>();
+		for (Interval interval : intervals) {
+			if (interval.hi < center) {
+				left.add(interval);
+			} else if (interval.lo > center) {
+				right.add(interval);
+			} else {
+				overlapping.add(interval);
+			}
+		}
+		Node node = new Node();
+		node.center = center;
+		node.byLo = overlapping.toArray(new Interval[overlapping.size()]);
+		node.byHi = overlapping.toArray(new Interval[overlapping.size()]);
+		Arrays.sort(node.byLo, (o1, o2) -> Double.compare(o1.lo, o2.lo));
+		Arrays.sort(node.byHi, Collections.reverseOrder((o1, o2) -> Double.compare(o1.hi, o2.hi)));
+		node.left = build(left);
+		node.right = build(right);
+		return node;
+	}
+
+	private static final class Node {
+
+		private double center;
+		private Interval[] byLo;
+		private Interval[] byHi;
+		private Node left;
+		private Node right;
+
+	}
+
+	/**
+	 * A numeric interval with optionally inclusive bounds, infinite bounds are
+	 * always treated as inclusive.
+	 *
+	 * @author ambud_sharma
+	 */
+	public static final class Interval {
+
+		private final int id;
+		private final double lo;
+		private final boolean loInclusive;
+		private final double hi;
+		private final boolean hiInclusive;
+
+		public Interval(int id, double lo, boolean loInclusive, double hi, boolean hiInclusive) {
+			this.id = id;
+			this.lo = lo;
+			this.loInclusive = loInclusive || Double.isInfinite(lo);
+			this.hi = hi;
+			this.hiInclusive = hiInclusive || Double.isInfinite(hi);
+		}
+
+		/**
+		 * @param value
+		 * @return true if value lies within this interval
+		 */
+		public boolean contains(double value) {
+			return (loInclusive ? value >= lo : value > lo) && (hiInclusive ? value <= hi : value < hi);
+		}
+
+		/**
+		 * @return true if no value can lie within this interval
+		 */
+		public boolean isEmpty() {
+			return lo > hi || (lo == hi && !(loInclusive && hiInclusive));
+		}
+
+		/**
+		 * Intersect this interval with another one, the id of this interval is
+		 * retained
+		 *
+		 * @param other
+		 * @return intersection
+		 */
+		public Interval intersect(Interval other) {
+			double newLo = lo;
+			boolean newLoInclusive = loInclusive;
+			if (other.lo > lo || (other.lo == lo && !other.loInclusive)) {
+				newLo = other.lo;
+				newLoInclusive = other.loInclusive;
+			}
+			double newHi = hi;
+			boolean newHiInclusive = hiInclusive;
+			if (other.hi < hi || (other.hi == hi && !other.hiInclusive)) {
+				newHi = other.hi;
+				newHiInclusive = other.hiInclusive;
+			}
+			return new Interval(id, newLo, newLoInclusive, newHi, newHiInclusive);
+		}
+
+		/**
+		 * @return the id
+		 */
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * @return the lo
+		 */
+		public double getLo() {
+			return lo;
+		}
+
+		/**
+		 * @return the hi
+		 */
+		public double getHi() {
+			return hi;
+		}
+
+		@Override
+		public String toString() {
+			return (loInclusive ? "[" : "(") + lo + "," + hi + (hiInclusive ? "]" : ")");
+		}
+
+	}
+
+}
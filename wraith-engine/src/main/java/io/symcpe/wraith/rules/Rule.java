@@ -42,6 +42,8 @@ public abstract class Rule implements Serializable {
 	private String name;
 	private boolean active;
 	private String description;
+	private transient Condition compiledCondition;
+	private transient RuleLatencyRecorder latencyRecorder;
 	
 	public Rule(short ruleId, String name, boolean active) {
 		this.ruleId = ruleId;
@@ -61,6 +63,39 @@ public abstract class Rule implements Serializable {
 	 */
 	public abstract void setCondition(Condition condition);
 	
+	/**
+	 * Getter for compiled condition, null if this rule hasn't been compiled
+	 * @return compiledCondition
+	 */
+	public Condition getCompiledCondition() {
+		return compiledCondition;
+	}
+	
+	/**
+	 * Setter for compiled condition
+	 * @param compiledCondition
+	 */
+	public void setCompiledCondition(Condition compiledCondition) {
+		this.compiledCondition = compiledCondition;
+	}
+	
+	/**
+	 * Getter for latency recorder, null until the rule is published by a
+	 * rules engine
+	 * @return latencyRecorder
+	 */
+	public RuleLatencyRecorder getLatencyRecorder() {
+		return latencyRecorder;
+	}
+	
+	/**
+	 * Setter for latency recorder
+	 * @param latencyRecorder
+	 */
+	public void setLatencyRecorder(RuleLatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+	}
+	
 	/**
 	 * Getter for actions
 	 * @return actions
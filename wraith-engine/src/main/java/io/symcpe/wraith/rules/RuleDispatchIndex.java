@@ -0,0 +1,486 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.conditions.Condition;
+import io.symcpe.wraith.conditions.logical.AndCondition;
+import io.symcpe.wraith.conditions.logical.OrCondition;
+import io.symcpe.wraith.conditions.relational.EqualsCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.JavaRegexCondition;
+import io.symcpe.wraith.conditions.relational.LessThanCondition;
+import io.symcpe.wraith.conditions.relational.LessThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.NumericCondition;
+import io.symcpe.wraith.rules.IntervalTree.Interval;
+
+/**
+ * Compiled dispatch index over a set of {@link Rule}s used by
+ * {@link StatelessRulesEngine} to skip rules whose {@link Condition} can't
+ * possibly match an {@link Event}.<br>
+ * <br>
+ * 
+ * Every rule condition is analyzed for a necessary predicate (guard):
+ * <ul>
+ * <li>{@link EqualsCondition} is indexed with a hash lookup on header
+ * value</li>
+ * <li>{@link NumericCondition} bounds are indexed in an {@link IntervalTree}
+ * per header</li>
+ * <li>{@link JavaRegexCondition} is indexed on the longest literal every
+ * match must contain, literals of a header are found in one pass by an
+ * {@link AhoCorasickMatcher}</li>
+ * <li>{@link AndCondition} uses the most selective guard of it's children,
+ * equality first then regex literals then numeric bounds</li>
+ * <li>{@link OrCondition} is indexed under all of it's children, if all of
+ * them can be indexed</li>
+ * </ul>
+ * Rules without a usable guard are always treated as candidates. Candidates
+ * are still fully evaluated by the engine, the index only prunes rules and
+ * preserves the original rule order therefore results are identical to a full
+ * scan.<br>
+ * <br>
+ * 
+ * The index is immutable and is rebuilt on every rule update.
+ * 
+ * @author ambud_sharma
+ */
+public class RuleDispatchIndex {
+
+	public static final int MIN_LITERAL_LENGTH = 3;
+	private static final String CHARACTER_CLASS_ESCAPES = "dDwWsSbBAzZGhHvVRX";
+
+	private Rule[] rules;
+	private BitSet unindexed;
+	private Map<String, Map<Object, BitSet>> equalityIndex;
+	private Map<String, IntervalTree> numericIndex;
+	private Map<String, AhoCorasickMatcher> literalIndex;
+
+	public RuleDispatchIndex(Map<Short, Rule> ruleMap) {
+		this.rules = ruleMap.values().toArray(new Rule[ruleMap.size()]);
+		this.unindexed = new BitSet(rules.length);
+		this.equalityIndex = new HashMap<>();
+		Map<String, List<Interval>> intervals = new HashMap<>();
+		Map<String, Map<String, BitSet>> literals = new HashMap<>();
+		for (int i = 0; i < rules.length; i++) {
+			Guard guard = buildGuard(i, rules[i].getCondition());
+			if (guard == null) {
+				unindexed.set(i);
+			} else {
+				register(guard, intervals, literals);
+			}
+		}
+		this.numericIndex = new HashMap<>();
+		for (Entry<String, List<Interval>> entry : intervals.entrySet()) {
+			numericIndex.put(entry.getKey(), new IntervalTree(entry.getValue()));
+		}
+		this.literalIndex = new HashMap<>();
+		for (Entry<String, Map<String, BitSet>> entry : literals.entrySet()) {
+			literalIndex.put(entry.getKey(), new AhoCorasickMatcher(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Mark ordinals of the {@link Rule}s that may match the supplied
+	 * {@link Event}, supplied candidates set is cleared before use.
+	 * 
+	 * @param event
+	 * @param candidates
+	 */
+	public void findCandidates(Event event, BitSet candidates) {
+		candidates.clear();
+		candidates.or(unindexed);
+		Map<String, Object> headers = event.getHeaders();
+		for (Entry<String, Map<Object, BitSet>> entry : equalityIndex.entrySet()) {
+			Object value = headers.get(entry.getKey());
+			if (value != null) {
+				BitSet matches = entry.getValue().get(value);
+				if (matches != null) {
+					candidates.or(matches);
+				}
+			}
+		}
+		for (Entry<String, IntervalTree> entry : numericIndex.entrySet()) {
+			Object value = headers.get(entry.getKey());
+			if (value instanceof Number) {
+				entry.getValue().stab(((Number) value).doubleValue(), candidates);
+			}
+		}
+		for (Entry<String, AhoCorasickMatcher> entry : literalIndex.entrySet()) {
+			Object value = headers.get(entry.getKey());
+			if (value instanceof String) {
+				entry.getValue().scan((String) value, candidates);
+			}
+		}
+	}
+
+	/**
+	 * @param ordinal
+	 * @return rule at the supplied ordinal
+	 */
+	public Rule getRule(int ordinal) {
+		return rules[ordinal];
+	}
+
+	/**
+	 * @return number of rules in this index
+	 */
+	public int size() {
+		return rules.length;
+	}
+
+	/**
+	 * @return number of rules that can't be pruned by this index
+	 */
+	public int unindexedCount() {
+		return unindexed.cardinality();
+	}
+
+	private void register(Guard guard, Map<String, List<Interval>> intervals,
+			Map<String, Map<String, BitSet>> literals) {
+		if (guard.anyOf != null) {
+			for (Guard child : guard.anyOf) {
+				register(child, intervals, literals);
+			}
+		} else if (guard.literal != null) {
+			Map<String, BitSet> literalMap = literals.get(guard.key);
+			if (literalMap == null) {
+				literalMap = new HashMap<>();
+				literals.put(guard.key, literalMap);
+			}
+			BitSet ordinals = literalMap.get(guard.literal);
+			if (ordinals == null) {
+				ordinals = new BitSet();
+				literalMap.put(guard.literal, ordinals);
+			}
+			ordinals.set(guard.ordinal);
+		} else if (guard.interval != null) {
+			List<Interval> list = intervals.get(guard.key);
+			if (list == null) {
+				list = new ArrayList<>();
+				intervals.put(guard.key, list);
+			}
+			list.add(guard.interval);
+		} else {
+			Map<Object, BitSet> valueMap = equalityIndex.get(guard.key);
+			if (valueMap == null) {
+				valueMap = new HashMap<>();
+				equalityIndex.put(guard.key, valueMap);
+			}
+			BitSet ordinals = valueMap.get(guard.value);
+			if (ordinals == null) {
+				ordinals = new BitSet();
+				valueMap.put(guard.value, ordinals);
+			}
+			ordinals.set(guard.ordinal);
+		}
+	}
+
+	/**
+	 * Derive a necessary predicate for the supplied condition
+	 * 
+	 * @param ordinal
+	 * @param condition
+	 * @return guard or null if the condition can't be indexed
+	 */
+	protected static Guard buildGuard(int ordinal, Condition condition) {
+		if (condition instanceof EqualsCondition) {
+			EqualsCondition equals = (EqualsCondition) condition;
+			if (equals.getkey() == null || equals.getValue() == null) {
+				return null;
+			}
+			return new Guard(ordinal, equals.getkey(), equals.getValue());
+		} else if (condition instanceof NumericCondition) {
+			Interval interval = toInterval(ordinal, (NumericCondition) condition);
+			if (interval == null) {
+				return null;
+			}
+			return new Guard(ordinal, ((NumericCondition) condition).getkey(), interval);
+		} else if (condition instanceof JavaRegexCondition) {
+			JavaRegexCondition regex = (JavaRegexCondition) condition;
+			String literal = regex.getValue() == null ? null : requiredLiteral(regex.getValue());
+			if (regex.getkey() == null || literal == null) {
+				return null;
+			}
+			return Guard.literal(ordinal, regex.getkey(), literal);
+		} else if (condition instanceof AndCondition) {
+			List<Condition> conditions = ((AndCondition) condition).getConditions();
+			if (conditions == null || conditions.isEmpty()) {
+				return null;
+			}
+			Guard best = null;
+			for (Condition child : conditions) {
+				Guard guard = buildGuard(ordinal, child);
+				if (guard == null) {
+					continue;
+				}
+				if (guard.isEquality()) {
+					// equality is the most selective guard available
+					return guard;
+				}
+				if (best == null || guard.rank() > best.rank()) {
+					best = guard;
+				} else if (guard.interval != null && best.interval != null && guard.key.equals(best.key)) {
+					// tighten bounds on the same header
+					best = new Guard(ordinal, best.key, best.interval.intersect(guard.interval));
+				}
+			}
+			return best;
+		} else if (condition instanceof OrCondition) {
+			List<Condition> conditions = ((OrCondition) condition).getConditions();
+			if (conditions == null || conditions.isEmpty()) {
+				return null;
+			}
+			List<Guard> guards = new ArrayList<>(conditions.size());
+			for (Condition child : conditions) {
+				Guard guard = buildGuard(ordinal, child);
+				if (guard == null) {
+					// a single un-indexable branch makes the whole rule a
+					// candidate
+					return null;
+				}
+				guards.add(guard);
+			}
+			return new Guard(ordinal, guards);
+		}
+		return null;
+	}
+
+	/**
+	 * @param ordinal
+	 * @param condition
+	 * @return interval satisfying the supplied numeric condition or null
+	 */
+	protected static Interval toInterval(int ordinal, NumericCondition condition) {
+		double value = condition.getValue();
+		if (condition.getkey() == null || Double.isNaN(value)) {
+			return null;
+		}
+		if (condition instanceof GreaterThanCondition) {
+			return new Interval(ordinal, value, false, Double.POSITIVE_INFINITY, true);
+		} else if (condition instanceof GreaterThanEqualToCondition) {
+			return new Interval(ordinal, value, true, Double.POSITIVE_INFINITY, true);
+		} else if (condition instanceof LessThanCondition) {
+			return new Interval(ordinal, Double.NEGATIVE_INFINITY, true, value, false);
+		} else if (condition instanceof LessThanEqualToCondition) {
+			return new Interval(ordinal, Double.NEGATIVE_INFINITY, true, value, true);
+		}
+		// unknown numeric comparison
+		return null;
+	}
+
+	/**
+	 * Extract the longest literal that must be contained in every string fully
+	 * matching the supplied Java regex. Analysis is conservative, any construct
+	 * that isn't understood either breaks the current literal or disables
+	 * extraction altogether.
+	 * 
+	 * @param regex
+	 * @return required literal or null if none of at-least
+	 *         {@link #MIN_LITERAL_LENGTH} characters can be found
+	 */
+	protected static String requiredLiteral(String regex) {
+		String best = "";
+		StringBuilder run = new StringBuilder();
+		int i = 0;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			switch (c) {
+			case '\\':
+				if (i + 1 >= regex.length()) {
+					return null;
+				}
+				char escaped = regex.charAt(i + 1);
+				if (Character.isLetterOrDigit(escaped)) {
+					if (CHARACTER_CLASS_ESCAPES.indexOf(escaped) < 0) {
+						// quoting, back references, code points and properties
+						return null;
+					}
+					best = longer(best, run);
+				} else {
+					run.append(escaped);
+				}
+				i += 2;
+				break;
+			case '[':
+			case '(':
+				best = longer(best, run);
+				i = skipNested(regex, i);
+				if (i < 0) {
+					return null;
+				}
+				break;
+			case '|':
+			case ')':
+				// top level alternation has no required literal
+				return null;
+			case '?':
+			case '*':
+			case '+':
+			case '{':
+				int min = 1;
+				if (c == '{') {
+					int end = regex.indexOf('}', i);
+					if (end < 0) {
+						return null;
+					}
+					String bounds = regex.substring(i + 1, end);
+					int comma = bounds.indexOf(',');
+					try {
+						min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+					} catch (NumberFormatException e) {
+						return null;
+					}
+					i = end + 1;
+				} else {
+					min = c == '+' ? 1 : 0;
+					i++;
+				}
+				if (min == 0 && run.length() > 0) {
+					// quantified character is optional
+					run.setLength(run.length() - 1);
+				}
+				best = longer(best, run);
+				break;
+			case '.':
+			case '^':
+			case '$':
+				best = longer(best, run);
+				i++;
+				break;
+			default:
+				run.append(c);
+				i++;
+			}
+		}
+		best = longer(best, run);
+		return best.length() >= MIN_LITERAL_LENGTH ? best : null;
+	}
+
+	private static String longer(String best, StringBuilder run) {
+		String result = run.length() > best.length() ? run.toString() : best;
+		run.setLength(0);
+		return result;
+	}
+
+	/**
+	 * @param regex
+	 * @param start
+	 *            index of the opening bracket or parenthesis
+	 * @return index after the matching closing bracket or parenthesis, -1 if
+	 *         unbalanced or if it's a special construct
+	 */
+	private static int skipNested(String regex, int start) {
+		if (regex.startsWith("(?", start)) {
+			// flags, look-arounds and named groups
+			return -1;
+		}
+		int groups = 0;
+		int classes = 0;
+		for (int i = start; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+					return -1;
+				}
+				i++;
+			} else if (classes > 0) {
+				if (c == '[') {
+					classes++;
+				} else if (c == ']' && --classes == 0 && groups == 0) {
+					return i + 1;
+				}
+			} else if (c == '[') {
+				classes++;
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+					// closing bracket as the first character is a literal
+					i++;
+				}
+			} else if (c == '(') {
+				groups++;
+			} else if (c == ')' && --groups == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Necessary predicate for a rule to match
+	 */
+	protected static final class Guard {
+
+		private int ordinal;
+		private String key;
+		private Object value;
+		private Interval interval;
+		private List<Guard> anyOf;
+		private String literal;
+
+		private Guard(int ordinal, String key, Object value) {
+			this.ordinal = ordinal;
+			this.key = key;
+			this.value = value;
+		}
+
+		private Guard(int ordinal, String key, Interval interval) {
+			this.ordinal = ordinal;
+			this.key = key;
+			this.interval = interval;
+		}
+
+		private Guard(int ordinal, List<Guard> anyOf) {
+			this.ordinal = ordinal;
+			this.anyOf = anyOf;
+		}
+
+		private static Guard literal(int ordinal, String key, String literal) {
+			Guard guard = new Guard(ordinal, key, (Object) null);
+			guard.literal = literal;
+			return guard;
+		}
+
+		private boolean isEquality() {
+			return anyOf == null && interval == null && literal == null;
+		}
+
+		/**
+		 * @return relative selectivity of this guard
+		 */
+		private int rank() {
+			if (isEquality()) {
+				return 3;
+			} else if (literal != null) {
+				return 2;
+			} else if (interval != null) {
+				return 1;
+			}
+			return 0;
+		}
+
+	}
+
+}
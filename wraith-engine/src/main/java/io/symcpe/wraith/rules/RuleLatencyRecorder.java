@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import io.symcpe.wraith.LatencyHistogram;
+
+/**
+ * Latency histograms of a {@link Rule}, resolved once when the rule is
+ * published by {@link StatelessRulesEngine} so that recording a sampled
+ * evaluation doesn't allocate or look up metric scopes.
+ * 
+ * @author ambud_sharma
+ */
+public class RuleLatencyRecorder {
+
+	public static final String SCOPE_SEPARATOR = "_";
+	private final String scope;
+	private final LatencyHistogram ruleLatency;
+	private final LatencyHistogram conditionLatency;
+
+	/**
+	 * @param ruleGroup
+	 *            null if rule groups aren't active
+	 * @param ruleId
+	 */
+	public RuleLatencyRecorder(String ruleGroup, short ruleId) {
+		this.scope = ruleGroup != null ? ruleGroup + SCOPE_SEPARATOR + ruleId : String.valueOf(ruleId);
+		this.ruleLatency = new LatencyHistogram();
+		this.conditionLatency = new LatencyHistogram();
+	}
+
+	/**
+	 * @param ruleTime
+	 *            nanoseconds to evaluate the rule and apply its actions
+	 * @param conditionTime
+	 *            nanoseconds to evaluate the condition
+	 */
+	public void record(long ruleTime, long conditionTime) {
+		ruleLatency.record(ruleTime);
+		conditionLatency.record(conditionTime);
+	}
+
+	/**
+	 * @return metric scope of the rule, rule group and rule id
+	 */
+	public String getScope() {
+		return scope;
+	}
+
+	/**
+	 * @return the ruleLatency
+	 */
+	public LatencyHistogram getRuleLatency() {
+		return ruleLatency;
+	}
+
+	/**
+	 * @return the conditionLatency
+	 */
+	public LatencyHistogram getConditionLatency() {
+		return conditionLatency;
+	}
+
+}
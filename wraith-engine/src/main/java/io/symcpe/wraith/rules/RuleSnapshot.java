@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable, versioned set of {@link Rule}s with their
+ * {@link RuleDispatchIndex}es as published by {@link StatelessRulesEngine}.<br>
+ * <br>
+ * Updates never modify a published snapshot, they build a new one sharing the
+ * unchanged rule maps and indexes and publish it with a single volatile write
+ * so evaluating threads always see a complete rule set without locking.
+ * 
+ * @author ambud_sharma
+ */
+public final class RuleSnapshot {
+
+	private final long version;
+	private final Map<Short, Rule> ruleMap;
+	private final RuleDispatchIndex ruleIndex;
+	private final Map<String, Map<Short, Rule>> ruleGroupMap;
+	private final Map<String, RuleDispatchIndex> ruleGroupIndexMap;
+
+	/**
+	 * Supplied maps must not be modified after this call, rule maps of groups
+	 * are expected to be unmodifiable
+	 * 
+	 * @param version
+	 * @param ruleMap
+	 * @param ruleIndex
+	 * @param ruleGroupMap
+	 * @param ruleGroupIndexMap
+	 */
+	RuleSnapshot(long version, Map<Short, Rule> ruleMap, RuleDispatchIndex ruleIndex,
+			Map<String, Map<Short, Rule>> ruleGroupMap, Map<String, RuleDispatchIndex> ruleGroupIndexMap) {
+		this.version = version;
+		this.ruleMap = ruleMap != null ? Collections.unmodifiableMap(ruleMap) : null;
+		this.ruleIndex = ruleIndex;
+		this.ruleGroupMap = ruleGroupMap != null ? Collections.unmodifiableMap(ruleGroupMap) : null;
+		this.ruleGroupIndexMap = ruleGroupIndexMap != null ? Collections.unmodifiableMap(ruleGroupIndexMap)
+				: null;
+	}
+
+	/**
+	 * @return the version, incremented by every published update
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the ruleMap, null when rule groups are active
+	 */
+	public Map<Short, Rule> getRuleMap() {
+		return ruleMap;
+	}
+
+	/**
+	 * @return the ruleIndex
+	 */
+	public RuleDispatchIndex getRuleIndex() {
+		return ruleIndex;
+	}
+
+	/**
+	 * @return the ruleGroupMap, null when rule groups aren't active
+	 */
+	public Map<String, Map<Short, Rule>> getRuleGroupMap() {
+		return ruleGroupMap;
+	}
+
+	/**
+	 * @return the ruleGroupIndexMap
+	 */
+	public Map<String, RuleDispatchIndex> getRuleGroupIndexMap() {
+		return ruleGroupIndexMap;
+	}
+
+}
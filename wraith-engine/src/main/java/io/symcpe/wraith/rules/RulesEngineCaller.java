@@ -82,26 +82,6 @@ public interface RulesEngineCaller<K, C> {
 	 */
 	public void reportRuleHit(String ruleGroup, short ruleId);
 
-	/**
-	 * Report time taken to execute the supplied rule id <br>
-	 * <br>
-	 * To be used for performance statistics.
-	 * 
-	 * @param ruleId
-	 * @param executeTime
-	 */
-	public void reportRuleEfficiency(String ruleGroup, short ruleId, long executeTime);
-
-	/**
-	 * Report time taken to execute the condition for the supplied rule id <br>
-	 * <br>
-	 * To be used for performance statistics.
-	 * 
-	 * @param ruleId
-	 * @param executeTime
-	 */
-	public void reportConditionEfficiency(String ruleGroup, short ruleId, long executeTime);
-
 	/**
 	 * Handle emission of an aggregation event
 	 * 
@@ -16,10 +16,14 @@
 package io.symcpe.wraith.rules;
 
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,13 +35,16 @@ import io.symcpe.wraith.PerformantException;
 import io.symcpe.wraith.Utils;
 import io.symcpe.wraith.actions.Action;
 import io.symcpe.wraith.actions.aggregations.AggregationAction;
+import io.symcpe.wraith.conditions.Condition;
+import io.symcpe.wraith.conditions.ConditionCompiler;
+import io.symcpe.wraith.conditions.FieldResolver;
 import io.symcpe.wraith.rules.validator.RuleValidator;
 import io.symcpe.wraith.rules.validator.ValidationException;
 import io.symcpe.wraith.store.RulesStore;
 import io.symcpe.wraith.store.StoreFactory;
 
 /**
- * A simple single threaded rule engine implementation for Wraith. This
+ * A simple rule engine implementation for Wraith. This
  * implementation can then be combined with a stream / batch processing
  * framework to create a working Real-time or passive Rules-Engine for
  * {@link Event}s.<br>
@@ -51,21 +58,50 @@ import io.symcpe.wraith.store.StoreFactory;
  * store lookups to check changes is never needed.<br>
  * <br>
  * 
- * The data-structures used are not thread-safe therefore all methods are
- * expected to be called synchronously.
+ * When {@link Constants#RULE_INDEX_ACTIVE} is enabled, a
+ * {@link RuleDispatchIndex} is compiled for every rule map and only candidate
+ * rules are evaluated; rules pruned by the index are not reported to
+ * {@link RulesEngineCaller#handleRuleNoMatch(Object, Object, Event, Rule)}.<br>
+ * <br>
+ * 
+ * When {@link Constants#RULE_COMPILE_ACTIVE} is enabled, rule conditions are
+ * compiled to bytecode using {@link ConditionCompiler} as rules are loaded or
+ * updated; rules that fail to compile are evaluated by the interpreted
+ * {@link Condition} tree.<br>
+ * <br>
+ * 
+ * Evaluation latency of rules and their conditions is timed for 1 in
+ * {@link Constants#RULE_LATENCY_SAMPLE_RATE} events (or batches), 0 turns
+ * timing off. Samples are recorded in the {@link RuleLatencyRecorder} attached
+ * to each rule when it is published and reported to the caller.<br>
+ * <br>
+ * 
+ * Rules are held in an immutable {@link RuleSnapshot} behind a volatile
+ * reference, updates are applied as a diff to a copy of the affected rule maps,
+ * compiled and indexed before the new snapshot is published. Events can
+ * therefore be evaluated by several threads while rules are updated, updates
+ * are serialized among themselves. Thread safety of the
+ * {@link RulesEngineCaller} callbacks is up to the caller.
  * 
  * @author ambud_sharma
  */
 public class StatelessRulesEngine<K, C> {
 
 	private static final Logger logger = LoggerFactory.getLogger(StatelessRulesEngine.class);
-	private Map<Short, Rule> ruleMap;
-	private Map<String, Map<Short, Rule>> ruleGroupMap;
+	private static final ThreadLocal<BitSet> CANDIDATES = ThreadLocal.withInitial(BitSet::new);
+	private static final ThreadLocal<BitSet> BATCH_MATCHES = ThreadLocal.withInitial(BitSet::new);
+	private final Object updateLock = new Object();
+	private volatile RuleSnapshot snapshot;
 	private RulesEngineCaller<K, C> caller;
 	private EventFactory eventFactory;
 	private StoreFactory storeFactory;
 	private boolean ruleGroupsActive;
+	private boolean ruleIndexActive;
+	private boolean ruleCompileActive;
 	private int hashSize;
+	private int latencySampleRate;
+	private TenantPartitioner partitioner;
+	private int partitionIndex;
 
 	public StatelessRulesEngine(RulesEngineCaller<K, C> caller, EventFactory eventFactory, StoreFactory storeFactory) {
 		this.caller = caller;
@@ -81,11 +117,26 @@ public class StatelessRulesEngine<K, C> {
 	 */
 	public void initializeRules(Map<String, String> conf) throws Exception {
 		ruleGroupsActive = Boolean.parseBoolean(conf.getOrDefault(Constants.RULE_GROUP_ACTIVE, Constants.FALSE));
+		ruleIndexActive = Boolean.parseBoolean(conf.getOrDefault(Constants.RULE_INDEX_ACTIVE, Constants.FALSE));
+		ruleCompileActive = Boolean.parseBoolean(conf.getOrDefault(Constants.RULE_COMPILE_ACTIVE, Constants.FALSE));
 		hashSize = Integer.parseInt(conf.getOrDefault(Constants.RULE_HASH_INIT_SIZE, Constants.DEFAULT_RULE_HASH_SIZE));
+		latencySampleRate = Integer.parseInt(
+				conf.getOrDefault(Constants.RULE_LATENCY_SAMPLE_RATE, Constants.DEFAULT_RULE_LATENCY_SAMPLE_RATE));
+		Map<Short, Rule> ruleMap = null;
+		Map<String, Map<Short, Rule>> ruleGroupMap = null;
 		if (!ruleGroupsActive) {
-			this.ruleMap = new LinkedHashMap<>(hashSize);
+			ruleMap = new LinkedHashMap<>(hashSize);
 		} else {
-			this.ruleGroupMap = new HashMap<>(hashSize);
+			ruleGroupMap = new HashMap<>(hashSize);
+		}
+		if (ruleGroupsActive && conf.get(Constants.RULE_PARTITION_COUNT) != null) {
+			this.partitioner = new TenantPartitioner(Integer.parseInt(conf.get(Constants.RULE_PARTITION_COUNT)),
+					Integer.parseInt(
+							conf.getOrDefault(Constants.RULE_PARTITION_VNODES, Constants.DEFAULT_RULE_PARTITION_VNODES)),
+					TenantPartitioner.parseSplits(conf.get(Constants.RULE_PARTITION_SPLITS)));
+			this.partitionIndex = Integer.parseInt(conf.getOrDefault(Constants.RULE_PARTITION_INDEX, "0"));
+		} else {
+			this.partitioner = null;
 		}
 		RulesStore store = null;
 		try {
@@ -96,17 +147,61 @@ public class StatelessRulesEngine<K, C> {
 		try {
 			store.connect();
 			if (!ruleGroupsActive) {
-				this.ruleMap.putAll(store.listRules());
+				ruleMap.putAll(store.listRules());
 			} else {
-				this.ruleGroupMap.putAll(store.listGroupedRules());
+				for (Entry<String, Map<Short, Rule>> entry : store.listGroupedRules().entrySet()) {
+					ruleGroupMap.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+				}
+				if (partitioner != null) {
+					int total = ruleGroupMap.size();
+					ruleGroupMap.keySet().removeIf(ruleGroup -> !ownsRuleGroup(ruleGroup));
+					logger.info("Partition " + partitionIndex + "/" + partitioner.getPartitions() + " owns "
+							+ ruleGroupMap.size() + " of " + total + " rule groups");
+				}
 			}
 			store.disconnect();
 		} catch (IOException e) {
 			logger.error("Failed to load rules from store, reason:" + e.getMessage());
 			throw e;
 		}
+		RuleDispatchIndex ruleIndex = null;
+		Map<String, RuleDispatchIndex> ruleGroupIndexMap = null;
+		if (!ruleGroupsActive) {
+			ruleIndex = prepareRules(null, ruleMap);
+		} else {
+			ruleGroupIndexMap = new HashMap<>(hashSize);
+			for (Entry<String, Map<Short, Rule>> entry : ruleGroupMap.entrySet()) {
+				ruleGroupIndexMap.put(entry.getKey(), prepareRules(entry.getKey(), entry.getValue()));
+				entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+			}
+		}
+		synchronized (updateLock) {
+			snapshot = new RuleSnapshot(snapshot != null ? snapshot.getVersion() + 1 : 1, ruleMap, ruleIndex,
+					ruleGroupMap, ruleGroupIndexMap);
+		}
+	}
+
+	/**
+	 * Resolve fields, attach latency recorders, compile conditions and build
+	 * the dispatch index of a rule map about to be published
+	 * 
+	 * @param ruleGroup
+	 * @param ruleMap
+	 * @return dispatch index or null if indexing isn't active
+	 */
+	protected RuleDispatchIndex prepareRules(String ruleGroup, Map<Short, Rule> ruleMap) {
+		resolveFields(ruleMap);
+		for (Rule rule : ruleMap.values()) {
+			if (rule.getLatencyRecorder() == null) {
+				rule.setLatencyRecorder(new RuleLatencyRecorder(ruleGroup, rule.getRuleId()));
+			}
+		}
+		if (ruleCompileActive) {
+			compileRules(ruleMap);
+		}
+		return ruleIndexActive ? new RuleDispatchIndex(ruleMap) : null;
 	}
-	
+
 	/**
 	 * Updates rule and returns the old rule
 	 * 
@@ -125,34 +220,128 @@ public class StatelessRulesEngine<K, C> {
 			throw e;
 		}
 		if (!delete) {
+			FieldResolver.resolve(rule.getCondition());
 			return ruleMap.put(rule.getRuleId(), rule);
 		} else {
 			return ruleMap.remove(rule.getRuleId());
 		}
 	}
 
+	/**
+	 * Resolve header keys of rule conditions to field ids
+	 * 
+	 * @param ruleMap
+	 */
+	protected static void resolveFields(Map<Short, Rule> ruleMap) {
+		for (Rule rule : ruleMap.values()) {
+			FieldResolver.resolve(rule.getCondition());
+		}
+	}
+
+	/**
+	 * Compile conditions of rules that haven't been compiled yet, failures are
+	 * logged and the rule is left to the interpreted path.
+	 * 
+	 * @param ruleMap
+	 */
+	protected static void compileRules(Map<Short, Rule> ruleMap) {
+		for (Rule rule : ruleMap.values()) {
+			if (rule.getCompiledCondition() != null || rule.getCondition() == null) {
+				continue;
+			}
+			try {
+				rule.setCompiledCondition(ConditionCompiler.compile(rule.getCondition()));
+			} catch (Exception | LinkageError e) {
+				logger.warn("Failed to compile condition for rule:" + rule.getRuleId() + ", reason:" + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @param ruleGroup
+	 * @return true if rules of this group are loaded by this engine i.e.
+	 *         partitioning is off or this engine's partition owns the group
+	 */
+	public boolean ownsRuleGroup(String ruleGroup) {
+		return partitioner == null || partitioner.owns(partitionIndex, ruleGroup);
+	}
+
 	/**
 	 * Rule updates are delivered synchronously by invoking this method.
 	 * 
+	 * @param ruleGroup
 	 * @param ruleJson
+	 * @param delete
 	 */
 	public void updateRule(String ruleGroup, String ruleJson, boolean delete) throws Exception {
-		Map<Short, Rule> ruleMap = this.ruleMap;
-		if (ruleGroupsActive) {
-			if (ruleGroup != null) {
-				ruleMap = ruleGroupMap.get(ruleGroup);
-				if (ruleMap == null) {
-					ruleMap = new LinkedHashMap<>(hashSize);
-					ruleGroupMap.put(ruleGroup, ruleMap);
+		updateRules(Collections.singletonList(new RuleCommand(ruleGroup, delete, ruleJson)));
+	}
+
+	/**
+	 * Apply a batch of rule updates as a single diff: affected rule maps are
+	 * copied, updated, compiled and indexed off the evaluation path and
+	 * published as one new {@link RuleSnapshot}. Commands that fail are
+	 * skipped, the remaining are published and the first failure is thrown.
+	 * 
+	 * @param commands
+	 * @throws Exception
+	 */
+	public void updateRules(List<RuleCommand> commands) throws Exception {
+		synchronized (updateLock) {
+			RuleSnapshot current = snapshot;
+			if (current == null) {
+				throw new PerformantException("Rules haven't been initialized");
+			}
+			Map<Short, Rule> ruleMap = null;
+			Map<String, Map<Short, Rule>> updatedGroups = new HashMap<>();
+			Exception failure = null;
+			for (RuleCommand command : commands) {
+				String ruleGroup = command.getRuleGroup();
+				Map<Short, Rule> target;
+				if (ruleGroupsActive) {
+					if (ruleGroup == null) {
+						failure = failure != null ? failure : new PerformantException("Supplied rule group is null");
+						continue;
+					}
+					if (!ownsRuleGroup(ruleGroup)) {
+						// rule group is owned by another partition
+						continue;
+					}
+					target = updatedGroups.get(ruleGroup);
+					if (target == null) {
+						Map<Short, Rule> existing = current.getRuleGroupMap().get(ruleGroup);
+						target = existing != null ? new LinkedHashMap<>(existing) : new LinkedHashMap<>(hashSize);
+						updatedGroups.put(ruleGroup, target);
+					}
+				} else {
+					if (ruleMap == null) {
+						ruleMap = new LinkedHashMap<>(current.getRuleMap());
+					}
+					target = ruleMap;
+				}
+				try {
+					updateRuleMap(target, command.getRuleContent(), command.isDelete());
+				} catch (Exception e) {
+					logger.error("Failed to apply rule update:" + command + ", reason:" + e.getMessage());
+					failure = failure != null ? failure : e;
 				}
-			} else {
-				throw new PerformantException("Supplied rule group is null");
+			}
+			if (ruleMap != null) {
+				snapshot = new RuleSnapshot(current.getVersion() + 1, ruleMap, prepareRules(null, ruleMap), null,
+						null);
+			} else if (!updatedGroups.isEmpty()) {
+				Map<String, Map<Short, Rule>> ruleGroupMap = new HashMap<>(current.getRuleGroupMap());
+				Map<String, RuleDispatchIndex> ruleGroupIndexMap = new HashMap<>(current.getRuleGroupIndexMap());
+				for (Entry<String, Map<Short, Rule>> entry : updatedGroups.entrySet()) {
+					ruleGroupIndexMap.put(entry.getKey(), prepareRules(entry.getKey(), entry.getValue()));
+					ruleGroupMap.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+				}
+				snapshot = new RuleSnapshot(current.getVersion() + 1, null, null, ruleGroupMap, ruleGroupIndexMap);
+			}
+			if (failure != null) {
+				throw failure;
 			}
 		}
-		if (ruleMap == null) {
-			throw new PerformantException("Rule map not found for rule:" + ruleJson + "\trule-group:" + ruleGroup);
-		}
-		updateRuleMap(ruleMap, ruleJson, delete);
 	}
 
 	/**
@@ -166,9 +355,15 @@ public class StatelessRulesEngine<K, C> {
 	 */
 	public void evaluateEventAgainstAllRules(C eventCollector, K eventContainer, Event event) {
 		if (!ruleGroupsActive) {
-			for (Short ruleId : ruleMap.keySet()) {
-				Rule rule = ruleMap.get(ruleId);
-				evaluateEventAgainstRule(null, rule, eventCollector, eventContainer, event);
+			RuleSnapshot rules = snapshot;
+			boolean sampled = sample();
+			if (ruleIndexActive) {
+				evaluateEventAgainstIndexedRules(null, rules.getRuleIndex(), eventCollector, eventContainer, event,
+						sampled);
+				return;
+			}
+			for (Rule rule : rules.getRuleMap().values()) {
+				evaluateEventAgainstRule(null, rule, eventCollector, eventContainer, event, sampled);
 			}
 		}
 	}
@@ -185,13 +380,213 @@ public class StatelessRulesEngine<K, C> {
 	public void evaluateEventAgainstGroupedRules(C eventCollector, K eventContainer, Event event) {
 		if (ruleGroupsActive) {
 			String ruleGroup = event.getHeaders().get(Constants.FIELD_RULE_GROUP).toString();
-			Map<Short, Rule> rules = ruleGroupMap.get(ruleGroup);
+			RuleSnapshot current = snapshot;
+			boolean sampled = sample();
+			if (ruleIndexActive) {
+				RuleDispatchIndex index = current.getRuleGroupIndexMap().get(ruleGroup);
+				if (index != null) {
+					evaluateEventAgainstIndexedRules(ruleGroup, index, eventCollector, eventContainer, event,
+							sampled);
+				}
+				return;
+			}
+			Map<Short, Rule> rules = current.getRuleGroupMap().get(ruleGroup);
 			if (rules != null) {
-				for (Short ruleId : rules.keySet()) {
-					Rule rule = rules.get(ruleId);
-					evaluateEventAgainstRule(ruleGroup, rule, eventCollector, eventContainer, event);
+				for (Rule rule : rules.values()) {
+					evaluateEventAgainstRule(ruleGroup, rule, eventCollector, eventContainer, event, sampled);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluates a batch of events column-wise, each {@link Rule} condition is
+	 * checked against every event of the batch (of its rule group) before
+	 * moving to the next rule and actions are applied once the rule's column
+	 * is evaluated.<br>
+	 * <br>
+	 * Every event sees the same rules and actions as with
+	 * {@link #evaluateEventAgainstAllRules(Object, Object, Event)} or
+	 * {@link #evaluateEventAgainstGroupedRules(Object, Object, Event)}, only
+	 * the order of emits across events differs. Sampled latency is
+	 * recorded once per rule and batch as the per event average. A failure
+	 * evaluating one event is logged and doesn't affect the others.
+	 * 
+	 * @param eventCollector
+	 * @param eventContainers
+	 *            containers of the events, matched by position
+	 * @param events
+	 */
+	public void evaluateEventBatch(C eventCollector, List<K> eventContainers, List<Event> events) {
+		int size = events.size();
+		if (size == 0) {
+			return;
+		}
+		int[] positions = new int[size];
+		// the whole batch is evaluated against one snapshot
+		RuleSnapshot current = snapshot;
+		boolean sampled = sample();
+		if (!ruleGroupsActive) {
+			for (int i = 0; i < size; i++) {
+				positions[i] = i;
+			}
+			evaluateBatch(null, current.getRuleMap(), current.getRuleIndex(), eventCollector, eventContainers,
+					events, positions, size, sampled);
+			return;
+		}
+		String[] groups = new String[size];
+		for (int i = 0; i < size; i++) {
+			Object ruleGroup = events.get(i).getHeaders().get(Constants.FIELD_RULE_GROUP);
+			if (ruleGroup != null) {
+				groups[i] = ruleGroup.toString();
+			} else {
+				logger.error("Event without rule group in batch:" + events.get(i).getHeaders());
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			String ruleGroup = groups[i];
+			if (ruleGroup == null) {
+				continue;
+			}
+			// collect events of this group, marking them as done
+			int count = 0;
+			for (int j = i; j < size; j++) {
+				if (ruleGroup.equals(groups[j])) {
+					positions[count++] = j;
+					groups[j] = null;
+				}
+			}
+			evaluateBatch(ruleGroup, current.getRuleGroupMap().get(ruleGroup),
+					ruleIndexActive ? current.getRuleGroupIndexMap().get(ruleGroup) : null, eventCollector,
+					eventContainers, events, positions, count, sampled);
+		}
+	}
+
+	/**
+	 * Evaluate the events at the supplied positions against a rule map
+	 * 
+	 * @param ruleGroup
+	 * @param rules
+	 * @param index
+	 * @param eventCollector
+	 * @param eventContainers
+	 * @param events
+	 * @param positions
+	 * @param count
+	 * @param sampled
+	 *            record latency of this batch
+	 */
+	protected void evaluateBatch(String ruleGroup, Map<Short, Rule> rules, RuleDispatchIndex index, C eventCollector,
+			List<K> eventContainers, List<Event> events, int[] positions, int count, boolean sampled) {
+		if (rules == null) {
+			return;
+		}
+		if (!ruleIndexActive) {
+			for (Rule rule : rules.values()) {
+				evaluateBatchAgainstRule(ruleGroup, rule, eventCollector, eventContainers, events, positions, count,
+						sampled);
+			}
+			return;
+		}
+		if (index == null) {
+			return;
+		}
+		BitSet[] eventCandidates = new BitSet[count];
+		BitSet union = new BitSet(index.size());
+		for (int i = 0; i < count; i++) {
+			eventCandidates[i] = new BitSet(index.size());
+			index.findCandidates(events.get(positions[i]), eventCandidates[i]);
+			union.or(eventCandidates[i]);
+		}
+		int[] rulePositions = new int[count];
+		for (int ordinal = union.nextSetBit(0); ordinal >= 0; ordinal = union.nextSetBit(ordinal + 1)) {
+			int ruleCount = 0;
+			for (int i = 0; i < count; i++) {
+				if (eventCandidates[i].get(ordinal)) {
+					rulePositions[ruleCount++] = positions[i];
 				}
 			}
+			evaluateBatchAgainstRule(ruleGroup, index.getRule(ordinal), eventCollector, eventContainers, events,
+					rulePositions, ruleCount, sampled);
+		}
+	}
+
+	/**
+	 * Evaluate a {@link Rule} against the events at the supplied positions
+	 * 
+	 * @param ruleGroup
+	 * @param rule
+	 * @param eventCollector
+	 * @param eventContainers
+	 * @param events
+	 * @param positions
+	 * @param count
+	 * @param sampled
+	 */
+	protected void evaluateBatchAgainstRule(String ruleGroup, Rule rule, C eventCollector, List<K> eventContainers,
+			List<Event> events, int[] positions, int count, boolean sampled) {
+		if (!rule.isActive()) {
+			logger.debug("Rule:" + rule.getRuleId() + " is deactive");
+			return;
+		}
+		long ruleStartTime = sampled ? System.nanoTime() : 0;
+		Condition condition = rule.getCompiledCondition();
+		if (condition == null) {
+			condition = rule.getCondition();
+		}
+		BitSet batchMatches = BATCH_MATCHES.get();
+		batchMatches.clear();
+		for (int i = 0; i < count; i++) {
+			try {
+				if (condition.matches(events.get(positions[i]))) {
+					batchMatches.set(i);
+				}
+			} catch (Exception e) {
+				logger.error("Failed to evaluate rule:" + rule.getRuleId() + ", reason:" + e.getMessage());
+			}
+		}
+		long conditionTime = sampled ? System.nanoTime() - ruleStartTime : 0;
+		for (int i = 0; i < count; i++) {
+			K eventContainer = eventContainers.get(positions[i]);
+			Event event = events.get(positions[i]);
+			try {
+				if (batchMatches.get(i)) {
+					caller.reportRuleHit(ruleGroup, rule.getRuleId());
+					for (Action action : rule.getActions()) {
+						applyRuleAction(eventCollector, eventContainer, event, rule, action);
+					}
+				} else {
+					caller.handleRuleNoMatch(eventCollector, eventContainer, event, rule);
+				}
+			} catch (Exception e) {
+				logger.error("Failed to apply actions of rule:" + rule.getRuleId() + ", reason:" + e.getMessage());
+			}
+		}
+		if (sampled && count > 0) {
+			recordLatency(rule, (System.nanoTime() - ruleStartTime) / count, conditionTime / count);
+		}
+	}
+
+	/**
+	 * Evaluates candidate rules from the supplied {@link RuleDispatchIndex}
+	 * against this event in the original rule order.
+	 * 
+	 * @param ruleGroup
+	 * @param index
+	 * @param eventCollector
+	 * @param eventContainer
+	 * @param event
+	 * @param sampled
+	 */
+	protected void evaluateEventAgainstIndexedRules(String ruleGroup, RuleDispatchIndex index, C eventCollector,
+			K eventContainer, Event event, boolean sampled) {
+		if (index == null) {
+			return;
+		}
+		BitSet candidates = CANDIDATES.get();
+		index.findCandidates(event, candidates);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			evaluateEventAgainstRule(ruleGroup, index.getRule(i), eventCollector, eventContainer, event, sampled);
 		}
 	}
 
@@ -203,14 +598,32 @@ public class StatelessRulesEngine<K, C> {
 	 * @param event
 	 */
 	public void evaluateEventAgainstRule(String ruleGroup, Rule rule, C eventCollector, K eventContainer, Event event) {
+		evaluateEventAgainstRule(ruleGroup, rule, eventCollector, eventContainer, event, sample());
+	}
+
+	/**
+	 * Evaluate the rule, timing it only if sampled
+	 * 
+	 * @param ruleGroup
+	 * @param rule
+	 * @param eventCollector
+	 * @param eventContainer
+	 * @param event
+	 * @param sampled
+	 */
+	protected void evaluateEventAgainstRule(String ruleGroup, Rule rule, C eventCollector, K eventContainer,
+			Event event, boolean sampled) {
 		if (!rule.isActive()) {
 			logger.debug("Rule:" + rule.getRuleId() + " is deactive");
 			return;
 		}
-		long ruleStartTime = System.nanoTime();
-		long conditionTime = System.nanoTime();
-		boolean result = rule.getCondition().matches(event);
-		conditionTime = System.nanoTime() - conditionTime;
+		long ruleStartTime = sampled ? System.nanoTime() : 0;
+		Condition condition = rule.getCompiledCondition();
+		if (condition == null) {
+			condition = rule.getCondition();
+		}
+		boolean result = condition.matches(event);
+		long conditionTime = sampled ? System.nanoTime() - ruleStartTime : 0;
 		if (result) {
 			caller.reportRuleHit(ruleGroup, rule.getRuleId());
 			List<Action> actions = rule.getActions();
@@ -220,8 +633,31 @@ public class StatelessRulesEngine<K, C> {
 		} else {
 			caller.handleRuleNoMatch(eventCollector, eventContainer, event, rule);
 		}
-		caller.reportRuleEfficiency(ruleGroup, rule.getRuleId(), System.nanoTime() - ruleStartTime);
-		caller.reportConditionEfficiency(ruleGroup, rule.getRuleId(), conditionTime);
+		if (sampled) {
+			recordLatency(rule, System.nanoTime() - ruleStartTime, conditionTime);
+		}
+	}
+
+	/**
+	 * @return true if the latency of this event (or batch) should be recorded
+	 */
+	protected boolean sample() {
+		return latencySampleRate == 1
+				|| (latencySampleRate > 1 && ThreadLocalRandom.current().nextInt(latencySampleRate) == 0);
+	}
+
+	/**
+	 * Record a sampled evaluation in the rule's {@link RuleLatencyRecorder}
+	 * 
+	 * @param rule
+	 * @param ruleTime
+	 * @param conditionTime
+	 */
+	protected void recordLatency(Rule rule, long ruleTime, long conditionTime) {
+		RuleLatencyRecorder recorder = rule.getLatencyRecorder();
+		if (recorder != null) {
+			recorder.record(ruleTime, conditionTime);
+		}
 	}
 
 	/**
@@ -264,7 +700,7 @@ public class StatelessRulesEngine<K, C> {
 			String ruleActionId = Utils.combineRuleActionId(ruleId, action.getActionId());
 			caller.emitAggregationEvent(action.getClass(), eventCollector, eventContainer, event,
 					(Long) event.getHeaders().get(Constants.FIELD_TIMESTAMP),
-					((AggregationAction) action).getAggregationWindow(), ruleActionId,
+					((AggregationAction) action).getPaneSize(), ruleActionId,
 					outputEvent.getHeaders().get(Constants.FIELD_AGGREGATION_KEY).toString(),
 					outputEvent.getHeaders().get(Constants.FIELD_AGGREGATION_VALUE));
 			break;
@@ -274,7 +710,7 @@ public class StatelessRulesEngine<K, C> {
 			caller.emitStateTrackingEvent(eventCollector, eventContainer,
 					(Boolean) event.getHeaders().get(Constants.FIELD_STATE_TRACK), event,
 					(Long) event.getHeaders().get(Constants.FIELD_TIMESTAMP),
-					((AggregationAction) action).getAggregationWindow(), stateRuleActionId,
+					((AggregationAction) action).getPaneSize(), stateRuleActionId,
 					outputEvent.getHeaders().get(Constants.FIELD_AGGREGATION_KEY).toString());
 			break;
 		case NEW:
@@ -299,14 +735,14 @@ public class StatelessRulesEngine<K, C> {
 	 * @return the ruleMap
 	 */
 	public Map<Short, Rule> getRuleMap() {
-		return ruleMap;
+		return snapshot.getRuleMap();
 	}
 
 	/**
 	 * @return the ruleGroupMap
 	 */
 	public Map<String, Map<Short, Rule>> getRuleGroupMap() {
-		return ruleGroupMap;
+		return snapshot.getRuleGroupMap();
 	}
 
 	/**
@@ -316,6 +752,41 @@ public class StatelessRulesEngine<K, C> {
 		return ruleGroupsActive;
 	}
 
+	/**
+	 * @return the ruleIndexActive
+	 */
+	public boolean isRuleIndexActive() {
+		return ruleIndexActive;
+	}
+
+	/**
+	 * @return the ruleCompileActive
+	 */
+	public boolean isRuleCompileActive() {
+		return ruleCompileActive;
+	}
+
+	/**
+	 * @return the ruleIndex
+	 */
+	public RuleDispatchIndex getRuleIndex() {
+		return snapshot.getRuleIndex();
+	}
+
+	/**
+	 * @return the ruleGroupIndexMap
+	 */
+	public Map<String, RuleDispatchIndex> getRuleGroupIndexMap() {
+		return snapshot.getRuleGroupIndexMap();
+	}
+
+	/**
+	 * @return the current rule snapshot
+	 */
+	public RuleSnapshot getSnapshot() {
+		return snapshot;
+	}
+
 	/**
 	 * @return the hashSize
 	 */
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.symcpe.wraith.MurmurHash;
+
+/**
+ * Consistent hash ring assigning rule groups (tenants) to partitions i.e. the
+ * tasks of the rules engine component.<br>
+ * <br>
+ * Each partition is placed on the ring at a number of virtual nodes, a rule
+ * group is owned by the first partition clockwise of its hash. Heavy rule
+ * groups can be split across several partitions, these are owned by the next
+ * distinct partitions on the ring and events of the group are spread across
+ * them. Adding a partition only moves the rule groups that land on its
+ * virtual nodes.<br>
+ * <br>
+ * The grouping routing events and the engine filtering rules must be built
+ * with the same arguments to agree on ownership. Not thread safe, each task
+ * holds its own instance.
+ * 
+ * @author ambud_sharma
+ */
+public class TenantPartitioner implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	public static final int DEFAULT_VIRTUAL_NODES = 64;
+	private final int partitions;
+	private final TreeMap<Integer, Integer> ring;
+	private final Map<String, Integer> splits;
+	private transient Map<String, int[]> ownerCache;
+
+	/**
+	 * @param partitions
+	 *            number of partitions (tasks)
+	 * @param virtualNodes
+	 *            ring positions per partition
+	 * @param splits
+	 *            number of partitions for heavy rule groups
+	 */
+	public TenantPartitioner(int partitions, int virtualNodes, Map<String, Integer> splits) {
+		if (partitions < 1 || virtualNodes < 1) {
+			throw new IllegalArgumentException("Partitions and virtual nodes must be positive");
+		}
+		this.partitions = partitions;
+		this.splits = splits != null ? splits : Collections.<String, Integer> emptyMap();
+		this.ring = new TreeMap<>();
+		for (int partition = 0; partition < partitions; partition++) {
+			for (int node = 0; node < virtualNodes; node++) {
+				// collisions keep the first partition, placement stays deterministic
+				ring.putIfAbsent(MurmurHash.hash32(partition + "#" + node), partition);
+			}
+		}
+	}
+
+	/**
+	 * Parse splits of the form <code>group1:3,group2:2</code>
+	 * 
+	 * @param splits
+	 * @return rule group to number of partitions
+	 */
+	public static Map<String, Integer> parseSplits(String splits) {
+		Map<String, Integer> map = new HashMap<>();
+		if (splits == null || splits.trim().isEmpty()) {
+			return map;
+		}
+		for (String split : splits.split(",")) {
+			int index = split.lastIndexOf(':');
+			if (index <= 0) {
+				throw new IllegalArgumentException("Invalid rule group split:" + split);
+			}
+			map.put(split.substring(0, index).trim(), Integer.parseInt(split.substring(index + 1).trim()));
+		}
+		return map;
+	}
+
+	/**
+	 * @param ruleGroup
+	 * @return partitions owning this rule group, the first being its primary
+	 */
+	public int[] owners(String ruleGroup) {
+		if (ownerCache == null) {
+			ownerCache = new HashMap<>();
+		}
+		int[] owners = ownerCache.get(ruleGroup);
+		if (owners == null) {
+			owners = computeOwners(ruleGroup);
+			ownerCache.put(ruleGroup, owners);
+		}
+		return owners;
+	}
+
+	private int[] computeOwners(String ruleGroup) {
+		int count = Math.max(1, Math.min(splits.getOrDefault(ruleGroup, 1), partitions));
+		int[] owners = new int[count];
+		int found = 0;
+		Integer key = ring.ceilingKey(MurmurHash.hash32(ruleGroup));
+		if (key == null) {
+			key = ring.firstKey();
+		}
+		// walk the ring once, collecting distinct partitions
+		for (int visited = 0; visited < ring.size() && found < count; visited++) {
+			int partition = ring.get(key);
+			boolean seen = false;
+			for (int i = 0; i < found; i++) {
+				if (owners[i] == partition) {
+					seen = true;
+					break;
+				}
+			}
+			if (!seen) {
+				owners[found++] = partition;
+			}
+			key = ring.higherKey(key);
+			if (key == null) {
+				key = ring.firstKey();
+			}
+		}
+		return found == count ? owners : Arrays.copyOf(owners, found);
+	}
+
+	/**
+	 * @param partition
+	 * @param ruleGroup
+	 * @return true if this partition should load the rules of the group
+	 */
+	public boolean owns(int partition, String ruleGroup) {
+		for (int owner : owners(ruleGroup)) {
+			if (owner == partition) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param ruleGroup
+	 * @param salt
+	 *            spreads events of split rule groups, e.g. a counter
+	 * @return partition to route an event of this rule group to
+	 */
+	public int route(String ruleGroup, int salt) {
+		int[] owners = owners(ruleGroup);
+		if (owners.length == 1) {
+			return owners[0];
+		}
+		return owners[Math.floorMod(salt, owners.length)];
+	}
+
+	/**
+	 * @return number of partitions
+	 */
+	public int getPartitions() {
+		return partitions;
+	}
+
+}
@@ -20,9 +20,14 @@ import java.util.List;
 
 import io.symcpe.wraith.actions.Action;
 import io.symcpe.wraith.actions.aggregations.AggregationAction;
+import io.symcpe.wraith.actions.aggregations.CoarseCountingAggregationAction;
+import io.symcpe.wraith.actions.aggregations.CountMinAggregationAction;
+import io.symcpe.wraith.actions.aggregations.PercentileAggregationAction;
 import io.symcpe.wraith.actions.aggregations.StateAggregationAction;
+import io.symcpe.wraith.actions.aggregations.TopKAggregationAction;
 import io.symcpe.wraith.actions.aggregations.ValueAggregationAction;
 import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
+import io.symcpe.wraith.aggregators.SparseHyperLogLog;
 import io.symcpe.wraith.rules.Rule;
 
 /**
@@ -56,7 +61,18 @@ public class ActionValidator implements Validator<Action> {
 			}
 		} else if (action instanceof AggregationAction) {
 			AggregationAction aggregationAction = (AggregationAction) action;
-			if (!(aggregationAction instanceof StateAggregationAction)) {
+			if (aggregationAction instanceof CoarseCountingAggregationAction) {
+				int precision = ((CoarseCountingAggregationAction) action).getPrecision();
+				if (precision != 0 && (precision < SparseHyperLogLog.MIN_PRECISION
+						|| precision > SparseHyperLogLog.MAX_PRECISION)) {
+					throw new ValidationException("HLL precision must be between "
+							+ SparseHyperLogLog.MIN_PRECISION + " and " + SparseHyperLogLog.MAX_PRECISION);
+				}
+			}
+			if (!(aggregationAction instanceof StateAggregationAction
+					|| aggregationAction instanceof CountMinAggregationAction
+					|| aggregationAction instanceof PercentileAggregationAction
+					|| aggregationAction instanceof TopKAggregationAction)) {
 				throw new ValidationException("Unsupported aggregation action type");
 			}
 			if (aggregationAction.getAggregationKey() == null
@@ -66,6 +82,17 @@ public class ActionValidator implements Validator<Action> {
 			if (aggregationAction.getAggregationWindow() < 10) {
 				throw new ValidationException("Aggregation window must be bigger than 10 seconds");
 			}
+			int slide = aggregationAction.getAggregationSlide();
+			if (slide < 0 || (slide > 0 && aggregationAction.getAggregationWindow() % slide != 0)) {
+				throw new ValidationException("Aggregation slide must evenly divide the window");
+			}
+			// sliding windows merge their panes, sketch aggregators can't be
+			// merged
+			if (slide > 0 && (aggregationAction instanceof CountMinAggregationAction
+					|| aggregationAction instanceof PercentileAggregationAction
+					|| aggregationAction instanceof TopKAggregationAction)) {
+				throw new ValidationException("Sketch aggregations only support tumbling windows");
+			}
 			if (aggregationAction instanceof StateAggregationAction) {
 				StateAggregationAction stateAggregation = (StateAggregationAction) action;
 				if (stateAggregation.getStateCondition() == null) {
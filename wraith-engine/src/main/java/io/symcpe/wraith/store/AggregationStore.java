@@ -17,6 +17,7 @@ package io.symcpe.wraith.store;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import com.clearspring.analytics.stream.cardinality.ICardinality;
@@ -69,6 +70,20 @@ public interface AggregationStore extends Store {
 	 */
 	public void persist(int taskId, String entity, Aggregator aggregator) throws IOException;
 
+	/**
+	 * Persist a batch of entities and aggregators, stores should override this
+	 * to write the batch in as few round trips as possible
+	 * 
+	 * @param taskId
+	 * @param aggregators
+	 * @throws IOException
+	 */
+	public default void persist(int taskId, Map<String, Aggregator> aggregators) throws IOException {
+		for (Entry<String, Aggregator> entry : aggregators.entrySet()) {
+			persist(taskId, entry.getKey(), entry.getValue());
+		}
+	}
+
 	/**
 	 * @param taskId
 	 * @param aggregator
@@ -115,6 +130,20 @@ public interface AggregationStore extends Store {
 	 */
 	public void persistState(int taskId, String key, MutableBoolean value) throws IOException;
 
+	/**
+	 * Persist a batch of states, stores should override this to write the
+	 * batch in as few round trips as possible
+	 * 
+	 * @param taskId
+	 * @param states
+	 * @throws IOException
+	 */
+	public default void persistStates(int taskId, Map<String, MutableBoolean> states) throws IOException {
+		for (Entry<String, MutableBoolean> entry : states.entrySet()) {
+			persistState(taskId, entry.getKey(), entry.getValue());
+		}
+	}
+
 	/**
 	 * @param taskId
 	 * @return
@@ -51,4 +51,16 @@ public interface StoreFactory {
 	 */
 	public AggregationStore getAggregationStore(String type, Map<String, String> conf) throws Exception;
 
+	/**
+	 * Build a throttle store object
+	 * 
+	 * @param type
+	 * @param conf
+	 * @return throttleStore object
+	 * @throws Exception
+	 */
+	public default ThrottleStore getThrottleStore(String type, Map<String, String> conf) throws Exception {
+		throw new UnsupportedOperationException("Throttle stores aren't supported by " + getClass().getName());
+	}
+
 }
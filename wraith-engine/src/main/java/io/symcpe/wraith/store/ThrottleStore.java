@@ -0,0 +1,48 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.store;
+
+import java.io.IOException;
+import java.util.Map;
+
+import io.symcpe.wraith.actions.alerts.templated.ThrottleWindow;
+
+/**
+ * Snapshot store for alert throttle windows so that suppression survives
+ * worker restarts.
+ * 
+ * @author ambud_sharma
+ */
+public interface ThrottleStore extends Store {
+
+	/**
+	 * Replace the snapshot of throttle windows of a task
+	 * 
+	 * @param taskId
+	 * @param windows
+	 *            by template id
+	 * @throws IOException
+	 */
+	public void persistWindows(int taskId, Map<Short, ThrottleWindow> windows) throws IOException;
+
+	/**
+	 * @param taskId
+	 * @return last snapshot of throttle windows by template id
+	 * @throws IOException
+	 */
+	public Map<Short, ThrottleWindow> retriveWindows(int taskId) throws IOException;
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HeaderMap}
+ * 
+ * @author ambud_sharma
+ */
+public class TestHeaderMap {
+
+	@Test
+	public void testPrimitiveSlots() {
+		HeaderMap headers = new HeaderMap();
+		headers.put("_t", 1461272081103L);
+		headers.put("value", 12.5);
+		headers.put("count", 3);
+		headers.put("host", "host1");
+		assertEquals(1461272081103L, headers.get("_t"));
+		assertEquals(12.5, headers.get("value"));
+		assertEquals(3, headers.get("count"));
+		int id = FieldDictionary.lookup("_t");
+		assertEquals(1461272081103.0, headers.getDouble(id), 0);
+		assertEquals(3.0, headers.getDouble(FieldDictionary.lookup("count")), 0);
+		assertTrue(Double.isNaN(headers.getDouble(FieldDictionary.lookup("host"))));
+		assertTrue(Double.isNaN(headers.getDouble(FieldDictionary.intern("missing"))));
+		assertEquals("host1", HeaderMap.get(headers, FieldDictionary.lookup("host"), "host"));
+		// a value replacing another of a different kind
+		assertEquals(12.5, headers.put("value", "high"));
+		assertEquals("high", headers.get("value"));
+		assertEquals(4, headers.size());
+	}
+
+	@Test
+	public void testMapContract() {
+		Random random = new Random(1123);
+		HeaderMap headers = new HeaderMap(2);
+		Map<String, Object> reference = new HashMap<>();
+		for (int i = 0; i < 20000; i++) {
+			String key = "field" + random.nextInt(200);
+			switch (random.nextInt(4)) {
+			case 0:
+				assertEquals(reference.remove(key), headers.remove(key));
+				break;
+			case 1:
+				long value = random.nextLong();
+				assertEquals(reference.put(key, value), headers.put(key, value));
+				break;
+			case 2:
+				assertEquals(reference.put(key, key), headers.put(key, key));
+				break;
+			default:
+				assertEquals(reference.get(key), headers.get(key));
+				assertEquals(reference.containsKey(key), headers.containsKey(key));
+			}
+			assertEquals(reference.size(), headers.size());
+		}
+		assertEquals(reference, headers);
+		assertEquals(headers, reference);
+		assertEquals(reference.hashCode(), headers.hashCode());
+
+		Iterator<Entry<String, Object>> iterator = headers.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<String, Object> entry = iterator.next();
+			if (entry.getValue() instanceof String) {
+				iterator.remove();
+				reference.remove(entry.getKey());
+			}
+		}
+		assertEquals(reference, headers);
+		headers.clear();
+		assertTrue(headers.isEmpty());
+		assertFalse(headers.entrySet().iterator().hasNext());
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		HeaderMap headers = new HeaderMap();
+		headers.put("_t", 1461272081103L);
+		headers.put("host", "host1");
+		headers.put("value", 1.5);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream output = new ObjectOutputStream(bytes);
+		output.writeObject(headers);
+		output.close();
+		Object result = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertTrue(result instanceof HeaderMap);
+		assertEquals(headers, result);
+	}
+
+	@Test
+	public void testCopy() {
+		HeaderMap headers = new HeaderMap(2);
+		headers.put("_t", 1461272081103L);
+		headers.put("host", "host1");
+		headers.put("value", 1.5);
+		headers.remove("host");
+		HeaderMap copy = new HeaderMap(headers);
+		assertEquals(headers, copy);
+		// writes to either side must not leak into the other
+		headers.put("host", "host2");
+		headers.put("value", 2.5);
+		copy.put("_tid", (short) 1);
+		assertFalse(copy.containsKey("host"));
+		assertEquals(1.5, copy.get("value"));
+		assertFalse(headers.containsKey("_tid"));
+		assertEquals(3, copy.size());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullValue() {
+		new HeaderMap().put("host", null);
+	}
+
+}
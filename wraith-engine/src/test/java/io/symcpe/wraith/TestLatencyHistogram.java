@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}
+ * 
+ * @author ambud_sharma
+ */
+public class TestLatencyHistogram {
+
+	@Test
+	public void testBucketBoundaries() {
+		assertEquals(0, LatencyHistogram.index(0));
+		assertEquals(31, LatencyHistogram.index(31));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(LatencyHistogram.MAX_VALUE));
+		assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.BUCKETS - 1));
+		for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+			long lowest = LatencyHistogram.highestValue(i - 1) + 1;
+			assertEquals(i, LatencyHistogram.index(lowest));
+			assertEquals(i, LatencyHistogram.index(LatencyHistogram.highestValue(i)));
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i * 100);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertEquals(100000, snapshot.getCount());
+		assertEquals(5000050, snapshot.getMean(), 0.001);
+		assertWithin(5000000, snapshot.getPercentile(50));
+		assertWithin(9900000, snapshot.getPercentile(99));
+		assertWithin(9990000, snapshot.getPercentile(99.9));
+		assertWithin(10000000, snapshot.getPercentile(100));
+	}
+
+	@Test
+	public void testReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getPercentile(99));
+		histogram.record(10);
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+		snapshot = histogram.snapshotAndReset();
+		assertEquals(2, snapshot.getCount());
+		assertEquals(10, snapshot.getPercentile(50));
+		assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getPercentile(100));
+		snapshot = histogram.snapshotAndReset();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getPercentile(100));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected + expected / 16);
+	}
+
+}
@@ -18,13 +18,16 @@ package io.symcpe.wraith.aggregations;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Event;
 import io.symcpe.wraith.TestFactory;
 import io.symcpe.wraith.Utils;
 import io.symcpe.wraith.aggregations.MarkovianAggregationEngineImpl;
@@ -33,6 +36,7 @@ import io.symcpe.wraith.aggregators.CoarseCountingAggregator;
 import io.symcpe.wraith.aggregators.CountingEngine;
 import io.symcpe.wraith.aggregators.FineCountingAggregator;
 import io.symcpe.wraith.aggregators.SetAggregator;
+import io.symcpe.wraith.aggregators.TDigestAggregator;
 
 /**
  * All tests for Aggregations
@@ -215,4 +219,87 @@ public class TestAggregationEngine {
 				.get(Utils.createMapKey(1, 1, ruleActionId, "1233_hello2")).size());
 	}
 	
+	@Test
+	public void testSketchAggregatorEmit() throws Exception {
+		conf.put(Constants.AGGREGATION_JITTER_TOLERANCE, "0");
+		conf.put(Constants.AGGREGATIONS_TDIGEST_QUANTILE, "0.5");
+		MarkovianAggregationEngineImpl aggregationEngine = new MarkovianAggregationEngineImpl(factory, factory,
+				TDigestAggregator.class.getName());
+		aggregationEngine.initialize(conf, 1);
+		String ruleActionId = Utils.combineRuleActionId((short) 12, (short) 1235);
+		long time = 1452452090000L;
+		for (int i = 1; i <= 101; i++) {
+			assertTrue(aggregationEngine.aggregate(time, 10, ruleActionId, "host1", String.valueOf(i)));
+		}
+		aggregationEngine.aggregate(time + 100000, 10, ruleActionId, "host1", "1");
+		List<Event> emits = new ArrayList<>();
+		aggregationEngine.emit(10, ruleActionId, emits);
+		assertEquals(1, emits.size());
+		assertEquals(51, (Double) emits.get(0).getHeaders().get(Constants.FIELD_AGGREGATION_VALUE), 1);
+	}
+
+	@Test
+	public void testCoarseCountingTemplateAndRollup() throws Exception {
+		MarkovianAggregationEngineImpl aggregationEngine = new MarkovianAggregationEngineImpl(factory, factory,
+				CoarseCountingAggregator.class.getName());
+		aggregationEngine.initialize(conf, 1);
+		String ruleActionId = Utils.combineRuleActionId((short) 12, (short) 1236);
+		aggregationEngine.setTemplate(ruleActionId, new CoarseCountingAggregator(14));
+		long time = 1452452090000L;
+		for (int i = 0; i < 3000; i++) {
+			// three 10 second buckets with overlapping values
+			aggregationEngine.aggregate(time + (i / 1000) * 10000, 10, ruleActionId, "host1", i % 2000);
+		}
+		int bucket = Utils.floorTs(time, 10);
+		CoarseCountingAggregator aggregator = (CoarseCountingAggregator) aggregationEngine.getAggregationMap()
+				.get(aggregationEngine.getAggregationMap().ruleAction(ruleActionId), bucket, "host1");
+		assertEquals(14, aggregator.getPrecision());
+		CoarseCountingAggregator rollup = (CoarseCountingAggregator) aggregationEngine.rollup(10, ruleActionId,
+				"host1", bucket, bucket + 20);
+		assertEquals(2000, rollup.getCardinality(), 2000 * 0.03);
+		assertEquals(1000, aggregator.getCardinality(), 1000 * 0.03);
+		assertEquals(null, aggregationEngine.rollup(10, ruleActionId, "host2", bucket, bucket + 20));
+	}
+
+	@Test
+	public void testSlidingWindowEmits() throws Exception {
+		conf.put(Constants.AGGREGATION_JITTER_TOLERANCE, "0");
+		MarkovianAggregationEngineImpl aggregationEngine = new MarkovianAggregationEngineImpl(factory, factory,
+				FineCountingAggregator.class.getName());
+		aggregationEngine.initialize(conf, 1);
+		String ruleActionId = Utils.combineRuleActionId((short) 12, (short) 1237);
+		long time = 1452452090000L;
+		int start = Utils.floorTs(time, 10);
+		// 30 second window sliding every 10 seconds, 10 new values per pane
+		for (int pane = 0; pane < 6; pane++) {
+			for (int i = 0; i < 10; i++) {
+				aggregationEngine.aggregate(time + pane * 10000, 10, ruleActionId, "host1", pane * 10 + i);
+			}
+		}
+		assertEquals(6, aggregationEngine.getAggregationMap().size());
+		List<Event> emits = new ArrayList<>();
+		aggregationEngine.emit(30, 10, ruleActionId, emits);
+		// panes up to the one before the latest are closed
+		Map<Integer, Long> counts = new HashMap<>();
+		for (Event event : emits) {
+			counts.put(MarkovianAggregationEngineImpl.extractTsFromAggregationKey(
+					event.getHeaders().get(Constants.FIELD_AGGREGATION_KEY).toString()),
+					(Long) event.getHeaders().get(Constants.FIELD_AGGREGATION_VALUE));
+		}
+		assertEquals(5, counts.size());
+		assertEquals(Long.valueOf(10), counts.get(start - 20));
+		assertEquals(Long.valueOf(20), counts.get(start - 10));
+		assertEquals(Long.valueOf(30), counts.get(start));
+		assertEquals(Long.valueOf(30), counts.get(start + 20));
+		assertTrue(aggregationEngine.containsRuleActionId(ruleActionId));
+
+		// values repeated across panes are counted once per window
+		aggregationEngine.aggregate(time + 50000, 10, ruleActionId, "host1", 45);
+		aggregationEngine.aggregate(time + 60000, 10, ruleActionId, "host1", 55);
+		emits.clear();
+		aggregationEngine.emit(30, 10, ruleActionId, emits);
+		assertEquals(1, emits.size());
+		assertEquals(30L, emits.get(0).getHeaders().get(Constants.FIELD_AGGREGATION_VALUE));
+	}
+
 }
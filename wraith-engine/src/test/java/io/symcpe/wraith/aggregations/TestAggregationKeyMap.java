@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.symcpe.wraith.Utils;
+
+/**
+ * Unit tests for {@link AggregationKeyMap}
+ * 
+ * @author ambud_sharma
+ */
+public class TestAggregationKeyMap {
+
+	@Test
+	public void testRuleActionEncoding() {
+		int ruleAction = AggregationKeyMap.ruleAction((short) -2, (short) 1233);
+		assertEquals(-2, AggregationKeyMap.ruleId(ruleAction));
+		assertEquals(1233, AggregationKeyMap.actionId(ruleAction));
+		AggregationKeyMap<Integer> map = new AggregationKeyMap<>();
+		assertEquals(ruleAction, map.ruleAction(Utils.combineRuleActionId((short) -2, (short) 1233)));
+		String mapKey = AggregationKeyMap.toMapKey(ruleAction, 1452452090, "host_1");
+		assertEquals(Utils.createMapKey(1452452090000L, 1, Utils.combineRuleActionId((short) -2, (short) 1233),
+				"host_1"), mapKey);
+		map.put(mapKey, 10);
+		assertEquals(10, map.get(ruleAction, 1452452090, "host_1").intValue());
+		assertEquals(10, map.get(mapKey).intValue());
+	}
+
+	@Test
+	public void testPutRemoveAgainstOracle() {
+		AggregationKeyMap<Integer> map = new AggregationKeyMap<>(16);
+		Map<String, Integer> oracle = new HashMap<>();
+		Random random = new Random(1234);
+		for (int i = 0; i < 100000; i++) {
+			short ruleId = (short) random.nextInt(4);
+			int bucket = random.nextInt(50) * 10;
+			String aggregationKey = "key" + random.nextInt(200);
+			int ruleAction = AggregationKeyMap.ruleAction(ruleId, (short) 1);
+			String mapKey = AggregationKeyMap.toMapKey(ruleAction, bucket, aggregationKey);
+			if (random.nextInt(3) == 0) {
+				assertEquals(oracle.remove(mapKey), map.remove(ruleAction, bucket, aggregationKey));
+			} else {
+				assertEquals(oracle.put(mapKey, i), map.put(ruleAction, bucket, aggregationKey, i));
+			}
+			assertEquals(oracle.size(), map.size());
+		}
+		for (Map.Entry<String, Integer> entry : oracle.entrySet()) {
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void testDrainUntil() throws IOException {
+		AggregationKeyMap<Integer> map = new AggregationKeyMap<>();
+		int ruleAction1 = AggregationKeyMap.ruleAction((short) 1, (short) 1);
+		int ruleAction2 = AggregationKeyMap.ruleAction((short) 2, (short) 1);
+		assertFalse(map.containsRuleAction(ruleAction1));
+		assertEquals(Integer.MIN_VALUE, map.lastBucket(ruleAction1));
+		for (int bucket = 100; bucket > 0; bucket -= 10) {
+			map.put(ruleAction1, bucket, "a", bucket);
+			map.put(ruleAction1, bucket, "b", bucket);
+			map.put(ruleAction2, bucket, "a", bucket);
+		}
+		assertTrue(map.containsRuleAction(ruleAction1));
+		assertEquals(100, map.lastBucket(ruleAction1));
+		List<Integer> drained = new ArrayList<>();
+		map.drainUntil(ruleAction1, 50, (ruleAction, bucket, aggregationKey, value) -> {
+			assertEquals(ruleAction1, ruleAction);
+			drained.add(bucket);
+		});
+		assertEquals(10, drained.size());
+		for (int i = 1; i < drained.size(); i++) {
+			assertTrue(drained.get(i - 1) <= drained.get(i));
+		}
+		assertEquals(20, map.size());
+		assertNull(map.get(ruleAction1, 50, "a"));
+		assertEquals(50, map.get(ruleAction2, 50, "a").intValue());
+		map.drainUntil(ruleAction1, 100, (ruleAction, bucket, aggregationKey, value) -> {
+		});
+		assertFalse(map.containsRuleAction(ruleAction1));
+		assertTrue(map.containsRuleAction(ruleAction2));
+		assertEquals(10, map.values().size());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		AggregationKeyMap<Integer> map = new AggregationKeyMap<>(16);
+		for (short ruleId = 0; ruleId < 100; ruleId++) {
+			int ruleAction = AggregationKeyMap.ruleAction(ruleId, (short) 1);
+			for (int bucket = 0; bucket < 100; bucket += 10) {
+				map.put(ruleAction, 1461272080 + bucket, "series", bucket);
+			}
+		}
+		assertEquals(1000, map.size());
+		for (short ruleId = 0; ruleId < 100; ruleId++) {
+			int ruleAction = AggregationKeyMap.ruleAction(ruleId, (short) 1);
+			map.drainUntil(ruleAction, Integer.MAX_VALUE, (rAction, bucket, aggregationKey, value) -> {
+			});
+			assertFalse(map.containsRuleAction(ruleAction));
+		}
+		assertEquals(0, map.size());
+		assertEquals("AggregationKeyMap [size=0, ruleActions=0]", map.toString());
+	}
+
+	@Test
+	public void testDirtyTracking() throws IOException {
+		AggregationKeyMap<Integer> map = new AggregationKeyMap<>(16);
+		int ruleAction = AggregationKeyMap.ruleAction((short) 1, (short) 1);
+		for (int i = 0; i < 100; i++) {
+			map.put(ruleAction, 10, "series" + i, i);
+		}
+		assertNull(map.markDirty(ruleAction, 20, "series1"));
+		for (int i = 0; i < 100; i += 2) {
+			assertEquals(i, map.markDirty(ruleAction, 10, "series" + i).intValue());
+			map.markDirty(ruleAction, 10, "series" + i);
+		}
+		assertEquals(50, map.dirtyCount());
+		// removed entries are skipped
+		map.remove(ruleAction, 10, "series0");
+		List<Integer> drained = new ArrayList<>();
+		map.drainDirty((rAction, bucket, aggregationKey, value) -> drained.add(value));
+		assertEquals(49, drained.size());
+		assertEquals(2, drained.get(0).intValue());
+		assertEquals(0, map.dirtyCount());
+		drained.clear();
+		map.drainDirty((rAction, bucket, aggregationKey, value) -> drained.add(value));
+		assertEquals(0, drained.size());
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BucketWheel}
+ * 
+ * @author ambud_sharma
+ */
+public class TestBucketWheel {
+
+	@Test
+	public void testDrainOrder() throws IOException {
+		BucketWheel wheel = new BucketWheel();
+		int base = 1461272080;
+		for (int i = 100; i >= 0; i--) {
+			wheel.add(base + i * 10, "series" + i);
+		}
+		assertEquals(101, wheel.size());
+		assertEquals(base + 1000, wheel.lastBucket());
+		List<Integer> drained = new ArrayList<>();
+		wheel.drainUntil(base + 495, (bucket, keys) -> drained.add(bucket));
+		assertEquals(50, drained.size());
+		for (int i = 0; i < drained.size(); i++) {
+			assertEquals(base + i * 10, drained.get(i).intValue());
+		}
+		// late bucket behind the cursor
+		wheel.add(base, "late");
+		drained.clear();
+		wheel.drainUntil(base + 1000, (bucket, keys) -> drained.add(bucket));
+		assertEquals(52, drained.size());
+		assertEquals(base, drained.get(0).intValue());
+		assertTrue(wheel.isEmpty());
+		assertEquals(Integer.MIN_VALUE, wheel.lastBucket());
+	}
+
+	@Test
+	public void testAgainstOracle() throws IOException {
+		Random random = new Random(4321);
+		BucketWheel wheel = new BucketWheel();
+		TreeMap<Integer, List<String>> oracle = new TreeMap<>();
+		int now = 1461272080;
+		for (int round = 0; round < 2000; round++) {
+			now += random.nextInt(500);
+			for (int i = 0; i < 20; i++) {
+				int bucket = Math.max(0, now + random.nextInt(100000) - 1000);
+				String key = "k" + random.nextInt(5);
+				List<String> keys = oracle.get(bucket);
+				if (keys == null) {
+					keys = new ArrayList<>();
+					oracle.put(bucket, keys);
+				}
+				if (!keys.contains(key)) {
+					keys.add(key);
+					wheel.add(bucket, key);
+				}
+			}
+			if (random.nextInt(4) == 0 && !oracle.isEmpty()) {
+				Entry<Integer, List<String>> entry = oracle.lastEntry();
+				String key = entry.getValue().remove(0);
+				assertTrue(wheel.remove(entry.getKey(), key));
+				if (entry.getValue().isEmpty()) {
+					oracle.remove(entry.getKey());
+				}
+			}
+			assertEquals(oracle.isEmpty() ? Integer.MIN_VALUE : oracle.lastKey().intValue(), wheel.lastBucket());
+			List<Integer> expected = new ArrayList<>();
+			for (Iterator<Entry<Integer, List<String>>> iterator = oracle.headMap(now, true).entrySet()
+					.iterator(); iterator.hasNext();) {
+				Entry<Integer, List<String>> entry = iterator.next();
+				for (int i = 0; i < entry.getValue().size(); i++) {
+					expected.add(entry.getKey());
+				}
+				iterator.remove();
+			}
+			List<Integer> drained = new ArrayList<>();
+			wheel.drainUntil(now, (bucket, keys) -> {
+				for (int i = 0; i < keys.size(); i++) {
+					drained.add(bucket);
+				}
+			});
+			assertEquals(expected, drained);
+			assertEquals(oracle.size(), wheel.size());
+		}
+	}
+
+}
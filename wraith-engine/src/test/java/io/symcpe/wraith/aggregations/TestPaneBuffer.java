@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PaneBuffer}
+ * 
+ * @author ambud_sharma
+ */
+public class TestPaneBuffer {
+
+	@Test
+	public void testWindows() throws Exception {
+		PaneBuffer<Integer> buffer = new PaneBuffer<>(30, 10);
+		for (int bucket = 100; bucket <= 150; bucket += 10) {
+			buffer.add(bucket, "a", bucket);
+		}
+		buffer.add(130, "b", 130);
+		List<String> windows = new ArrayList<>();
+		buffer.close(null, 120, (start, key, panes) -> windows.add(start + key + panes));
+		assertEquals(Arrays.asList("80a[100]", "90a[100, 110]", "100a[100, 110, 120]"), windows);
+		// pane 100 is no longer needed by any open window
+		assertEquals(6, buffer.size());
+		windows.clear();
+		buffer.close(120, 140, (start, key, panes) -> windows.add(start + key + panes));
+		assertTrue(windows.contains("110a[110, 120, 130]"));
+		assertTrue(windows.contains("110b[130]"));
+		assertTrue(windows.contains("120a[120, 130, 140]"));
+		assertTrue(windows.contains("120b[130]"));
+		assertEquals(4, windows.size());
+		windows.clear();
+		// unaligned last emit
+		buffer.close(145, 175, (start, key, panes) -> windows.add(start + key + panes));
+		assertEquals(4, windows.size());
+		assertTrue(windows.contains("130a[130, 140, 150]"));
+		assertTrue(windows.contains("130b[130]"));
+		assertTrue(windows.contains("140a[140, 150]"));
+		assertTrue(windows.contains("150a[150]"));
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void testLatePane() throws Exception {
+		PaneBuffer<Integer> buffer = new PaneBuffer<>(20, 10);
+		buffer.add(120, "a", 120);
+		buffer.add(100, "a", 100);
+		buffer.add(110, "a", 110);
+		List<String> windows = new ArrayList<>();
+		buffer.close(null, 120, (start, key, panes) -> windows.add(start + key + panes));
+		assertEquals(Arrays.asList("90a[100]", "100a[100, 110]", "110a[110, 120]"), windows);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSlide() {
+		new PaneBuffer<>(30, 7);
+	}
+
+}
@@ -25,7 +25,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -70,6 +72,35 @@ public class TestStateTrackingEngine {
 		assertEquals("AAIAAg==_57193d29_series1", key);
 	}
 
+	@Test
+	public void testSlidingWindowStates() throws Exception {
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.AGGREGATION_JITTER_TOLERANCE, "0");
+		StateTrackingEngine engine = new StateTrackingEngine(factory, new TestStateFactory());
+		engine.initialize(conf, 1);
+		String ruleActionId = Utils.combineRuleActionId((short) 2, (short) 4);
+		long time = 1461272080000L;
+		int start = Utils.floorTs(time, 10);
+		engine.track(time, 10, ruleActionId, "series1");
+		engine.track(time + 10000, 10, ruleActionId, "series1");
+		engine.untrack(time + 10000, 10, ruleActionId, "series1");
+		engine.track(time + 20000, 10, ruleActionId, "series2");
+		engine.track(time + 40000, 10, ruleActionId, "series3");
+		List<Event> events = new ArrayList<>();
+		engine.emit(20, 10, ruleActionId, events);
+		List<String> emitted = new ArrayList<>();
+		for (Event event : events) {
+			emitted.add((Long) event.getHeaders().get(Constants.FIELD_TIMESTAMP) / 1000 - start + ""
+					+ event.getHeaders().get(Constants.FIELD_AGGREGATION_KEY));
+		}
+		// series1 is untracked by its latest pane in the second and third
+		// windows
+		assertEquals(3, emitted.size());
+		assertTrue(emitted.contains("-10series1"));
+		assertTrue(emitted.contains("10series2"));
+		assertTrue(emitted.contains("20series2"));
+	}
+
 	@Test
 	public void testTracking() throws Exception {
 		StateTrackingEngine engine = new StateTrackingEngine(factory, new TestStateFactory());
@@ -150,6 +181,30 @@ public class TestStateTrackingEngine {
 		assertEquals(1, TestStateAggregationStore.store.size());
 	}
 
+	@Test
+	public void testIncrementalFlush() throws Exception {
+		StateTrackingEngine engine = new StateTrackingEngine(factory, new TestStateFactory());
+		String raId = Utils.combineRuleActionId((short) 2, (short) 4);
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.ASTORE_TYPE, "io.symcpe.wraith.aggregations.TestStateTrackingEngine.TestStateAggregationStore");
+		engine.initialize(conf, 2);
+		TestStateAggregationStore.store.clear();
+		engine.track(1461272081000L, 10, raId, "series1");
+		engine.track(1461272090000L, 10, raId, "series1");
+		engine.flush();
+		assertEquals(2, TestStateAggregationStore.store.size());
+		TestStateAggregationStore.store.clear();
+		// nothing changed, nothing should be written
+		engine.track(1461272082000L, 10, raId, "series1");
+		engine.flush();
+		assertEquals(0, TestStateAggregationStore.store.size());
+		engine.untrack(1461272083000L, 10, raId, "series1");
+		engine.flush();
+		assertEquals(1, TestStateAggregationStore.store.size());
+		assertFalse(TestStateAggregationStore.store.values().iterator().next().isVal());
+		TestStateAggregationStore.store.clear();
+	}
+
 	public static class TestStateFactory implements StoreFactory {
 
 		@Override
@@ -222,7 +277,12 @@ public class TestStateTrackingEngine {
 
 		@Override
 		public Map<String, MutableBoolean> retriveStates(int taskId) throws IOException {
-			return store.subMap("state_" + taskId + "_", "state_" + taskId + "_" + Character.MAX_VALUE);
+			Map<String, MutableBoolean> states = new HashMap<>();
+			String prefix = "state_" + taskId + "_";
+			for (Entry<String, MutableBoolean> entry : store.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+				states.put(entry.getKey().substring(prefix.length()), entry.getValue());
+			}
+			return states;
 		}
 
 		@Override
@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.stream.Collectors;
 
 import org.junit.Before;
@@ -66,7 +65,7 @@ public class TestTemporalAggregations {
 					e.printStackTrace();
 				}
 			}
-			SortedMap<String, Aggregator> map = aggregationEngine.getAggregationMap();
+			AggregationKeyMap<Aggregator> map = aggregationEngine.getAggregationMap();
 			assertEquals(10, map.size());
 			time = 1452452090520L + (100 * 10000);
 			for (int i = 100; i < 300; i++) {
@@ -81,7 +80,9 @@ public class TestTemporalAggregations {
 			List<Event> result = new ArrayList<>();
 			aggregationEngine.emit(aggregationWindow, ruleActionId, result);
 			System.out.println(k + "\t" + result.size() + "\t" + map.size() + "\n"
-					+ map.keySet().stream().map(key -> CountingEngine.extractTsFromAggregationKey(key))
+					+ result.stream()
+							.map(event -> CountingEngine.extractTsFromAggregationKey(
+									event.getHeaders().get(Constants.FIELD_AGGREGATION_KEY).toString()))
 							.sorted((i1, i2) -> Integer.compare(i2, i1)).collect(Collectors.toList()));
 			assertEquals(29 - k, result.size());
 		}
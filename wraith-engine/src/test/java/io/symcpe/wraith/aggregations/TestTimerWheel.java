@@ -0,0 +1,93 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.symcpe.wraith.aggregations.TimerWheel.Timer;
+
+/**
+ * Unit tests for {@link TimerWheel}
+ * 
+ * @author ambud_sharma
+ */
+public class TestTimerWheel {
+
+	@Test
+	public void testPeriodicTimers() {
+		TimerWheel<Integer> wheel = new TimerWheel<>(8, 1);
+		List<int[]> fired = new ArrayList<>();
+		// periods shorter, equal and longer than the wheel
+		int[] periods = new int[] { 2, 3, 8, 20 };
+		for (int period : periods) {
+			wheel.schedule(period, (1 / period + 1) * period, period);
+		}
+		assertEquals(4, wheel.size());
+		wheel.advanceTo(100, (value, tick) -> fired.add(new int[] { value, (int) tick }));
+		int expected = 0;
+		for (long tick = 2; tick <= 100; tick++) {
+			for (int period : periods) {
+				if (tick % period == 0) {
+					expected++;
+				}
+			}
+		}
+		assertEquals(expected, fired.size());
+		int last = 0;
+		for (int[] firing : fired) {
+			assertEquals(0, firing[1] % firing[0]);
+			assertTrue(firing[1] >= last);
+			last = firing[1];
+		}
+		assertEquals(100, wheel.getTick());
+		assertEquals(4, wheel.size());
+	}
+
+	@Test
+	public void testCancel() {
+		TimerWheel<String> wheel = new TimerWheel<>(TimerWheel.DEFAULT_SLOTS, 0);
+		List<String> fired = new ArrayList<>();
+		Timer<String> once = wheel.schedule("once", 5, 0);
+		Timer<String> periodic = wheel.schedule("periodic", 2, 2);
+		Timer<String> cancelled = wheel.schedule("cancelled", 3, 1);
+		assertTrue(wheel.cancel(cancelled));
+		assertFalse(wheel.cancel(cancelled));
+		assertEquals(2, wheel.size());
+		wheel.advanceTo(6, (value, tick) -> fired.add(value + tick));
+		assertEquals("[periodic2, periodic4, once5, periodic6]", fired.toString());
+		assertTrue(once.isCancelled());
+		assertEquals(8, periodic.getDeadline());
+		assertEquals(1, wheel.size());
+		wheel.cancel(periodic);
+		fired.clear();
+		wheel.advanceTo(20, (value, tick) -> fired.add(value + tick));
+		assertTrue(fired.isEmpty());
+		assertEquals(0, wheel.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPastDeadline() {
+		new TimerWheel<String>(16, 10).schedule("late", 10, 1);
+	}
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.symcpe.wraith.Constants;
+
+/**
+ * Unit tests for {@link IntHashSet} and {@link FineCountingAggregator}
+ * 
+ * @author ambud_sharma
+ */
+public class TestIntHashSet {
+
+	@Test
+	public void testAgainstOracle() {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			Random random = new Random(2231);
+			IntHashSet set = new IntHashSet(0, offHeap);
+			Set<Integer> oracle = new HashSet<>();
+			for (int i = 0; i < 50000; i++) {
+				int value = random.nextInt(3) == 0 ? random.nextInt(100) - 50 : random.nextInt();
+				assertEquals(oracle.add(value), set.add(value));
+			}
+			assertEquals(oracle.size(), set.size());
+			for (int value : oracle) {
+				assertTrue(set.contains(value));
+			}
+			Set<Integer> values = new HashSet<>();
+			set.forEach(values::add);
+			assertEquals(oracle, values);
+			assertEquals(offHeap, set.isOffHeap());
+			set.clear();
+			assertEquals(0, set.size());
+			assertFalse(set.contains(0));
+		}
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		IntHashSet set = new IntHashSet();
+		Random random = new Random(11);
+		for (int i = 0; i < 1000; i++) {
+			set.add(random.nextInt());
+		}
+		set.add(0);
+		set.add(Integer.MIN_VALUE);
+		set.add(Integer.MAX_VALUE);
+		byte[] bytes = set.toBytes();
+		IntHashSet copy = IntHashSet.fromBytes(bytes, true);
+		assertEquals(set.size(), copy.size());
+		set.forEach(value -> assertTrue(copy.contains(value)));
+
+		// dense values encode in about a byte each
+		IntHashSet dense = new IntHashSet();
+		for (int i = 0; i < 1000; i++) {
+			dense.add(i * 3);
+		}
+		assertTrue(dense.toBytes().length < 1100);
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(stream);
+		out.writeObject(set);
+		out.close();
+		IntHashSet read = (IntHashSet) new ObjectInputStream(new ByteArrayInputStream(stream.toByteArray()))
+				.readObject();
+		assertEquals(set.size(), read.size());
+		set.forEach(value -> assertTrue(read.contains(value)));
+	}
+
+	@Test
+	public void testFineCountingDelta() throws Exception {
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.AGGREGATIONS_FCOUNT_OFFHEAP, Constants.TRUE);
+		FineCountingAggregator template = new FineCountingAggregator();
+		template.initialize(conf);
+		FineCountingAggregator aggregator = (FineCountingAggregator) template.getInstance();
+		assertTrue(aggregator.getDatastructure().isOffHeap());
+		aggregator.add(1);
+		aggregator.trackDelta();
+		assertTrue(aggregator.add(2));
+		assertTrue(aggregator.add(3));
+		assertFalse(aggregator.add(1));
+		assertEquals(3, aggregator.getCardinality());
+		assertEquals(2, aggregator.getDelta().size());
+		aggregator.resetDelta();
+		assertEquals(0, aggregator.getDelta().size());
+		assertEquals(3, aggregator.getCardinality());
+		aggregator.add(4);
+		assertEquals(1, aggregator.getDelta().size());
+		FineCountingAggregator restored = (FineCountingAggregator) template.getInstance();
+		restored.initialize(aggregator.getDatastructure().toBytes());
+		assertEquals(4, restored.getCardinality());
+	}
+
+}
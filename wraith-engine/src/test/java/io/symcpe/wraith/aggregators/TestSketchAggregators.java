@@ -0,0 +1,189 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.symcpe.wraith.Constants;
+
+/**
+ * Unit tests for {@link CountMinSketchAggregator}, {@link TDigestAggregator}
+ * and {@link TopKAggregator}
+ * 
+ * @author ambud_sharma
+ */
+public class TestSketchAggregators {
+
+	@Test
+	public void testCountMinAgainstOracle() throws Exception {
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.AGGREGATIONS_CMS_WIDTH, "1000");
+		conf.put(Constants.AGGREGATIONS_CMS_DEPTH, "5");
+		CountMinSketchAggregator sketch = new CountMinSketchAggregator();
+		sketch.initialize(conf);
+		assertEquals(1024, sketch.getWidth());
+		CountMinSketchAggregator instance = sketch.getInstance();
+		Random random = new Random(1123);
+		Map<Integer, Long> oracle = new HashMap<>();
+		int total = 100000;
+		for (int i = 0; i < total; i++) {
+			// skewed distribution with a few heavy hitters
+			int value = random.nextInt(10) == 0 ? random.nextInt(5) : random.nextInt(20000);
+			assertTrue(instance.add(value));
+			oracle.merge(value, 1L, Long::sum);
+		}
+		assertEquals(total, instance.size());
+		long maxError = (long) (Math.E / instance.getWidth() * total);
+		int outliers = 0;
+		long peak = 0;
+		for (Map.Entry<Integer, Long> entry : oracle.entrySet()) {
+			long estimate = instance.estimate(entry.getKey());
+			assertTrue(estimate >= entry.getValue());
+			if (estimate - entry.getValue() > maxError) {
+				outliers++;
+			}
+			peak = Math.max(peak, entry.getValue());
+		}
+		assertTrue(outliers < oracle.size() / 100);
+		assertTrue(instance.getSummary() >= peak);
+		assertTrue(instance.getSummary() <= peak + maxError);
+
+		CountMinSketchAggregator restored = new CountMinSketchAggregator();
+		restored.initialize(instance.toBytes());
+		assertEquals(instance.getSummary(), restored.getSummary());
+		for (int value = 0; value < 100; value++) {
+			assertEquals(instance.estimate(value), restored.estimate(value));
+		}
+		restored.reset();
+		assertEquals(0, restored.size());
+		assertEquals(0, restored.estimate(1));
+	}
+
+	@Test
+	public void testCountMinStrings() {
+		CountMinSketchAggregator sketch = new CountMinSketchAggregator(64, 3);
+		for (int i = 0; i < 10; i++) {
+			sketch.add("host1");
+		}
+		sketch.add("host2");
+		assertTrue(sketch.estimate("host1") >= 10);
+		assertTrue(sketch.estimate("host2") >= 1);
+		assertEquals(Long.valueOf(10), sketch.getSummary());
+	}
+
+	@Test
+	public void testTDigestQuantiles() throws Exception {
+		TDigestAggregator digest = new TDigestAggregator(100, 0.99);
+		Random random = new Random(4431);
+		List<Double> values = new ArrayList<>();
+		for (int i = 0; i < 50000; i++) {
+			double value = Math.exp(random.nextGaussian());
+			values.add(value);
+			assertTrue(digest.add(i % 2 == 0 ? value : String.valueOf(value)));
+		}
+		assertFalse(digest.add("not a number"));
+		assertEquals(50000, digest.size());
+		assertTrue(digest.centroidCount() <= 2 * 100 + 10);
+		Collections.sort(values);
+		for (double q : new double[] { 0.01, 0.1, 0.5, 0.9, 0.99, 0.999 }) {
+			double expected = values.get((int) (q * values.size()));
+			// compare in rank space where t-digest gives its guarantees
+			int rank = Math.abs(Collections.binarySearch(values, digest.quantile(q)));
+			double rankError = Math.abs(rank / (double) values.size() - q);
+			assertTrue(q + " " + expected + " " + digest.quantile(q), rankError < Math.max(0.002, q * (1 - q) * 0.05));
+		}
+		assertEquals(digest.quantile(0.99), digest.getSummary(), 0);
+
+		TDigestAggregator restored = new TDigestAggregator();
+		restored.initialize(digest.toBytes());
+		assertEquals(digest.size(), restored.size());
+		assertEquals(digest.quantile(0.5), restored.quantile(0.5), 0);
+		assertEquals(digest.quantile(0.999), restored.quantile(0.999), 0);
+		restored.reset();
+		assertTrue(Double.isNaN(restored.quantile(0.5)));
+		restored.add(5);
+		assertEquals(5, restored.quantile(0.99), 0);
+	}
+
+	@Test
+	public void testTopKAgainstOracle() throws Exception {
+		TopKAggregator topK = new TopKAggregator(5, 1000);
+		Random random = new Random(9981);
+		Map<String, Long> oracle = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			// zipf like skew
+			String value = "v" + (int) Math.floor(Math.pow(random.nextDouble(), 4) * 5000);
+			topK.add(value);
+			oracle.merge(value, 1L, Long::sum);
+		}
+		List<Map.Entry<String, Long>> expected = new ArrayList<>(oracle.entrySet());
+		expected.sort((o1, o2) -> Long.compare(o2.getValue(), o1.getValue()));
+		LinkedHashMap<String, Long> top = topK.getSummary();
+		assertEquals(5, top.size());
+		for (int i = 0; i < 5; i++) {
+			String item = expected.get(i).getKey();
+			assertTrue(item, top.containsKey(item));
+			long estimate = top.get(item);
+			assertTrue(estimate >= oracle.get(item));
+			assertTrue(estimate - topK.error(item) <= oracle.get(item));
+		}
+		List<Long> counts = new ArrayList<>(top.values());
+		List<Long> sorted = new ArrayList<>(counts);
+		sorted.sort(Collections.reverseOrder());
+		assertEquals(sorted, counts);
+
+		TopKAggregator restored = new TopKAggregator();
+		restored.initialize(topK.toBytes());
+		assertEquals(top, restored.getSummary());
+		assertEquals(topK.size(), restored.size());
+		restored.add("v0");
+		assertEquals(top.get("v0") + 1, restored.topK().get("v0").longValue());
+		restored.reset();
+		assertTrue(restored.topK().isEmpty());
+		addAll(restored, "a", "b", "a");
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<>(restored.topK().keySet()));
+	}
+
+	@Test
+	public void testSketchDeltaIsWholeSketch() {
+		SketchAggregator sketch = new TopKAggregator(1, 2);
+		sketch.trackDelta();
+		sketch.add("a");
+		assertTrue(sketch.getDelta() == sketch);
+		sketch.resetDelta();
+		assertEquals(1, sketch.size());
+	}
+
+	private static void addAll(TopKAggregator topK, String... values) {
+		for (String value : values) {
+			topK.add(value);
+		}
+	}
+
+}
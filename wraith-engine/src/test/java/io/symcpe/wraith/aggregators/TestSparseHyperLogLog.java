@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.aggregators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+
+import io.symcpe.wraith.Constants;
+
+/**
+ * Unit tests for {@link SparseHyperLogLog} and
+ * {@link CoarseCountingAggregator}
+ * 
+ * @author ambud_sharma
+ */
+public class TestSparseHyperLogLog {
+
+	@Test
+	public void testAccuracy() {
+		for (int precision : new int[] { 8, 10, 14 }) {
+			SparseHyperLogLog hll = new SparseHyperLogLog(precision);
+			Random random = new Random(precision);
+			double standardError = 1.04 / Math.sqrt(1 << precision);
+			int count = 0;
+			for (int target : new int[] { 10, 100, 1000, 10000, 100000 }) {
+				for (; count < target; count++) {
+					hll.offer(random.nextInt());
+				}
+				double error = Math.abs(hll.cardinality() - count) / (double) count;
+				assertTrue(precision + " " + count + " " + hll.cardinality(), error < 4 * standardError);
+			}
+			assertFalse(hll.isSparse());
+		}
+	}
+
+	@Test
+	public void testSparseToDense() throws Exception {
+		SparseHyperLogLog hll = new SparseHyperLogLog(10);
+		SparseHyperLogLog oracle = new SparseHyperLogLog(10);
+		oracle.offer(0);
+		// force the oracle dense to compare both representations
+		for (int i = 1; i < 1000; i++) {
+			oracle.offer(i);
+		}
+		assertFalse(oracle.isSparse());
+		oracle.clear();
+		assertFalse(oracle.isSparse());
+		for (int i = 0; i < 200; i++) {
+			assertEquals(oracle.offer("value" + i), hll.offer("value" + i));
+			assertFalse(hll.offer("value" + i));
+			assertEquals(oracle.cardinality(), hll.cardinality());
+		}
+		assertTrue(hll.isSparse());
+		assertTrue(hll.sizeof() <= 1 << 10);
+		SparseHyperLogLog restored = SparseHyperLogLog.fromBytes(hll.getBytes());
+		assertTrue(restored.isSparse());
+		assertEquals(hll.cardinality(), restored.cardinality());
+		assertTrue(hll.getBytes().length < oracle.getBytes().length);
+		assertEquals(oracle.cardinality(), SparseHyperLogLog.fromBytes(oracle.getBytes()).cardinality());
+	}
+
+	@Test
+	public void testClearInPlace() {
+		SparseHyperLogLog hll = new SparseHyperLogLog(6);
+		for (int i = 0; i < 1000; i++) {
+			hll.offer(i);
+		}
+		assertFalse(hll.isSparse());
+		hll.clear();
+		assertEquals(0, hll.cardinality());
+		assertEquals(1 << 6, hll.sizeof());
+		hll.offer(1);
+		assertEquals(1, hll.cardinality());
+
+		SparseHyperLogLog sparse = new SparseHyperLogLog(10);
+		sparse.offer(1);
+		sparse.clear();
+		assertTrue(sparse.isSparse());
+		assertEquals(0, sparse.cardinality());
+	}
+
+	@Test
+	public void testUnion() throws Exception {
+		SparseHyperLogLog all = new SparseHyperLogLog(12);
+		SparseHyperLogLog small = new SparseHyperLogLog(12);
+		SparseHyperLogLog large = new SparseHyperLogLog(12);
+		for (int i = 0; i < 50; i++) {
+			small.offer(i);
+			all.offer(i);
+		}
+		for (int i = 25; i < 20000; i++) {
+			large.offer(i);
+			all.offer(i);
+		}
+		SparseHyperLogLog union = (SparseHyperLogLog) small.merge(large);
+		assertEquals(all.cardinality(), union.cardinality());
+		small.union(large);
+		assertEquals(all.cardinality(), small.cardinality());
+		large.union(SparseHyperLogLog.fromBytes(union.getBytes()));
+		assertEquals(all.cardinality(), large.cardinality());
+		try {
+			union.merge(new SparseHyperLogLog(10));
+			fail("Precision mismatch must not merge");
+		} catch (CardinalityMergeException e) {
+		}
+	}
+
+	@Test
+	public void testCoarseCountingAggregator() throws Exception {
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.AGGREGATIONS_HLL_PRECISION, "14");
+		CoarseCountingAggregator template = new CoarseCountingAggregator();
+		assertEquals(10, template.getPrecision());
+		template.initialize(conf);
+		CoarseCountingAggregator aggregator = (CoarseCountingAggregator) template.getInstance();
+		assertEquals(14, aggregator.getPrecision());
+		for (int i = 0; i < 100; i++) {
+			aggregator.add(i);
+			aggregator.add(String.valueOf(i));
+		}
+		assertEquals(200, aggregator.getCardinality());
+		CoarseCountingAggregator restored = new CoarseCountingAggregator();
+		restored.initialize(((SparseHyperLogLog) aggregator.getDatastructure()).getBytes());
+		assertEquals(14, restored.getPrecision());
+		restored.merge(aggregator);
+		assertEquals(200, restored.getCardinality());
+		aggregator.reset();
+		assertEquals(0, aggregator.getCardinality());
+		try {
+			restored.merge(new CoarseCountingAggregator());
+			fail("Precision mismatch must not merge");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testHyperLogLogPlusBytes() throws Exception {
+		// sparse and normal mode sketches stored before the format change
+		for (int count : new int[] { 100, 100000 }) {
+			HyperLogLogPlus legacy = new HyperLogLogPlus(10, 25);
+			Random random = new Random(count);
+			for (int i = 0; i < count; i++) {
+				legacy.offer(random.nextInt());
+			}
+			CoarseCountingAggregator aggregator = new CoarseCountingAggregator();
+			aggregator.initialize(legacy.getBytes());
+			assertEquals(10, aggregator.getPrecision());
+			double error = Math.abs(aggregator.getCardinality() - count) / (double) count;
+			assertTrue(count + " " + aggregator.getCardinality(), error < 4 * 1.04 / Math.sqrt(1 << 10));
+			// converted sketches are written in the current format
+			SparseHyperLogLog hll = (SparseHyperLogLog) aggregator.getDatastructure();
+			assertEquals(hll.cardinality(), SparseHyperLogLog.fromBytes(hll.getBytes()).cardinality());
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.conditions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.HeaderMap;
+import io.symcpe.wraith.TestEvent;
+import io.symcpe.wraith.conditions.logical.AndCondition;
+import io.symcpe.wraith.conditions.logical.NotCondition;
+import io.symcpe.wraith.conditions.logical.OrCondition;
+import io.symcpe.wraith.conditions.relational.EqualsCondition;
+import io.symcpe.wraith.conditions.relational.ExistsCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.JavaRegexCondition;
+import io.symcpe.wraith.conditions.relational.LessThanCondition;
+import io.symcpe.wraith.conditions.relational.LessThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.NotEqualsCondition;
+
+/**
+ * Unit tests for {@link ConditionCompiler} using the interpreted
+ * {@link Condition} tree as the oracle
+ * 
+ * @author ambud_sharma
+ */
+public class TestConditionCompiler {
+
+	private static final Object[] VALUES = new Object[] { "host1", "host2", 1, 2L, 1.5, 2.0, Double.NaN, null };
+	private Random random = new Random(1123);
+
+	@Test
+	public void testSimpleConditions() throws Exception {
+		Event event = new TestEvent();
+		event.getHeaders().put("host", "host1");
+		event.getHeaders().put("value", 10);
+		assertTrue(ConditionCompiler.compile(new EqualsCondition("host", "host1")).matches(event));
+		assertTrue(!ConditionCompiler.compile(new EqualsCondition("host", "host2")).matches(event));
+		assertTrue(ConditionCompiler.compile(new EqualsCondition("value", 10)).matches(event));
+		assertTrue(ConditionCompiler.compile(new NotEqualsCondition("host", "host2")).matches(event));
+		assertTrue(ConditionCompiler.compile(new GreaterThanCondition("value", 5)).matches(event));
+		assertTrue(!ConditionCompiler.compile(new GreaterThanCondition("value", 10)).matches(event));
+		assertTrue(ConditionCompiler.compile(new LessThanEqualToCondition("value", 10)).matches(event));
+		assertTrue(ConditionCompiler.compile(new JavaRegexCondition("host", "host\\d")).matches(event));
+		assertTrue(ConditionCompiler.compile(new ExistsCondition("value")).matches(event));
+		assertTrue(!ConditionCompiler.compile(new ExistsCondition("missing")).matches(event));
+		assertTrue(!ConditionCompiler.compile(new GreaterThanCondition("host", 5)).matches(event));
+	}
+
+	@Test
+	public void testCompiledClassesAreIsolated() throws Exception {
+		Condition c1 = ConditionCompiler.compile(new EqualsCondition("host", "host1"));
+		Condition c2 = ConditionCompiler.compile(new EqualsCondition("host", "host1"));
+		assertNotSame(c1.getClass(), c2.getClass());
+		assertNotSame(c1.getClass().getClassLoader(), c2.getClass().getClassLoader());
+	}
+
+	@Test
+	public void testFallbackCondition() throws Exception {
+		Event event = new TestEvent();
+		event.getHeaders().put("host", "host1");
+		Condition condition = new AndCondition(
+				Arrays.asList(new NotCondition(new EqualsCondition("host", "host2")), new ExistsCondition("host")));
+		assertTrue(ConditionCompiler.compile(condition).matches(event));
+		event.getHeaders().put("host", "host2");
+		assertTrue(!ConditionCompiler.compile(condition).matches(event));
+	}
+
+	@Test
+	public void testRandomizedEquivalence() throws Exception {
+		for (int i = 0; i < 500; i++) {
+			Condition condition = randomCondition(3);
+			Condition compiled = ConditionCompiler.compile(condition);
+			for (int j = 0; j < 50; j++) {
+				Event event = randomEvent();
+				boolean expected = condition.matches(event);
+				assertEquals(condition + " " + event.getHeaders(), expected, compiled.matches(event));
+				// field id lookups on flat headers must agree with map lookups
+				Event flat = new TestEvent(new HeaderMap(event.getHeaders()));
+				assertEquals(condition + " " + event.getHeaders(), expected, condition.matches(flat));
+				assertEquals(condition + " " + event.getHeaders(), expected, compiled.matches(flat));
+			}
+		}
+	}
+
+	private Condition randomCondition(int depth) {
+		int type = random.nextInt(depth > 0 ? 13 : 10);
+		String key = random.nextBoolean() ? "a" : "b";
+		double value = random.nextInt(4) - 0.5 * random.nextInt(2);
+		switch (type) {
+		case 0:
+			return new EqualsCondition(key, VALUES[random.nextInt(VALUES.length - 1)]);
+		case 1:
+			return new NotEqualsCondition(key, VALUES[random.nextInt(VALUES.length - 1)]);
+		case 2:
+			return new GreaterThanCondition(key, value);
+		case 3:
+			return new GreaterThanEqualToCondition(key, value);
+		case 4:
+			return new LessThanCondition(key, value);
+		case 5:
+			return new LessThanEqualToCondition(key, value);
+		case 6:
+			return new JavaRegexCondition(key, "host[1]");
+		case 7:
+			return new ExistsCondition(key);
+		case 8:
+			return new GreaterThanCondition(key, Double.NaN);
+		case 9:
+			return new EqualsCondition(key, 2.0);
+		case 10:
+			return new NotCondition(randomCondition(depth - 1));
+		default:
+			List<Condition> conditions = new ArrayList<>();
+			int count = random.nextInt(3) + 1;
+			for (int i = 0; i < count; i++) {
+				conditions.add(randomCondition(depth - 1));
+			}
+			return type == 11 ? new AndCondition(conditions) : new OrCondition(conditions);
+		}
+	}
+
+	private Event randomEvent() {
+		Event event = new TestEvent();
+		for (String key : new String[] { "a", "b" }) {
+			Object value = VALUES[random.nextInt(VALUES.length)];
+			if (value != null) {
+				event.getHeaders().put(key, value);
+			}
+		}
+		return event;
+	}
+
+}
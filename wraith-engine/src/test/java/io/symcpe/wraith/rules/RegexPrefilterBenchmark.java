@@ -0,0 +1,121 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.TestFactory;
+import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
+import io.symcpe.wraith.conditions.relational.JavaRegexCondition;
+
+/**
+ * JMH benchmark for regex heavy rule sets matched against realistic syslog,
+ * sshd and access log lines, comparing per rule regex evaluation against the
+ * literal prefilter of {@link RuleDispatchIndex}.
+ * 
+ * @author ambud_sharma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegexPrefilterBenchmark {
+
+	private static final String[] RULE_TEMPLATES = new String[] {
+			".*sshd\\[\\d+\\]: Failed password for (invalid user )?user%d from .*",
+			".*kernel: .*Out of memory: Kill process \\d+ \\(worker%d\\).*",
+			".*\"(GET|POST) /api/v1/service%d/[^ ]* HTTP/1\\.1\" 5\\d\\d .*",
+			".*ERROR \\[pool-%d-thread-\\d+\\] .*Timeout.*",
+			".*CRON\\[\\d+\\]: \\(root\\) CMD \\(/opt/jobs/job%d\\.sh\\)" };
+	private static final String[] LINE_TEMPLATES = new String[] {
+			"Oct 17 06:12:01 web-%d sshd[2211]: Failed password for invalid user user%d from 10.2.3.4 port 52114 ssh2",
+			"Oct 17 06:12:01 web-%d sshd[2211]: Accepted publickey for deploy from 10.2.3.4 port 52114 ssh2 user%d",
+			"10.1.1.%d - - [17/Oct/2016:06:12:01 +0000] \"GET /api/v1/service%d/items?id=42 HTTP/1.1\" 503 1312 \"-\" \"curl/7.47.0\"",
+			"10.1.1.%d - - [17/Oct/2016:06:12:01 +0000] \"GET /static/app%d.js HTTP/1.1\" 200 5120 \"-\" \"Mozilla/5.0\"",
+			"2016-10-17 06:12:01,123 INFO [pool-%d-thread-3] c.s.h.Worker: processed batch of %d events in 12ms",
+			"2016-10-17 06:12:01,123 ERROR [pool-%d-thread-3] c.s.h.Client: Timeout waiting for connection %d",
+			"Oct 17 06:12:01 app-%d CRON[3321]: (root) CMD (/opt/jobs/job%d.sh)" };
+	@Param({ "100", "1000" })
+	private int ruleCount;
+	@Param({ "false", "true" })
+	private boolean indexed;
+	private StatelessRulesEngine<Object, Object> engine;
+	private Event[] events;
+	private int counter;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(1123);
+		List<Rule> rules = new ArrayList<>(ruleCount);
+		for (short i = 0; i < ruleCount; i++) {
+			String regex = String.format(RULE_TEMPLATES[i % RULE_TEMPLATES.length], i / RULE_TEMPLATES.length);
+			rules.add(new SimpleRule(i, "rule" + i, true, new JavaRegexCondition("message", regex),
+					new TemplatedAlertAction((short) 0, (short) 0)));
+		}
+		TestFactory factory = new TestFactory();
+		Map<String, String> conf = new HashMap<>();
+		conf.put(TestFactory.RULES_CONTENT, RuleSerializer.serializeRulesToJSONString(rules, false));
+		conf.put(Constants.RULE_INDEX_ACTIVE, String.valueOf(indexed));
+		engine = new StatelessRulesEngine<>(new RuleDispatchBenchmark.NoopCaller(), factory, factory);
+		engine.initializeRules(conf);
+		events = new Event[1024];
+		for (int i = 0; i < events.length; i++) {
+			Event event = factory.buildEvent();
+			String template = LINE_TEMPLATES[random.nextInt(LINE_TEMPLATES.length)];
+			event.getHeaders().put("message",
+					String.format(template, random.nextInt(256), random.nextInt(ruleCount / RULE_TEMPLATES.length)));
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, System.currentTimeMillis());
+			events[i] = event;
+		}
+	}
+
+	@Benchmark
+	public void evaluate(Blackhole blackhole) {
+		Event event = events[counter++ & (events.length - 1)];
+		engine.evaluateEventAgainstAllRules(null, null, event);
+		blackhole.consume(event);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RegexPrefilterBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
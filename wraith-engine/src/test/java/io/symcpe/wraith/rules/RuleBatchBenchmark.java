@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.TestFactory;
+import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
+import io.symcpe.wraith.conditions.Condition;
+import io.symcpe.wraith.conditions.logical.AndCondition;
+import io.symcpe.wraith.conditions.relational.EqualsCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanCondition;
+import io.symcpe.wraith.conditions.relational.LessThanCondition;
+
+/**
+ * JMH benchmark of {@link StatelessRulesEngine#evaluateEventBatch(Object, List, List)}
+ * at different batch sizes, batch size 1 matching per tuple evaluation.<br>
+ * <br>
+ * Reports the average time to evaluate one batch i.e. the added latency of
+ * the batch once full, throughput is batch size over this time. Run with:<br>
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.symcpe.wraith.rules.RuleBatchBenchmark</code>
+ * 
+ * @author ambud_sharma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleBatchBenchmark {
+
+	private static final int HOSTS = 1000;
+	@Param({ "1", "32", "256" })
+	private int batchSize;
+	@Param({ "1000" })
+	private int ruleCount;
+	@Param({ "false", "true" })
+	private boolean indexed;
+	private StatelessRulesEngine<Object, Object> engine;
+	private List<Object> containers;
+	private List<Event> events;
+	private List<List<Event>> batches;
+	private int counter;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(1123);
+		List<Rule> rules = new ArrayList<>(ruleCount);
+		for (short i = 0; i < ruleCount; i++) {
+			Condition condition;
+			if (random.nextInt(10) < 7) {
+				condition = new EqualsCondition("host", "host" + random.nextInt(HOSTS));
+			} else {
+				condition = new AndCondition(Arrays.asList(new GreaterThanCondition("value", random.nextInt(1000)),
+						new LessThanCondition("value", random.nextInt(1000) + 1000)));
+			}
+			rules.add(new SimpleRule(i, "rule" + i, true, condition,
+					new TemplatedAlertAction((short) 0, (short) 0)));
+		}
+		TestFactory factory = new TestFactory();
+		Map<String, String> conf = new HashMap<>();
+		conf.put(TestFactory.RULES_CONTENT, RuleSerializer.serializeRulesToJSONString(rules, false));
+		conf.put(Constants.RULE_INDEX_ACTIVE, String.valueOf(indexed));
+		engine = new StatelessRulesEngine<>(new RuleDispatchBenchmark.NoopCaller(), factory, factory);
+		engine.initializeRules(conf);
+		batches = new ArrayList<>();
+		for (int b = 0; b < Math.max(1, 1024 / batchSize); b++) {
+			List<Event> batch = new ArrayList<>(batchSize);
+			for (int i = 0; i < batchSize; i++) {
+				Event event = factory.buildEvent();
+				event.getHeaders().put("host", "host" + random.nextInt(HOSTS));
+				event.getHeaders().put("value", random.nextInt(10000));
+				event.getHeaders().put(Constants.FIELD_TIMESTAMP, System.currentTimeMillis());
+				batch.add(event);
+			}
+			batches.add(batch);
+		}
+		containers = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			containers.add(null);
+		}
+	}
+
+	@Benchmark
+	public void evaluateBatch() {
+		events = batches.get(counter++ % batches.size());
+		engine.evaluateEventBatch(null, containers, events);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RuleBatchBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.TestFactory;
+import io.symcpe.wraith.actions.Action;
+import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
+import io.symcpe.wraith.conditions.Condition;
+import io.symcpe.wraith.conditions.logical.AndCondition;
+import io.symcpe.wraith.conditions.relational.EqualsCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanCondition;
+import io.symcpe.wraith.conditions.relational.JavaRegexCondition;
+import io.symcpe.wraith.conditions.relational.LessThanCondition;
+
+/**
+ * JMH benchmark comparing full rule scan against {@link RuleDispatchIndex}
+ * dispatch in {@link StatelessRulesEngine}.<br>
+ * <br>
+ * 
+ * Rules are a typical tenant mix of host equality, numeric thresholds and a
+ * small fraction of un-indexable regex rules. Run with:<br>
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.symcpe.wraith.rules.RuleDispatchBenchmark</code>
+ * 
+ * @author ambud_sharma
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleDispatchBenchmark {
+
+	private static final int HOSTS = 1000;
+	@Param({ "10", "1000", "10000" })
+	private int ruleCount;
+	@Param({ "false", "true" })
+	private boolean indexed;
+	private StatelessRulesEngine<Object, Object> engine;
+	private Event[] events;
+	private int counter;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(1123);
+		List<Rule> rules = new ArrayList<>(ruleCount);
+		for (short i = 0; i < ruleCount; i++) {
+			Condition condition;
+			int type = random.nextInt(10);
+			if (type < 6) {
+				condition = new EqualsCondition("host", "host" + random.nextInt(HOSTS));
+			} else if (type < 9) {
+				condition = new AndCondition(Arrays.asList(new GreaterThanCondition("value", random.nextInt(1000)),
+						new LessThanCondition("value", random.nextInt(1000) + 1000)));
+			} else {
+				condition = new JavaRegexCondition("message", ".*error" + random.nextInt(HOSTS) + ".*");
+			}
+			rules.add(new SimpleRule(i, "rule" + i, true, condition,
+					new TemplatedAlertAction((short) 0, (short) 0)));
+		}
+		TestFactory factory = new TestFactory();
+		Map<String, String> conf = new HashMap<>();
+		conf.put(TestFactory.RULES_CONTENT, RuleSerializer.serializeRulesToJSONString(rules, false));
+		conf.put(Constants.RULE_INDEX_ACTIVE, String.valueOf(indexed));
+		engine = new StatelessRulesEngine<>(new NoopCaller(), factory, factory);
+		engine.initializeRules(conf);
+		events = new Event[1024];
+		for (int i = 0; i < events.length; i++) {
+			Event event = factory.buildEvent();
+			event.getHeaders().put("host", "host" + random.nextInt(HOSTS));
+			event.getHeaders().put("value", random.nextInt(10000));
+			event.getHeaders().put("message", "request failed with error" + random.nextInt(HOSTS));
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, System.currentTimeMillis());
+			events[i] = event;
+		}
+	}
+
+	@Benchmark
+	public void evaluate() {
+		engine.evaluateEventAgainstAllRules(null, null, events[counter++ & (events.length - 1)]);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RuleDispatchBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	/**
+	 * {@link RulesEngineCaller} that discards all callbacks
+	 */
+	static final class NoopCaller implements RulesEngineCaller<Object, Object> {
+
+		@Override
+		public void emitActionErrorEvent(Object eventCollector, Object eventContainer, Event actionErrorEvent) {
+		}
+
+		@Override
+		public void emitRawAlert(Object eventCollector, Object eventContainer, Event outputEvent, Short ruleId,
+				Short actionId, String target, String mediaType) {
+		}
+
+		@Override
+		public void emitTemplatedAlert(Object eventCollector, Object eventContainer, Event outputEvent, Short ruleId,
+				Short actionId, String ruleName, Short templateId, Long timestamp) {
+		}
+
+		@Override
+		public void handleRuleNoMatch(Object eventCollector, Object eventContainer, Event inputEvent, Rule rule) {
+		}
+
+		@Override
+		public void reportRuleHit(String ruleGroup, short ruleId) {
+		}
+
+		@Override
+		public void emitAggregationEvent(Class<? extends Action> action, Object eventCollector,
+				Object eventContainer, Event originalEvent, Long timestamp, int windowSize, String ruleActionId,
+				String aggregationKey, Object aggregationValue) {
+		}
+
+		@Override
+		public void emitStateTrackingEvent(Object eventCollector, Object eventContainer, Boolean track,
+				Event originalEvent, Long timestamp, int windowSize, String ruleActionId, String aggregationKey) {
+		}
+
+		@Override
+		public void emitNewEvent(Object eventCollector, Object eventContainer, Event originalEvent,
+				Event outputEvent) {
+		}
+
+		@Override
+		public void emitTaggedEvent(Object eventCollector, Object eventContainer, Event outputEvent) {
+		}
+
+		@Override
+		public void emitOmegaActions(Object eventCollector, Object eventContainer, Event outputEvent) {
+		}
+
+		@Override
+		public void emitAnomalyAction(Object eventCollector, Object eventContainer, String seriesName,
+				Number value) {
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AhoCorasickMatcher}
+ * 
+ * @author ambud_sharma
+ */
+public class TestAhoCorasickMatcher {
+
+	@Test
+	public void testOverlappingLiterals() {
+		Map<String, BitSet> literals = new LinkedHashMap<>();
+		literals.put("he", ids(0));
+		literals.put("she", ids(1));
+		literals.put("his", ids(2));
+		literals.put("hers", ids(3, 4));
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(literals);
+		BitSet result = new BitSet();
+		matcher.scan("ushers", result);
+		assertEquals(ids(0, 1, 3, 4), result);
+		result.clear();
+		matcher.scan("this", result);
+		assertEquals(ids(2), result);
+		result.clear();
+		matcher.scan("", result);
+		assertEquals(0, result.cardinality());
+	}
+
+	@Test
+	public void testRandomizedAgainstIndexOf() {
+		Random random = new Random(1123);
+		for (int iteration = 0; iteration < 100; iteration++) {
+			Map<String, BitSet> literals = new LinkedHashMap<>();
+			for (int i = 0; i < 20; i++) {
+				literals.put(randomString(random, random.nextInt(4) + 1), ids(i));
+			}
+			AhoCorasickMatcher matcher = new AhoCorasickMatcher(literals);
+			for (int i = 0; i < 50; i++) {
+				String text = randomString(random, random.nextInt(30));
+				BitSet expected = new BitSet();
+				for (Entry<String, BitSet> entry : literals.entrySet()) {
+					if (text.contains(entry.getKey())) {
+						expected.or(entry.getValue());
+					}
+				}
+				BitSet result = new BitSet();
+				matcher.scan(text, result);
+				assertEquals(text, expected, result);
+			}
+		}
+	}
+
+	private static String randomString(Random random, int length) {
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			builder.append((char) ('a' + random.nextInt(3)));
+		}
+		return builder.toString();
+	}
+
+	private static BitSet ids(int... ids) {
+		BitSet set = new BitSet();
+		for (int id : ids) {
+			set.set(id);
+		}
+		return set;
+	}
+
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.symcpe.wraith.Constants;
+import io.symcpe.wraith.Event;
+import io.symcpe.wraith.TestFactory;
+import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
+import io.symcpe.wraith.conditions.Condition;
+import io.symcpe.wraith.conditions.logical.AndCondition;
+import io.symcpe.wraith.conditions.logical.OrCondition;
+import io.symcpe.wraith.conditions.relational.EqualsCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanCondition;
+import io.symcpe.wraith.conditions.relational.GreaterThanEqualToCondition;
+import io.symcpe.wraith.conditions.relational.JavaRegexCondition;
+import io.symcpe.wraith.conditions.relational.LessThanCondition;
+import io.symcpe.wraith.conditions.relational.LessThanEqualToCondition;
+
+/**
+ * Tests for {@link RuleDispatchIndex}
+ * 
+ * @author ambud_sharma
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TestRuleDispatchIndex {
+
+	private static final String[] HOSTS = new String[] { "host1", "host2", "host3", "host4", "ahost1", "hast2" };
+	private static final String[] REGEXES = new String[] { "host[12]", ".*host.*", "(a|h)ost\\d", "ho?st\\d",
+			"h[a-z]st2", ".*st1" };
+	@Mock
+	private RulesEngineCaller<Object, Object> caller;
+	@Mock
+	private RulesEngineCaller<Object, Object> indexedCaller;
+	private TestFactory testFactory;
+	private Random random;
+
+	@Before
+	public void before() {
+		testFactory = new TestFactory();
+		random = new Random(1123);
+	}
+
+	@Test
+	public void testEqualityCandidates() {
+		Map<Short, Rule> rules = new LinkedHashMap<>();
+		rules.put((short) 1, rule((short) 1, new EqualsCondition("host", "host1")));
+		rules.put((short) 2, rule((short) 2, new EqualsCondition("host", "host2")));
+		rules.put((short) 3, rule((short) 3, new JavaRegexCondition("host", "[a-z]+\\d")));
+		RuleDispatchIndex index = new RuleDispatchIndex(rules);
+		assertEquals(3, index.size());
+		assertEquals(1, index.unindexedCount());
+		BitSet candidates = new BitSet();
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("host", "host2");
+		index.findCandidates(event, candidates);
+		assertEquals(2, candidates.cardinality());
+		assertTrue(candidates.get(1));
+		assertTrue(candidates.get(2));
+		event.getHeaders().put("host", "host5");
+		index.findCandidates(event, candidates);
+		assertEquals(1, candidates.cardinality());
+		assertTrue(candidates.get(2));
+	}
+
+	@Test
+	public void testNumericCandidates() {
+		Map<Short, Rule> rules = new LinkedHashMap<>();
+		rules.put((short) 1, rule((short) 1, new GreaterThanCondition("value", 10)));
+		rules.put((short) 2, rule((short) 2, new LessThanEqualToCondition("value", 10)));
+		rules.put((short) 3, rule((short) 3, new AndCondition(
+				Arrays.asList(new GreaterThanEqualToCondition("value", 5), new LessThanCondition("value", 7)))));
+		rules.put((short) 4, rule((short) 4, new AndCondition(
+				Arrays.asList(new GreaterThanCondition("value", 10), new LessThanCondition("value", 5)))));
+		RuleDispatchIndex index = new RuleDispatchIndex(rules);
+		assertEquals(0, index.unindexedCount());
+		BitSet candidates = new BitSet();
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("value", 10);
+		index.findCandidates(event, candidates);
+		assertEquals(1, candidates.cardinality());
+		assertTrue(candidates.get(1));
+		event.getHeaders().put("value", 5.5);
+		index.findCandidates(event, candidates);
+		assertEquals(2, candidates.cardinality());
+		assertTrue(candidates.get(1));
+		assertTrue(candidates.get(2));
+		event.getHeaders().put("value", "10");
+		index.findCandidates(event, candidates);
+		assertEquals(0, candidates.cardinality());
+	}
+
+	@Test
+	public void testRegexCandidates() {
+		Map<Short, Rule> rules = new LinkedHashMap<>();
+		rules.put((short) 1, rule((short) 1, new JavaRegexCondition("message", ".*Failed password for \\w+ from .*")));
+		rules.put((short) 2, rule((short) 2, new JavaRegexCondition("message", ".*(?i)error.*")));
+		rules.put((short) 3, rule((short) 3, new OrCondition(Arrays.asList(
+				new JavaRegexCondition("message", ".*Connection closed.*"),
+				new JavaRegexCondition("message", ".*session opened.*")))));
+		rules.put((short) 4, rule((short) 4, new AndCondition(Arrays.asList(new GreaterThanCondition("pid", 100),
+				new JavaRegexCondition("message", ".*Accepted publickey.*")))));
+		RuleDispatchIndex index = new RuleDispatchIndex(rules);
+		assertEquals(1, index.unindexedCount());
+		BitSet candidates = new BitSet();
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("message", "sshd[2211]: Failed password for root from 10.1.1.1 port 22 ssh2");
+		index.findCandidates(event, candidates);
+		assertEquals(2, candidates.cardinality());
+		assertTrue(candidates.get(0));
+		assertTrue(candidates.get(1));
+		event.getHeaders().put("message", "sshd[2211]: pam_unix(sshd:session): session opened for user root");
+		index.findCandidates(event, candidates);
+		assertEquals(2, candidates.cardinality());
+		assertTrue(candidates.get(2));
+		event.getHeaders().put("message", "sshd[2211]: Accepted publickey for root from 10.1.1.1");
+		index.findCandidates(event, candidates);
+		assertEquals(2, candidates.cardinality());
+		assertTrue(candidates.get(3));
+	}
+
+	@Test
+	public void testRequiredLiteral() {
+		assertEquals("Failed password for ", RuleDispatchIndex.requiredLiteral(".*Failed password for .*"));
+		assertEquals("/var/log/error.log", RuleDispatchIndex.requiredLiteral("/var/log/error\\.log"));
+		assertEquals("ERROR", RuleDispatchIndex.requiredLiteral("[a-z]+ERROR\\d+"));
+		assertEquals("baz", RuleDispatchIndex.requiredLiteral("(foo|bar)baz"));
+		assertEquals("bcd", RuleDispatchIndex.requiredLiteral("a{0,3}bcd"));
+		assertEquals("abcd", RuleDispatchIndex.requiredLiteral("abcd+"));
+		assertEquals("abc", RuleDispatchIndex.requiredLiteral("abcd*"));
+		assertEquals("def", RuleDispatchIndex.requiredLiteral("[]abc]def"));
+		assertEquals(null, RuleDispatchIndex.requiredLiteral("abc?d"));
+		assertEquals(null, RuleDispatchIndex.requiredLiteral("foo|bar"));
+		assertEquals(null, RuleDispatchIndex.requiredLiteral("(?i)error"));
+		assertEquals(null, RuleDispatchIndex.requiredLiteral("x\\Qabc\\E"));
+		assertEquals(null, RuleDispatchIndex.requiredLiteral("\\x41bcd"));
+		assertEquals(null, RuleDispatchIndex.requiredLiteral(".*"));
+	}
+
+	@Test
+	public void testRandomizedCandidatesSuperset() {
+		for (int iteration = 0; iteration < 20; iteration++) {
+			Map<Short, Rule> rules = randomRules(200);
+			RuleDispatchIndex index = new RuleDispatchIndex(rules);
+			BitSet candidates = new BitSet();
+			for (int i = 0; i < 200; i++) {
+				Event event = randomEvent();
+				index.findCandidates(event, candidates);
+				for (int ordinal = 0; ordinal < index.size(); ordinal++) {
+					Rule rule = index.getRule(ordinal);
+					if (rule.getCondition().matches(event)) {
+						assertTrue("Index pruned matching rule:" + rule.getCondition(), candidates.get(ordinal));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIndexedEngineEquivalence() throws Exception {
+		List<Rule> rules = new ArrayList<>(randomRules(100).values());
+		StatelessRulesEngine<Object, Object> engine = new StatelessRulesEngine<>(caller, testFactory, testFactory);
+		Map<String, String> conf = new HashMap<>();
+		conf.put(TestFactory.RULES_CONTENT, RuleSerializer.serializeRulesToJSONString(rules, false));
+		engine.initializeRules(conf);
+		StatelessRulesEngine<Object, Object> indexedEngine = new StatelessRulesEngine<>(indexedCaller, testFactory,
+				testFactory);
+		conf.put(Constants.RULE_INDEX_ACTIVE, Constants.TRUE);
+		indexedEngine.initializeRules(conf);
+		assertTrue(indexedEngine.isRuleIndexActive());
+		assertEquals(100, indexedEngine.getRuleIndex().size());
+		for (int i = 0; i < 100; i++) {
+			Event event = randomEvent();
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, 0L);
+			engine.evaluateEventAgainstAllRules(null, null, event);
+			indexedEngine.evaluateEventAgainstAllRules(null, null, event);
+		}
+		ArgumentCaptor<Short> hits = ArgumentCaptor.forClass(Short.class);
+		verify(caller, atLeastOnce()).reportRuleHit(anyString(), hits.capture());
+		ArgumentCaptor<Short> indexedHits = ArgumentCaptor.forClass(Short.class);
+		verify(indexedCaller, atLeastOnce()).reportRuleHit(anyString(), indexedHits.capture());
+		assertEquals(hits.getAllValues(), indexedHits.getAllValues());
+	}
+
+	@Test
+	public void testIndexRuleUpdate() throws Exception {
+		StatelessRulesEngine<Object, Object> engine = new StatelessRulesEngine<>(caller, testFactory, testFactory);
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_INDEX_ACTIVE, Constants.TRUE);
+		engine.initializeRules(conf);
+		assertEquals(0, engine.getRuleIndex().size());
+		engine.updateRule(null, RuleSerializer.serializeRuleToJSONString(
+				rule((short) 1123, new EqualsCondition("host", "abcd")), false), false);
+		assertEquals(1, engine.getRuleIndex().size());
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("host", "abcd");
+		event.getHeaders().put(Constants.FIELD_TIMESTAMP, 0L);
+		engine.evaluateEventAgainstAllRules(null, null, event);
+		verify(caller).emitTemplatedAlert(null, null, event, (short) 1123, (short) 0, "test", (short) 2, 0L);
+		event.getHeaders().put("host", "efgh");
+		engine.evaluateEventAgainstAllRules(null, null, event);
+		verify(caller, never()).handleRuleNoMatch(null, null, event, engine.getRuleIndex().getRule(0));
+	}
+
+	@Test
+	public void testIndexRuleGroupUpdate() throws Exception {
+		StatelessRulesEngine<Object, Object> engine = new StatelessRulesEngine<>(caller, testFactory, testFactory);
+		Map<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_INDEX_ACTIVE, Constants.TRUE);
+		conf.put(Constants.RULE_GROUP_ACTIVE, Constants.TRUE);
+		engine.initializeRules(conf);
+		engine.updateRule("rg1", RuleSerializer.serializeRuleToJSONString(
+				rule((short) 1123, new EqualsCondition("host", "abcd")), false), false);
+		assertEquals(1, engine.getRuleGroupIndexMap().get("rg1").size());
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("host", "abcd");
+		event.getHeaders().put(Constants.FIELD_TIMESTAMP, 0L);
+		event.getHeaders().put(Constants.FIELD_RULE_GROUP, "rg1");
+		engine.evaluateEventAgainstGroupedRules(null, null, event);
+		verify(caller).emitTemplatedAlert(null, null, event, (short) 1123, (short) 0, "test", (short) 2, 0L);
+		event.getHeaders().put(Constants.FIELD_RULE_GROUP, "rg2");
+		engine.evaluateEventAgainstGroupedRules(null, null, event);
+		verify(caller, times(1)).emitTemplatedAlert(null, null, event, (short) 1123, (short) 0, "test", (short) 2,
+				0L);
+	}
+
+	private Map<Short, Rule> randomRules(int count) {
+		Map<Short, Rule> rules = new LinkedHashMap<>();
+		for (short i = 0; i < count; i++) {
+			rules.put(i, rule(i, randomCondition(2)));
+		}
+		return rules;
+	}
+
+	private Condition randomCondition(int depth) {
+		int type = random.nextInt(depth > 0 ? 9 : 7);
+		double value = random.nextInt(20);
+		switch (type) {
+		case 0:
+			return new EqualsCondition("host", HOSTS[random.nextInt(HOSTS.length)]);
+		case 1:
+			return new GreaterThanCondition("value", value);
+		case 2:
+			return new GreaterThanEqualToCondition("value", value);
+		case 3:
+			return new LessThanCondition("value", value);
+		case 4:
+			return new LessThanEqualToCondition("value", value);
+		case 5:
+			return new JavaRegexCondition("host", REGEXES[random.nextInt(REGEXES.length)]);
+		case 6:
+			return new GreaterThanCondition("other", value);
+		case 7:
+			return new AndCondition(Arrays.asList(randomCondition(depth - 1), randomCondition(depth - 1)));
+		default:
+			return new OrCondition(Arrays.asList(randomCondition(depth - 1), randomCondition(depth - 1)));
+		}
+	}
+
+	private Event randomEvent() {
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("host", HOSTS[random.nextInt(HOSTS.length)]);
+		if (random.nextBoolean()) {
+			event.getHeaders().put("value", random.nextInt(20));
+		} else {
+			event.getHeaders().put("value", random.nextDouble() * 20);
+		}
+		if (random.nextBoolean()) {
+			event.getHeaders().put("other", random.nextInt(20));
+		}
+		return event;
+	}
+
+	private static Rule rule(short ruleId, Condition condition) {
+		return new SimpleRule(ruleId, "test", true, condition, new TemplatedAlertAction((short) 0, (short) 2));
+	}
+
+}
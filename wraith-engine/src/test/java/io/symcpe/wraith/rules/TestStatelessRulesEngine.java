@@ -16,10 +16,19 @@
 package io.symcpe.wraith.rules;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -30,6 +39,7 @@ import static org.mockito.Mockito.*;
 
 import io.symcpe.wraith.Constants;
 import io.symcpe.wraith.Event;
+import io.symcpe.wraith.PerformantException;
 import io.symcpe.wraith.TestFactory;
 import io.symcpe.wraith.actions.alerts.AlertAction;
 import io.symcpe.wraith.actions.alerts.templated.TemplatedAlertAction;
@@ -215,4 +225,232 @@ public class TestStatelessRulesEngine {
 		verify(caller).emitTemplatedAlert(null, null, event, Short.valueOf((short) 1123), Short.valueOf((short) 0), "test1", Short.valueOf((short) 2), 0L);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testEvaluateEventCompiledRules() throws Exception {
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_COMPILE_ACTIVE, Constants.TRUE);
+		conf.put(TestFactory.RULES_CONTENT,
+				RuleSerializer.serializeRulesToJSONString(Arrays.asList(new SimpleRule((short) 1123, "test1", true,
+						new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 2))), false));
+		engine.initializeRules(conf);
+		assertNotNull(engine.getRuleMap().get((short) 1123).getCompiledCondition());
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("host", "abcd");
+		event.getHeaders().put(Constants.FIELD_TIMESTAMP, 0L);
+		engine.evaluateEventAgainstAllRules(null, null, event);
+		verify(caller).emitTemplatedAlert(null, null, event, (short) 1123, (short) 0, "test1", (short) 2, 0L);
+		engine.updateRule(null,
+				RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 1123, "test1", true,
+						new EqualsCondition("host", "efgh"), new TemplatedAlertAction((short) 0, (short) 2)), false),
+				false);
+		assertNotNull(engine.getRuleMap().get((short) 1123).getCompiledCondition());
+		engine.evaluateEventAgainstAllRules(null, null, event);
+		verify(caller).handleRuleNoMatch(null, null, event, engine.getRuleMap().get((short) 1123));
+	}
+
+	@Test
+	public void testEvaluateEventBatch() throws Exception {
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_INDEX_ACTIVE, Constants.TRUE);
+		conf.put(TestFactory.RULES_CONTENT,
+				RuleSerializer.serializeRulesToJSONString(Arrays.asList(
+						new SimpleRule((short) 1123, "test1", true, new EqualsCondition("host", "abcd"),
+								new TemplatedAlertAction((short) 0, (short) 2)),
+						new SimpleRule((short) 1124, "test2", true, new EqualsCondition("host", "efgh"),
+								new TemplatedAlertAction((short) 0, (short) 3))),
+						false));
+		engine.initializeRules(conf);
+		List<Object> containers = new ArrayList<>();
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			Event event = testFactory.buildEvent();
+			event.getHeaders().put("host", i % 3 == 0 ? "abcd" : i % 3 == 1 ? "efgh" : "ijkl");
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, (long) i);
+			containers.add(i);
+			events.add(event);
+		}
+		engine.evaluateEventBatch(null, containers, events);
+		for (int i = 0; i < 6; i++) {
+			if (i % 3 == 0) {
+				verify(caller).emitTemplatedAlert(null, i, events.get(i), (short) 1123, (short) 0, "test1", (short) 2,
+						(long) i);
+			} else if (i % 3 == 1) {
+				verify(caller).emitTemplatedAlert(null, i, events.get(i), (short) 1124, (short) 0, "test2", (short) 3,
+						(long) i);
+			}
+		}
+		verify(caller, times(2)).reportRuleHit(null, (short) 1123);
+		verify(caller, times(2)).reportRuleHit(null, (short) 1124);
+		assertEquals(1, engine.getRuleMap().get((short) 1123).getLatencyRecorder().getRuleLatency().snapshotAndReset()
+				.getCount());
+	}
+
+	@Test
+	public void testLatencySampling() throws Exception {
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(TestFactory.RULES_CONTENT,
+				RuleSerializer.serializeRulesToJSONString(Arrays.asList(new SimpleRule((short) 1123, "test1", true,
+						new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 2))), false));
+		engine.initializeRules(conf);
+		Rule rule = engine.getRuleMap().get((short) 1123);
+		assertNotNull(rule.getLatencyRecorder());
+		assertEquals("1123", rule.getLatencyRecorder().getScope());
+		Event event = testFactory.buildEvent();
+		event.getHeaders().put("host", "abcd");
+		event.getHeaders().put(Constants.FIELD_TIMESTAMP, 1L);
+		for (int i = 0; i < 10; i++) {
+			engine.evaluateEventAgainstAllRules(null, null, event);
+		}
+		assertEquals(10, rule.getLatencyRecorder().getRuleLatency().snapshotAndReset().getCount());
+		assertEquals(10, rule.getLatencyRecorder().getConditionLatency().snapshotAndReset().getCount());
+
+		conf.put(Constants.RULE_LATENCY_SAMPLE_RATE, "0");
+		engine = new StatelessRulesEngine<>(caller, testFactory, testFactory);
+		engine.initializeRules(conf);
+		rule = engine.getRuleMap().get((short) 1123);
+		for (int i = 0; i < 10; i++) {
+			engine.evaluateEventAgainstAllRules(null, null, event);
+		}
+		assertEquals(0, rule.getLatencyRecorder().getRuleLatency().snapshotAndReset().getCount());
+		verify(caller, times(20)).reportRuleHit(null, (short) 1123);
+	}
+
+	@Test
+	public void testEvaluateEventBatchRuleGroup() throws Exception {
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_GROUP_ACTIVE, Constants.TRUE);
+		engine.initializeRules(conf);
+		engine.updateRule("rg1",
+				RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 1123, "test1", true,
+						new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 2)), false),
+				false);
+		engine.updateRule("rg2",
+				RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 1124, "test2", true,
+						new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 3)), false),
+				false);
+		List<Object> containers = new ArrayList<>();
+		List<Event> events = new ArrayList<>();
+		String[] groups = new String[] { "rg1", "rg2", null, "rg1", "rg3" };
+		for (int i = 0; i < groups.length; i++) {
+			Event event = testFactory.buildEvent();
+			event.getHeaders().put("host", "abcd");
+			event.getHeaders().put(Constants.FIELD_TIMESTAMP, (long) i);
+			if (groups[i] != null) {
+				event.getHeaders().put(Constants.FIELD_RULE_GROUP, groups[i]);
+			}
+			containers.add(i);
+			events.add(event);
+		}
+		engine.evaluateEventBatch(null, containers, events);
+		verify(caller).emitTemplatedAlert(null, 0, events.get(0), (short) 1123, (short) 0, "test1", (short) 2, 0L);
+		verify(caller).emitTemplatedAlert(null, 1, events.get(1), (short) 1124, (short) 0, "test2", (short) 3, 1L);
+		verify(caller).emitTemplatedAlert(null, 3, events.get(3), (short) 1123, (short) 0, "test1", (short) 2, 3L);
+		verify(caller, times(2)).reportRuleHit("rg1", (short) 1123);
+		verify(caller, times(1)).reportRuleHit("rg2", (short) 1124);
+	}
+
+	@Test
+	public void testPartitionedRuleGroups() throws Exception {
+		TenantPartitioner partitioner = new TenantPartitioner(4, TenantPartitioner.DEFAULT_VIRTUAL_NODES, null);
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_GROUP_ACTIVE, Constants.TRUE);
+		conf.put(Constants.RULE_PARTITION_COUNT, "4");
+		conf.put(Constants.RULE_PARTITION_INDEX, "2");
+		engine.initializeRules(conf);
+		String rule = RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 1123, "test1", true,
+				new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 2)), false);
+		int owned = 0;
+		for (int i = 0; i < 40; i++) {
+			String ruleGroup = "rg" + i;
+			engine.updateRule(ruleGroup, rule, false);
+			assertEquals(partitioner.owns(2, ruleGroup), engine.ownsRuleGroup(ruleGroup));
+			assertEquals(engine.ownsRuleGroup(ruleGroup), engine.getRuleGroupMap().containsKey(ruleGroup));
+			if (engine.ownsRuleGroup(ruleGroup)) {
+				owned++;
+			}
+		}
+		assertEquals(owned, engine.getRuleGroupMap().size());
+		assertTrue(owned > 0 && owned < 40);
+	}
+
+	@Test
+	public void testRuleSnapshots() throws Exception {
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_GROUP_ACTIVE, Constants.TRUE);
+		conf.put(Constants.RULE_INDEX_ACTIVE, Constants.TRUE);
+		engine.initializeRules(conf);
+		RuleSnapshot initial = engine.getSnapshot();
+		String rule1 = RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 1123, "test1", true,
+				new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 2)), false);
+		String rule2 = RuleSerializer.serializeRuleToJSONString(new SimpleRule((short) 1124, "test2", true,
+				new EqualsCondition("host", "efgh"), new TemplatedAlertAction((short) 0, (short) 2)), false);
+		engine.updateRule("rg1", rule1, false);
+		RuleSnapshot first = engine.getSnapshot();
+		assertEquals(initial.getVersion() + 1, first.getVersion());
+		assertEquals(0, initial.getRuleGroupMap().size());
+		// a batch of updates is published as one snapshot
+		try {
+			engine.updateRules(Arrays.asList(new RuleCommand("rg1", false, rule2),
+					new RuleCommand("rg2", false, rule1), new RuleCommand(null, false, rule1)));
+			fail("Command without a rule group must fail");
+		} catch (PerformantException e) {
+		}
+		RuleSnapshot second = engine.getSnapshot();
+		assertEquals(first.getVersion() + 1, second.getVersion());
+		assertEquals(1, first.getRuleGroupMap().get("rg1").size());
+		assertEquals(2, second.getRuleGroupMap().get("rg1").size());
+		assertEquals(1, second.getRuleGroupMap().get("rg2").size());
+		assertEquals(2, second.getRuleGroupIndexMap().get("rg1").size());
+		// unchanged groups are shared
+		engine.updateRule("rg3", rule1, false);
+		assertSame(second.getRuleGroupMap().get("rg1"), engine.getRuleGroupMap().get("rg1"));
+		assertSame(second.getRuleGroupIndexMap().get("rg2"), engine.getRuleGroupIndexMap().get("rg2"));
+		try {
+			engine.getRuleGroupMap().get("rg1").clear();
+			fail("Snapshots must be immutable");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	public void testConcurrentEvaluationDuringUpdates() throws Exception {
+		// mocks record every call, discard callbacks instead
+		final StatelessRulesEngine<Object, Object> engine = new StatelessRulesEngine<>(
+				new RuleDispatchBenchmark.NoopCaller(), testFactory, testFactory);
+		HashMap<String, String> conf = new HashMap<>();
+		conf.put(Constants.RULE_INDEX_ACTIVE, Constants.TRUE);
+		engine.initializeRules(conf);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				Event event = testFactory.buildEvent();
+				event.getHeaders().put("host", "abcd");
+				event.getHeaders().put(Constants.FIELD_TIMESTAMP, 0L);
+				try {
+					while (running.get()) {
+						engine.evaluateEventAgainstAllRules(null, null, event);
+					}
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (short i = 0; i < 200; i++) {
+			engine.updateRule(null, RuleSerializer.serializeRuleToJSONString(new SimpleRule(i, "test" + i, true,
+					new EqualsCondition("host", "abcd"), new TemplatedAlertAction((short) 0, (short) 2)), false),
+					false);
+		}
+		running.set(false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(error.get());
+		assertEquals(200, engine.getRuleMap().size());
+		assertEquals(200, engine.getRuleIndex().size());
+	}
+
+}
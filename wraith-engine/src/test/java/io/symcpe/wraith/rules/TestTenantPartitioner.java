@@ -0,0 +1,100 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TenantPartitioner}
+ * 
+ * @author ambud_sharma
+ */
+public class TestTenantPartitioner {
+
+	@Test
+	public void testSingleOwnerBalance() {
+		TenantPartitioner partitioner = new TenantPartitioner(8, TenantPartitioner.DEFAULT_VIRTUAL_NODES, null);
+		int[] counts = new int[8];
+		for (int i = 0; i < 8000; i++) {
+			int[] owners = partitioner.owners("tenant" + i);
+			assertEquals(1, owners.length);
+			counts[owners[0]]++;
+			assertTrue(partitioner.owns(owners[0], "tenant" + i));
+			assertEquals(owners[0], partitioner.route("tenant" + i, i));
+		}
+		for (int count : counts) {
+			// within 50% of the fair share
+			assertTrue(String.valueOf(count), count > 500 && count < 1500);
+		}
+	}
+
+	@Test
+	public void testMinimalMovement() {
+		TenantPartitioner partitioner = new TenantPartitioner(8, TenantPartitioner.DEFAULT_VIRTUAL_NODES, null);
+		TenantPartitioner grown = new TenantPartitioner(9, TenantPartitioner.DEFAULT_VIRTUAL_NODES, null);
+		int moved = 0;
+		for (int i = 0; i < 9000; i++) {
+			int owner = grown.owners("tenant" + i)[0];
+			if (owner != partitioner.owners("tenant" + i)[0]) {
+				moved++;
+				// groups only move to the new partition
+				assertEquals(8, owner);
+			}
+		}
+		assertTrue(String.valueOf(moved), moved > 0 && moved < 2000);
+	}
+
+	@Test
+	public void testSplits() {
+		Map<String, Integer> splits = TenantPartitioner.parseSplits("heavy:3, huge : 20");
+		assertEquals(3, (int) splits.get("heavy"));
+		assertEquals(20, (int) splits.get("huge"));
+		TenantPartitioner partitioner = new TenantPartitioner(8, 16, splits);
+		int[] owners = partitioner.owners("heavy");
+		assertEquals(3, owners.length);
+		Set<Integer> distinct = new HashSet<>();
+		Set<Integer> routed = new HashSet<>();
+		for (int owner : owners) {
+			distinct.add(owner);
+			assertTrue(partitioner.owns(owner, "heavy"));
+		}
+		assertEquals(3, distinct.size());
+		for (int i = 0; i < 30; i++) {
+			routed.add(partitioner.route("heavy", i));
+		}
+		assertEquals(distinct, routed);
+		// capped at the number of partitions
+		assertEquals(8, partitioner.owners("huge").length);
+		// primary owner is unchanged by the split
+		assertEquals(new TenantPartitioner(8, 16, new HashMap<>()).owners("heavy")[0], owners[0]);
+		assertArrayEquals(owners, new TenantPartitioner(8, 16, splits).owners("heavy"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSplit() {
+		TenantPartitioner.parseSplits("heavy");
+	}
+
+}
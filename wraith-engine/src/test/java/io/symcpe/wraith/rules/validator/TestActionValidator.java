@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Symantec Corporation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the “License”); 
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.symcpe.wraith.rules.validator;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import io.symcpe.wraith.actions.aggregations.CoarseCountingAggregationAction;
+import io.symcpe.wraith.actions.aggregations.CountMinAggregationAction;
+import io.symcpe.wraith.actions.aggregations.PercentileAggregationAction;
+import io.symcpe.wraith.actions.aggregations.StateAggregationAction;
+import io.symcpe.wraith.actions.aggregations.TopKAggregationAction;
+import io.symcpe.wraith.conditions.relational.ExistsCondition;
+
+/**
+ * Unit tests for {@link ActionValidator}
+ * 
+ * @author ambud_sharma
+ */
+public class TestActionValidator {
+
+	@Test
+	public void testAggregationActionTypes() throws ValidationException {
+		ActionValidator validator = new ActionValidator();
+		validator.validate(new StateAggregationAction((short) 0, "host", 20, new ExistsCondition("host")));
+		validator.validate(new CountMinAggregationAction((short) 0, "host", "user", 20));
+		validator.validate(new PercentileAggregationAction((short) 0, "host", "latency", 20));
+		validator.validate(new TopKAggregationAction((short) 0, "host", "user", 20));
+	}
+
+	@Test
+	public void testSlidingSketchAggregation() throws ValidationException {
+		ActionValidator validator = new ActionValidator();
+		StateAggregationAction state = new StateAggregationAction((short) 0, "host", 20, new ExistsCondition("host"));
+		state.setAggregationSlide(10);
+		validator.validate(state);
+		PercentileAggregationAction percentile = new PercentileAggregationAction((short) 0, "host", "latency", 20);
+		percentile.setAggregationSlide(10);
+		try {
+			validator.validate(percentile);
+			fail("Sliding windows of non-mergeable aggregators shouldn't pass validation");
+		} catch (ValidationException e) {
+		}
+	}
+
+	@Test
+	public void testHllPrecision() {
+		ActionValidator validator = new ActionValidator();
+		try {
+			validator.validate(new CoarseCountingAggregationAction((short) 0, "host", "user", 20, 30));
+			fail("Out of range HLL precision shouldn't pass validation");
+		} catch (ValidationException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("HLL precision"));
+		}
+	}
+
+}
@@ -24,11 +24,13 @@ import org.apache.ignite.IgniteCache;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.configuration.IgniteConfiguration;
 
-import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
 import com.clearspring.analytics.stream.cardinality.ICardinality;
 
 import io.symcpe.wraith.MutableBoolean;
 import io.symcpe.wraith.aggregators.Aggregator;
+import io.symcpe.wraith.aggregators.IntHashSet;
+import io.symcpe.wraith.aggregators.SketchAggregator;
+import io.symcpe.wraith.aggregators.SparseHyperLogLog;
 import io.symcpe.wraith.store.AggregationStore;
 
 /**
@@ -57,7 +59,11 @@ public class IgniteAggregationStore implements AggregationStore {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public void persist(int taskId, String entity, Aggregator aggregator) throws IOException {
-		if(aggregator.getDatastructure() instanceof Set) {
+		if(aggregator instanceof SketchAggregator) {
+			// sketches are persisted whole, the latest one replaces the cached one
+			IgniteCache<String, byte[]> cache = ignite.cache("");
+			cache.put(entity, ((SketchAggregator) aggregator).toBytes());
+		}else if(aggregator.getDatastructure() instanceof Set) {
 			IgniteCache<String, Set> cache = ignite.cache("");
 			Set val = (Set)aggregator.getDatastructure();
 			if(cache.containsKey(entity)) {
@@ -66,16 +72,27 @@ public class IgniteAggregationStore implements AggregationStore {
 			}else {
 				cache.put(entity, val);
 			}
-		}else if(aggregator.getDatastructure() instanceof ICardinality) {
+		}else if(aggregator.getDatastructure() instanceof IntHashSet) {
+			IgniteCache<String, byte[]> cache = ignite.cache("");
+			IntHashSet val = (IntHashSet) aggregator.getDatastructure();
+			if(cache.containsKey(entity)) {
+				IntHashSet set = IntHashSet.fromBytes(cache.get(entity), false);
+				set.addAll(val);
+				cache.put(entity, set.toBytes());
+			}else {
+				cache.put(entity, val.toBytes());
+			}
+		}else if(aggregator.getDatastructure() instanceof SparseHyperLogLog) {
 			IgniteCache<String, byte[]> cache = ignite.cache("");
-			HyperLogLogPlus card = (HyperLogLogPlus) aggregator.getDatastructure();
+			SparseHyperLogLog card = (SparseHyperLogLog) aggregator.getDatastructure();
 			if(cache.containsKey(entity)) {
-				HyperLogLogPlus hll = HyperLogLogPlus.Builder.build(cache.get(entity));
+				SparseHyperLogLog hll = SparseHyperLogLog.fromBytes(cache.get(entity));
 				try {
-					hll.addAll(card);
-				} catch (Exception e) {
+					hll.union(card);
+				} catch (IllegalArgumentException e) {
 					throw new IOException(e);
 				}
+				cache.put(entity, hll.getBytes());
 			}else {
 				cache.put(entity, card.getBytes());
 			}
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -32,20 +33,29 @@ import com.clearspring.analytics.stream.cardinality.ICardinality;
 
 import io.symcpe.wraith.MutableBoolean;
 import io.symcpe.wraith.Utils;
+import io.symcpe.wraith.actions.alerts.templated.ThrottleWindow;
 import io.symcpe.wraith.aggregators.Aggregator;
 import io.symcpe.wraith.aggregators.CoarseCountingAggregator;
 import io.symcpe.wraith.aggregators.FineCountingAggregator;
+import io.symcpe.wraith.aggregators.IntHashSet;
 import io.symcpe.wraith.aggregators.SetAggregator;
+import io.symcpe.wraith.aggregators.SketchAggregator;
 import io.symcpe.wraith.store.AggregationStore;
+import io.symcpe.wraith.store.ThrottleStore;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Pipeline;
 
 /**
+ * Redis backed {@link AggregationStore}, also keeps alert throttle snapshots
+ * as a hash per task.
+ * 
  * @author ambud_sharma
  */
-public class RedisAggregationStore implements AggregationStore {
+public class RedisAggregationStore implements AggregationStore, ThrottleStore {
 
 	private static final String PREFIX_STATES = "states_";
+	private static final String PREFIX_THROTTLE = "throttle_";
 	private static final String DEFAULT_REDIS_PORT = "6379";
 	private static final String DEFAULT_SENTINEL_PORT = "26379";
 	private static final String ASTORE_REDIS_PORT = "astore.redis.port";
@@ -117,8 +127,13 @@ public class RedisAggregationStore implements AggregationStore {
 	@SuppressWarnings("unchecked")
 	@Override
 	public void persist(int taskId, String entity, Aggregator aggregator) throws IOException {
-		if (aggregator.getClass() == FineCountingAggregator.class) {
-			mergeSetIntValues(taskId, entity, (Set<Integer>) aggregator.getDatastructure());
+		if (aggregator instanceof SketchAggregator) {
+			putSketch(taskId, entity, (SketchAggregator) aggregator);
+		} else if (aggregator.getClass() == FineCountingAggregator.class) {
+			IntHashSet values = (IntHashSet) aggregator.getDatastructure();
+			if (!values.isEmpty()) {
+				mergeSetValues(taskId, entity, intSetToList(values));
+			}
 		} else if (aggregator.getClass() == SetAggregator.class) {
 			mergeSetValues(taskId, entity, (Set<Object>) aggregator.getDatastructure());
 		} else if (aggregator.getClass() == CoarseCountingAggregator.class) {
@@ -126,6 +141,40 @@ public class RedisAggregationStore implements AggregationStore {
 		}
 	}
 
+	/**
+	 * Write the batch with a single pipeline round trip
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void persist(int taskId, Map<String, Aggregator> aggregators) throws IOException {
+		if (aggregators.isEmpty()) {
+			return;
+		}
+		if (isSentinel) {
+			redis = sentinel.getResource();
+		}
+		Pipeline pipeline = redis.pipelined();
+		for (Entry<String, Aggregator> entry : aggregators.entrySet()) {
+			Aggregator aggregator = entry.getValue();
+			List<String> vals = null;
+			if (aggregator instanceof SketchAggregator) {
+				pipeline.set(prefixSketchKey(taskId, entry.getKey()),
+						Base64.getEncoder().encodeToString(((SketchAggregator) aggregator).toBytes()));
+			} else if (aggregator.getClass() == FineCountingAggregator.class) {
+				vals = intSetToList((IntHashSet) aggregator.getDatastructure());
+			} else if (aggregator.getClass() == SetAggregator.class) {
+				vals = objectSetToList((Set<Object>) aggregator.getDatastructure());
+			} else if (aggregator.getClass() == CoarseCountingAggregator.class) {
+				pipeline.set(prefixICardKey(taskId, entry.getKey()), Base64.getEncoder()
+						.encodeToString(((ICardinality) aggregator.getDatastructure()).getBytes()));
+			}
+			if (vals != null && !vals.isEmpty()) {
+				pipeline.sadd(taskId + "_" + entry.getKey(), vals.toArray(new String[vals.size()]));
+			}
+		}
+		pipeline.sync();
+	}
+
 	@Override
 	public Map<String, Aggregator> retrive(int taskId, Aggregator template) throws IOException {
 		if (isSentinel) {
@@ -143,6 +192,11 @@ public class RedisAggregationStore implements AggregationStore {
 			} else if (template.getClass() == FineCountingAggregator.class) {
 				smembers = redis.smembers(key);
 				instance.initialize(stringSetToInteger(smembers));
+			} else if (template instanceof SketchAggregator) {
+				String sketch = redis.get(key);
+				if (sketch != null) {
+					instance.initialize(Base64.getDecoder().decode(sketch));
+				}
 			} else if (template.getClass() == CoarseCountingAggregator.class) {
 				String card = redis.get(prefixICard(taskId));
 				if(card!=null) {
@@ -194,6 +248,12 @@ public class RedisAggregationStore implements AggregationStore {
 		return vals;
 	}
 
+	public List<String> intSetToList(IntHashSet values) {
+		List<String> vals = new ArrayList<>(values.size());
+		values.forEach(val -> vals.add(Utils.intToString(val)));
+		return vals;
+	}
+
 	@Override
 	public void putValue(int taskId, String entity, ICardinality value) throws IOException {
 		if (isSentinel) {
@@ -203,6 +263,25 @@ public class RedisAggregationStore implements AggregationStore {
 		redis.set(key, Base64.getEncoder().encodeToString(value.getBytes()));
 	}
 
+	/**
+	 * Sketches have a constant size, the latest full sketch overwrites the
+	 * stored one
+	 * 
+	 * @param taskId
+	 * @param entity
+	 * @param sketch
+	 */
+	public void putSketch(int taskId, String entity, SketchAggregator sketch) {
+		if (isSentinel) {
+			redis = sentinel.getResource();
+		}
+		redis.set(prefixSketchKey(taskId, entity), Base64.getEncoder().encodeToString(sketch.toBytes()));
+	}
+
+	private String prefixSketchKey(int taskId, String entity) {
+		return taskId + "_sketch_" + entity;
+	}
+
 	private String prefixICardKey(int taskId, String entity) {
 		return prefixICard(taskId) + entity;
 	}
@@ -225,6 +304,24 @@ public class RedisAggregationStore implements AggregationStore {
 		redis.set(buildStateKey(taskId, key), String.valueOf(value.isVal()));
 	}
 
+	/**
+	 * Write the batch with a single pipeline round trip
+	 */
+	@Override
+	public void persistStates(int taskId, Map<String, MutableBoolean> states) throws IOException {
+		if (states.isEmpty()) {
+			return;
+		}
+		if (isSentinel) {
+			redis = sentinel.getResource();
+		}
+		Pipeline pipeline = redis.pipelined();
+		for (Entry<String, MutableBoolean> entry : states.entrySet()) {
+			pipeline.set(buildStateKey(taskId, entry.getKey()), String.valueOf(entry.getValue().isVal()));
+		}
+		pipeline.sync();
+	}
+
 	@Override
 	public Map<String, MutableBoolean> retriveStates(int taskId) throws IOException {
 		if (isSentinel) {
@@ -247,6 +344,40 @@ public class RedisAggregationStore implements AggregationStore {
 		redis.del(buildStateKey(taskId, key));
 	}
 
+	@Override
+	public void persistWindows(int taskId, Map<Short, ThrottleWindow> windows) throws IOException {
+		if (isSentinel) {
+			redis = sentinel.getResource();
+		}
+		String key = PREFIX_THROTTLE + taskId;
+		Pipeline pipeline = redis.pipelined();
+		pipeline.multi();
+		pipeline.del(key);
+		if (!windows.isEmpty()) {
+			Map<String, String> values = new HashMap<>();
+			for (Entry<Short, ThrottleWindow> entry : windows.entrySet()) {
+				values.put(String.valueOf(entry.getKey()), entry.getValue().toString());
+			}
+			pipeline.hmset(key, values);
+		}
+		pipeline.exec();
+		pipeline.sync();
+	}
+
+	@Override
+	public Map<Short, ThrottleWindow> retriveWindows(int taskId) throws IOException {
+		if (isSentinel) {
+			redis = sentinel.getResource();
+		}
+		Map<Short, ThrottleWindow> windows = new HashMap<>();
+		for (Entry<String, String> entry : redis.hgetAll(PREFIX_THROTTLE + taskId).entrySet()) {
+			String[] parts = entry.getValue().split(",");
+			windows.put(Short.parseShort(entry.getKey()), new ThrottleWindow(Long.parseLong(parts[0]),
+					Integer.parseInt(parts[1]), Boolean.parseBoolean(parts[2])));
+		}
+		return windows;
+	}
+
 	/**
 	 * Build state key to store state value into redis
 	 * 
@@ -25,7 +25,6 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -95,17 +94,35 @@ public class SQLRulesStore implements RulesStore, TemplateStore {
 		this.password = null;
 	}
 
+	/**
+	 * Prepare a select on the table, filtered to the configured tenants
+	 * 
+	 * @param table
+	 * @return statement
+	 * @throws SQLException
+	 */
+	private PreparedStatement prepareTenantStatement(String table) throws SQLException {
+		if (this.tenants == null) {
+			return conn.prepareStatement("select * from " + dbName + "." + table + "");
+		}
+		// one placeholder per tenant, a single joined parameter matches no tenant
+		StringBuilder builder = new StringBuilder("select * from " + dbName + "." + table + " where "
+				+ COLUMN_TENANT_ID + " in (");
+		for (int i = 0; i < tenants.length; i++) {
+			builder.append(i == 0 ? "?" : ",?");
+		}
+		PreparedStatement st = conn.prepareStatement(builder.append(")").toString());
+		for (int i = 0; i < tenants.length; i++) {
+			st.setString(i + 1, tenants[i].trim());
+		}
+		return st;
+	}
+
 	@Override
 	public Map<Short, Rule> listRules() throws IOException {
 		Map<Short, Rule> rules = new HashMap<>();
 		try {
-			PreparedStatement st = null;
-			if (this.tenants == null) {
-				st = conn.prepareStatement("select * from " + dbName + "." + rulesTable + "");
-			} else {
-				st = conn.prepareStatement("select * from " + dbName + "." + rulesTable + " where tenant_id in (?)");
-				st.setString(1, StringUtils.join(tenants));
-			}
+			PreparedStatement st = prepareTenantStatement(rulesTable);
 			ResultSet resultSet = st.executeQuery();
 			int counter = 0;
 			while (resultSet.next()) {
@@ -154,13 +171,7 @@ public class SQLRulesStore implements RulesStore, TemplateStore {
 	public Map<String, Map<Short, Rule>> listGroupedRules() throws IOException {
 		Map<String, Map<Short, Rule>> rules = new HashMap<>();
 		try {
-			PreparedStatement st = null;
-			if (this.tenants == null) {
-				st = conn.prepareStatement("select * from " + dbName + "." + rulesTable + "");
-			} else {
-				st = conn.prepareStatement("select * from " + dbName + "." + rulesTable + " where tenant_id in (?)");
-				st.setString(1, StringUtils.join(tenants));
-			}
+			PreparedStatement st = prepareTenantStatement(rulesTable);
 			ResultSet resultSet = st.executeQuery();
 			int counter = 0;
 			while (resultSet.next()) {
@@ -207,13 +218,7 @@ public class SQLRulesStore implements RulesStore, TemplateStore {
 		Map<Short, AlertTemplate> templateMap = new HashMap<>();
 		AlertTemplateValidator validator = new AlertTemplateValidator();
 		try {
-			PreparedStatement st = null;
-			if (this.tenants == null) {
-				st = conn.prepareStatement("select * from " + dbName + "." + templateTable + "");
-			} else {
-				st = conn.prepareStatement("select * from " + dbName + "." + templateTable + " where tenant_id in (?)");
-				st.setString(1, StringUtils.join(tenants));
-			}
+			PreparedStatement st = prepareTenantStatement(templateTable);
 			ResultSet resultSet = st.executeQuery();
 			int counter = 0;
 			while (resultSet.next()) {